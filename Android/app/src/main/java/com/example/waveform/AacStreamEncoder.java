@@ -0,0 +1,117 @@
+package com.example.waveform;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 把 WAV 的一段边读边编码为 AAC-LC，以 ADTS 帧直接写入输出流（无需 MP4 封装和中间文件）
+ * 输出流阻塞（接收方读得慢）时编码随之暂停，内存只有编码器自身的缓冲和一个调用方提供的缓冲区
+ */
+public class AacStreamEncoder {
+    private static final long TIMEOUT_US = 10_000;
+    private static final int BIT_RATE_PER_CHANNEL = 64_000;
+    private static final int[] ADTS_SAMPLE_RATES = {
+            96000, 88200, 64000, 48000, 44100, 32000, 24000, 22050, 16000, 12000, 11025, 8000, 7350};
+
+    /** 支持 ADTS 的采样率 */
+    public static boolean isSupported(int sampleRate) {
+        return sampleRateIndex(sampleRate) >= 0;
+    }
+
+    /**
+     * 编码 [startMs, endMs) 并写入 out
+     * @param buffer 工作缓冲（来自缓冲池），输入 PCM 与输出 ADTS 帧轮流使用，至少 16KB
+     */
+    public static void encode(File wav, long startMs, long endMs, OutputStream out, byte[] buffer)
+            throws IOException {
+        try (WavSlice slice = WavSlice.open(wav, startMs, endMs)) {
+            WavFile.Info info = slice.getInfo();
+            int freqIndex = sampleRateIndex(info.sampleRate);
+            if (freqIndex < 0) throw new IOException("ADTS 不支持的采样率: " + info.sampleRate);
+            int frameBytes = info.channels * 2;
+            // 跳过虚拟文件头，直接读取小端 PCM 送入编码器
+            long position = WavFile.HEADER_SIZE;
+            long end = slice.length();
+
+            MediaFormat format = MediaFormat.createAudioFormat(MediaFormat.MIMETYPE_AUDIO_AAC,
+                    info.sampleRate, info.channels);
+            format.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
+            format.setInteger(MediaFormat.KEY_BIT_RATE, BIT_RATE_PER_CHANNEL * info.channels);
+            format.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, buffer.length);
+            MediaCodec codec = MediaCodec.createEncoderByType(MediaFormat.MIMETYPE_AUDIO_AAC);
+            try {
+                codec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+                codec.start();
+                MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+                boolean inputDone = false;
+                while (true) {
+                    if (!inputDone) {
+                        int inIndex = codec.dequeueInputBuffer(TIMEOUT_US);
+                        if (inIndex >= 0) {
+                            ByteBuffer in = codec.getInputBuffer(inIndex);
+                            in.clear();
+                            int want = (int) Math.min(Math.min(in.remaining(), buffer.length), end - position);
+                            want -= want % frameBytes;
+                            int n = want > 0 ? slice.read(position, buffer, 0, want) : -1;
+                            long ptsUs = (position - WavFile.HEADER_SIZE) / frameBytes * 1_000_000L / info.sampleRate;
+                            if (n <= 0) {
+                                codec.queueInputBuffer(inIndex, 0, 0, ptsUs, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                                inputDone = true;
+                            } else {
+                                in.put(buffer, 0, n);
+                                codec.queueInputBuffer(inIndex, 0, n, ptsUs, 0);
+                                position += n;
+                            }
+                        }
+                    }
+                    int outIndex = codec.dequeueOutputBuffer(bufferInfo, TIMEOUT_US);
+                    if (outIndex < 0) continue;
+                    boolean eos = (bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+                    // 编解码配置（AudioSpecificConfig）已由 ADTS 头表达，不写出
+                    if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0 && bufferInfo.size > 0) {
+                        ByteBuffer encoded = codec.getOutputBuffer(outIndex);
+                        encoded.position(bufferInfo.offset);
+                        int size = Math.min(bufferInfo.size, buffer.length - 7);
+                        writeAdtsHeader(buffer, size + 7, freqIndex, info.channels);
+                        encoded.get(buffer, 7, size);
+                        out.write(buffer, 0, size + 7);
+                    }
+                    codec.releaseOutputBuffer(outIndex, false);
+                    if (eos) break;
+                }
+                out.flush();
+            } finally {
+                try {
+                    codec.stop();
+                } catch (IllegalStateException e) {
+                    e.printStackTrace();
+                }
+                codec.release();
+            }
+        }
+    }
+
+    /** 7 字节 ADTS 头（无 CRC），packetLength 含头部 */
+    static void writeAdtsHeader(byte[] b, int packetLength, int freqIndex, int channels) {
+        int profile = 2; // AAC LC
+        b[0] = (byte) 0xFF;
+        b[1] = (byte) 0xF1;
+        b[2] = (byte) (((profile - 1) << 6) | (freqIndex << 2) | (channels >> 2));
+        b[3] = (byte) (((channels & 3) << 6) | (packetLength >> 11));
+        b[4] = (byte) ((packetLength & 0x7FF) >> 3);
+        b[5] = (byte) (((packetLength & 7) << 5) | 0x1F);
+        b[6] = (byte) 0xFC;
+    }
+
+    private static int sampleRateIndex(int sampleRate) {
+        for (int i = 0; i < ADTS_SAMPLE_RATES.length; i++) {
+            if (ADTS_SAMPLE_RATES[i] == sampleRate) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.waveform;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * 按位置寻址的 AES-CTR：第 n 个 16 字节块的计数器为 nonce(8) || n(8)，n = 位置 / 16
+ * 任意区间都可以独立加解密，加密与解密是同一个异或操作。
+ * 顺序处理时沿用同一个 Cipher 的计数器，只有跳转时才重新初始化。非线程安全
+ */
+public class AesCtr {
+    public static final int KEY_BYTES = 32;
+    public static final int NONCE_BYTES = 8;
+    private static final int BLOCK = 16;
+
+    private final Cipher cipher;
+    private final SecretKeySpec key;
+    private final byte[] iv = new byte[BLOCK];
+    private final byte[] skip = new byte[BLOCK];
+    // 密钥流的下一个位置，-1 表示尚未初始化
+    private long position = -1;
+
+    public AesCtr(byte[] key, byte[] nonce) throws GeneralSecurityException {
+        if (nonce.length != NONCE_BYTES) throw new IllegalArgumentException("nonce 长度应为 8");
+        this.key = new SecretKeySpec(key, "AES");
+        this.cipher = Cipher.getInstance("AES/CTR/NoPadding");
+        System.arraycopy(nonce, 0, iv, 0, NONCE_BYTES);
+    }
+
+    /** 对 buf[off, off + len) 就地加/解密，数据位于流中的 position 处 */
+    public void apply(long position, byte[] buf, int off, int len) throws IOException {
+        if (len <= 0) return;
+        try {
+            seek(position);
+            cipher.update(buf, off, len, buf, off);
+            this.position = position + len;
+        } catch (GeneralSecurityException e) {
+            this.position = -1;
+            throw new IOException("加解密失败", e);
+        }
+    }
+
+    /** 对 buf 的 [position(), limit()) 就地加/解密，不改变 buf 的位置 */
+    public void apply(long position, ByteBuffer buf) throws IOException {
+        int len = buf.remaining();
+        if (len <= 0) return;
+        if (buf.hasArray()) {
+            apply(position, buf.array(), buf.arrayOffset() + buf.position(), len);
+            return;
+        }
+        try {
+            seek(position);
+            // Cipher 的 ByteBuffer 接口允许输入输出为同一块内存
+            cipher.update(buf.duplicate(), buf.duplicate());
+            this.position = position + len;
+        } catch (GeneralSecurityException e) {
+            this.position = -1;
+            throw new IOException("加解密失败", e);
+        }
+    }
+
+    private void seek(long target) throws GeneralSecurityException {
+        if (target == position) return;
+        long block = target / BLOCK;
+        for (int i = 0; i < 8; i++) iv[BLOCK - 1 - i] = (byte) (block >>> (8 * i));
+        cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(iv));
+        int within = (int) (target % BLOCK);
+        // 丢弃块内偏移之前的密钥流
+        if (within > 0) cipher.update(skip, 0, within, skip, 0);
+        position = target;
+    }
+}
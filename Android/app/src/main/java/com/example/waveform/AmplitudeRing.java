@@ -0,0 +1,57 @@
+package com.example.waveform;
+
+/**
+ * 波形视图的振幅存储：定长 float 环形缓冲，写满后覆盖最旧的值
+ * 追加与按下标读取均为 O(1) 且不装箱，onDraw 中遍历不产生垃圾
+ */
+public class AmplitudeRing {
+    private float[] values;
+    private int head; // 下一个写入位置
+    private int size;
+
+    public AmplitudeRing(int capacity) {
+        values = new float[Math.max(1, capacity)];
+    }
+
+    public void add(float value) {
+        values[head] = value;
+        head = head + 1 == values.length ? 0 : head + 1;
+        if (size < values.length) size++;
+    }
+
+    /** @param index 0 为最旧，size() - 1 为最新 */
+    public float get(int index) {
+        int i = head - size + index;
+        if (i < 0) i += values.length;
+        return values[i];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return values.length;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * 调整容量（如视图宽度变化），保留最新的数据
+     */
+    public void setCapacity(int capacity) {
+        capacity = Math.max(1, capacity);
+        if (capacity == values.length) return;
+        float[] resized = new float[capacity];
+        int keep = Math.min(size, capacity);
+        for (int i = 0; i < keep; i++) {
+            resized[i] = get(size - keep + i);
+        }
+        values = resized;
+        size = keep;
+        head = keep == capacity ? 0 : keep;
+    }
+}
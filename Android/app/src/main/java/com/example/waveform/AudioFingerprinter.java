@@ -0,0 +1,185 @@
+package com.example.waveform;
+
+import java.util.Arrays;
+
+/**
+ * 流式音频指纹：降采样到约 11kHz，逐帧取各频带的谱峰，再把峰两两配对成 (f1, f2, Δt) 哈希
+ * 哈希与绝对时间、增益无关，对轻度噪声和重新编码稳健；按哈希值确定性抽样，
+ * 同一内容在不同文件中保留的是同一批哈希，因此裁剪过的副本也能对齐匹配。
+ * 录音线程上调用 write 时不分配对象（输出数组按需扩容除外）
+ */
+public class AudioFingerprinter {
+    /** 哈希位数：f1 8 位 + f2 8 位 + Δt 6 位 */
+    public static final int HASH_BITS = 22;
+    /** 每个录音最多保留的哈希数（约 1 分钟内容） */
+    public static final int MAX_HASHES = 2048;
+    /** 每秒约 21.5 帧 */
+    public static final int FFT_SIZE = 1024;
+    public static final int HOP = 512;
+
+    private static final int TARGET_RATE = 11025;
+    // 频带边界（频点），约 86Hz - 2.7kHz，按对数划分
+    private static final int[] BANDS = {8, 20, 48, 110, 255};
+    // 峰值需高出本帧平均电平的 dB 数
+    private static final float PEAK_MARGIN_DB = 10f;
+    private static final float FLOOR_DB = -70f;
+    // 配对：每个锚点与其后 1..MAX_DT 帧内最先出现的 FAN_OUT 个峰配对
+    private static final int MAX_DT = 63;
+    private static final int FAN_OUT = 3;
+    // 只保留 mix(hash) 低 3 位为 0 的哈希（1/8）
+    private static final int SAMPLE_MASK = 7;
+    private static final int MAX_ANCHORS = (BANDS.length - 1) * (MAX_DT + 1);
+
+    /** 一段录音的指纹：哈希及其锚点帧号（低 16 位，按 2^16 取模） */
+    public static final class Fingerprint {
+        public final int[] hashes;
+        public final short[] times;
+        public final int count;
+
+        public Fingerprint(int[] hashes, short[] times, int count) {
+            this.hashes = hashes;
+            this.times = times;
+            this.count = count;
+        }
+    }
+
+    private final int decimation;
+    private final RealFft fft = new RealFft(FFT_SIZE);
+    private final float[] frame = new float[FFT_SIZE];
+    private final float[] re = new float[FFT_SIZE / 2 + 1];
+    private final float[] im = new float[FFT_SIZE / 2 + 1];
+    private final float[] db = new float[FFT_SIZE / 2 + 1];
+    private final int[] framePeaks = new int[BANDS.length - 1];
+
+    // 降采样累加
+    private int decimPos;
+    private float decimSum;
+    private int framePos;
+    private int frameIndex;
+
+    // 尚未配满的锚点
+    private final int[] anchorFrame = new int[MAX_ANCHORS];
+    private final int[] anchorBin = new int[MAX_ANCHORS];
+    private final int[] anchorLeft = new int[MAX_ANCHORS];
+    private int anchorCount;
+
+    private int[] hashes = new int[256];
+    private short[] times = new short[256];
+    private int hashCount;
+
+    public AudioFingerprinter(int sampleRate) {
+        this.decimation = Math.max(1, Math.round(sampleRate / (float) TARGET_RATE));
+    }
+
+    public void reset() {
+        decimPos = 0;
+        decimSum = 0;
+        framePos = 0;
+        frameIndex = 0;
+        anchorCount = 0;
+        hashCount = 0;
+    }
+
+    /** 送入单声道 16bit 样本 */
+    public void write(short[] samples, int offset, int count) {
+        if (hashCount >= MAX_HASHES) return;
+        float scale = 1f / (32768f * decimation);
+        for (int i = offset, end = offset + count; i < end; i++) {
+            // 盒式滤波降采样，指纹只用到 2.7kHz 以下，混叠影响可忽略
+            decimSum += samples[i];
+            if (++decimPos < decimation) continue;
+            frame[framePos++] = decimSum * scale;
+            decimPos = 0;
+            decimSum = 0;
+            if (framePos == FFT_SIZE) {
+                analyzeFrame();
+                // 50% 重叠
+                System.arraycopy(frame, HOP, frame, 0, FFT_SIZE - HOP);
+                framePos = FFT_SIZE - HOP;
+            }
+        }
+    }
+
+    /** 已取满 MAX_HASHES 个哈希，之后的样本不再处理 */
+    public boolean isFull() {
+        return hashCount >= MAX_HASHES;
+    }
+
+    /** 当前已得到的指纹（复制） */
+    public Fingerprint getFingerprint() {
+        return new Fingerprint(Arrays.copyOf(hashes, hashCount), Arrays.copyOf(times, hashCount), hashCount);
+    }
+
+    private void analyzeFrame() {
+        fft.magnitudesDb(frame, 0, re, im, db);
+        int lo = BANDS[0], hi = BANDS[BANDS.length - 1];
+        float mean = 0;
+        for (int k = lo; k < hi; k++) mean += db[k];
+        mean /= hi - lo;
+        int peaks = 0;
+        for (int b = 0; b < BANDS.length - 1; b++) {
+            int best = -1;
+            float bestDb = Math.max(mean + PEAK_MARGIN_DB, FLOOR_DB);
+            for (int k = BANDS[b]; k < BANDS[b + 1]; k++) {
+                // 局部极大
+                if (db[k] > bestDb && db[k] >= db[k - 1] && db[k] >= db[k + 1]) {
+                    best = k;
+                    bestDb = db[k];
+                }
+            }
+            if (best >= 0) framePeaks[peaks++] = best;
+        }
+        int f = frameIndex++;
+        pairWithAnchors(f, peaks);
+        addAnchors(f, peaks);
+    }
+
+    private void pairWithAnchors(int f, int peaks) {
+        int kept = 0;
+        for (int a = 0; a < anchorCount; a++) {
+            int dt = f - anchorFrame[a];
+            if (dt > MAX_DT) continue;
+            for (int p = 0; p < peaks && anchorLeft[a] > 0; p++) {
+                anchorLeft[a]--;
+                emit((anchorBin[a] << 14) | (framePeaks[p] << 6) | dt, anchorFrame[a]);
+            }
+            if (anchorLeft[a] > 0) {
+                anchorFrame[kept] = anchorFrame[a];
+                anchorBin[kept] = anchorBin[a];
+                anchorLeft[kept] = anchorLeft[a];
+                kept++;
+            }
+        }
+        anchorCount = kept;
+    }
+
+    private void addAnchors(int f, int peaks) {
+        for (int p = 0; p < peaks && anchorCount < MAX_ANCHORS; p++) {
+            anchorFrame[anchorCount] = f;
+            anchorBin[anchorCount] = framePeaks[p];
+            anchorLeft[anchorCount] = FAN_OUT;
+            anchorCount++;
+        }
+    }
+
+    private void emit(int hash, int time) {
+        if ((mix(hash) & SAMPLE_MASK) != 0 || hashCount >= MAX_HASHES) return;
+        if (hashCount == hashes.length) {
+            hashes = Arrays.copyOf(hashes, hashCount * 2);
+            times = Arrays.copyOf(times, hashCount * 2);
+        }
+        hashes[hashCount] = hash;
+        times[hashCount] = (short) time;
+        hashCount++;
+    }
+
+    /** 整数哈希混淆（murmur3 finalizer），用于确定性抽样 */
+    static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.waveform;
+
+/**
+ * 采集链路中的原地处理单元
+ * 在录音线程上调用，实现中不得分配对象或阻塞
+ */
+public interface AudioProcessor {
+    /** 在开始采集前调用，可在此预分配状态 */
+    void prepare(int sampleRate);
+
+    /** 原地处理 buffer[offset, offset + count) 的单声道 16bit 样本 */
+    void process(short[] buffer, int offset, int count);
+
+    /** 清空内部状态（新一段录音开始时） */
+    void reset();
+
+    String getName();
+}
@@ -3,167 +3,696 @@ package com.example.waveform;
 import android.content.Context;
 import android.media.AudioFormat;
 import android.media.AudioRecord;
-import android.media.MediaRecorder;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * 录音引擎的 Android 外壳：管理预热、录音线程和文件路径，采集与处理由 CapturePipeline 完成
+ */
 public class AudioRecorder {
+    private static final String TAG = "AudioRecorder";
     private static final int SAMPLE_RATE = 44100;
-    private static final int CHANNEL_CONFIG = AudioFormat.CHANNEL_IN_MONO;
-    private static final int AUDIO_FORMAT = AudioFormat.ENCODING_PCM_16BIT;
-    private static final int BUFFER_SIZE = Math.max(
-            AudioRecord.getMinBufferSize(SAMPLE_RATE, CHANNEL_CONFIG, AUDIO_FORMAT), 4096);
+    private static final int BUFFER_SIZE = Math.max(AudioRecord.getMinBufferSize(SAMPLE_RATE,
+            AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT), 4096);
 
-    private AudioRecord audioRecord;
+    // 写线程缓冲池：32 块约 1.5 秒音频，足够吸收存储卡偶发的写入卡顿
+    private static final int WRITER_BLOCKS = 32;
+    // 临时文件预分配约 3 分钟，超出后文件自动增长
+    private static final long PREALLOCATE_BYTES = 16L * 1024 * 1024;
+    // 停止后写盘超时（每轮 5 秒）最多等几轮，仍未落盘则放弃本次保存
+    private static final int CLOSE_ATTEMPTS = 4;
+
+    private final CapturePipeline pipeline = new CapturePipeline(SAMPLE_RATE, BUFFER_SIZE / 2);
+    // 录音时同步提取指纹，保存后用于重复录音检测
+    private final AudioFingerprinter fingerprinter = new AudioFingerprinter(SAMPLE_RATE);
+    private AudioSource audioSource;
     private Thread recordingThread;
+    private PcmFileWriter pcmWriter;
     private volatile boolean isRecording = false;
-    private OnAmplitudeListener amplitudeListener;
+    // 预热状态：音源、录音线程、临时文件都已就绪
+    private boolean warm = false;
+    private volatile boolean keepAlive = false;
+    // 每次开始录音加一，录音线程据此区分新会话与虚假唤醒
+    private volatile int sessionCount = 0;
+    // 录音线程最近结束的会话序号，与 sessionCount 相等时没有会话在运行
+    private volatile int sessionsFinished = 0;
+    private final Semaphore sessionDone = new Semaphore(0);
     private File currentPcmFile;
+    // 加密录音：临时文件本身就是加密容器，结束时补写头部后直接移入录音目录
+    private boolean encryptionEnabled = false;
+    private AesCtr currentCipher;
     private Context context;
+    // 本次录音的书签，保存时写入 WAV 的 cue 块
+    private final List<WavFile.CuePoint> bookmarks = new ArrayList<>();
+    // 本次录音的暂停区间（仅在调用 pause/resume 的线程上访问）
+    private final List<PauseInterval> pauses = new ArrayList<>();
+    private volatile boolean isPaused = false;
+    private long pauseStartNanos;
+    // 预录：预热后录音线程以待命会话持续填充环形缓冲，开始录音时接着这个会话写文件
+    private int preRollSeconds = 0;
+    private PreRollBuffer preRoll;
+    private boolean standby = false;
+    // 多轨录音：与主轨同时采集的附加音源（MediaRecorder.AudioSource），各自保存为与主轨对齐的 WAV
+    private int[] extraSources = new int[0];
+    private MultiTrackCapture extraTracks;
+    // 本次录音是否录了附加音轨
+    private boolean extraTracksRecorded;
+
+    private final BiquadHighPassFilter highPass = new BiquadHighPassFilter(80f);
+    private final NoiseGate noiseGate = new NoiseGate(-50f, -24f);
+    private boolean cleanupEnabled;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // 上一次录音正在 CAPTURE 队列上收尾：写线程、临时文件和附加音轨归收尾任务使用，
+    // 完成前不开始新的录音或待命会话；期间请求的释放和附加音源变更在完成后执行
+    private boolean finalizing;
+    private boolean releasePending;
+    private boolean extraSourcesChanged;
+
+    // 点击开始到首块数据落盘的耗时
+    private volatile long tapNanos;
+    private long startLatencyNanos = -1;
+
+    /** 一次暂停：frame 为暂停处在录音中的帧位置，durationMs 为暂停的实际时长 */
+    public static final class PauseInterval {
+        public final long frame;
+        public final long durationMs;
+
+        public PauseInterval(long frame, long durationMs) {
+            this.frame = frame;
+            this.durationMs = durationMs;
+        }
+    }
 
     public interface OnAmplitudeListener {
         void onAmplitudeUpdate(float amplitude);
     }
 
+    /** 录音保存完成，在主线程回调；path 为 null 表示保存失败 */
+    public interface OnSavedListener {
+        void onSaved(String path);
+    }
+
     public AudioRecorder(Context context) {
         this.context = context;
+        // 降噪处理（80Hz 高通去直流/隆隆声 + 噪声门压底噪）默认关闭，录下的是原始输入；AGC 按需由调用方加入
+        ProcessingChain chain = pipeline.getProcessingChain();
+        chain.add(highPass);
+        chain.add(noiseGate);
+        chain.setEnabled(highPass, false);
+        chain.setEnabled(noiseGate, false);
+        pipeline.setFingerprinter(fingerprinter);
+    }
+
+    /** 开关降噪处理，录音中也可切换 */
+    public void setCleanupEnabled(boolean enabled) {
+        ProcessingChain chain = pipeline.getProcessingChain();
+        chain.setEnabled(highPass, enabled);
+        chain.setEnabled(noiseGate, enabled);
+        cleanupEnabled = enabled;
+    }
+
+    public boolean isCleanupEnabled() {
+        return cleanupEnabled;
+    }
+
+    /** 读取与写文件之间的处理链，可增删处理级 */
+    public ProcessingChain getProcessingChain() {
+        return pipeline.getProcessingChain();
     }
 
     public void setAmplitudeListener(OnAmplitudeListener listener) {
-        this.amplitudeListener = listener;
+        pipeline.setAmplitudeListener(listener == null ? null : listener::onAmplitudeUpdate);
     }
 
-    public void startRecording() {
-        if (isRecording) return;
+    /** 处理后的样本同时送入频谱分析（在录音线程上执行） */
+    public void setSpectrumAnalyzer(SpectrumAnalyzer analyzer) {
+        pipeline.setSpectrumAnalyzer(analyzer);
+    }
+
+    /**
+     * 替换音源（默认麦克风），需在预热前调用；可用于文件回放或合成信号
+     */
+    public void setAudioSource(AudioSource source) {
+        if (warm) throw new IllegalStateException("录音引擎已预热，无法更换音源");
+        audioSource = source;
+    }
+
+    public static int getSampleRate() {
+        return SAMPLE_RATE;
+    }
+
+    /** 最近一次（或当前）录音的链路指标快照 */
+    public CaptureMetrics.Snapshot getMetricsSnapshot() {
+        return pipeline.snapshot();
+    }
+
+    /** 按已写入帧数计时的录音时钟 */
+    public RecordingClock getClock() {
+        return pipeline.getClock();
+    }
+
+    /**
+     * 在当前录音位置添加书签
+     * @return 书签序号（从 1 开始），未在录音时返回 -1
+     */
+    public int addBookmark() {
+        if (!isRecording) return -1;
+        long frame = pipeline.getClock().getFrames();
+        synchronized (bookmarks) {
+            int id = bookmarks.size() + 1;
+            bookmarks.add(new WavFile.CuePoint(id, frame, "书签 " + id));
+            return id;
+        }
+    }
+
+    public boolean isRecording() {
+        return isRecording;
+    }
+
+    public boolean isPaused() {
+        return isPaused;
+    }
+
+    /**
+     * 暂停录音：音源继续运行但数据被丢弃，输出文件保持打开，恢复后接着写入
+     * @return 是否由录音状态进入暂停
+     */
+    public boolean pauseRecording() {
+        if (!isRecording || isPaused) return false;
+        // 附加音轨不暂停，导出时按主轨的暂停区间对齐裁掉
+        pipeline.setPaused(true);
+        isPaused = true;
+        pauseStartNanos = System.nanoTime();
+        return true;
+    }
+
+    /**
+     * 恢复录音，记录这次暂停的位置和时长
+     * @return 是否由暂停状态恢复
+     */
+    public boolean resumeRecording() {
+        if (!isRecording || !isPaused) return false;
+        // 暂停期间时钟不前进，此刻的帧数即为暂停处
+        long frame = pipeline.getClock().getFrames();
+        long durationMs = (System.nanoTime() - pauseStartNanos) / 1000000;
+        pauses.add(new PauseInterval(frame, durationMs));
+        isPaused = false;
+        pipeline.setPaused(false);
+        Log.d(TAG, "Resumed at frame " + frame + " after " + durationMs + " ms");
+        return true;
+    }
+
+    /** 最近一次录音中的暂停区间，需在 stopRecording 之后、下一次开始之前调用 */
+    public List<PauseInterval> getLastPauses() {
+        return new ArrayList<>(pauses);
+    }
+
+    /**
+     * 开关加密保存（需已设置 EncryptedRecording 的密钥包装器），从下一次录音起生效
+     */
+    public void setEncryptionEnabled(boolean enabled) {
+        if (encryptionEnabled == enabled) return;
+        encryptionEnabled = enabled;
+        // 已预热的临时文件按新模式重建
+        if (warm && !isRecording && !finalizing && pcmWriter != null) {
+            try {
+                pcmWriter.close();
+                if (currentPcmFile != null) currentPcmFile.delete();
+                openPcmFile();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public boolean isEncryptionEnabled() {
+        return encryptionEnabled && EncryptedRecording.isAvailable();
+    }
+
+    /**
+     * 预录秒数，0 为关闭；开启后预热期间麦克风持续工作，录音文件从点击前 seconds 秒开始
+     * 缓冲在此一次分配（seconds × 采样率 个样本），录音中修改从下一次录音起生效
+     */
+    public void setPreRollSeconds(int seconds) {
+        seconds = Math.max(0, seconds);
+        if (preRollSeconds == seconds) return;
+        if (!isRecording) stopStandby();
+        preRollSeconds = seconds;
+        preRoll = seconds > 0 ? new PreRollBuffer(SAMPLE_RATE * seconds) : null;
+        pipeline.setPreRoll(preRoll);
+        if (!isRecording) startStandby();
+    }
+
+    public int getPreRollSeconds() {
+        return preRollSeconds;
+    }
+
+    /**
+     * 设置与主轨同时采集的附加音源（MediaRecorder.AudioSource 常量），空数组为单轨；从下一次录音起生效
+     * 多路并发采集需要 Android 10 及以上，打不开的音源会被跳过；加密录音时不录附加音轨
+     */
+    public void setExtraSources(int... sources) {
+        extraSources = sources.clone();
+        if (warm && !isRecording) {
+            if (finalizing) {
+                // 附加音轨正在导出，完成后再换
+                extraSourcesChanged = true;
+                return;
+            }
+            releaseExtraTracks();
+            openExtraTracks();
+        }
+    }
+
+    public int getExtraTrackCount() {
+        return extraSources.length;
+    }
+
+    /**
+     * 预热：打开音源，启动并挂起录音线程，打开并预分配临时文件
+     * 录音界面打开时调用，之后 startRecording 只需置位标志唤醒线程；需已获得录音权限
+     * @return 是否就绪
+     */
+    public boolean prewarm() {
+        if (warm) {
+            releasePending = false;
+            return true;
+        }
         try {
-            // 创建临时文件
-            currentPcmFile = new File(context.getExternalCacheDir(), "temp_raw.pcm");
-            
-            audioRecord = new AudioRecord(MediaRecorder.AudioSource.MIC, SAMPLE_RATE, CHANNEL_CONFIG, AUDIO_FORMAT, BUFFER_SIZE);
-            if (audioRecord.getState() != AudioRecord.STATE_INITIALIZED) return;
-
-            isRecording = true;
-            recordingThread = new Thread(new RecordingRunnable());
+            if (audioSource == null) audioSource = new MicAudioSource(SAMPLE_RATE, BUFFER_SIZE);
+            if (!audioSource.open()) return false;
+            pipeline.setSource(audioSource);
+            if (pcmWriter == null) {
+                pcmWriter = new PcmFileWriter(BUFFER_SIZE, WRITER_BLOCKS);
+                pipeline.setWriter(pcmWriter);
+            }
+            openPcmFile();
+            pipeline.getProcessingChain().prepare(SAMPLE_RATE);
+            openExtraTracks();
+
+            keepAlive = true;
+            recordingThread = new Thread(new RecordingRunnable(), "AudioCapture");
+            recordingThread.setPriority(Thread.MAX_PRIORITY);
             recordingThread.start();
+            warm = true;
+            startStandby();
+            return true;
         } catch (Exception e) {
             e.printStackTrace();
-            isRecording = false;
+            release();
+            return false;
+        }
+    }
+
+    public void startRecording() {
+        if (isRecording || finalizing) return;
+        tapNanos = System.nanoTime();
+        startLatencyNanos = -1;
+        // 未预热时退化为现场初始化
+        if (!warm && !prewarm()) return;
+        if (!pcmWriter.isOpen()) {
+            try {
+                openPcmFile();
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+        }
+        boolean fromStandby = standby;
+        standby = false;
+        if (fromStandby && !pipeline.isRunning()) {
+            // 待命会话已因读取错误结束，按普通方式重新开始
+            awaitSession();
+            pipeline.setStandby(false);
+            fromStandby = false;
+        }
+        pipeline.getClock().reset();
+        synchronized (bookmarks) {
+            bookmarks.clear();
+        }
+        fingerprinter.reset();
+        pauses.clear();
+        isPaused = false;
+        pipeline.setPaused(false);
+        isRecording = true;
+        startExtraTracks();
+        if (fromStandby) {
+            // 录音线程在下一块数据时先写入预录内容，再接上实时数据
+            pipeline.setStandby(false);
+            return;
         }
+        pipeline.setRunning(true);
+        sessionCount++;
+        LockSupport.unpark(recordingThread);
     }
 
     /**
-     * 停止录音并保存为 WAV
-     * @return 最终 WAV 文件的路径
+     * 停止录音。调用线程上只结束采集会话；等待落盘、补全 WAV、移入录音目录和导出附加音轨
+     * 在 CAPTURE 队列上完成，长录音也不阻塞主线程。完成后在主线程回调 listener，
+     * 引擎随即重新准备好下一次录音（收尾期间 startRecording 不生效，见 {@link #isFinalizing()}）
+     * @return 是否由录音状态停止
      */
-    public String stopRecording() {
+    public boolean stopRecording(OnSavedListener listener) {
+        if (!isRecording) return false;
         isRecording = false;
-        if (audioRecord != null) {
-            try {
-                audioRecord.stop();
-                audioRecord.release();
-            } catch (Exception e) { e.printStackTrace(); }
-            audioRecord = null;
-        }
+        // 暂停中停止：末尾的暂停不算作录音中的区间
+        isPaused = false;
+        pipeline.setRunning(false);
+        awaitSession();
+        pipeline.setPaused(false);
 
-        // 将 PCM 转为 WAV 并保存到正式目录
-        if (currentPcmFile != null && currentPcmFile.exists()) {
-            String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
-            File dir = new File(context.getExternalFilesDir(null), "Recordings");
-            if (!dir.exists()) dir.mkdirs();
-            File wavFile = new File(dir, "录音_" + timeStamp + ".wav");
-            
-            pcmToWav(currentPcmFile, wavFile);
-            currentPcmFile.delete(); // 删除临时文件
-            return wavFile.getAbsolutePath();
+        // 以下状态交给收尾任务，完成前主线程不再改动（finalizing 挡住开始、释放和切换设置）
+        File pcmFile = currentPcmFile;
+        AesCtr cipher = currentCipher;
+        MultiTrackCapture tracks = extraTracks;
+        boolean tracksRecorded = extraTracksRecorded;
+        extraTracksRecorded = false;
+        List<WavFile.CuePoint> cues;
+        synchronized (bookmarks) {
+            cues = new ArrayList<>(bookmarks);
         }
-        return null;
+        String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
+        finalizing = true;
+        WorkScheduler.Job finish = task -> {
+            String path = finishRecording(pcmFile, cipher, cues, tracks, tracksRecorded, timeStamp);
+            mainHandler.post(() -> onFinished(path, listener));
+        };
+        try {
+            WorkScheduler.getInstance().submit(WorkScheduler.LANE_CAPTURE, finish);
+        } catch (RejectedExecutionException e) {
+            // CAPTURE 只在调度器停止后拒绝：就地完成
+            onFinished(finishRecording(pcmFile, cipher, cues, tracks, tracksRecorded, timeStamp), listener);
+        }
+        return true;
     }
 
-    private class RecordingRunnable implements Runnable {
-        @Override
-        public void run() {
-            if (audioRecord == null) return;
-            audioRecord.startRecording();
-            byte[] buffer = new byte[BUFFER_SIZE];
-            FileOutputStream os = null;
+    /** 上一次录音是否还在后台保存 */
+    public boolean isFinalizing() {
+        return finalizing;
+    }
 
+    /**
+     * 收尾任务（工作线程）：等待各轨落盘，临时文件就地补全头部和书签后移入录音目录，再导出附加音轨
+     * @return 保存的路径，失败时为 null
+     */
+    private String finishRecording(File pcmFile, AesCtr cipher, List<WavFile.CuePoint> cues,
+                                   MultiTrackCapture tracks, boolean tracksRecorded, String timeStamp) {
+        if (tracks != null) tracks.stop();
+        if (!closeWriter()) {
+            // 写线程仍持有临时文件：挪开以免被下一次录音覆盖，数据留在缓存目录
+            if (pcmFile != null) pcmFile.renameTo(new File(pcmFile.getParentFile(), "stalled_" + timeStamp + ".tmp"));
+            return null;
+        }
+        if (pcmFile == null || !pcmFile.exists()) return null;
+        File dir = new File(context.getExternalFilesDir(null), "Recordings");
+        if (!dir.exists()) dir.mkdirs();
+        File wavFile = new File(dir, "录音_" + timeStamp + (cipher != null ? EncryptedRecording.EXTENSION : ".wav"));
+        long pcmBytes = pcmWriter.getBytesWritten();
+        String result = null;
+        try {
+            // 临时文件开头已预留头部，补写头部和书签块后即为完整文件，同一存储卷上直接重命名，无需拷贝
+            if (cipher != null) {
+                EncryptedRecording.finish(pcmFile, cipher, pcmBytes, SAMPLE_RATE, 1, cues);
+            } else {
+                WavFile.finish(pcmFile, pcmBytes, SAMPLE_RATE, 1, cues);
+            }
+            moveFile(pcmFile, wavFile);
+            result = wavFile.getAbsolutePath();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        pcmFile.delete();
+        if (result != null && tracksRecorded) saveExtraTracks(tracks, wavFile, pcmBytes / 2);
+        return result;
+    }
+
+    /**
+     * 等待主轨写线程落盘并关闭文件；写盘缓慢时再等几轮
+     * @return 文件已关闭（写入出错时保留已写入的部分）
+     */
+    private boolean closeWriter() {
+        for (int attempt = 1; ; attempt++) {
             try {
-                os = new FileOutputStream(currentPcmFile);
-                long lastUiUpdate = 0;
-                while (isRecording) {
-                    int read = audioRecord.read(buffer, 0, buffer.length);
-                    if (read > 0) {
-                        os.write(buffer, 0, read);
-                        // 节流更新 UI，防止卡顿
-                        long now = System.currentTimeMillis();
-                        if (now - lastUiUpdate > 40 && amplitudeListener != null) {
-                            float amplitude = calculateAmplitude(buffer, read);
-                            amplitudeListener.onAmplitudeUpdate(amplitude);
-                            lastUiUpdate = now;
-                        }
-                    }
+                pcmWriter.close();
+                return true;
+            } catch (IOException e) {
+                if (!pcmWriter.isOpen()) {
+                    Log.e(TAG, "Write error, keeping what was written", e);
+                    return true;
                 }
+                if (attempt >= CLOSE_ATTEMPTS) {
+                    Log.e(TAG, "Writer still flushing, recording not saved", e);
+                    return false;
+                }
+                Log.w(TAG, "Writer flush slow, waiting (" + attempt + ")");
+            }
+        }
+    }
+
+    /** 收尾完成（主线程）：记录指标，重新准备下一次录音或执行收尾期间请求的释放，再回调 */
+    private void onFinished(String path, OnSavedListener listener) {
+        finalizing = false;
+        long firstWrite = pcmWriter.getFirstWriteNanos();
+        if (firstWrite != 0) {
+            startLatencyNanos = firstWrite - tapNanos;
+            Log.d(TAG, String.format(Locale.US, "Start latency: %.1f ms (tap -> first sample written)",
+                    startLatencyNanos / 1e6));
+        }
+        Log.d(TAG, "Processing chain:\n" + pipeline.getProcessingChain().describeStats());
+        CaptureMetrics.Snapshot snapshot = getMetricsSnapshot();
+        if (snapshot.hasDropouts()) {
+            Log.w(TAG, "Capture dropped audio:\n" + snapshot);
+        } else {
+            Log.d(TAG, "Capture metrics:\n" + snapshot);
+        }
+
+        if (pcmWriter.isOpen()) {
+            // 写线程卡住：在后台停掉它，引擎下次预热时换用新的写线程
+            PcmFileWriter stuck = pcmWriter;
+            pcmWriter = null;
+            currentPcmFile = null;
+            try {
+                WorkScheduler.getInstance().submit(WorkScheduler.LANE_CAPTURE, task -> stuck.shutdown());
+            } catch (RejectedExecutionException e) {
+                Log.w(TAG, "Stuck writer left running", e);
+            }
+            releasePending = true;
+        }
+        if (releasePending) {
+            releasePending = false;
+            release();
+        } else if (warm) {
+            // 重新准备下一次录音
+            if (extraSourcesChanged) {
+                extraSourcesChanged = false;
+                releaseExtraTracks();
+                openExtraTracks();
+            }
+            try {
+                openPcmFile();
             } catch (IOException e) {
                 e.printStackTrace();
-            } finally {
-                try { if (os != null) os.close(); } catch (IOException e) {}
             }
+            pipeline.getProcessingChain().prepare(SAMPLE_RATE);
+            startStandby();
         }
+        if (listener != null) listener.onSaved(path);
+    }
 
-        private float calculateAmplitude(byte[] buffer, int read) {
-            long sum = 0;
-            for (int i = 0; i < read; i += 2) {
-                short sample = (short) ((buffer[i] & 0xFF) | (buffer[i + 1] << 8));
-                sum += Math.abs(sample);
+    /**
+     * 释放预热的资源（录音界面关闭时调用），正在录音时先停止并保存；保存完成前推迟到收尾之后
+     */
+    public void release() {
+        if (isRecording) stopRecording(null);
+        if (finalizing) {
+            releasePending = true;
+            return;
+        }
+        stopStandby();
+        releaseExtraTracks();
+        warm = false;
+        keepAlive = false;
+        Thread t = recordingThread;
+        if (t != null) {
+            LockSupport.unpark(t);
+            try {
+                t.join(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
-            return read > 0 ? (float) sum / (read / 2) : 0;
+            recordingThread = null;
+        }
+        if (audioSource != null) {
+            try {
+                audioSource.release();
+            } catch (Exception e) { e.printStackTrace(); }
+        }
+        if (pcmWriter != null) {
+            pcmWriter.shutdown();
+            pcmWriter = null;
+        }
+        if (currentPcmFile != null) {
+            currentPcmFile.delete();
+            currentPcmFile = null;
         }
     }
 
-    // --- WAV Header 转换逻辑 ---
-    private void pcmToWav(File pcmFile, File wavFile) {
-        try (FileInputStream in = new FileInputStream(pcmFile);
-             FileOutputStream out = new FileOutputStream(wavFile)) {
-            long totalAudioLen = in.getChannel().size();
-            long totalDataLen = totalAudioLen + 36;
-            long longSampleRate = SAMPLE_RATE;
-            int channels = 1;
-            long byteRate = 16 * SAMPLE_RATE * channels / 8;
+    /** 最近一次录音的音频指纹，需在 stopRecording 之后、下一次开始之前调用 */
+    public AudioFingerprinter.Fingerprint getLastFingerprint() {
+        return fingerprinter.getFingerprint();
+    }
 
-            writeWavHeader(out, totalAudioLen, totalDataLen, longSampleRate, channels, byteRate);
+    /** 最近一次录音从点击开始到首块数据落盘的毫秒数，尚无数据时为 -1 */
+    public float getStartLatencyMs() {
+        return startLatencyNanos < 0 ? -1f : startLatencyNanos / 1e6f;
+    }
+
+    /** 已预热且开启预录时，让录音线程以待命会话开始填充预录缓冲 */
+    private void startStandby() {
+        if (!warm || isRecording || finalizing || standby || preRoll == null) return;
+        standby = true;
+        pipeline.setStandby(true);
+        pipeline.setRunning(true);
+        sessionCount++;
+        LockSupport.unpark(recordingThread);
+    }
+
+    private void stopStandby() {
+        if (!standby) return;
+        standby = false;
+        pipeline.setRunning(false);
+        awaitSession();
+        pipeline.setStandby(false);
+    }
+
+    /**
+     * 等待录音线程结束当前会话（通常最多再读一个缓冲区）。按会话序号判断而不是只看信号量，
+     * 超时后才结束的会话留下的多余许可不会让下一次等待提前返回
+     */
+    private void awaitSession() {
+        int target = sessionCount;
+        try {
+            while (sessionsFinished != target) {
+                if (!sessionDone.tryAcquire(1, TimeUnit.SECONDS)) {
+                    Thread thread = recordingThread;
+                    if (thread == null || !thread.isAlive()) break;
+                    Log.w(TAG, "Capture session " + target + " still running, waiting");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sessionDone.drainPermits();
+    }
+
+    private void openExtraTracks() {
+        if (extraSources.length == 0 || extraTracks != null) return;
+        MultiTrackCapture tracks = new MultiTrackCapture(SAMPLE_RATE);
+        for (int i = 0; i < extraSources.length; i++) {
+            MicAudioSource source = new MicAudioSource(extraSources[i], SAMPLE_RATE, BUFFER_SIZE);
+            if (!source.open()) {
+                Log.w(TAG, "Extra audio source " + extraSources[i] + " unavailable");
+                continue;
+            }
+            File pcm = new File(context.getExternalCacheDir(), "temp_track" + (tracks.getTrackCount() + 2) + ".pcm");
+            tracks.addTrack(source, pcm, BUFFER_SIZE / 2, WRITER_BLOCKS);
+        }
+        if (tracks.getTrackCount() > 0) extraTracks = tracks;
+    }
+
+    private void startExtraTracks() {
+        extraTracksRecorded = false;
+        if (extraTracks == null || currentCipher != null) return;
+        try {
+            extraTracks.start();
+            extraTracksRecorded = true;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
-            byte[] data = new byte[BUFFER_SIZE];
-            int count;
-            while ((count = in.read(data)) != -1) {
-                out.write(data, 0, count);
+    /** 附加音轨按主轨对齐后保存在主轨旁边：录音_xxx_轨2.wav ...（收尾任务中调用） */
+    private void saveExtraTracks(MultiTrackCapture tracks, File mainWav, long frames) {
+        String name = mainWav.getName();
+        String base = name.substring(0, name.lastIndexOf('.'));
+        for (int i = 0; i < tracks.getTrackCount(); i++) {
+            MultiTrackCapture.Alignment alignment = tracks.align(pipeline, i);
+            if (alignment == null) continue;
+            Log.d(TAG, "Track " + (i + 2) + ": " + alignment);
+            try {
+                tracks.exportAligned(i, alignment, frames,
+                        new File(mainWav.getParentFile(), base + "_轨" + (i + 2) + ".wav"));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void releaseExtraTracks() {
+        if (extraTracks == null) return;
+        extraTracks.release();
+        extraTracks = null;
+    }
+
+    private void openPcmFile() throws IOException {
+        if (isEncryptionEnabled()) {
+            currentPcmFile = new File(context.getExternalCacheDir(), "temp_raw.ewav");
+            currentCipher = EncryptedRecording.create(currentPcmFile);
+            pcmWriter.open(currentPcmFile, PREALLOCATE_BYTES, EncryptedRecording.PCM_OFFSET, currentCipher);
+        } else {
+            // 开头预留 WAV 头，结束时就地补写
+            currentPcmFile = new File(context.getExternalCacheDir(), "temp_raw.wav");
+            currentCipher = null;
+            pcmWriter.open(currentPcmFile, PREALLOCATE_BYTES, WavFile.HEADER_SIZE, null);
+        }
+    }
+
+    /** 同一存储卷上直接重命名，否则按原样拷贝（内容保持加密） */
+    private static void moveFile(File from, File to) throws IOException {
+        if (from.renameTo(to)) return;
+        try (FileChannel in = new FileInputStream(from).getChannel();
+             FileChannel out = new FileOutputStream(to).getChannel()) {
+            long size = in.size();
+            long pos = 0;
+            while (pos < size) pos += in.transferTo(pos, size - pos, out);
+        }
+    }
+
+    private class RecordingRunnable implements Runnable {
+        @Override
+        public void run() {
+            int handled = sessionCount;
+            while (keepAlive) {
+                if (handled == sessionCount) {
+                    LockSupport.park(this);
+                    continue;
+                }
+                handled = sessionCount;
+                try {
+                    pipeline.runSession();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    sessionsFinished = handled;
+                    sessionDone.release();
+                }
             }
-        } catch (IOException e) { e.printStackTrace(); }
-    }
-
-    private void writeWavHeader(FileOutputStream out, long totalAudioLen, long totalDataLen,
-                                long longSampleRate, int channels, long byteRate) throws IOException {
-        byte[] header = new byte[44];
-        header[0] = 'R'; header[1] = 'I'; header[2] = 'F'; header[3] = 'F';
-        header[4] = (byte) (totalDataLen & 0xff); header[5] = (byte) ((totalDataLen >> 8) & 0xff);
-        header[6] = (byte) ((totalDataLen >> 16) & 0xff); header[7] = (byte) ((totalDataLen >> 24) & 0xff);
-        header[8] = 'W'; header[9] = 'A'; header[10] = 'V'; header[11] = 'E';
-        header[12] = 'f'; header[13] = 'm'; header[14] = 't'; header[15] = ' ';
-        header[16] = 16; header[17] = 0; header[18] = 0; header[19] = 0;
-        header[20] = 1; header[21] = 0; header[22] = (byte) channels; header[23] = 0;
-        header[24] = (byte) (longSampleRate & 0xff); header[25] = (byte) ((longSampleRate >> 8) & 0xff);
-        header[26] = (byte) ((longSampleRate >> 16) & 0xff); header[27] = (byte) ((longSampleRate >> 24) & 0xff);
-        header[28] = (byte) (byteRate & 0xff); header[29] = (byte) ((byteRate >> 8) & 0xff);
-        header[30] = (byte) ((byteRate >> 16) & 0xff); header[31] = (byte) ((byteRate >> 24) & 0xff);
-        header[32] = (byte) (2 * 16 / 8); header[33] = 0; header[34] = 16; header[35] = 0;
-        header[36] = 'd'; header[37] = 'a'; header[38] = 't'; header[39] = 'a';
-        header[40] = (byte) (totalAudioLen & 0xff); header[41] = (byte) ((totalAudioLen >> 8) & 0xff);
-        header[42] = (byte) ((totalAudioLen >> 16) & 0xff); header[43] = (byte) ((totalAudioLen >> 24) & 0xff);
-        out.write(header, 0, 44);
-    }
-}
\ No newline at end of file
+        }
+    }
+}
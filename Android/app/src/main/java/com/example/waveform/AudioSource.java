@@ -0,0 +1,32 @@
+package com.example.waveform;
+
+/**
+ * 录音链路的音源（单声道 16bit PCM）
+ * 麦克风、文件回放和合成信号都实现此接口，录音线程只通过它取数据
+ */
+public interface AudioSource {
+    /** read() 的返回值：音源已结束 */
+    int END_OF_STREAM = -100;
+    /** read() 的返回值：音源已失效，不可恢复（与 AudioRecord.ERROR_DEAD_OBJECT 相同） */
+    int ERROR_DEAD_OBJECT = -6;
+
+    int getSampleRate();
+
+    /**
+     * 分配底层资源，可重复调用
+     * @return 是否可用
+     */
+    boolean open();
+
+    void start();
+
+    /**
+     * 阻塞读取样本
+     * @return 读到的样本数；负数为错误码或 END_OF_STREAM
+     */
+    int read(short[] buffer, int offset, int count);
+
+    void stop();
+
+    void release();
+}
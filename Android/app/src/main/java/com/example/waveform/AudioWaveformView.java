@@ -3,18 +3,25 @@ package com.example.waveform;
 import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Paint;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.AttributeSet;
 import android.view.View;
-import java.util.LinkedList;
+import java.util.concurrent.RejectedExecutionException;
 
 public class AudioWaveformView extends View {
-    private LinkedList<Float> amplitudes = new LinkedList<>();
+    // 容量随视图宽度调整，只保留屏幕上能画下的柱数
+    private final AmplitudeRing amplitudes = new AmplitudeRing(64);
     private Paint paint;
     
     private float barWidth = 10f; // 3-4dp
     private float gap = 12f;      // 间隔
     private float minHeight = 10f;
     private float maxHeight = 150f;
+    // 满格对应的平均幅度，默认值为经验常数，测得响度后按响度换算
+    private float referenceAmplitude = 20000f;
+    // 参考电平取最近几条录音的平均响度
+    private static final int REFERENCE_RECORDINGS = 10;
 
     public AudioWaveformView(Context context) {
         super(context);
@@ -47,17 +54,45 @@ public class AudioWaveformView extends View {
 
     public void addAmplitude(float amp) {
         // 归一化 (0.0 - 1.0)
-        float ratio = Math.min(amp / 20000f, 1.0f);
+        float ratio = Math.min(amp / referenceAmplitude, 1.0f);
         amplitudes.add(ratio);
-        
-        // 移除屏幕外的旧数据
-        int maxBars = (int)(getWidth() / (barWidth + gap)) + 2;
-        if (amplitudes.size() > maxBars) {
-            amplitudes.removeFirst();
-        }
         invalidate();
     }
     
+    /**
+     * 按积分响度设置满格参考幅度，NaN 时保留默认值
+     */
+    public void setLoudnessReference(double loudnessLufs) {
+        if (Double.isNaN(loudnessLufs) || Double.isInfinite(loudnessLufs)) return;
+        // 积分响度换算为 RMS，语音峰值段约为 RMS 的 2.5 倍
+        double rms = 32768.0 * Math.pow(10.0, (loudnessLufs + 0.691) / 20.0);
+        referenceAmplitude = (float) Math.max(1000.0, Math.min(32768.0, rms * 2.5));
+    }
+
+    /**
+     * 在后台查询最近录音（标准化之前）的平均响度，查到后在主线程设为参考电平
+     */
+    public void loadLoudnessReference() {
+        Context appContext = getContext().getApplicationContext();
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        WorkScheduler.Job load = task -> {
+            double loudness = RecordingMetadataStore.getInstance(appContext).getRecentLoudness(REFERENCE_RECORDINGS);
+            mainHandler.post(() -> setLoudnessReference(loudness));
+        };
+        try {
+            WorkScheduler.getInstance().submit(WorkScheduler.LANE_INTERACTIVE, load);
+        } catch (RejectedExecutionException e) {
+            // 忙时保留默认参考幅度
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        amplitudes.setCapacity((int) (w / (barWidth + gap)) + 2);
+    }
+
     public void clear() {
         amplitudes.clear();
         invalidate();
@@ -0,0 +1,78 @@
+package com.example.waveform;
+
+/**
+ * 自动增益：按块测量 RMS，增益快降慢升，块内线性插值避免拉链噪声
+ * 低于噪声门限的块不提升增益，避免把底噪放大
+ */
+public class AutomaticGainControl implements AudioProcessor {
+    private final float targetDb;
+    private final float maxGainDb;
+    private float targetRms, maxGain, minGain, noiseFloorRms;
+    private float attackPerSecond, releasePerSecond;
+    private int sampleRate;
+    private float gain = 1f;
+
+    public AutomaticGainControl(float targetDb, float maxGainDb) {
+        this.targetDb = targetDb;
+        this.maxGainDb = maxGainDb;
+    }
+
+    @Override
+    public void prepare(int sampleRate) {
+        this.sampleRate = sampleRate;
+        targetRms = (float) (32768 * Math.pow(10, targetDb / 20));
+        maxGain = (float) Math.pow(10, maxGainDb / 20);
+        minGain = (float) Math.pow(10, -12.0 / 20);
+        noiseFloorRms = (float) (32768 * Math.pow(10, -55.0 / 20));
+        // 衰减 20dB/s，提升 4dB/s
+        attackPerSecond = 20f;
+        releasePerSecond = 4f;
+    }
+
+    @Override
+    public void process(short[] buffer, int offset, int count) {
+        if (count <= 0) return;
+        int end = offset + count;
+        double sumSquares = 0;
+        for (int i = offset; i < end; i++) {
+            float s = buffer[i];
+            sumSquares += s * s;
+        }
+        float rms = (float) Math.sqrt(sumSquares / count);
+        float current = gain;
+        float next = current;
+        if (rms > noiseFloorRms) {
+            float desired = targetRms / rms;
+            if (desired > maxGain) desired = maxGain;
+            if (desired < minGain) desired = minGain;
+            float seconds = (float) count / sampleRate;
+            // 以 dB 为单位限制每块的变化速度
+            float step = desired < current ? attackPerSecond * seconds : releasePerSecond * seconds;
+            float ratio = (float) Math.pow(10, step / 20);
+            next = desired < current ? Math.max(desired, current / ratio) : Math.min(desired, current * ratio);
+        }
+        float delta = (next - current) / count;
+        float g = current;
+        for (int i = offset; i < end; i++) {
+            g += delta;
+            int v = (int) (buffer[i] * g);
+            buffer[i] = (short) (v > 32767 ? 32767 : (v < -32768 ? -32768 : v));
+        }
+        gain = next;
+    }
+
+    @Override
+    public void reset() {
+        gain = 1f;
+    }
+
+    /** 当前增益 (dB) */
+    public float getGainDb() {
+        return (float) (20 * Math.log10(gain));
+    }
+
+    @Override
+    public String getName() {
+        return "AGC";
+    }
+}
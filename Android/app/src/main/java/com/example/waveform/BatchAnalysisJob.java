@@ -0,0 +1,97 @@
+package com.example.waveform;
+
+import android.content.Context;
+import android.util.Log;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 后台批量分析 Recordings 目录：跳过已分析且未修改的文件，结果分批写入元数据库
+ * 在 WorkScheduler 的 BULK 队列上运行：录音期间每批结果写入后暂停提交新文件，录音结束后继续
+ */
+public class BatchAnalysisJob implements WorkScheduler.Job {
+    private static final String TAG = "BatchAnalysis";
+
+    public interface Callback {
+        /** 在分析线程上回调 */
+        void onProgress(int done, int total, double filesPerSecond);
+        void onFinished(BatchAnalyzer.Summary summary);
+        void onFailed(Exception e);
+    }
+
+    private final Context context;
+    private final File dir;
+    private final boolean force;
+    private final Callback callback;
+    private final BatchAnalyzer analyzer = new BatchAnalyzer();
+
+    /**
+     * @param force true 时忽略已有结果全部重新分析（如升级算法后）
+     */
+    public BatchAnalysisJob(Context context, File dir, boolean force, Callback callback) {
+        this.context = context.getApplicationContext();
+        this.dir = dir;
+        this.force = force;
+        this.callback = callback;
+    }
+
+    public void cancel() {
+        analyzer.cancel();
+    }
+
+    /**
+     * 分析单个刚录完的文件并写入元数据库（响度、真峰值、时长等），在后台线程调用
+     */
+    public static void analyzeRecording(Context context, File file) throws InterruptedException {
+        RecordingMetadataStore store = RecordingMetadataStore.getInstance(context);
+        BatchAnalyzer.Summary summary = new BatchAnalyzer().analyze(Collections.singletonList(file), batch -> {
+            store.saveAnalysis(batch);
+            for (int i = 0; i < batch.size(); i++) {
+                BatchAnalyzer.Result r = batch.get(i);
+                if (r.error != null) Log.w(TAG, "Failed: " + r.path, r.error);
+            }
+        }, null);
+        Log.d(TAG, "Analyzed " + file.getName() + " in " + summary.elapsedNanos / 1000000 + " ms");
+    }
+
+    @Override
+    public void run(WorkScheduler.Task task) {
+        try {
+            RecordingMetadataStore store = RecordingMetadataStore.getInstance(context);
+            List<File> pending = new ArrayList<>();
+            File[] files = dir.listFiles();
+            if (files != null) {
+                Map<String, Long> analyzed = force ? null : store.getAnalyzedTimestamps();
+                for (File f : files) {
+                    if (!EncryptedRecording.isRecordingName(f.getName()) || f.length() == 0) continue;
+                    Long modified = analyzed != null ? analyzed.get(f.getAbsolutePath()) : null;
+                    if (modified == null || modified != f.lastModified()) pending.add(f);
+                }
+            }
+            Log.d(TAG, "Analyzing " + pending.size() + " of " + (files != null ? files.length : 0) + " files");
+
+            BatchAnalyzer.Summary summary = analyzer.analyze(pending, batch -> {
+                store.saveAnalysis(batch);
+                for (int i = 0; i < batch.size(); i++) {
+                    BatchAnalyzer.Result r = batch.get(i);
+                    if (r.error != null) Log.w(TAG, "Failed: " + r.path, r.error);
+                }
+            }, (done, total, filesPerSecond) -> {
+                // 在收集结果的线程上等待，期间不再提交新文件
+                if (!task.awaitResume()) analyzer.cancel();
+                if (callback != null) callback.onProgress(done, total, filesPerSecond);
+            });
+            Log.d(TAG, String.format(Locale.US, "%d files (%d failed), %.1f files/s, %.1f MB/s, %d ms%s",
+                    summary.files, summary.failed, summary.filesPerSecond(), summary.megabytesPerSecond(),
+                    summary.elapsedNanos / 1000000, summary.cancelled ? ", cancelled" : ""));
+            if (callback != null) callback.onFinished(summary);
+        } catch (Exception e) {
+            Log.e(TAG, "Batch analysis failed", e);
+            if (callback != null) callback.onFailed(e);
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package com.example.waveform;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量分析录音：时长、峰值、RMS、响度、静音占比
+ * 每个文件一个 fork/join 任务，大文件再按对齐的帧区间二分为子任务，由工作窃取池分摊到各核；
+ * 数据通过内存映射窗口读取（加密录音逐块解密），各段统计合并为整体结果。
+ * 同时在途的文件数有上限，结果在调用线程上分批交给 ResultSink，内存占用与文件总数无关
+ */
+public class BatchAnalyzer {
+    // 每次映射的窗口大小
+    private static final int MAP_WINDOW_BYTES = 4 * 1024 * 1024;
+    // 加密录音逐块解密读取的缓冲大小
+    private static final int READ_BUFFER_BYTES = 256 * 1024;
+    // 每段分析前用于预热滤波器的时长
+    private static final int PREROLL_MS = 1000;
+    // 进度与结果至少每隔这么久交付一次
+    private static final long FLUSH_INTERVAL_NANOS = 500_000_000L;
+
+    /** 单个文件的分析结果，error 非空表示失败 */
+    public static final class Result {
+        public final String path;
+        public final long sizeBytes;
+        public final long lastModified;
+        public int sampleRate;
+        public int channels;
+        public long durationMs;
+        public double peakDbfs;
+        public double rmsDbfs;
+        public double loudnessLufs;
+        public double truePeakDbtp;
+        public double silenceRatio;
+        public Exception error;
+
+        Result(File file) {
+            this.path = file.getAbsolutePath();
+            this.sizeBytes = file.length();
+            this.lastModified = file.lastModified();
+        }
+    }
+
+    /** 汇总 */
+    public static final class Summary {
+        public int files;
+        public int failed;
+        public long bytes;
+        public long elapsedNanos;
+        public boolean cancelled;
+
+        public double filesPerSecond() {
+            return elapsedNanos > 0 ? files * 1e9 / elapsedNanos : 0;
+        }
+
+        public double megabytesPerSecond() {
+            return elapsedNanos > 0 ? bytes * 1e3 / elapsedNanos : 0;
+        }
+    }
+
+    /** 接收一批结果，在调用 analyze 的线程上执行；返回后列表会被复用，不要持有 */
+    public interface ResultSink {
+        void onResults(List<Result> batch);
+    }
+
+    public interface ProgressListener {
+        void onProgress(int done, int total, double filesPerSecond);
+    }
+
+    private final int parallelism;
+    private long segmentBytes = 16L * 1024 * 1024;
+    private int batchSize = 64;
+    private volatile boolean cancelled;
+
+    public BatchAnalyzer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public BatchAnalyzer(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /** 超过该大小的文件拆段并行分析 */
+    public void setSegmentBytes(long segmentBytes) {
+        this.segmentBytes = Math.max(MAP_WINDOW_BYTES, segmentBytes);
+    }
+
+    /** 每批交给 ResultSink 的结果数 */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /** 停止提交新文件，已在分析的文件完成后 analyze 返回 */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * 分析全部文件，阻塞直到完成或取消
+     */
+    public Summary analyze(List<File> files, ResultSink sink, ProgressListener listener)
+            throws InterruptedException {
+        cancelled = false;
+        Summary summary = new Summary();
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        LinkedBlockingQueue<Result> results = new LinkedBlockingQueue<>();
+        // 在途文件（含尚未交付的结果）上限
+        Semaphore inFlight = new Semaphore(parallelism * 4);
+        Drain drain = new Drain(results, inFlight, sink, listener, files.size(), start);
+        int submitted = 0;
+        try {
+            for (File file : files) {
+                while (!inFlight.tryAcquire(50, TimeUnit.MILLISECONDS)) {
+                    drain.poll(summary, false);
+                }
+                if (cancelled) {
+                    inFlight.release();
+                    break;
+                }
+                pool.execute(new FileTask(file, results));
+                submitted++;
+                drain.poll(summary, false);
+            }
+            while (drain.received < submitted) {
+                drain.await(summary);
+            }
+            drain.poll(summary, true);
+        } finally {
+            pool.shutdownNow();
+        }
+        summary.cancelled = cancelled && submitted < files.size();
+        summary.elapsedNanos = System.nanoTime() - start;
+        return summary;
+    }
+
+    /** 在调用线程上收集结果并分批交付 */
+    private final class Drain {
+        final LinkedBlockingQueue<Result> results;
+        final Semaphore inFlight;
+        final ResultSink sink;
+        final ProgressListener listener;
+        final int total;
+        final long start;
+        final List<Result> batch = new ArrayList<>();
+        int received;
+        long lastFlush;
+
+        Drain(LinkedBlockingQueue<Result> results, Semaphore inFlight, ResultSink sink,
+              ProgressListener listener, int total, long start) {
+            this.results = results;
+            this.inFlight = inFlight;
+            this.sink = sink;
+            this.listener = listener;
+            this.total = total;
+            this.start = start;
+            this.lastFlush = start;
+        }
+
+        void await(Summary summary) throws InterruptedException {
+            Result r = results.poll(50, TimeUnit.MILLISECONDS);
+            if (r != null) accept(r, summary);
+            poll(summary, false);
+        }
+
+        void poll(Summary summary, boolean force) {
+            Result r;
+            while ((r = results.poll()) != null) {
+                accept(r, summary);
+            }
+            long now = System.nanoTime();
+            if (batch.isEmpty() || (!force && batch.size() < batchSize && now - lastFlush < FLUSH_INTERVAL_NANOS)) {
+                return;
+            }
+            if (sink != null) sink.onResults(batch);
+            batch.clear();
+            lastFlush = now;
+            if (listener != null) {
+                listener.onProgress(received, total, received * 1e9 / Math.max(1, now - start));
+            }
+        }
+
+        private void accept(Result r, Summary summary) {
+            received++;
+            inFlight.release();
+            summary.files++;
+            summary.bytes += r.sizeBytes;
+            if (r.error != null) summary.failed++;
+            batch.add(r);
+        }
+    }
+
+    /** 分析一个文件，结果放入队列 */
+    private final class FileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final File file;
+        private final LinkedBlockingQueue<Result> results;
+
+        FileTask(File file, LinkedBlockingQueue<Result> results) {
+            this.file = file;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            Result result = new Result(file);
+            try (SeekableSource source = EncryptedRecording.open(file)) {
+                WavFile.Info info = WavFile.readInfo(source);
+                long totalFrames = info.frameCount();
+                int align = RecordingStats.alignmentFrames(info.sampleRate);
+                long segmentFrames = Math.max(align,
+                        segmentBytes / (2L * info.channels) / align * align);
+                RecordingStats stats = new SegmentTask(source, info, align,
+                        segmentFrames, 0, totalFrames).compute();
+                result.sampleRate = info.sampleRate;
+                result.channels = info.channels;
+                result.durationMs = stats.getDurationMs();
+                result.peakDbfs = stats.getPeakDbfs();
+                result.rmsDbfs = stats.getRmsDbfs();
+                result.loudnessLufs = stats.getLoudnessLufs();
+                result.truePeakDbtp = stats.getTruePeakDbtp();
+                result.silenceRatio = stats.getSilenceRatio();
+            } catch (Exception e) {
+                result.error = e;
+            }
+            results.add(result);
+        }
+    }
+
+    /** 统计 [startFrame, endFrame) 区间，超过 segmentFrames 时对半拆分 */
+    private static final class SegmentTask extends RecursiveTask<RecordingStats> {
+        private static final long serialVersionUID = 1L;
+        private final SeekableSource source;
+        private final WavFile.Info info;
+        private final int align;
+        private final long segmentFrames;
+        private final long startFrame;
+        private final long endFrame;
+
+        SegmentTask(SeekableSource source, WavFile.Info info, int align, long segmentFrames,
+                    long startFrame, long endFrame) {
+            this.source = source;
+            this.info = info;
+            this.align = align;
+            this.segmentFrames = segmentFrames;
+            this.startFrame = startFrame;
+            this.endFrame = endFrame;
+        }
+
+        @Override
+        protected RecordingStats compute() {
+            if (endFrame - startFrame > segmentFrames) {
+                // 拆分点对齐到块边界，各段的块划分与顺序统计相同
+                long mid = startFrame + (endFrame - startFrame) / 2 / align * align;
+                SegmentTask left = new SegmentTask(source, info, align, segmentFrames, startFrame, mid);
+                SegmentTask right = new SegmentTask(source, info, align, segmentFrames, mid, endFrame);
+                left.fork();
+                RecordingStats rightStats = right.compute();
+                RecordingStats stats = left.join();
+                stats.merge(rightStats);
+                return stats;
+            }
+            RecordingStats stats = new RecordingStats(info.sampleRate, info.channels);
+            short[] buf = new short[8192 / info.channels * info.channels];
+            try {
+                if (startFrame > 0) {
+                    // 段前预热：滤波器状态不跨段传递，用 1 秒预热逼近顺序统计时的状态。
+                    // IIR 的初始状态在 1 秒内衰减到远低于 16 位量化，合并结果与顺序统计只有浮点级的差异（近似而非逐位相同）
+                    long preroll = ((long) info.sampleRate * PREROLL_MS / 1000 + align - 1) / align * align;
+                    scan(Math.max(0, startFrame - preroll), startFrame, stats, buf, true);
+                    stats.beginMeasurement();
+                }
+                scan(startFrame, endFrame, stats, buf, false);
+                stats.finish();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return stats;
+        }
+
+        private void scan(long fromFrame, long toFrame, RecordingStats stats, short[] buf, boolean warmUp)
+                throws IOException {
+            int frameBytes = 2 * info.channels;
+            long pos = info.dataOffset + fromFrame * frameBytes;
+            long end = info.dataOffset + toFrame * frameBytes;
+            int window = MAP_WINDOW_BYTES / frameBytes * frameBytes;
+            // 加密录音无法映射，按块读取并解密
+            ByteBuffer readBuffer = source instanceof FileSource ? null
+                    : ByteBuffer.allocate(Math.min(window, READ_BUFFER_BYTES / frameBytes * frameBytes));
+            while (pos < end) {
+                ByteBuffer bytes;
+                if (readBuffer == null) {
+                    int len = (int) Math.min(window, end - pos);
+                    bytes = ((FileSource) source).getChannel().map(FileChannel.MapMode.READ_ONLY, pos, len);
+                } else {
+                    readBuffer.clear();
+                    readBuffer.limit((int) Math.min(readBuffer.capacity(), end - pos));
+                    while (readBuffer.hasRemaining()) {
+                        if (source.read(readBuffer, pos + readBuffer.position()) < 0) break;
+                    }
+                    readBuffer.flip();
+                    if (!readBuffer.hasRemaining()) break;
+                    bytes = readBuffer;
+                }
+                int len = bytes.remaining();
+                ShortBuffer samples = bytes.order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+                while (samples.hasRemaining()) {
+                    int n = Math.min(buf.length, samples.remaining());
+                    samples.get(buf, 0, n);
+                    if (warmUp) {
+                        stats.warmUp(buf, 0, n);
+                    } else {
+                        stats.process(buf, 0, n);
+                    }
+                }
+                pos += len;
+            }
+        }
+    }
+}
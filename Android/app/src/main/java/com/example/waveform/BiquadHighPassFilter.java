@@ -0,0 +1,60 @@
+package com.example.waveform;
+
+/**
+ * 二阶高通（RBJ Cookbook），用于去除直流和低频隆隆声
+ */
+public class BiquadHighPassFilter implements AudioProcessor {
+    private final float cutoffHz;
+    private final float q;
+    private float b0, b1, b2, a1, a2;
+    // 转置直接 II 型状态
+    private float z1, z2;
+
+    public BiquadHighPassFilter(float cutoffHz) {
+        this(cutoffHz, 0.7071f);
+    }
+
+    public BiquadHighPassFilter(float cutoffHz, float q) {
+        this.cutoffHz = cutoffHz;
+        this.q = q;
+    }
+
+    @Override
+    public void prepare(int sampleRate) {
+        double w0 = 2 * Math.PI * cutoffHz / sampleRate;
+        double cos = Math.cos(w0);
+        double alpha = Math.sin(w0) / (2 * q);
+        double a0 = 1 + alpha;
+        b0 = (float) ((1 + cos) / 2 / a0);
+        b1 = (float) (-(1 + cos) / a0);
+        b2 = b0;
+        a1 = (float) (-2 * cos / a0);
+        a2 = (float) ((1 - alpha) / a0);
+    }
+
+    @Override
+    public void process(short[] buffer, int offset, int count) {
+        float s1 = z1, s2 = z2;
+        for (int i = offset, end = offset + count; i < end; i++) {
+            float x = buffer[i];
+            float y = b0 * x + s1;
+            s1 = b1 * x - a1 * y + s2;
+            s2 = b2 * x - a2 * y;
+            int v = (int) (y + (y >= 0 ? 0.5f : -0.5f));
+            buffer[i] = (short) (v > 32767 ? 32767 : (v < -32768 ? -32768 : v));
+        }
+        z1 = s1;
+        z2 = s2;
+    }
+
+    @Override
+    public void reset() {
+        z1 = 0;
+        z2 = 0;
+    }
+
+    @Override
+    public String getName() {
+        return "HighPass";
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.waveform;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 固定数量、固定大小的字节缓冲池，用于限制并发流的总内存占用
+ */
+public class BufferPool {
+    private final ArrayBlockingQueue<byte[]> free;
+    private final int bufferSize;
+
+    public BufferPool(int count, int bufferSize) {
+        this.bufferSize = bufferSize;
+        free = new ArrayBlockingQueue<>(count);
+        for (int i = 0; i < count; i++) {
+            free.add(new byte[bufferSize]);
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /** 等待可用缓冲，超时返回 null */
+    public byte[] acquire(long timeoutMs) throws InterruptedException {
+        return free.poll(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void release(byte[] buffer) {
+        if (buffer != null && buffer.length == bufferSize) free.offer(buffer);
+    }
+
+    public int available() {
+        return free.size();
+    }
+}
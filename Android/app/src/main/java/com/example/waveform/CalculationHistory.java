@@ -0,0 +1,309 @@
+package com.example.waveform;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 计算历史：只追加的二进制日志，整个文件内存映射
+ * 文件头：magic "CHST" | 版本 | 有效数据末尾偏移 | 记录数
+ * 记录：长度 | 内容 | CRC32 | 长度。内容为时间、模式、表达式、结果和编译后的指令，读回时无需重新解析。
+ * - 追加 O(1)：写入映射区后再更新文件头中的末尾偏移，中途崩溃只会丢掉最后一条
+ * - 读取最近 N 条：借助记录尾部的长度从末尾向前走，不扫描整个日志
+ * - 压缩：记录数超过保留数的两倍时，打开日志时只把最近的保留数条原样复制到新文件
+ * 方法均已同步
+ */
+public class CalculationHistory implements Closeable {
+    private static final int MAGIC = 0x43485354; // "CHST"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int OFFSET_END = 8;
+    private static final int OFFSET_COUNT = 16;
+    // 长度 + CRC32 + 长度
+    private static final int RECORD_OVERHEAD = 12;
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    private static final int FLAG_PRECISE = 1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** 一条历史 */
+    public static final class Entry {
+        public final long time;
+        public final String expression;
+        public final String result;
+        /** 是否在精确模式下计算 */
+        public final boolean precise;
+        private final CompiledExpression compiled;
+
+        Entry(long time, String expression, String result, boolean precise, CompiledExpression compiled) {
+            this.time = time;
+            this.expression = expression;
+            this.result = result;
+            this.precise = precise;
+            this.compiled = compiled;
+        }
+
+        /** 保存的编译结果，数据损坏时为 null */
+        public CompiledExpression getCompiled() {
+            return compiled;
+        }
+    }
+
+    private final File file;
+    private final int retain;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private MappedByteBuffer map;
+    private long end;
+    private int count;
+    private final CRC32 crc = new CRC32();
+    private final byte[] crcChunk = new byte[4096];
+    private ByteBuffer scratch = ByteBuffer.allocate(1024);
+
+    private CalculationHistory(File file, int retain) {
+        this.file = file;
+        this.retain = retain;
+    }
+
+    /**
+     * 打开（不存在时创建）历史日志，必要时先压缩
+     * @param retain 压缩后保留的条数
+     */
+    public static CalculationHistory open(File file, int retain) throws IOException {
+        CalculationHistory history = new CalculationHistory(file, retain);
+        history.mapFile();
+        if (history.count > retain * 2) history.compact();
+        return history;
+    }
+
+    private void mapFile() throws IOException {
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+        long length = raf.length();
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(length, INITIAL_CAPACITY));
+        if (length < HEADER_SIZE || map.getInt(0) != MAGIC || map.getInt(4) != VERSION) {
+            // 新文件、损坏或旧版本：重新开始
+            reset();
+            return;
+        }
+        end = map.getLong(OFFSET_END);
+        count = map.getInt(OFFSET_COUNT);
+        if (end < HEADER_SIZE || end > map.capacity() || (end > HEADER_SIZE && recordStart(end) < 0)) {
+            recover();
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < HEADER_SIZE; i++) map.put(i, (byte) 0);
+        map.putInt(0, MAGIC);
+        map.putInt(4, VERSION);
+        end = HEADER_SIZE;
+        count = 0;
+        writeHeader();
+    }
+
+    private void writeHeader() {
+        map.putLong(OFFSET_END, end);
+        map.putInt(OFFSET_COUNT, count);
+    }
+
+    /** 文件头不可信时从头扫描，找到最后一条完整的记录 */
+    private void recover() {
+        long pos = HEADER_SIZE;
+        int n = 0;
+        while (true) {
+            long next = recordEnd(pos);
+            if (next < 0) break;
+            pos = next;
+            n++;
+        }
+        end = pos;
+        count = n;
+        writeHeader();
+    }
+
+    /** 校验从 pos 开始的记录，返回其末尾；无效时返回 -1 */
+    private long recordEnd(long pos) {
+        if (pos + RECORD_OVERHEAD > map.capacity()) return -1;
+        int length = map.getInt((int) pos);
+        if (length <= 0 || pos + RECORD_OVERHEAD + length > map.capacity()) return -1;
+        return valid(pos, length) ? pos + RECORD_OVERHEAD + length : -1;
+    }
+
+    /** 校验以 recordEnd 结尾的记录，返回其起点；无效时返回 -1 */
+    private long recordStart(long recordEnd) {
+        if (recordEnd - RECORD_OVERHEAD < HEADER_SIZE) return -1;
+        int length = map.getInt((int) recordEnd - 4);
+        long pos = recordEnd - RECORD_OVERHEAD - length;
+        if (length <= 0 || pos < HEADER_SIZE) return -1;
+        return valid(pos, length) ? pos : -1;
+    }
+
+    private boolean valid(long pos, int length) {
+        int p = (int) pos;
+        if (map.getInt(p + 4 + length + 4) != length) return false;
+        ByteBuffer payload = map.duplicate();
+        payload.position(p + 4);
+        payload.limit(p + 4 + length);
+        return crc(payload) == map.getInt(p + 4 + length);
+    }
+
+    private int crc(ByteBuffer payload) {
+        crc.reset();
+        if (payload.hasArray()) {
+            crc.update(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining());
+        } else {
+            // CRC32.update(ByteBuffer) 需要 API 26
+            while (payload.hasRemaining()) {
+                int n = Math.min(crcChunk.length, payload.remaining());
+                payload.get(crcChunk, 0, n);
+                crc.update(crcChunk, 0, n);
+            }
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * 追加一条记录：编码到复用缓冲，写入映射区，最后更新文件头
+     */
+    public synchronized Entry append(String expression, CompiledExpression compiled, String result, boolean precise)
+            throws IOException {
+        byte[] expr = expression.getBytes(UTF_8);
+        byte[] res = result.getBytes(UTF_8);
+        int max = 8 + 1 + 2 + expr.length + 2 + res.length + compiled.serializedSize();
+        if (scratch.capacity() < max) scratch = ByteBuffer.allocate(Math.max(max, scratch.capacity() * 2));
+        long time = System.currentTimeMillis();
+        ByteBuffer out = scratch;
+        out.clear();
+        out.putLong(time);
+        out.put((byte) (precise ? FLAG_PRECISE : 0));
+        out.putShort((short) expr.length).put(expr);
+        out.putShort((short) res.length).put(res);
+        compiled.writeTo(out);
+        out.flip();
+        int length = out.remaining();
+        int checksum = crc(out);
+
+        ensureCapacity(end + RECORD_OVERHEAD + length);
+        int p = (int) end;
+        map.putInt(p, length);
+        ByteBuffer dst = map.duplicate();
+        dst.position(p + 4);
+        dst.put(scratch.array(), 0, length);
+        map.putInt(p + 4 + length, checksum);
+        map.putInt(p + 8 + length, length);
+        end = p + RECORD_OVERHEAD + length;
+        count++;
+        writeHeader();
+        return new Entry(time, expression, result, precise, compiled);
+    }
+
+    private void ensureCapacity(long needed) throws IOException {
+        if (needed <= map.capacity()) return;
+        if (needed > Integer.MAX_VALUE) throw new IOException("历史记录过大");
+        long capacity = Math.max(needed, Math.min((long) map.capacity() * 2, Integer.MAX_VALUE));
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    /**
+     * 最近的 n 条，新的在前；只读取这 n 条
+     */
+    public synchronized List<Entry> recent(int n) {
+        List<Entry> entries = new ArrayList<>(Math.min(n, count));
+        long pos = end;
+        while (entries.size() < n && pos > HEADER_SIZE) {
+            long start = recordStart(pos);
+            if (start < 0) break;
+            Entry entry = decode(start);
+            if (entry != null) entries.add(entry);
+            pos = start;
+        }
+        return entries;
+    }
+
+    private Entry decode(long start) {
+        ByteBuffer in = map.duplicate();
+        int length = map.getInt((int) start);
+        in.position((int) start + 4);
+        in.limit((int) start + 4 + length);
+        try {
+            long time = in.getLong();
+            boolean precise = (in.get() & FLAG_PRECISE) != 0;
+            String expression = readString(in);
+            String result = readString(in);
+            return new Entry(time, expression, result, precise, CompiledExpression.readFrom(expression, in));
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * 只保留最近 retain 条：记录在文件中连续存放，找到起点后整段原样复制到新文件再替换
+     */
+    public synchronized void compact() throws IOException {
+        if (count <= retain) return;
+        long start = end;
+        for (int i = 0; i < retain && start > HEADER_SIZE; i++) {
+            long s = recordStart(start);
+            if (s < 0) break;
+            start = s;
+        }
+        int kept = Math.min(retain, count);
+        File tmp = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+            out.setLength(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(HEADER_SIZE + end - start).putInt(kept);
+            header.clear();
+            FileChannel dst = out.getChannel();
+            dst.write(header, 0);
+            ByteBuffer tail = map.duplicate();
+            tail.position((int) start);
+            tail.limit((int) end);
+            dst.write(tail, HEADER_SIZE);
+            dst.force(true);
+        }
+        map.force();
+        raf.close();
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            mapFile();
+            throw new IOException("替换历史记录文件失败");
+        }
+        mapFile();
+    }
+
+    /** 清空全部历史 */
+    public synchronized void clear() {
+        reset();
+    }
+
+    /** 把映射区写回磁盘 */
+    public synchronized void flush() {
+        map.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        map.force();
+        raf.close();
+    }
+}
@@ -1,24 +1,54 @@
 package com.example.waveform;
 
+import android.content.Intent;
+import android.content.SharedPreferences;
 import android.os.Bundle;
+import android.text.TextUtils;
+import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.TextView;
+import android.widget.Toast;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
-import java.text.DecimalFormat;
-import java.util.Stack;
+import java.io.File;
+import java.io.IOException;
+import java.math.MathContext;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 public class CalculatorActivity extends AppCompatActivity {
+    private static final String TAG = "CalculatorActivity";
+    private static final String PREFS = "calculator";
+    private static final String PREF_PRECISE = "precise";
+    private static final int HISTORY_RETAIN = 500;
+    private static final int HISTORY_SHOWN = 100;
 
     private TextView displayTextView;
     private TextView formulaTextView;
-    private StringBuilder currentInput = new StringBuilder();
-    private StringBuilder formula = new StringBuilder();
-    private double previousResult = 0;
-    private String currentOperator = "";
-    private boolean isNewInput = true;
+    // 正在输入的整条表达式，按 = 时整体编译求值（支持优先级和括号），输入过程中实时预览结果
+    private final StringBuilder expression = new StringBuilder();
+    private String lastResult = "";
+    private boolean justEvaluated = false;
     private boolean hasError = false;
-    private DecimalFormat decimalFormat = new DecimalFormat("#.##########");
+    private final CalculatorFormatter formatter = new CalculatorFormatter();
+    private final ExpressionCache expressions = new ExpressionCache(32);
+    // 精确模式：十进制运算（34 位有效数字），否则用 double
+    private final DecimalEvaluator decimalEvaluator = new DecimalEvaluator(MathContext.DECIMAL128);
+    private boolean preciseMode = true;
+    // 历史日志与最近的记录（新的在前），后台线程打开后才可用
+    private CalculationHistory history;
+    private final List<CalculationHistory.Entry> recentHistory = new ArrayList<>();
+    // 实时预览：只重新计算改动的末尾部分
+    private final ExpressionPreview preview = new ExpressionPreview(MathContext.DECIMAL128);
+    // 待显示的内容，每帧最多写一次 TextView；连续快速按键时中间状态不逐个计算和排版
+    private CharSequence pendingDisplay = "0";
+    private CharSequence pendingFormula = "";
+    private boolean previewPending;
+    private boolean framePosted;
+    private final Runnable applyDisplay = this::applyDisplay;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -30,6 +60,10 @@ public class CalculatorActivity extends AppCompatActivity {
         formulaTextView = findViewById(R.id.formulaTextView);
 
         // 设置按钮点击事件
+        findViewById(R.id.btnOpenParen).setOnClickListener(this::onButtonClick);
+        findViewById(R.id.btnCloseParen).setOnClickListener(this::onButtonClick);
+        findViewById(R.id.btnSqrt).setOnClickListener(this::onButtonClick);
+        findViewById(R.id.btnPower).setOnClickListener(this::onButtonClick);
         findViewById(R.id.btnC).setOnClickListener(this::onButtonClick);
         findViewById(R.id.btnPlusMinus).setOnClickListener(this::onButtonClick);
         findViewById(R.id.btnPercent).setOnClickListener(this::onButtonClick);
@@ -50,8 +84,22 @@ public class CalculatorActivity extends AppCompatActivity {
         findViewById(R.id.btnDot).setOnClickListener(this::onButtonClick);
         findViewById(R.id.btnEquals).setOnClickListener(this::onButtonClick);
 
+        // 长按 = 切换精确模式
+        SharedPreferences prefs = getSharedPreferences(PREFS, MODE_PRIVATE);
+        preciseMode = prefs.getBoolean(PREF_PRECISE, true);
+        findViewById(R.id.btnEquals).setOnLongClickListener(v -> {
+            preciseMode = !preciseMode;
+            prefs.edit().putBoolean(PREF_PRECISE, preciseMode).apply();
+            Toast.makeText(this, preciseMode ? "精确计算：开" : "精确计算：关", Toast.LENGTH_SHORT).show();
+            if (!justEvaluated && !hasError) refresh();
+            return true;
+        });
+
         // 返回按钮
         findViewById(R.id.btnBack).setOnClickListener(v -> finish());
+        findViewById(R.id.btnHistory).setOnClickListener(v -> showHistory());
+        findViewById(R.id.btnTable).setOnClickListener(v -> openTable());
+        openHistory();
 
         setTitle("计算器");
         // 由于使用NoActionBar主题，不设置ActionBar返回按钮
@@ -82,7 +130,17 @@ public class CalculatorActivity extends AppCompatActivity {
             case "×":
             case "-":
             case "+":
-                setOperator(text);
+            case "^":
+                setOperator(text.charAt(0));
+                break;
+            case "(":
+                openParen();
+                break;
+            case ")":
+                closeParen();
+                break;
+            case "√":
+                squareRoot();
                 break;
             case "=":
                 calculate();
@@ -97,130 +155,302 @@ public class CalculatorActivity extends AppCompatActivity {
     }
 
     private void clearAll() {
-        currentInput.setLength(0);
-        formula.setLength(0);
-        previousResult = 0;
-        currentOperator = "";
-        isNewInput = true;
+        expression.setLength(0);
+        lastResult = "";
+        justEvaluated = false;
         hasError = false;
         updateDisplay("0", "");
     }
 
-    private void addDigit(String digit) {
-        if (isNewInput) {
-            currentInput.setLength(0);
-            isNewInput = false;
-        }
+    /**
+     * 刚算完结果时开始新的表达式；继续运算（运算符、%、±）时以上次结果为起点
+     */
+    private void beginInput(boolean continueFromResult) {
+        if (!justEvaluated) return;
+        expression.setLength(0);
+        if (continueFromResult) expression.append(lastResult);
+        justEvaluated = false;
+    }
+
+    /** 表达式有改动：下一帧显示表达式和预览结果 */
+    private void refresh() {
+        previewPending = true;
+        scheduleFrame();
+    }
 
+    private char lastChar() {
+        return expression.length() == 0 ? 0 : expression.charAt(expression.length() - 1);
+    }
+
+    private static boolean isOperator(char c) {
+        return c == '+' || c == '-' || c == '×' || c == '÷' || c == '^';
+    }
+
+    /** 表达式末尾正在输入的数字的起始位置 */
+    private int numberStart() {
+        int i = expression.length();
+        while (i > 0 && (Character.isDigit(expression.charAt(i - 1)) || expression.charAt(i - 1) == '.')) i--;
+        return i;
+    }
+
+    private void addDigit(String digit) {
+        beginInput(false);
+        int start = numberStart();
         // 避免多个前导零
-        if (currentInput.length() == 0 && digit.equals("0")) {
-            return;
+        if (expression.length() - start == 1 && expression.charAt(start) == '0') {
+            expression.setLength(start);
         }
-
-        currentInput.append(digit);
-        updateDisplay(currentInput.toString(), formula.toString());
+        expression.append(digit);
+        refresh();
     }
 
     private void addDecimalPoint() {
-        if (isNewInput) {
-            currentInput.append("0.");
-            isNewInput = false;
-        } else if (!currentInput.toString().contains(".")) {
-            currentInput.append(".");
-        }
-        updateDisplay(currentInput.toString(), formula.toString());
+        beginInput(false);
+        int start = numberStart();
+        if (expression.indexOf(".", start) >= 0) return;
+        expression.append(start == expression.length() ? "0." : ".");
+        refresh();
     }
 
     private void toggleSign() {
-        if (currentInput.length() > 0) {
-            String input = currentInput.toString();
-            if (input.startsWith("-")) {
-                currentInput = new StringBuilder(input.substring(1));
-            } else {
-                currentInput.insert(0, "-");
-            }
-            updateDisplay(currentInput.toString(), formula.toString());
+        beginInput(true);
+        int start = numberStart();
+        if (start == expression.length()) return;
+        // 数字前已有一元负号（位于开头、运算符或左括号之后）则去掉，否则加上
+        boolean negated = start > 0 && expression.charAt(start - 1) == '-'
+                && (start == 1 || isOperator(expression.charAt(start - 2)) || expression.charAt(start - 2) == '(');
+        if (negated) {
+            expression.deleteCharAt(start - 1);
+        } else {
+            expression.insert(start, '-');
         }
+        refresh();
     }
 
     private void percentage() {
-        if (currentInput.length() > 0) {
-            try {
-                double value = Double.parseDouble(currentInput.toString());
-                value = value / 100;
-                currentInput = new StringBuilder(decimalFormat.format(value));
-                updateDisplay(currentInput.toString(), formula.toString());
-            } catch (NumberFormatException e) {
-                hasError = true;
-                updateDisplay("错误", "");
-            }
+        beginInput(true);
+        char last = lastChar();
+        if (Character.isDigit(last) || last == ')') {
+            expression.append('%');
+            refresh();
         }
     }
 
-    private void setOperator(String operator) {
-        if (currentInput.length() > 0) {
-            double currentValue = Double.parseDouble(currentInput.toString());
+    private void setOperator(char operator) {
+        beginInput(true);
+        char last = lastChar();
+        if (last == 0 || last == '(' || last == '√') {
+            // 开头或括号内只允许负号
+            if (operator != '-') return;
+        } else if (isOperator(last) && !(operator == '-' && last != '-' && last != '+')) {
+            // 替换末尾的运算符；× ÷ ^ 之后的 - 作为负号保留（3 × -2）
+            while (isOperator(lastChar())) expression.setLength(expression.length() - 1);
+            if (expression.length() == 0) return;
+        }
+        expression.append(operator);
+        refresh();
+    }
 
-            if (!currentOperator.isEmpty() && !isNewInput) {
-                // 连续运算
-                previousResult = calculateResult(previousResult, currentValue, currentOperator);
-                currentInput = new StringBuilder(decimalFormat.format(previousResult));
-            } else {
-                // 新的运算
-                previousResult = currentValue;
-            }
+    private void openParen() {
+        beginInput(false);
+        expression.append('(');
+        refresh();
+    }
 
-            formula.append(decimalFormat.format(previousResult)).append(" ").append(operator).append(" ");
-            currentOperator = operator;
-            isNewInput = true;
+    private void closeParen() {
+        char last = lastChar();
+        if (justEvaluated || unclosedParens() == 0) return;
+        if (Character.isDigit(last) || last == ')' || last == '%') {
+            expression.append(')');
+            refresh();
+        }
+    }
+
+    private void squareRoot() {
+        beginInput(false);
+        expression.append('√');
+        refresh();
+    }
 
-            updateDisplay(decimalFormat.format(previousResult), formula.toString());
+    private int unclosedParens() {
+        int open = 0;
+        for (int i = 0; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (c == '(') open++;
+            else if (c == ')') open--;
         }
+        return open;
     }
 
     private void calculate() {
-        if (currentInput.length() > 0 && !currentOperator.isEmpty()) {
+        if (expression.length() == 0 || justEvaluated) return;
+        // 自动补齐右括号
+        StringBuilder text = new StringBuilder(expression);
+        for (int i = unclosedParens(); i > 0; i--) text.append(')');
+        String source = text.toString();
+        CompiledExpression compiled;
+        try {
+            compiled = expressions.compile(source);
+        } catch (ParseException e) {
+            // 表达式不完整，保留输入供继续编辑
+            updateDisplay(expression.toString(), e.getMessage());
+            return;
+        }
+        String result;
+        if (preciseMode) {
+            try {
+                result = formatter.format(decimalEvaluator.evaluate(compiled));
+            } catch (ArithmeticException e) {
+                result = null;
+            }
+        } else {
+            double value = compiled.evaluate();
+            result = Double.isNaN(value) || Double.isInfinite(value) ? null : formatter.format(value);
+        }
+        if (result == null) {
+            hasError = true;
+            updateDisplay("错误", source + " =");
+            return;
+        }
+        lastResult = result;
+        justEvaluated = true;
+        updateDisplay(lastResult, source + " =");
+        if (history != null) {
             try {
-                double currentValue = Double.parseDouble(currentInput.toString());
-                double result = calculateResult(previousResult, currentValue, currentOperator);
-
-                formula.append(decimalFormat.format(currentValue)).append(" =");
-                updateDisplay(decimalFormat.format(result), formula.toString());
-
-                // 准备下一次运算
-                previousResult = result;
-                currentInput = new StringBuilder(decimalFormat.format(result));
-                currentOperator = "";
-                isNewInput = true;
-            } catch (Exception e) {
-                hasError = true;
-                updateDisplay("错误", "");
+                recentHistory.add(0, history.append(source, compiled, result, preciseMode));
+                if (recentHistory.size() > HISTORY_SHOWN) recentHistory.remove(recentHistory.size() - 1);
+            } catch (IOException e) {
+                e.printStackTrace();
             }
         }
     }
 
-    private double calculateResult(double operand1, double operand2, String operator) {
-        switch (operator) {
-            case "+":
-                return operand1 + operand2;
-            case "-":
-                return operand1 - operand2;
-            case "×":
-                return operand1 * operand2;
-            case "÷":
-                if (operand2 == 0) {
-                    hasError = true;
-                    throw new ArithmeticException("除零错误");
-                }
-                return operand1 / operand2;
-            default:
-                return operand2;
+    /** 表格模式，带入正在输入的表达式 */
+    private void openTable() {
+        Intent intent = new Intent(this, TableActivity.class);
+        if (!justEvaluated && !hasError) intent.putExtra(TableActivity.EXTRA_EXPRESSION, expression.toString());
+        startActivity(intent);
+    }
+
+    /** 在后台打开历史日志（必要时压缩），只读取最近的若干条 */
+    private void openHistory() {
+        File file = new File(getFilesDir(), "calc_history.log");
+        WorkScheduler.Job load = task -> {
+            try {
+                long start = System.nanoTime();
+                CalculationHistory opened = CalculationHistory.open(file, HISTORY_RETAIN);
+                List<CalculationHistory.Entry> entries = opened.recent(HISTORY_SHOWN);
+                Log.d(TAG, "History: " + opened.size() + " entries, loaded " + entries.size() + " in "
+                        + (System.nanoTime() - start) / 1000 + " us");
+                runOnUiThread(() -> {
+                    if (isDestroyed()) {
+                        closeQuietly(opened);
+                        return;
+                    }
+                    history = opened;
+                    recentHistory.addAll(entries);
+                });
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        };
+        try {
+            WorkScheduler.getInstance().submit(WorkScheduler.LANE_INTERACTIVE,
+                    WorkScheduler.keyFor(this, "calc-history"), load);
+        } catch (RejectedExecutionException e) {
+            // 历史只是辅助显示，忙时本次不加载
+            Log.w(TAG, "History load rejected", e);
+        }
+    }
+
+    private void showHistory() {
+        if (recentHistory.isEmpty()) {
+            Toast.makeText(this, "暂无计算历史", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        String[] items = new String[recentHistory.size()];
+        for (int i = 0; i < items.length; i++) {
+            CalculationHistory.Entry entry = recentHistory.get(i);
+            items[i] = entry.expression + " = " + entry.result;
+        }
+        new AlertDialog.Builder(this)
+                .setTitle("计算历史")
+                .setItems(items, (dialog, which) -> recall(recentHistory.get(which)))
+                .setNeutralButton("清空", (dialog, which) -> {
+                    if (history != null) history.clear();
+                    recentHistory.clear();
+                })
+                .setNegativeButton("取消", null)
+                .show();
+    }
+
+    /**
+     * 取回一条历史继续编辑；保存的编译结果放回缓存，原样再算一次（如切换模式后）不需要重新解析
+     */
+    private void recall(CalculationHistory.Entry entry) {
+        if (entry.getCompiled() != null) expressions.put(entry.getCompiled());
+        expression.setLength(0);
+        expression.append(entry.expression);
+        justEvaluated = false;
+        hasError = false;
+        updateDisplay(entry.expression, "= " + entry.result);
+    }
+
+    private static void closeQuietly(CalculationHistory history) {
+        try {
+            history.close();
+        } catch (IOException e) {
+            e.printStackTrace();
         }
     }
 
     private void updateDisplay(String display, String formulaText) {
-        displayTextView.setText(display);
-        formulaTextView.setText(formulaText);
+        pendingDisplay = display;
+        pendingFormula = formulaText;
+        previewPending = false;
+        scheduleFrame();
+    }
+
+    private void scheduleFrame() {
+        if (framePosted) return;
+        framePosted = true;
+        displayTextView.postOnAnimation(applyDisplay);
+    }
+
+    private void applyDisplay() {
+        framePosted = false;
+        if (previewPending) {
+            previewPending = false;
+            String text = expression.toString();
+            pendingDisplay = text.isEmpty() ? "0" : text;
+            pendingFormula = previewText(text);
+        }
+        // 内容没变时不调用 setText，避免重新测量和排版
+        if (!TextUtils.equals(displayTextView.getText(), pendingDisplay)) displayTextView.setText(pendingDisplay);
+        if (!TextUtils.equals(formulaTextView.getText(), pendingFormula)) formulaTextView.setText(pendingFormula);
+    }
+
+    /** 输入到一半的表达式的结果；只有一个数、语法不完整或出错时不显示 */
+    private String previewText(String text) {
+        preview.setPrecise(preciseMode);
+        if (!preview.update(text) || preview.isTrivial()) return "";
+        return "= " + (preciseMode ? formatter.format(preview.getDecimal()) : formatter.format(preview.getValue()));
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if (history != null) history.flush();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        displayTextView.removeCallbacks(applyDisplay);
+        if (history != null) {
+            closeQuietly(history);
+            history = null;
+        }
     }
 
     @Override
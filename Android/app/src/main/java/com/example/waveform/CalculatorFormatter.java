@@ -0,0 +1,71 @@
+package com.example.waveform;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * 计算器结果的显示格式
+ * double 输出能还原原值的最短数字，超出显示宽度时舍入到宽度以内，必要时用科学计数法；与区域设置无关
+ * 内部缓冲非线程安全，每个界面持有自己的实例
+ */
+public class CalculatorFormatter {
+    /** 结果区一行大约能显示的字符数 */
+    public static final int DISPLAY_CHARS = 16;
+
+    private final DoubleFormatter doubleFormatter = new DoubleFormatter(DISPLAY_CHARS);
+
+    public String format(double value) {
+        return doubleFormatter.toString(value);
+    }
+
+    /** 追加到 sb，不产生中间字符串 */
+    public StringBuilder appendTo(StringBuilder sb, double value) {
+        return doubleFormatter.appendTo(sb, value);
+    }
+
+    /**
+     * 精确模式的结果：去掉末尾的 0，数量级过大或过小时用科学计数法（可再次输入）；
+     * 超出显示宽度时与 double 一样舍入到 DISPLAY_CHARS 以内，计算本身仍按 DECIMAL128 进行
+     */
+    public String format(BigDecimal value) {
+        if (value.signum() == 0) return "0";
+        BigDecimal v = value.stripTrailingZeros();
+        int sign = v.signum() < 0 ? 1 : 0;
+        while (true) {
+            int precision = v.precision();
+            int exponent = precision - v.scale() - 1;
+            boolean plainRange = exponent < 21 && exponent >= -10;
+            if (plainRange) {
+                String plain = v.toPlainString();
+                if (plain.length() <= DISPLAY_CHARS) return plain;
+            }
+            // 两种写法在显示宽度内最多能保留的有效数字，规则同 DoubleFormatter
+            int plainDigits = 0;
+            if (plainRange && exponent >= 0) {
+                int integerChars = sign + exponent + 1;
+                if (integerChars <= DISPLAY_CHARS) {
+                    plainDigits = exponent + 1 + Math.max(0, DISPLAY_CHARS - integerChars - 1);
+                }
+            } else if (plainRange) {
+                plainDigits = Math.max(0, DISPLAY_CHARS - sign - 1 + exponent);
+            }
+            int sciDigits = Math.max(1, DISPLAY_CHARS - sign - 2 - Integer.toString(exponent).length());
+            boolean plain = plainDigits > 0 && plainDigits >= Math.min(precision, sciDigits);
+            int keep = plain ? plainDigits : sciDigits;
+            if (keep >= precision) return scientific(v, exponent);
+            // 进位可能改变数量级，舍入后重新判断
+            v = v.round(new MathContext(keep, RoundingMode.HALF_UP)).stripTrailingZeros();
+        }
+    }
+
+    /** 1.2345E-20 形式，与 DoubleFormatter 的科学计数法一致 */
+    private static String scientific(BigDecimal v, int exponent) {
+        String digits = v.unscaledValue().abs().toString();
+        StringBuilder sb = new StringBuilder(digits.length() + 8);
+        if (v.signum() < 0) sb.append('-');
+        sb.append(digits.charAt(0));
+        if (digits.length() > 1) sb.append('.').append(digits, 1, digits.length());
+        return sb.append('E').append(exponent).toString();
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.waveform;
+
+import java.util.Locale;
+
+/**
+ * 录音链路的运行指标：读/写延迟直方图、应收与实收样本数、溢出/欠载计数、写队列深度和写入速率
+ * 录音线程调用 onRead*，写线程调用 onWrite，记录过程不分配对象；任意线程可取快照
+ */
+public class CaptureMetrics {
+    // 实收样本比按时间推算的应收样本少出这么多时，判定为一次溢出（录音缓冲区被覆盖）
+    private static final double OVERRUN_TOLERANCE_SECONDS = 0.25;
+
+    private final int sampleRate;
+    private final LatencyHistogram readLatency = new LatencyHistogram();
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+
+    // 录音线程写
+    private volatile long sessionStartNanos;
+    private volatile long sessionEndNanos;
+    private volatile long samplesReceived;
+    private volatile long samplesLost;
+    private volatile int overruns;
+    private volatile int underruns;
+    private volatile int readErrors;
+    private volatile int lastReadError;
+    private volatile int droppedBlocks;
+    private volatile int maxQueueDepth;
+    // 写线程写
+    private volatile long bytesWritten;
+
+    /** 只读快照 */
+    public static class Snapshot {
+        public long elapsedNanos;
+        public long samplesExpected;
+        public long samplesReceived;
+        public long samplesLost;
+        public int overruns;
+        public int underruns;
+        public int readErrors;
+        public int lastReadError;
+        public int droppedBlocks;
+        public int queueDepth;
+        public int maxQueueDepth;
+        public long bytesWritten;
+        public double bytesPerSecond;
+        public final LatencyHistogram readLatency = new LatencyHistogram();
+        public final LatencyHistogram writeLatency = new LatencyHistogram();
+
+        /** 是否出现过丢音 */
+        public boolean hasDropouts() {
+            return overruns > 0 || droppedBlocks > 0 || readErrors > 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "elapsed %.1fs  samples %d/%d  lost %d\n"
+                            + "overrun %d  underrun %d  readErr %d (last %d)  dropped %d\n"
+                            + "read  p50 %.2f  p99 %.2f  max %.2f ms\n"
+                            + "write p50 %.2f  p99 %.2f  max %.2f ms\n"
+                            + "queue %d (max %d)  %.1f KB/s",
+                    elapsedNanos / 1e9, samplesReceived, samplesExpected, samplesLost,
+                    overruns, underruns, readErrors, lastReadError, droppedBlocks,
+                    readLatency.getPercentileNanos(50) / 1e6, readLatency.getPercentileNanos(99) / 1e6,
+                    readLatency.getMaxNanos() / 1e6,
+                    writeLatency.getPercentileNanos(50) / 1e6, writeLatency.getPercentileNanos(99) / 1e6,
+                    writeLatency.getMaxNanos() / 1e6,
+                    queueDepth, maxQueueDepth, bytesPerSecond / 1024);
+        }
+    }
+
+    public CaptureMetrics(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    /** 每次录音开始前由录音线程调用 */
+    public void reset() {
+        readLatency.reset();
+        writeLatency.reset();
+        sessionStartNanos = 0;
+        sessionEndNanos = 0;
+        samplesReceived = 0;
+        samplesLost = 0;
+        overruns = 0;
+        underruns = 0;
+        readErrors = 0;
+        lastReadError = 0;
+        droppedBlocks = 0;
+        maxQueueDepth = 0;
+        bytesWritten = 0;
+    }
+
+    /**
+     * 一次成功读取
+     * @param requested 请求的样本数
+     * @param received  实际读到的样本数
+     * @param readNanos read() 的阻塞时长
+     * @param queueDepth 读取后写队列中的块数
+     */
+    public void onRead(int requested, int received, long readNanos, int queueDepth) {
+        long now = System.nanoTime();
+        readLatency.record(readNanos);
+        if (sessionStartNanos == 0) {
+            // 以首次读取返回的时刻减去这批样本的时长作为起点
+            sessionStartNanos = now - (long) received * 1000000000L / sampleRate;
+        }
+        samplesReceived += received;
+        if (received < requested) underruns++;
+        if (queueDepth > maxQueueDepth) maxQueueDepth = queueDepth;
+
+        // 实收落后于时间推算值超过容差，说明系统缓冲区已被覆盖；只计新增的缺口
+        long expected = (now - sessionStartNanos) * sampleRate / 1000000000L;
+        long deficit = expected - samplesReceived - samplesLost;
+        if (deficit > OVERRUN_TOLERANCE_SECONDS * sampleRate) {
+            overruns++;
+            samplesLost += deficit;
+        }
+    }
+
+    /** read() 返回负的错误码（如 ERROR_INVALID_OPERATION） */
+    public void onReadError(int code) {
+        readErrors++;
+        lastReadError = code;
+    }
+
+    /** 写队列没有空闲块，整块样本被丢弃 */
+    public void onBlockDropped() {
+        droppedBlocks++;
+    }
+
+    /** 写线程落盘一块 */
+    public void onWrite(int bytes, long writeNanos) {
+        writeLatency.record(writeNanos);
+        bytesWritten += bytes;
+    }
+
+    /** 录音结束，之后的快照不再随时间推算应收样本 */
+    public void onSessionEnd() {
+        sessionEndNanos = System.nanoTime();
+    }
+
+    public Snapshot snapshot(int queueDepth) {
+        Snapshot s = new Snapshot();
+        snapshot(s, queueDepth);
+        return s;
+    }
+
+    /** 填充到调用方复用的快照对象 */
+    public void snapshot(Snapshot out, int queueDepth) {
+        long start = sessionStartNanos;
+        long end = sessionEndNanos;
+        out.elapsedNanos = start == 0 ? 0 : (end != 0 ? end : System.nanoTime()) - start;
+        out.samplesExpected = out.elapsedNanos * sampleRate / 1000000000L;
+        out.samplesReceived = samplesReceived;
+        out.samplesLost = samplesLost;
+        out.overruns = overruns;
+        out.underruns = underruns;
+        out.readErrors = readErrors;
+        out.lastReadError = lastReadError;
+        out.droppedBlocks = droppedBlocks;
+        out.queueDepth = queueDepth;
+        out.maxQueueDepth = maxQueueDepth;
+        out.bytesWritten = bytesWritten;
+        out.bytesPerSecond = out.elapsedNanos == 0 ? 0 : out.bytesWritten * 1e9 / out.elapsedNanos;
+        readLatency.copyInto(out.readLatency);
+        writeLatency.copyInto(out.writeLatency);
+    }
+}
@@ -0,0 +1,269 @@
+package com.example.waveform;
+
+/**
+ * 录音链路：音源 -> 处理链 -> 频谱分析/幅度回调 -> 写线程
+ * 不依赖 Android，录音线程调用 runSession 驱动一次录音；同一实例可反复使用，稳态下不分配对象
+ * 待命（预录）时照常读取和处理，但样本只写入预录环形缓冲；转为录音时先把缓冲交给写线程，再接上实时数据
+ */
+public class CapturePipeline {
+    // 连续读取错误达到此数时结束本次录音，避免空转
+    private static final int MAX_CONSECUTIVE_READ_ERRORS = 10;
+    private static final long AMPLITUDE_INTERVAL_NANOS = 40_000_000L;
+
+    public interface AmplitudeListener {
+        void onAmplitude(float amplitude);
+    }
+
+    private final int sampleRate;
+    private final short[] samples;
+    private final ProcessingChain processingChain = new ProcessingChain();
+    private final CaptureMetrics metrics;
+    private final RecordingClock clock;
+    private AudioSource source;
+    private PcmFileWriter writer;
+    private volatile SpectrumAnalyzer spectrumAnalyzer;
+    private volatile AudioFingerprinter fingerprinter;
+    private volatile AmplitudeListener amplitudeListener;
+    private volatile boolean running;
+    private volatile boolean paused;
+    private volatile boolean standby;
+    private volatile PreRollBuffer preRoll;
+    private boolean backpressure;
+    // 本次会话的时间基准（会话结束后读取）；样本序号从文件第 0 帧起算，暂停和丢弃的块也计入
+    private final StreamTiming timing = new StreamTiming();
+    // 同一序号下读到但未写入文件的区间
+    private final SampleGaps gaps = new SampleGaps();
+    private long sourceFrames;
+
+    /**
+     * @param blockSamples 每次 read 的样本数，不能超过写线程块大小的一半
+     */
+    public CapturePipeline(int sampleRate, int blockSamples) {
+        this.sampleRate = sampleRate;
+        this.samples = new short[blockSamples];
+        this.metrics = new CaptureMetrics(sampleRate);
+        this.clock = new RecordingClock(sampleRate);
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSource(AudioSource source) {
+        this.source = source;
+    }
+
+    public AudioSource getSource() {
+        return source;
+    }
+
+    public void setWriter(PcmFileWriter writer) {
+        this.writer = writer;
+        writer.setMetrics(metrics);
+    }
+
+    public PcmFileWriter getWriter() {
+        return writer;
+    }
+
+    public ProcessingChain getProcessingChain() {
+        return processingChain;
+    }
+
+    public CaptureMetrics getMetrics() {
+        return metrics;
+    }
+
+    public RecordingClock getClock() {
+        return clock;
+    }
+
+    public void setSpectrumAnalyzer(SpectrumAnalyzer analyzer) {
+        this.spectrumAnalyzer = analyzer;
+    }
+
+    /** 处理后的样本同时送入指纹提取（在录音线程上执行） */
+    public void setFingerprinter(AudioFingerprinter fingerprinter) {
+        this.fingerprinter = fingerprinter;
+    }
+
+    /** 在录音线程上约每 40ms 回调一次 */
+    public void setAmplitudeListener(AmplitudeListener listener) {
+        this.amplitudeListener = listener;
+    }
+
+    /**
+     * 写队列满时是否等待而不是丢弃该块；实时音源应丢弃以免阻塞读取，
+     * 文件回放等离线音源应等待
+     */
+    public void setBackpressure(boolean backpressure) {
+        this.backpressure = backpressure;
+    }
+
+    /** 置为 false 后 runSession 在读完当前块后返回 */
+    public void setRunning(boolean running) {
+        this.running = running;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 暂停时仍持续从音源读取，设备保持运行，恢复时无需重新启动；
+     * 读到的样本直接丢弃，不经过处理链、不写入，时钟也不前进
+     */
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /** 预录缓冲，待命会话开始时读取；为 null 时不预录 */
+    public void setPreRoll(PreRollBuffer buffer) {
+        this.preRoll = buffer;
+    }
+
+    /**
+     * 待命：会话照常运行但不写文件，样本进入预录缓冲（会话开始时清空）；
+     * 会话中置为 false 即开始录音，预录内容排在实时数据之前写入，时钟随之前进。
+     * 预录部分不送入指纹提取
+     */
+    public void setStandby(boolean standby) {
+        this.standby = standby;
+    }
+
+    public boolean isStandby() {
+        return standby;
+    }
+
+    /**
+     * 最近一次会话的音源时间基准：样本序号 0 为文件第 0 帧（含预录），待命期间不计。
+     * 多轨录音据此对齐各轨起点、测量漂移，需在会话结束后调用
+     */
+    public StreamTiming getTiming() {
+        return timing;
+    }
+
+    /**
+     * 最近一次会话中读到但没有写入文件的音源样本区间（暂停、写线程缓冲耗尽），序号与 {@link #getTiming()} 相同。
+     * 需在会话结束后调用
+     */
+    public SampleGaps getGaps() {
+        return gaps;
+    }
+
+    public CaptureMetrics.Snapshot snapshot() {
+        PcmFileWriter w = writer;
+        return metrics.snapshot(w != null ? w.getQueueDepth() : 0);
+    }
+
+    /**
+     * 运行一次录音直到 setRunning(false)、音源结束或不可恢复的读取错误
+     * 调用前需已 setRunning(true)，且写线程已打开输出文件
+     */
+    public void runSession() {
+        AudioSource src = source;
+        PcmFileWriter w = writer;
+        // 以待命开始的会话才使用预录缓冲，转为录音后置空
+        PreRollBuffer ring = standby ? preRoll : null;
+        if (ring != null) ring.clear();
+        timing.reset();
+        gaps.clear();
+        sourceFrames = 0;
+        metrics.reset();
+        src.start();
+        try {
+            long lastAmplitude = 0;
+            int consecutiveErrors = 0;
+            while (running) {
+                long readStart = System.nanoTime();
+                int read = src.read(samples, 0, samples.length);
+                long readNanos = System.nanoTime() - readStart;
+                if (read == AudioSource.END_OF_STREAM) {
+                    running = false;
+                    break;
+                }
+                if (read < 0) {
+                    // ERROR_INVALID_OPERATION / ERROR_BAD_VALUE / ERROR_DEAD_OBJECT 等
+                    metrics.onReadError(read);
+                    if (read == AudioSource.ERROR_DEAD_OBJECT
+                            || ++consecutiveErrors >= MAX_CONSECUTIVE_READ_ERRORS) {
+                        running = false;
+                        break;
+                    }
+                    continue;
+                }
+                consecutiveErrors = 0;
+                boolean written = false;
+                if (read > 0 && !paused) {
+                    // 原地处理后再转为小端字节交给写线程
+                    processingChain.process(samples, 0, read);
+                    SpectrumAnalyzer analyzer = spectrumAnalyzer;
+                    if (analyzer != null) analyzer.write(samples, 0, read);
+                    if (ring != null && standby) {
+                        ring.write(samples, 0, read);
+                    } else {
+                        if (ring != null) {
+                            flushPreRoll(ring, w);
+                            ring = null;
+                        }
+                        AudioFingerprinter fp = fingerprinter;
+                        if (fp != null) fp.write(samples, 0, read);
+                        PcmFileWriter.Block block = backpressure ? w.obtainWait() : w.obtain();
+                        if (block != null) {
+                            byte[] buffer = block.data;
+                            for (int i = 0; i < read; i++) {
+                                short s = samples[i];
+                                buffer[2 * i] = (byte) s;
+                                buffer[2 * i + 1] = (byte) (s >> 8);
+                            }
+                            w.submit(block, read * 2);
+                            clock.advance(read);
+                            written = true;
+                        } else {
+                            metrics.onBlockDropped();
+                        }
+                    }
+                    // 节流回调，防止界面卡顿
+                    AmplitudeListener listener = amplitudeListener;
+                    if (listener != null && readStart - lastAmplitude > AMPLITUDE_INTERVAL_NANOS) {
+                        listener.onAmplitude(calculateAmplitude(samples, read));
+                        lastAmplitude = readStart;
+                    }
+                }
+                if (read > 0 && ring == null) {
+                    // 块的最后一个样本约在 read 返回时采集
+                    if (!written) gaps.add(sourceFrames, sourceFrames + read);
+                    sourceFrames += read;
+                    timing.add(sourceFrames, readStart + readNanos);
+                }
+                metrics.onRead(samples.length, read, readNanos, w.getQueueDepth());
+            }
+            // 开始录音后还没读到数据就停止：预录内容仍然要写入
+            if (ring != null && !standby) flushPreRoll(ring, w);
+        } finally {
+            metrics.onSessionEnd();
+            src.stop();
+        }
+    }
+
+    private void flushPreRoll(PreRollBuffer ring, PcmFileWriter w) {
+        // 指标从真正录音时算起
+        metrics.reset();
+        w.submitPreRoll(ring);
+        clock.advance(ring.size());
+        sourceFrames = ring.size();
+    }
+
+    /** 平均绝对幅度 */
+    public static float calculateAmplitude(short[] samples, int count) {
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += Math.abs(samples[i]);
+        }
+        return count > 0 ? (float) sum / count : 0;
+    }
+}
@@ -0,0 +1,372 @@
+package com.example.waveform;
+
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * 编译好的算术表达式：后缀指令序列 + 常量表，可含变量 x
+ * 求值只在编译时按最大深度分配的栈上进行，不分配对象；共享该栈，非线程安全。
+ * evaluateBlock 使用调用方提供的栈，可在多个线程上同时对不同的 x 求值
+ */
+public final class CompiledExpression {
+    // 指令；OP_CONST 后面跟一个常量下标
+    static final int OP_CONST = 0;
+    static final int OP_ADD = 1;
+    static final int OP_SUB = 2;
+    static final int OP_MUL = 3;
+    static final int OP_DIV = 4;
+    static final int OP_POW = 5;
+    static final int OP_NEG = 6;
+    /** x% = x / 100 */
+    static final int OP_PERCENT = 7;
+    /** a ± b%：把 b 换成 a × b / 100，a 留在栈上 */
+    static final int OP_PERCENT_OF = 8;
+    static final int OP_SQRT = 9;
+    static final int OP_SIN = 10;
+    static final int OP_COS = 11;
+    static final int OP_TAN = 12;
+    static final int OP_LN = 13;
+    static final int OP_LOG = 14;
+    static final int OP_ABS = 15;
+    static final int OP_EXP = 16;
+    /** 变量 x */
+    static final int OP_VAR = 17;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    // 可精确表示的 10 的幂
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private final String source;
+    final int[] code;
+    final int codeLength;
+    private final double[] constants;
+    // 常量的精确十进制值，供 DecimalEvaluator 使用：unscaled × 10^-scale，
+    // scale 为 -1 表示放不进 long，此时用 decimals
+    final long[] unscaled;
+    final int[] scales;
+    final BigDecimal[] decimals;
+    final int maxDepth;
+    private final double[] stack;
+
+    CompiledExpression(String source, int[] code, int codeLength, long[] unscaled, int[] scales,
+                       BigDecimal[] decimals, int maxDepth) {
+        this.source = source;
+        this.code = code;
+        this.codeLength = codeLength;
+        this.unscaled = unscaled;
+        this.scales = scales;
+        this.decimals = decimals;
+        this.maxDepth = Math.max(1, maxDepth);
+        this.stack = new double[this.maxDepth];
+        constants = new double[scales.length];
+        for (int i = 0; i < scales.length; i++) {
+            if (scales[i] >= 0) {
+                constants[i] = toDouble(unscaled[i], scales[i]);
+                continue;
+            }
+            constants[i] = decimals[i].doubleValue();
+            BigDecimal d = DecimalEvaluator.normalize(decimals[i]);
+            if (DecimalEvaluator.fitsLong(d)) {
+                unscaled[i] = d.unscaledValue().longValue();
+                scales[i] = d.scale();
+            }
+        }
+    }
+
+    /**
+     * unscaled 不超过 2^53、10^scale 可精确表示时，一次除法就是正确舍入的结果（无需 parseDouble）
+     */
+    static double toDouble(long unscaled, int scale) {
+        if (Math.abs(unscaled) < (1L << 53) && scale < POW10.length) {
+            return scale == 0 ? unscaled : unscaled / POW10[scale];
+        }
+        return BigDecimal.valueOf(unscaled, scale).doubleValue();
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /** 指令数（含常量下标） */
+    public int getCodeLength() {
+        return codeLength;
+    }
+
+    /** 是否含有变量 x */
+    public boolean usesVariable() {
+        for (int pc = 0; pc < codeLength; pc++) {
+            if (code[pc] == OP_CONST) pc++;
+            else if (code[pc] == OP_VAR) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 求值；除以零等得到 Infinity / NaN，由调用方判断。含变量 x 时结果为 NaN
+     */
+    public double evaluate() {
+        return evaluate(Double.NaN);
+    }
+
+    /** 取 x 的值求值 */
+    public double evaluate(double x) {
+        execute(code, 0, codeLength, constants, x, stack, 0);
+        return stack[0];
+    }
+
+    /**
+     * 在栈 stack（已有 sp 个值）上执行 code[from, to)，返回执行后的栈深度；
+     * 后缀指令可以分段执行，实时预览借此只计算新输入的部分
+     */
+    static int execute(int[] code, int from, int to, double[] constants, double x, double[] stack, int sp) {
+        for (int pc = from; pc < to; pc++) {
+            switch (code[pc]) {
+                case OP_CONST:
+                    stack[sp++] = constants[code[++pc]];
+                    break;
+                case OP_VAR:
+                    stack[sp++] = x;
+                    break;
+                case OP_ADD:
+                    sp--;
+                    stack[sp - 1] += stack[sp];
+                    break;
+                case OP_SUB:
+                    sp--;
+                    stack[sp - 1] -= stack[sp];
+                    break;
+                case OP_MUL:
+                    sp--;
+                    stack[sp - 1] *= stack[sp];
+                    break;
+                case OP_DIV:
+                    sp--;
+                    stack[sp - 1] /= stack[sp];
+                    break;
+                case OP_POW:
+                    sp--;
+                    stack[sp - 1] = Math.pow(stack[sp - 1], stack[sp]);
+                    break;
+                case OP_NEG:
+                    stack[sp - 1] = -stack[sp - 1];
+                    break;
+                case OP_PERCENT:
+                    stack[sp - 1] /= 100;
+                    break;
+                case OP_PERCENT_OF:
+                    stack[sp - 1] = stack[sp - 2] * stack[sp - 1] / 100;
+                    break;
+                case OP_SQRT:
+                    stack[sp - 1] = Math.sqrt(stack[sp - 1]);
+                    break;
+                case OP_SIN:
+                    stack[sp - 1] = Math.sin(stack[sp - 1]);
+                    break;
+                case OP_COS:
+                    stack[sp - 1] = Math.cos(stack[sp - 1]);
+                    break;
+                case OP_TAN:
+                    stack[sp - 1] = Math.tan(stack[sp - 1]);
+                    break;
+                case OP_LN:
+                    stack[sp - 1] = Math.log(stack[sp - 1]);
+                    break;
+                case OP_LOG:
+                    stack[sp - 1] = Math.log10(stack[sp - 1]);
+                    break;
+                case OP_ABS:
+                    stack[sp - 1] = Math.abs(stack[sp - 1]);
+                    break;
+                case OP_EXP:
+                    stack[sp - 1] = Math.exp(stack[sp - 1]);
+                    break;
+                default:
+                    throw new IllegalStateException("未知指令: " + code[pc]);
+            }
+        }
+        return sp;
+    }
+
+    /**
+     * 按列求值：y[offset, offset + length) = f(x[offset, offset + length))
+     * 每条指令对整批 x 连续执行一遍，指令分派的开销按批分摊，逐元素的简单循环也便于 JIT 向量化；
+     * 常量后紧跟二元运算时直接与标量运算，不先展开成整列。stack 至少 maxDepth 行、每行至少 length 个
+     */
+    void evaluateBlock(double[] x, double[] y, int offset, int length, double[][] stack) {
+        final int[] code = this.code;
+        int sp = 0;
+        for (int pc = 0; pc < codeLength; pc++) {
+            int op = code[pc];
+            if (op == OP_CONST) {
+                double c = constants[code[++pc]];
+                int next = pc + 1 < codeLength ? code[pc + 1] : -1;
+                if (next >= OP_ADD && next <= OP_POW) {
+                    scalarOp(next, stack[sp - 1], c, length);
+                    pc++;
+                } else {
+                    Arrays.fill(stack[sp++], 0, length, c);
+                }
+            } else if (op == OP_VAR) {
+                System.arraycopy(x, offset, stack[sp++], 0, length);
+            } else if (op >= OP_ADD && op <= OP_POW) {
+                sp--;
+                vectorOp(op, stack[sp - 1], stack[sp], length);
+            } else if (op == OP_PERCENT_OF) {
+                double[] a = stack[sp - 2];
+                double[] b = stack[sp - 1];
+                for (int i = 0; i < length; i++) b[i] = a[i] * b[i] / 100;
+            } else {
+                unaryOp(op, stack[sp - 1], length);
+            }
+        }
+        System.arraycopy(stack[0], 0, y, offset, length);
+    }
+
+    /** a[i] = a[i] op c */
+    private static void scalarOp(int op, double[] a, double c, int length) {
+        switch (op) {
+            case OP_ADD:
+                for (int i = 0; i < length; i++) a[i] += c;
+                break;
+            case OP_SUB:
+                for (int i = 0; i < length; i++) a[i] -= c;
+                break;
+            case OP_MUL:
+                for (int i = 0; i < length; i++) a[i] *= c;
+                break;
+            case OP_DIV:
+                for (int i = 0; i < length; i++) a[i] /= c;
+                break;
+            default:
+                for (int i = 0; i < length; i++) a[i] = Math.pow(a[i], c);
+                break;
+        }
+    }
+
+    /** a[i] = a[i] op b[i] */
+    private static void vectorOp(int op, double[] a, double[] b, int length) {
+        switch (op) {
+            case OP_ADD:
+                for (int i = 0; i < length; i++) a[i] += b[i];
+                break;
+            case OP_SUB:
+                for (int i = 0; i < length; i++) a[i] -= b[i];
+                break;
+            case OP_MUL:
+                for (int i = 0; i < length; i++) a[i] *= b[i];
+                break;
+            case OP_DIV:
+                for (int i = 0; i < length; i++) a[i] /= b[i];
+                break;
+            default:
+                for (int i = 0; i < length; i++) a[i] = Math.pow(a[i], b[i]);
+                break;
+        }
+    }
+
+    private static void unaryOp(int op, double[] a, int length) {
+        switch (op) {
+            case OP_NEG:
+                for (int i = 0; i < length; i++) a[i] = -a[i];
+                break;
+            case OP_PERCENT:
+                for (int i = 0; i < length; i++) a[i] /= 100;
+                break;
+            case OP_SQRT:
+                for (int i = 0; i < length; i++) a[i] = Math.sqrt(a[i]);
+                break;
+            case OP_SIN:
+                for (int i = 0; i < length; i++) a[i] = Math.sin(a[i]);
+                break;
+            case OP_COS:
+                for (int i = 0; i < length; i++) a[i] = Math.cos(a[i]);
+                break;
+            case OP_TAN:
+                for (int i = 0; i < length; i++) a[i] = Math.tan(a[i]);
+                break;
+            case OP_LN:
+                for (int i = 0; i < length; i++) a[i] = Math.log(a[i]);
+                break;
+            case OP_LOG:
+                for (int i = 0; i < length; i++) a[i] = Math.log10(a[i]);
+                break;
+            case OP_ABS:
+                for (int i = 0; i < length; i++) a[i] = Math.abs(a[i]);
+                break;
+            case OP_EXP:
+                for (int i = 0; i < length; i++) a[i] = Math.exp(a[i]);
+                break;
+            default:
+                throw new IllegalStateException("未知指令: " + op);
+        }
+    }
+
+    /** 序列化后的字节数上限，用于预留缓冲 */
+    int serializedSize() {
+        int size = 2 + 4 + 4 * codeLength + 2;
+        for (int i = 0; i < scales.length; i++) {
+            size += 12;
+            if (scales[i] < 0) size += 2 + decimals[i].toString().length();
+        }
+        return size;
+    }
+
+    /**
+     * 写出编译结果（指令与常量），读回时无需重新解析表达式
+     */
+    void writeTo(ByteBuffer out) {
+        out.putShort((short) maxDepth);
+        out.putInt(codeLength);
+        for (int i = 0; i < codeLength; i++) out.putInt(code[i]);
+        out.putShort((short) scales.length);
+        for (int i = 0; i < scales.length; i++) {
+            out.putLong(unscaled[i]);
+            out.putInt(scales[i]);
+            if (scales[i] < 0) {
+                byte[] text = decimals[i].toString().getBytes(UTF_8);
+                out.putShort((short) text.length);
+                out.put(text);
+            }
+        }
+    }
+
+    /**
+     * @return 数据不完整时返回 null
+     */
+    static CompiledExpression readFrom(String source, ByteBuffer in) {
+        try {
+            int maxDepth = in.getShort();
+            int codeLength = in.getInt();
+            if (maxDepth <= 0 || codeLength < 0 || codeLength > in.remaining() / 4) return null;
+            int[] code = new int[codeLength];
+            for (int i = 0; i < codeLength; i++) code[i] = in.getInt();
+            int count = in.getShort();
+            if (count < 0) return null;
+            long[] unscaled = new long[count];
+            int[] scales = new int[count];
+            BigDecimal[] decimals = new BigDecimal[count];
+            for (int i = 0; i < count; i++) {
+                unscaled[i] = in.getLong();
+                scales[i] = in.getInt();
+                if (scales[i] < 0) {
+                    byte[] text = new byte[in.getShort()];
+                    in.get(text);
+                    decimals[i] = new BigDecimal(new String(text, UTF_8));
+                }
+            }
+            return new CompiledExpression(source, code, codeLength, unscaled, scales, decimals, maxDepth);
+        } catch (BufferUnderflowException | NumberFormatException | NegativeArraySizeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
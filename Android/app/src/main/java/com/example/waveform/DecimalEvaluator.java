@@ -0,0 +1,404 @@
+package com.example.waveform;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+
+/**
+ * 以十进制精确求值 {@link CompiledExpression}：0.1 + 0.2 = 0.3，金额计算没有二进制舍入误差
+ * 快速路径：操作数和结果都能写成 unscaled × 10^-scale（long，scale ≤ 18）时只做 long 运算，不分配对象；
+ * 溢出、除不尽、非整数次幂等情况才转为 BigDecimal 并按 MathContext 舍入，结果重新放得进 long 时回到快速路径。
+ * 三角、对数、指数函数和非整数次幂按 double 计算。复用内部栈，非线程安全
+ */
+public class DecimalEvaluator {
+    static final int MAX_SCALE = 18;
+    // 溢出标记；快速路径中的合法值都满足 |x| < 2^63，不会取到它
+    private static final long OVERFLOW = Long.MIN_VALUE;
+    private static final long[] POW10 = new long[MAX_SCALE + 1];
+    private static final BigDecimal TWO = BigDecimal.valueOf(2);
+    // floor(√Long.MAX_VALUE)，再大平方会溢出
+    private static final long MAX_ROOT = 3037000499L;
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) POW10[i] = POW10[i - 1] * 10;
+    }
+
+    private final MathContext mathContext;
+    // 求值栈：big[i] 为 null 时值为 unscaled[i] × 10^-scales[i]
+    private long[] unscaled = new long[8];
+    private int[] scales = new int[8];
+    private BigDecimal[] big = new BigDecimal[8];
+    private long fastOps;
+    private long slowOps;
+
+    public DecimalEvaluator(MathContext mathContext) {
+        this.mathContext = mathContext;
+    }
+
+    public MathContext getMathContext() {
+        return mathContext;
+    }
+
+    /** 走快速路径的运算次数 */
+    public long getFastOps() {
+        return fastOps;
+    }
+
+    /** 退回 BigDecimal 的运算次数 */
+    public long getSlowOps() {
+        return slowOps;
+    }
+
+    /**
+     * @throws ArithmeticException 除以零、负数开方、结果超出范围等
+     */
+    public BigDecimal evaluate(CompiledExpression expression) {
+        ensureCapacity(expression.maxDepth);
+        execute(expression.code, 0, expression.codeLength, expression.unscaled, expression.scales,
+                expression.decimals, 0);
+        return valueAt(0);
+    }
+
+    /**
+     * 在内部栈（已有 sp 个值）上执行 code[from, to)，返回执行后的栈深度；调用前先 ensureCapacity
+     */
+    int execute(int[] code, int from, int to, long[] constUnscaled, int[] constScales, BigDecimal[] constDecimals,
+                int sp) {
+        for (int pc = from; pc < to; pc++) {
+            int op = code[pc];
+            switch (op) {
+                case CompiledExpression.OP_CONST: {
+                    int k = code[++pc];
+                    if (constScales[k] >= 0) {
+                        setFast(sp, constUnscaled[k], constScales[k]);
+                    } else {
+                        big[sp] = constDecimals[k];
+                    }
+                    sp++;
+                    break;
+                }
+                case CompiledExpression.OP_ADD:
+                    sp--;
+                    add(sp - 1, sp, false);
+                    break;
+                case CompiledExpression.OP_SUB:
+                    sp--;
+                    add(sp - 1, sp, true);
+                    break;
+                case CompiledExpression.OP_MUL:
+                    sp--;
+                    multiply(sp - 1, sp);
+                    break;
+                case CompiledExpression.OP_DIV:
+                    sp--;
+                    divide(sp - 1, sp);
+                    break;
+                case CompiledExpression.OP_POW:
+                    sp--;
+                    power(sp - 1, sp);
+                    break;
+                case CompiledExpression.OP_NEG:
+                    if (big[sp - 1] == null) unscaled[sp - 1] = -unscaled[sp - 1];
+                    else big[sp - 1] = big[sp - 1].negate();
+                    break;
+                case CompiledExpression.OP_PERCENT:
+                    percent(sp - 1);
+                    break;
+                case CompiledExpression.OP_PERCENT_OF:
+                    // 左操作数留在栈上，右操作数换成 左 × 右 / 100
+                    multiply(sp - 1, sp - 2);
+                    percent(sp - 1);
+                    break;
+                case CompiledExpression.OP_ABS:
+                    if (big[sp - 1] == null) unscaled[sp - 1] = Math.abs(unscaled[sp - 1]);
+                    else big[sp - 1] = big[sp - 1].abs();
+                    break;
+                case CompiledExpression.OP_SQRT:
+                    sqrt(sp - 1);
+                    break;
+                case CompiledExpression.OP_VAR:
+                    throw new ArithmeticException("含有变量 x");
+                default:
+                    function(op, sp - 1);
+                    break;
+            }
+        }
+        return sp;
+    }
+
+    /** 栈上第 i 个值，按 MathContext 舍入 */
+    BigDecimal valueAt(int i) {
+        return normalize(toBig(i).round(mathContext));
+    }
+
+    /** 扩容时保留栈上已有的值，分段执行时不会丢失 */
+    void ensureCapacity(int depth) {
+        if (unscaled.length >= depth) return;
+        int size = Math.max(depth, unscaled.length * 2);
+        unscaled = Arrays.copyOf(unscaled, size);
+        scales = Arrays.copyOf(scales, size);
+        big = Arrays.copyOf(big, size);
+    }
+
+    /** 把栈底的 sp 个值复制到 offset 处保存 */
+    void save(int sp, long[] toUnscaled, int[] toScales, BigDecimal[] toBig, int offset) {
+        System.arraycopy(unscaled, 0, toUnscaled, offset, sp);
+        System.arraycopy(scales, 0, toScales, offset, sp);
+        System.arraycopy(big, 0, toBig, offset, sp);
+    }
+
+    /** 恢复 save 保存的栈 */
+    void load(int sp, long[] fromUnscaled, int[] fromScales, BigDecimal[] fromBig, int offset) {
+        ensureCapacity(sp);
+        System.arraycopy(fromUnscaled, offset, unscaled, 0, sp);
+        System.arraycopy(fromScales, offset, scales, 0, sp);
+        System.arraycopy(fromBig, offset, big, 0, sp);
+    }
+
+    private BigDecimal toBig(int i) {
+        return big[i] != null ? big[i] : BigDecimal.valueOf(unscaled[i], scales[i]);
+    }
+
+    /** 去掉末尾的 0 后存入；scale 超过上限时转为 BigDecimal */
+    private void setFast(int i, long value, int scale) {
+        while (scale > 0 && value % 10 == 0) {
+            value /= 10;
+            scale--;
+        }
+        if (scale > MAX_SCALE) {
+            setBig(i, BigDecimal.valueOf(value, scale).round(mathContext));
+            return;
+        }
+        unscaled[i] = value;
+        scales[i] = scale;
+        big[i] = null;
+    }
+
+    private void setBig(int i, BigDecimal value) {
+        BigDecimal d = normalize(value);
+        if (fitsLong(d)) {
+            unscaled[i] = d.unscaledValue().longValue();
+            scales[i] = d.scale();
+            big[i] = null;
+        } else {
+            big[i] = d;
+        }
+    }
+
+    /** 去掉末尾的 0；数量级不大的整数统一为 scale 0 */
+    static BigDecimal normalize(BigDecimal d) {
+        if (d.signum() == 0) return BigDecimal.ZERO;
+        d = d.stripTrailingZeros();
+        if (d.scale() < 0 && d.precision() - d.scale() <= 19) d = d.setScale(0);
+        return d;
+    }
+
+    static boolean fitsLong(BigDecimal d) {
+        return d.scale() >= 0 && d.scale() <= MAX_SCALE && d.unscaledValue().bitLength() < 63;
+    }
+
+    /** a × 10^n，溢出返回 OVERFLOW */
+    private static long scaleUp(long a, int n) {
+        if (n == 0) return a;
+        if (n > MAX_SCALE) return OVERFLOW;
+        long p = POW10[n];
+        if (Math.abs(a) > Long.MAX_VALUE / p) return OVERFLOW;
+        return a * p;
+    }
+
+    /** a × b，溢出返回 OVERFLOW */
+    private static long multiplyFast(long a, long b) {
+        if (a == 0 || b == 0) return 0;
+        long r = a * b;
+        if (r / b != a || r == OVERFLOW) return OVERFLOW;
+        return r;
+    }
+
+    private void add(int i, int j, boolean subtract) {
+        if (big[i] == null && big[j] == null) {
+            int scale = Math.max(scales[i], scales[j]);
+            long a = scaleUp(unscaled[i], scale - scales[i]);
+            long b = scaleUp(subtract ? -unscaled[j] : unscaled[j], scale - scales[j]);
+            if (a != OVERFLOW && b != OVERFLOW) {
+                long r = a + b;
+                if (((a ^ r) & (b ^ r)) >= 0 && r != OVERFLOW) {
+                    fastOps++;
+                    setFast(i, r, scale);
+                    return;
+                }
+            }
+        }
+        slowOps++;
+        setBig(i, subtract ? toBig(i).subtract(toBig(j), mathContext) : toBig(i).add(toBig(j), mathContext));
+    }
+
+    /** 结果写入 i */
+    private void multiply(int i, int j) {
+        if (big[i] == null && big[j] == null) {
+            long r = multiplyFast(unscaled[i], unscaled[j]);
+            if (r != OVERFLOW) {
+                fastOps++;
+                setFast(i, r, scales[i] + scales[j]);
+                return;
+            }
+        }
+        slowOps++;
+        setBig(i, toBig(i).multiply(toBig(j), mathContext));
+    }
+
+    private void divide(int i, int j) {
+        if (big[j] == null ? unscaled[j] == 0 : big[j].signum() == 0) {
+            throw new ArithmeticException("除数不能为零");
+        }
+        if (big[i] == null && big[j] == null) {
+            long a = unscaled[i];
+            long b = unscaled[j];
+            int scale = scales[i] - scales[j];
+            // 被除数逐位乘 10 直到整除：1 ÷ 8 = 0.125 仍走快速路径，1 ÷ 3 除不尽时退回 BigDecimal
+            while (true) {
+                if (a % b == 0) {
+                    long q = a / b;
+                    if (scale < 0) {
+                        q = scaleUp(q, -scale);
+                        scale = 0;
+                    }
+                    if (q != OVERFLOW) {
+                        fastOps++;
+                        setFast(i, q, scale);
+                        return;
+                    }
+                    break;
+                }
+                if (scale >= MAX_SCALE) break;
+                a = scaleUp(a, 1);
+                if (a == OVERFLOW) break;
+                scale++;
+            }
+        }
+        slowOps++;
+        setBig(i, toBig(i).divide(toBig(j), mathContext));
+    }
+
+    private void percent(int i) {
+        if (big[i] == null && scales[i] + 2 <= MAX_SCALE) {
+            fastOps++;
+            setFast(i, unscaled[i], scales[i] + 2);
+            return;
+        }
+        slowOps++;
+        setBig(i, toBig(i).scaleByPowerOfTen(-2));
+    }
+
+    private void power(int i, int j) {
+        boolean integral = big[j] == null ? scales[j] == 0 : big[j].scale() <= 0;
+        if (integral && big[i] == null && big[j] == null && unscaled[j] >= 0 && unscaled[j] <= 64) {
+            // 快速幂，任何一步溢出或 scale 超限都退回 BigDecimal
+            long base = unscaled[i];
+            int baseScale = scales[i];
+            long result = 1;
+            int resultScale = 0;
+            long n = unscaled[j];
+            while (n > 0) {
+                if ((n & 1) != 0) {
+                    result = multiplyFast(result, base);
+                    resultScale += baseScale;
+                    if (result == OVERFLOW || resultScale > MAX_SCALE) break;
+                }
+                n >>= 1;
+                if (n > 0) {
+                    base = multiplyFast(base, base);
+                    baseScale *= 2;
+                    if (base == OVERFLOW || baseScale > MAX_SCALE) break;
+                }
+            }
+            if (n == 0) {
+                fastOps++;
+                setFast(i, result, resultScale);
+                return;
+            }
+        }
+        slowOps++;
+        BigDecimal e = toBig(j);
+        if (integral && e.abs().compareTo(BigDecimal.valueOf(999999999)) <= 0) {
+            setBig(i, toBig(i).pow(e.intValue(), mathContext));
+        } else {
+            setDouble(i, Math.pow(toBig(i).doubleValue(), e.doubleValue()));
+        }
+    }
+
+    private void sqrt(int i) {
+        if (big[i] == null && unscaled[i] >= 0) {
+            // 完全平方数直接开方：√0.04 = 0.2
+            long value = unscaled[i];
+            int scale = scales[i];
+            if ((scale & 1) != 0) {
+                value = scaleUp(value, 1);
+                scale++;
+            }
+            if (value != OVERFLOW) {
+                long root = (long) Math.sqrt((double) value);
+                while (root > 0 && root * root > value) root--;
+                while (root < MAX_ROOT && (root + 1) * (root + 1) <= value) root++;
+                if (root * root == value) {
+                    fastOps++;
+                    setFast(i, root, scale / 2);
+                    return;
+                }
+            }
+        }
+        slowOps++;
+        BigDecimal x = toBig(i);
+        if (x.signum() < 0) throw new ArithmeticException("负数不能开平方");
+        if (x.signum() == 0) {
+            setFast(i, 0, 0);
+            return;
+        }
+        double estimate = Math.sqrt(x.doubleValue());
+        if (Double.isInfinite(estimate) || estimate == 0) throw new ArithmeticException("超出范围");
+        // 牛顿迭代，每轮有效位数翻倍，从 double 的 16 位起几轮即可达到 MathContext 精度
+        MathContext work = new MathContext(mathContext.getPrecision() + 2);
+        BigDecimal root = new BigDecimal(estimate);
+        for (int k = 0; k < 10; k++) {
+            BigDecimal next = root.add(x.divide(root, work)).divide(TWO, work);
+            if (next.compareTo(root) == 0) break;
+            root = next;
+        }
+        setBig(i, root.round(mathContext));
+    }
+
+    private void function(int op, int i) {
+        slowOps++;
+        double x = toBig(i).doubleValue();
+        double y;
+        switch (op) {
+            case CompiledExpression.OP_SIN:
+                y = Math.sin(x);
+                break;
+            case CompiledExpression.OP_COS:
+                y = Math.cos(x);
+                break;
+            case CompiledExpression.OP_TAN:
+                y = Math.tan(x);
+                break;
+            case CompiledExpression.OP_LN:
+                y = Math.log(x);
+                break;
+            case CompiledExpression.OP_LOG:
+                y = Math.log10(x);
+                break;
+            case CompiledExpression.OP_EXP:
+                y = Math.exp(x);
+                break;
+            default:
+                throw new IllegalStateException("未知指令: " + op);
+        }
+        setDouble(i, y);
+    }
+
+    /** double 结果按最短十进制表示存入 */
+    private void setDouble(int i, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) throw new ArithmeticException("无效输入");
+        setBig(i, BigDecimal.valueOf(value));
+    }
+}
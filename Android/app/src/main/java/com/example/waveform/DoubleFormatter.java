@@ -0,0 +1,343 @@
+package com.example.waveform;
+
+import java.math.BigInteger;
+
+/**
+ * 计算器数字显示：输出能精确还原该 double 的最短十进制数字（Ryu 算法），写入复用的 char[]，不分配对象
+ * 普通写法放得下时照原样输出；放不下时舍入到显示宽度：普通写法保留的有效数字不少于科学计数法时仍用普通写法
+ * （0.30000000000000004 → 0.3），否则用科学计数法（1.5E20、6.6666666667E-6），两种写法都能被表达式解析器读回。
+ * 5 的幂次表（128 位）在类加载时用 BigInteger 生成，约 10KB。非线程安全
+ */
+public final class DoubleFormatter {
+    private static final int MANTISSA_BITS = 52;
+    private static final long MANTISSA_MASK = (1L << MANTISSA_BITS) - 1;
+    private static final int EXPONENT_MASK = 0x7FF;
+    private static final int EXPONENT_BIAS = 1023;
+
+    private static final int POW5_BITCOUNT = 125;
+    private static final int POW5_INV_BITCOUNT = 125;
+    private static final int POW5_TABLE_SIZE = 326;
+    private static final int POW5_INV_TABLE_SIZE = 342;
+    // 5^i 规整到 125 位；2^(bits(5^i) - 1 + 125) / 5^i 向上取整。各拆成高低两个 64 位
+    private static final long[] POW5_HI = new long[POW5_TABLE_SIZE];
+    private static final long[] POW5_LO = new long[POW5_TABLE_SIZE];
+    private static final long[] POW5_INV_HI = new long[POW5_INV_TABLE_SIZE];
+    private static final long[] POW5_INV_LO = new long[POW5_INV_TABLE_SIZE];
+
+    static {
+        BigInteger mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+        BigInteger five = BigInteger.valueOf(5);
+        BigInteger pow = BigInteger.ONE;
+        for (int i = 0; i < POW5_INV_TABLE_SIZE; i++) {
+            int bits = pow.bitLength();
+            if (i < POW5_TABLE_SIZE) {
+                int shift = bits - POW5_BITCOUNT;
+                BigInteger v = shift >= 0 ? pow.shiftRight(shift) : pow.shiftLeft(-shift);
+                POW5_LO[i] = v.and(mask).longValue();
+                POW5_HI[i] = v.shiftRight(64).longValue();
+            }
+            BigInteger inv = BigInteger.ONE.shiftLeft(bits - 1 + POW5_INV_BITCOUNT).divide(pow).add(BigInteger.ONE);
+            POW5_INV_LO[i] = inv.and(mask).longValue();
+            POW5_INV_HI[i] = inv.shiftRight(64).longValue();
+            pow = pow.multiply(five);
+        }
+    }
+
+    private final int maxChars;
+    private final char[] buffer;
+    private final char[] digits = new char[20];
+    // shortest() 得到的数字部分，避免返回对象
+    private long shortestDigits;
+
+    /**
+     * @param maxChars 显示区能容纳的字符数
+     */
+    public DoubleFormatter(int maxChars) {
+        this.maxChars = maxChars;
+        this.buffer = new char[Math.max(32, maxChars + 1)];
+    }
+
+    /** 最近一次 {@link #format(double)} 的结果所在的缓冲区 */
+    public char[] buffer() {
+        return buffer;
+    }
+
+    /** 格式化并追加到 sb，不产生中间字符串 */
+    public StringBuilder appendTo(StringBuilder sb, double value) {
+        return sb.append(buffer, 0, format(value));
+    }
+
+    public String toString(double value) {
+        return new String(buffer, 0, format(value));
+    }
+
+    /**
+     * 格式化到 {@link #buffer()}
+     * @return 字符数
+     */
+    public int format(double value) {
+        if (Double.isNaN(value)) return copy("NaN");
+        if (Double.isInfinite(value)) return copy(value > 0 ? "Infinity" : "-Infinity");
+        long bits = Double.doubleToRawLongBits(value);
+        int ieeeExponent = (int) ((bits >>> MANTISSA_BITS) & EXPONENT_MASK);
+        long ieeeMantissa = bits & MANTISSA_MASK;
+        // ±0 都显示为 0
+        if (ieeeExponent == 0 && ieeeMantissa == 0) return copy("0");
+        boolean negative = bits < 0;
+
+        long output;
+        int exponent;
+        int e2 = ieeeExponent - EXPONENT_BIAS - MANTISSA_BITS;
+        long m2 = ieeeMantissa | (1L << MANTISSA_BITS);
+        if (ieeeExponent != 0 && e2 <= 0 && e2 >= -MANTISSA_BITS && (m2 & ((1L << -e2) - 1)) == 0) {
+            // 小于 2^53 的整数（计算器结果的常见情况）直接得到数字
+            output = m2 >> -e2;
+            exponent = 0;
+            while (output % 10 == 0) {
+                output /= 10;
+                exponent++;
+            }
+        } else {
+            if (ieeeExponent == 0) {
+                // 非规格化数：没有隐含的 1，指数固定
+                e2 = 1 - EXPONENT_BIAS - MANTISSA_BITS;
+                m2 = ieeeMantissa;
+            }
+            exponent = shortest(m2, e2 - 2, ieeeExponent, ieeeMantissa);
+            output = shortestDigits;
+        }
+        return layout(negative, output, exponent);
+    }
+
+    /**
+     * Ryu：在能舍入回原值的区间 [vm, vp] 内取位数最少、离原值最近的十进制数
+     * @param e2 已减去 2（区间端点按 4·m2 计算）
+     * @return 十进制指数；数字写入 shortestDigits
+     */
+    private int shortest(long m2, int e2, int ieeeExponent, long ieeeMantissa) {
+        boolean acceptBounds = (m2 & 1) == 0;
+        long mv = 4 * m2;
+        int mmShift = ieeeMantissa != 0 || ieeeExponent <= 1 ? 1 : 0;
+        long vr;
+        long vp;
+        long vm;
+        int e10;
+        boolean vmIsTrailingZeros = false;
+        boolean vrIsTrailingZeros = false;
+        if (e2 >= 0) {
+            int q = log10Pow2(e2) - (e2 > 3 ? 1 : 0);
+            e10 = q;
+            int k = POW5_INV_BITCOUNT + pow5bits(q) - 1;
+            int i = -e2 + q + k;
+            vr = mulShift(mv, POW5_INV_HI[q], POW5_INV_LO[q], i);
+            vp = mulShift(mv + 2, POW5_INV_HI[q], POW5_INV_LO[q], i);
+            vm = mulShift(mv - 1 - mmShift, POW5_INV_HI[q], POW5_INV_LO[q], i);
+            if (q <= 21) {
+                if (mv % 5 == 0) {
+                    vrIsTrailingZeros = multipleOfPowerOf5(mv, q);
+                } else if (acceptBounds) {
+                    vmIsTrailingZeros = multipleOfPowerOf5(mv - 1 - mmShift, q);
+                } else if (multipleOfPowerOf5(mv + 2, q)) {
+                    vp--;
+                }
+            }
+        } else {
+            int q = log10Pow5(-e2) - (-e2 > 1 ? 1 : 0);
+            e10 = q + e2;
+            int i = -e2 - q;
+            int k = pow5bits(i) - POW5_BITCOUNT;
+            int j = q - k;
+            vr = mulShift(mv, POW5_HI[i], POW5_LO[i], j);
+            vp = mulShift(mv + 2, POW5_HI[i], POW5_LO[i], j);
+            vm = mulShift(mv - 1 - mmShift, POW5_HI[i], POW5_LO[i], j);
+            if (q <= 1) {
+                vrIsTrailingZeros = true;
+                if (acceptBounds) {
+                    vmIsTrailingZeros = mmShift == 1;
+                } else {
+                    vp--;
+                }
+            } else if (q < 63) {
+                vrIsTrailingZeros = (mv & ((1L << q) - 1)) == 0;
+            }
+        }
+
+        int removed = 0;
+        int lastRemovedDigit = 0;
+        long output;
+        if (vmIsTrailingZeros || vrIsTrailingZeros) {
+            // 少见的精确边界情况
+            while (vp / 10 > vm / 10) {
+                vmIsTrailingZeros &= vm % 10 == 0;
+                vrIsTrailingZeros &= lastRemovedDigit == 0;
+                lastRemovedDigit = (int) (vr % 10);
+                vr /= 10;
+                vp /= 10;
+                vm /= 10;
+                removed++;
+            }
+            if (vmIsTrailingZeros) {
+                while (vm % 10 == 0) {
+                    vrIsTrailingZeros &= lastRemovedDigit == 0;
+                    lastRemovedDigit = (int) (vr % 10);
+                    vr /= 10;
+                    vp /= 10;
+                    vm /= 10;
+                    removed++;
+                }
+            }
+            // 恰好是 ...50...0 时向偶数舍入
+            if (vrIsTrailingZeros && lastRemovedDigit == 5 && vr % 2 == 0) lastRemovedDigit = 4;
+            output = vr + ((vr == vm && (!acceptBounds || !vmIsTrailingZeros)) || lastRemovedDigit >= 5 ? 1 : 0);
+        } else {
+            boolean roundUp = false;
+            while (vp / 10 > vm / 10) {
+                roundUp = vr % 10 >= 5;
+                vr /= 10;
+                vp /= 10;
+                vm /= 10;
+                removed++;
+            }
+            output = vr + (vr == vm || roundUp ? 1 : 0);
+        }
+        shortestDigits = output;
+        return e10 + removed;
+    }
+
+    /** 数字 output × 10^exponent 排版到 buffer，放不下时舍入到 maxChars 以内 */
+    private int layout(boolean negative, long output, int exponent) {
+        int sign = negative ? 1 : 0;
+        while (true) {
+            int length = 0;
+            for (long v = output; v > 0; v /= 10) digits[length++] = (char) ('0' + v % 10);
+            // digits 为逆序；sciExponent 为首位数字的十进制指数
+            int sciExponent = exponent + length - 1;
+            int plainLength;
+            if (sciExponent >= 0) {
+                plainLength = sign + (length <= sciExponent + 1 ? sciExponent + 1 : length + 1);
+            } else {
+                plainLength = sign + 1 + -sciExponent + length;
+            }
+            if (plainLength <= maxChars) return writePlain(negative, length, sciExponent);
+
+            // 两种写法在 maxChars 内最多能显示的有效数字
+            int plainDigits;
+            if (sciExponent >= 0) {
+                int integerChars = sign + sciExponent + 1;
+                plainDigits = integerChars > maxChars ? 0
+                        : sciExponent + 1 + Math.max(0, maxChars - integerChars - 1);
+            } else {
+                plainDigits = Math.max(0, maxChars - sign - 1 + sciExponent);
+            }
+            int absExponent = Math.abs(sciExponent);
+            int sciDigits = Math.max(1, maxChars - sign - 2 - (sciExponent < 0 ? 1 : 0)
+                    - (absExponent >= 100 ? 3 : absExponent >= 10 ? 2 : 1));
+            boolean plain = plainDigits > 0 && plainDigits >= Math.min(length, sciDigits);
+            int keep = plain ? plainDigits : sciDigits;
+            if (keep >= length) return writeScientific(negative, length, sciExponent);
+
+            // 四舍五入到 keep 位后重新排版（进位可能改变指数和所选写法）
+            long divisor = 1;
+            for (int i = keep; i < length; i++) divisor *= 10;
+            long remainder = output % divisor;
+            output = output / divisor + (remainder * 2 >= divisor ? 1 : 0);
+            exponent += length - keep;
+            while (output % 10 == 0) {
+                output /= 10;
+                exponent++;
+            }
+        }
+    }
+
+    private int writePlain(boolean negative, int length, int sciExponent) {
+        char[] out = buffer;
+        int pos = 0;
+        if (negative) out[pos++] = '-';
+        if (sciExponent < 0) {
+            out[pos++] = '0';
+            out[pos++] = '.';
+            for (int z = -1; z > sciExponent; z--) out[pos++] = '0';
+            for (int d = length - 1; d >= 0; d--) out[pos++] = digits[d];
+        } else {
+            for (int d = length - 1, p = 0; d >= 0; d--, p++) {
+                if (p == sciExponent + 1) out[pos++] = '.';
+                out[pos++] = digits[d];
+            }
+            for (int p = length; p <= sciExponent; p++) out[pos++] = '0';
+        }
+        return pos;
+    }
+
+    private int writeScientific(boolean negative, int length, int sciExponent) {
+        char[] out = buffer;
+        int pos = 0;
+        if (negative) out[pos++] = '-';
+        out[pos++] = digits[length - 1];
+        if (length > 1) {
+            out[pos++] = '.';
+            for (int d = length - 2; d >= 0; d--) out[pos++] = digits[d];
+        }
+        out[pos++] = 'E';
+        if (sciExponent < 0) out[pos++] = '-';
+        int absExponent = Math.abs(sciExponent);
+        if (absExponent >= 100) out[pos++] = (char) ('0' + absExponent / 100);
+        if (absExponent >= 10) out[pos++] = (char) ('0' + absExponent / 10 % 10);
+        out[pos++] = (char) ('0' + absExponent % 10);
+        return pos;
+    }
+
+    private int copy(String s) {
+        s.getChars(0, s.length(), buffer, 0);
+        return s.length();
+    }
+
+    /** (m × (hi·2^64 + lo)) >> j，j ≥ 64 */
+    private static long mulShift(long m, long hi, long lo, int j) {
+        long low1 = m * hi;
+        long high1 = multiplyHighUnsigned(m, hi);
+        long high0 = multiplyHighUnsigned(m, lo);
+        long sum = high0 + low1;
+        // 无符号比较判断进位
+        if (sum + Long.MIN_VALUE < high0 + Long.MIN_VALUE) high1++;
+        int dist = j - 64;
+        return (high1 << (64 - dist)) | (sum >>> dist);
+    }
+
+    /** 无符号 64 × 64 位乘积的高 64 位 */
+    private static long multiplyHighUnsigned(long a, long b) {
+        long aLo = a & 0xFFFFFFFFL;
+        long aHi = a >>> 32;
+        long bLo = b & 0xFFFFFFFFL;
+        long bHi = b >>> 32;
+        long loLo = aLo * bLo;
+        long hiLo = aHi * bLo;
+        long loHi = aLo * bHi;
+        long hiHi = aHi * bHi;
+        long cross = (loLo >>> 32) + (hiLo & 0xFFFFFFFFL) + loHi;
+        return hiHi + (hiLo >>> 32) + (cross >>> 32);
+    }
+
+    /** ceil(log2(5^e))，e = 0 时为 1 */
+    private static int pow5bits(int e) {
+        return ((e * 1217359) >>> 19) + 1;
+    }
+
+    /** floor(log10(2^e)) */
+    private static int log10Pow2(int e) {
+        return (e * 78913) >>> 18;
+    }
+
+    /** floor(log10(5^e)) */
+    private static int log10Pow5(int e) {
+        return (e * 732923) >>> 20;
+    }
+
+    private static boolean multipleOfPowerOf5(long value, int p) {
+        int count = 0;
+        while (value > 0 && value % 5 == 0) {
+            value /= 5;
+            count++;
+        }
+        return count >= p;
+    }
+}
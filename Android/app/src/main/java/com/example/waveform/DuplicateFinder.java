@@ -0,0 +1,110 @@
+package com.example.waveform;
+
+import android.content.Context;
+import android.util.Log;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 重复录音检测：维护保存在应用私有目录中的指纹索引
+ * 新录音在保存时加入索引，历史录音在扫描时补算；所有方法在后台线程调用
+ */
+public class DuplicateFinder {
+    private static final String TAG = "DuplicateFinder";
+    private static final String INDEX_FILE = "fingerprints.idx";
+
+    private static DuplicateFinder instance;
+
+    public static synchronized DuplicateFinder getInstance(Context context) {
+        if (instance == null) {
+            instance = new DuplicateFinder(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private final File indexFile;
+    private FingerprintIndex index;
+
+    private DuplicateFinder(Context context) {
+        indexFile = new File(context.getFilesDir(), INDEX_FILE);
+    }
+
+    private FingerprintIndex index() {
+        if (index == null) index = FingerprintIndex.load(indexFile);
+        return index;
+    }
+
+    /** 录音保存后加入索引（指纹在录音时已算好） */
+    public synchronized void addRecording(String path, AudioFingerprinter.Fingerprint fingerprint) {
+        index().add(path, fingerprint);
+        try {
+            index.save(indexFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 同步索引与目录（移除已删除的文件、补算未收录的文件），然后找出重复分组
+     */
+    public synchronized List<List<FingerprintIndex.Match>> scan(File dir) {
+        FingerprintIndex idx = index();
+        long start = System.nanoTime();
+        boolean changed = idx.removeMissingFiles() > 0;
+        int backfilled = 0;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                if (!EncryptedRecording.isRecordingName(f.getName()) || f.length() == 0) continue;
+                if (idx.indexOf(f.getAbsolutePath()) >= 0) continue;
+                try {
+                    idx.add(f.getAbsolutePath(), compute(f));
+                    backfilled++;
+                    changed = true;
+                } catch (IOException e) {
+                    Log.w(TAG, "Fingerprint failed: " + f, e);
+                }
+            }
+        }
+        long indexed = System.nanoTime();
+        List<List<FingerprintIndex.Match>> groups = idx.findDuplicateGroups();
+        Log.d(TAG, String.format(Locale.US, "%d recordings (%d backfilled) in %d ms, %d duplicate groups in %d ms",
+                idx.size(), backfilled, (indexed - start) / 1000000, groups.size(),
+                (System.nanoTime() - indexed) / 1000000));
+        if (changed) {
+            try {
+                idx.save(indexFile);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return groups;
+    }
+
+    /** 从 WAV 文件计算指纹，多声道先混为单声道 */
+    public static AudioFingerprinter.Fingerprint compute(File wav) throws IOException {
+        try (WavReader reader = new WavReader(wav)) {
+            int channels = reader.getChannels();
+            AudioFingerprinter fingerprinter = new AudioFingerprinter(reader.getSampleRate());
+            short[] buf = new short[4096 * channels];
+            short[] mono = new short[4096];
+            int frames;
+            // 指纹只取前 MAX_HASHES 个哈希，取满即可停止读取
+            while (!fingerprinter.isFull() && (frames = reader.read(buf, 0, 4096)) > 0) {
+                if (channels == 1) {
+                    fingerprinter.write(buf, 0, frames);
+                    continue;
+                }
+                for (int i = 0; i < frames; i++) {
+                    int sum = 0;
+                    for (int ch = 0; ch < channels; ch++) sum += buf[i * channels + ch];
+                    mono[i] = (short) (sum / channels);
+                }
+                fingerprinter.write(mono, 0, frames);
+            }
+            return fingerprinter.getFingerprint();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.waveform;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 加密录音容器：128 字节明文头 + 用 AES-CTR 加密的完整 WAV
+ * 头部：magic "EWAV" | 版本 | nonce(8) | 被包装的文件密钥长度 | 被包装的文件密钥
+ * 每个文件使用随机的 256 位文件密钥，由 KeyWrapper（Android 上为 Keystore 中的主密钥）包装后存放。
+ * 计数器按文件偏移寻址，任意区间可以独立解密，播放、跳转和波形提取都无需解密整个文件。
+ * 录音线程直接写入容器：先写头部，PCM 在写线程上加密落盘，结束时补写加密的 WAV 头和书签块
+ */
+public final class EncryptedRecording {
+    /** 容器头长度，明文 WAV 的第 0 字节位于文件的此偏移 */
+    public static final int HEADER_SIZE = 128;
+    /** 录音时 PCM 数据在容器文件中的起始偏移 */
+    public static final int PCM_OFFSET = HEADER_SIZE + WavFile.HEADER_SIZE;
+    /** 加密录音的扩展名，与明文 .wav 区分，其他应用不会把容器当作 WAV 打开 */
+    public static final String EXTENSION = ".ewav";
+    private static final int MAGIC = 0x45574156; // "EWAV"
+    private static final int VERSION = 1;
+    // magic(4) + version(4) + nonce(8) + 长度(2)
+    private static final int FIXED_BYTES = 18;
+
+    /** 文件密钥的包装与解包 */
+    public interface KeyWrapper {
+        byte[] wrap(byte[] key) throws IOException;
+
+        byte[] unwrap(byte[] wrapped) throws IOException;
+    }
+
+    private static volatile KeyWrapper keyWrapper;
+    private static final SecureRandom random = new SecureRandom();
+
+    private EncryptedRecording() {}
+
+    /** 设置全局密钥包装器，进程启动时调用一次 */
+    public static void setKeyWrapper(KeyWrapper wrapper) {
+        keyWrapper = wrapper;
+    }
+
+    /** 是否可以创建加密录音 */
+    public static boolean isAvailable() {
+        return keyWrapper != null;
+    }
+
+    /** 录音目录中的录音文件：明文 .wav 或加密容器 */
+    public static boolean isRecordingName(String name) {
+        return name.endsWith(".wav") || name.endsWith(EXTENSION);
+    }
+
+    /** 根据文件头判断是否为加密容器 */
+    public static boolean isEncrypted(File file) {
+        if (file.length() < HEADER_SIZE) return false;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return raf.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 新建容器并写入头部
+     * @return 按文件偏移加密的密码器，调用方从 {@link #PCM_OFFSET} 起写入加密后的 PCM
+     */
+    public static AesCtr create(File file) throws IOException {
+        KeyWrapper wrapper = keyWrapper;
+        if (wrapper == null) throw new IOException("录音密钥不可用");
+        byte[] key = new byte[AesCtr.KEY_BYTES];
+        byte[] nonce = new byte[AesCtr.NONCE_BYTES];
+        random.nextBytes(key);
+        random.nextBytes(nonce);
+        try {
+            byte[] wrapped = wrapper.wrap(key);
+            if (wrapped.length > HEADER_SIZE - FIXED_BYTES) throw new IOException("包装后的密钥过长");
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).put(nonce).putShort((short) wrapped.length).put(wrapped);
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                out.write(header.array());
+            }
+            return new AesCtr(key, nonce);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("初始化加密失败", e);
+        } finally {
+            Arrays.fill(key, (byte) 0);
+        }
+    }
+
+    /**
+     * 录音结束：写入加密的 WAV 头，并在 PCM 之后追加加密的书签块
+     * @param pcmBytes 已写入的 PCM 字节数
+     */
+    public static void finish(File file, AesCtr cipher, long pcmBytes, int sampleRate, int channels,
+                              List<WavFile.CuePoint> cues) throws IOException {
+        byte[] cueChunks = WavFile.buildCueChunks(cues);
+        int pad = cueChunks.length > 0 ? (int) (pcmBytes & 1) : 0;
+        ByteArrayOutputStream header = new ByteArrayOutputStream(WavFile.HEADER_SIZE);
+        WavFile.writeHeader(header, pcmBytes, sampleRate, channels, pad + cueChunks.length);
+        byte[] headerBytes = header.toByteArray();
+        byte[] tail = new byte[pad + cueChunks.length];
+        System.arraycopy(cueChunks, 0, tail, pad, cueChunks.length);
+
+        long tailOffset = PCM_OFFSET + pcmBytes;
+        cipher.apply(HEADER_SIZE, headerBytes, 0, headerBytes.length);
+        cipher.apply(tailOffset, tail, 0, tail.length);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(HEADER_SIZE);
+            raf.write(headerBytes);
+            raf.setLength(tailOffset);
+            raf.seek(tailOffset);
+            raf.write(tail);
+        }
+    }
+
+    /**
+     * 打开录音：加密容器返回解密视图，否则直接读取文件
+     */
+    public static SeekableSource open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            if (raf.length() < HEADER_SIZE || raf.readInt() != MAGIC) return new FileSource(raf);
+            if (raf.readInt() != VERSION) throw new IOException("不支持的加密录音版本");
+            byte[] nonce = new byte[AesCtr.NONCE_BYTES];
+            raf.readFully(nonce);
+            int wrappedLength = raf.readUnsignedShort();
+            if (wrappedLength > HEADER_SIZE - FIXED_BYTES) throw new IOException("加密录音头部损坏");
+            byte[] wrapped = new byte[wrappedLength];
+            raf.readFully(wrapped);
+            KeyWrapper wrapper = keyWrapper;
+            if (wrapper == null) throw new IOException("录音密钥不可用，无法解密");
+            byte[] key = wrapper.unwrap(wrapped);
+            try {
+                return new DecryptingSource(raf, new AesCtr(key, nonce));
+            } finally {
+                Arrays.fill(key, (byte) 0);
+            }
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            raf.close();
+            if (e instanceof IOException) throw (IOException) e;
+            throw new IOException("打开加密录音失败", e);
+        }
+    }
+
+    /** 加密容器的明文视图；同一文件的读取共用一个密码器，读取方法加锁 */
+    private static final class DecryptingSource implements SeekableSource {
+        private final RandomAccessFile raf;
+        private final FileChannel channel;
+        private final AesCtr cipher;
+
+        DecryptingSource(RandomAccessFile raf, AesCtr cipher) {
+            this.raf = raf;
+            this.channel = raf.getChannel();
+            this.cipher = cipher;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return Math.max(0, channel.size() - HEADER_SIZE);
+        }
+
+        @Override
+        public synchronized int read(ByteBuffer dst, long position) throws IOException {
+            int start = dst.position();
+            int n = channel.read(dst, HEADER_SIZE + position);
+            if (n > 0) {
+                ByteBuffer region = dst.duplicate();
+                region.position(start);
+                region.limit(start + n);
+                cipher.apply(HEADER_SIZE + position, region);
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            raf.close();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.waveform;
+
+import java.text.ParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按表达式字符串缓存编译结果（LRU），重复求值同一表达式时跳过词法和语法分析
+ * 缓存的 CompiledExpression 共用求值栈，只在单个线程（UI 线程）上使用
+ */
+public class ExpressionCache {
+    private final int capacity;
+    private final LinkedHashMap<String, CompiledExpression> entries;
+    private long hits;
+    private long misses;
+
+    public ExpressionCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<String, CompiledExpression>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledExpression> eldest) {
+                return size() > ExpressionCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * 取出已编译的表达式，未命中时编译并缓存；语法错误不缓存
+     */
+    public CompiledExpression compile(String expression) throws ParseException {
+        CompiledExpression compiled = entries.get(expression);
+        if (compiled != null) {
+            hits++;
+            return compiled;
+        }
+        misses++;
+        compiled = ExpressionCompiler.compile(expression);
+        entries.put(expression, compiled);
+        return compiled;
+    }
+
+    /** 放入已编译的表达式（如从历史记录读回的），之后对同一字符串求值不再解析 */
+    public void put(CompiledExpression compiled) {
+        entries.put(compiled.getSource(), compiled);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits;
+    }
+
+    public long getMissCount() {
+        return misses;
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+}
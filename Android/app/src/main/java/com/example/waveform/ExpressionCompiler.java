@@ -0,0 +1,477 @@
+package com.example.waveform;
+
+import java.math.BigDecimal;
+import java.text.ParseException;
+import java.util.Arrays;
+
+/**
+ * 把计算器表达式编译为 {@link CompiledExpression}（调度场算法，一遍扫描直接输出后缀指令）
+ * 支持：
+ * - 数字（可带指数，如 1.5e3）、常量 π / pi / e、变量 x（表格模式）
+ * - 二元 + - × ÷ * / ^（^ 右结合），一元负号（-2^2 = -4）
+ * - 后缀 %：紧跟在 + 或 - 的右操作数之后时取左操作数的百分比（200 + 10% = 220），否则除以 100
+ * - 括号、函数 sqrt √ sin cos tan ln log abs exp（三角函数用弧度）
+ * - 省略乘号：2π、3(4+5)、(1+2)(3+4)、2√9、3x
+ */
+public final class ExpressionCompiler {
+    // 运算符栈中的左括号
+    private static final int MARK_PAREN = -1;
+
+    private static final int PREC_ADD = 1;
+    private static final int PREC_MUL = 2;
+    private static final int PREC_UNARY = 3;
+    private static final int PREC_POW = 4;
+
+    private static final String[] FUNCTION_NAMES = {"sqrt", "sin", "cos", "tan", "ln", "log", "abs", "exp"};
+    private static final int[] FUNCTION_OPS = {
+            CompiledExpression.OP_SQRT, CompiledExpression.OP_SIN, CompiledExpression.OP_COS,
+            CompiledExpression.OP_TAN, CompiledExpression.OP_LN, CompiledExpression.OP_LOG,
+            CompiledExpression.OP_ABS, CompiledExpression.OP_EXP};
+    // 34 位有效数字，与 MathContext.DECIMAL128 一致
+    private static final BigDecimal PI = new BigDecimal("3.141592653589793238462643383279503");
+    private static final BigDecimal E = new BigDecimal("2.718281828459045235360287471352662");
+
+    private String source;
+    // 已扫描到的位置；下一个记号前是否应出现运算数
+    private int position;
+    private boolean expectOperand;
+    int[] code = new int[32];
+    int codeLength;
+    // 常量表：能放进 long 的存为 unscaled × 10^-scale，其余（scale 为 -1）存 BigDecimal
+    long[] unscaled = new long[8];
+    int[] scales = new int[8];
+    BigDecimal[] decimals = new BigDecimal[8];
+    int constantCount;
+    // 已输出指令执行后的栈深度
+    int depth;
+    int maxDepth;
+    // 运算符栈：指令（或 MARK_PAREN）与对应的位置，函数作为前缀运算符压栈
+    private int[] ops = new int[16];
+    private int[] opPositions = new int[16];
+    private int opCount;
+
+    // 检查点：每个记号之后的扫描状态。指令和常量只会追加，回退时截断即可；运算符栈整份复制到 savedOps
+    private int checkpointCount;
+    private int[] cpPosition = new int[16];
+    private int[] cpCodeLength = new int[16];
+    private int[] cpConstantCount = new int[16];
+    private int[] cpDepth = new int[16];
+    private int[] cpMaxDepth = new int[16];
+    private boolean[] cpExpectOperand = new boolean[16];
+    private int[] cpOpOffset = new int[16];
+    private int[] cpOpCount = new int[16];
+    private int[] savedOps = new int[32];
+    private int[] savedOpPositions = new int[32];
+    private int savedOpLength;
+
+    ExpressionCompiler() {
+    }
+
+    /**
+     * @throws ParseException 语法错误，getErrorOffset() 为出错字符的位置
+     */
+    public static CompiledExpression compile(String expression) throws ParseException {
+        ExpressionCompiler compiler = new ExpressionCompiler();
+        compiler.start(expression);
+        while (compiler.nextToken()) {
+            // 逐个记号扫描到末尾
+        }
+        return compiler.finish();
+    }
+
+    /** 从头开始编译 source，清空检查点 */
+    void start(String source) {
+        this.source = source;
+        position = 0;
+        expectOperand = true;
+        codeLength = 0;
+        constantCount = 0;
+        depth = 0;
+        maxDepth = 0;
+        opCount = 0;
+        checkpointCount = 0;
+        savedOpLength = 0;
+    }
+
+    /**
+     * 换成新的输入继续扫描：调用方保证当前位置之前（及其后几个字符）与旧输入相同
+     */
+    void resume(String source) {
+        this.source = source;
+    }
+
+    /**
+     * 扫描一个记号，输出已能确定的指令
+     * @return 已到末尾时返回 false
+     */
+    boolean nextToken() throws ParseException {
+        final String s = source;
+        final int n = s.length();
+        int i = position;
+        while (i < n && s.charAt(i) == ' ') i++;
+        if (i >= n) {
+            position = i;
+            return false;
+        }
+        char c = s.charAt(i);
+        if (isDigit(c) || c == '.') {
+            if (!expectOperand) pushBinary(CompiledExpression.OP_MUL, i);
+            i = number(i);
+            expectOperand = false;
+        } else if (c == 'π' || isLetter(c) || c == '√') {
+            if (!expectOperand) pushBinary(CompiledExpression.OP_MUL, i);
+            if (c == 'π') {
+                constant(PI);
+                i++;
+                expectOperand = false;
+            } else if (c == '√') {
+                pushOp(CompiledExpression.OP_SQRT, i);
+                i++;
+                expectOperand = true;
+            } else {
+                int start = i;
+                while (i < n && isLetter(s.charAt(i))) i++;
+                String name = s.substring(start, i);
+                if (name.equals("pi")) {
+                    constant(PI);
+                    expectOperand = false;
+                } else if (name.equals("e")) {
+                    constant(E);
+                    expectOperand = false;
+                } else if (name.equals("x")) {
+                    emitOperand(CompiledExpression.OP_VAR);
+                    expectOperand = false;
+                } else {
+                    int f = Arrays.asList(FUNCTION_NAMES).indexOf(name);
+                    if (f < 0) throw new ParseException("未知函数: " + name, start);
+                    pushOp(FUNCTION_OPS[f], start);
+                    expectOperand = true;
+                }
+            }
+        } else if (c == '(') {
+            if (!expectOperand) pushBinary(CompiledExpression.OP_MUL, i);
+            pushOp(MARK_PAREN, i);
+            i++;
+            expectOperand = true;
+        } else if (c == ')') {
+            if (expectOperand) throw new ParseException("缺少运算数", i);
+            while (opCount > 0 && ops[opCount - 1] != MARK_PAREN) emitOp();
+            if (opCount == 0) throw new ParseException("多余的右括号", i);
+            opCount--;
+            // 括号前的函数作用于整个括号：sin(x)^2 = (sin x)^2；负号不在此结算，-(2)^2 = -4
+            if (opCount > 0 && ops[opCount - 1] >= CompiledExpression.OP_SQRT) emitOp();
+            i++;
+        } else if (c == '%') {
+            if (expectOperand) throw new ParseException("缺少运算数", i);
+            int top = opCount > 0 ? ops[opCount - 1] : MARK_PAREN;
+            boolean relative = top == CompiledExpression.OP_ADD || top == CompiledExpression.OP_SUB;
+            emit(relative ? CompiledExpression.OP_PERCENT_OF : CompiledExpression.OP_PERCENT);
+            i++;
+        } else {
+            int op = binaryOp(c);
+            if (op < 0) throw new ParseException("无法识别的字符: " + c, i);
+            if (expectOperand) {
+                if (op == CompiledExpression.OP_SUB) pushOp(CompiledExpression.OP_NEG, i);
+                else if (c != '+') throw new ParseException("缺少运算数", i);
+            } else {
+                pushBinary(op, i);
+                expectOperand = true;
+            }
+            i++;
+        }
+        position = i;
+        return true;
+    }
+
+    /** 扫描结束后输出剩余的运算符 */
+    CompiledExpression finish() throws ParseException {
+        if (expectOperand) throw new ParseException("缺少运算数", source.length());
+        while (opCount > 0) {
+            if (ops[opCount - 1] == MARK_PAREN) throw new ParseException("缺少右括号", opPositions[opCount - 1]);
+            emitOp();
+        }
+        return new CompiledExpression(source, code, codeLength, Arrays.copyOf(unscaled, constantCount),
+                Arrays.copyOf(scales, constantCount), Arrays.copyOf(decimals, constantCount), maxDepth);
+    }
+
+    /**
+     * 按输入到一半的表达式收尾（用于实时预览）：丢掉末尾缺少右操作数的运算符，补齐右括号。
+     * "2 + 3 ×" 按 2 + 3，"2 × (3 + 4" 按 2 × (3 + 4)。会改动运算符栈，之后须先回退到检查点
+     * @return 没有任何运算数时返回 false
+     */
+    boolean finishPartial() {
+        while (expectOperand) {
+            if (opCount == 0) return false;
+            int top = ops[--opCount];
+            if (top >= CompiledExpression.OP_ADD && top <= CompiledExpression.OP_POW) expectOperand = false;
+        }
+        while (opCount > 0) {
+            if (ops[opCount - 1] == MARK_PAREN) opCount--;
+            else emitOp();
+        }
+        return true;
+    }
+
+    int getCheckpointCount() {
+        return checkpointCount;
+    }
+
+    int getCheckpointPosition(int index) {
+        return cpPosition[index];
+    }
+
+    /** 记录当前状态，返回检查点下标 */
+    int checkpoint() {
+        if (checkpointCount == cpPosition.length) {
+            int size = checkpointCount * 2;
+            cpPosition = Arrays.copyOf(cpPosition, size);
+            cpCodeLength = Arrays.copyOf(cpCodeLength, size);
+            cpConstantCount = Arrays.copyOf(cpConstantCount, size);
+            cpDepth = Arrays.copyOf(cpDepth, size);
+            cpMaxDepth = Arrays.copyOf(cpMaxDepth, size);
+            cpExpectOperand = Arrays.copyOf(cpExpectOperand, size);
+            cpOpOffset = Arrays.copyOf(cpOpOffset, size);
+            cpOpCount = Arrays.copyOf(cpOpCount, size);
+        }
+        if (savedOpLength + opCount > savedOps.length) {
+            int size = Math.max(savedOps.length * 2, savedOpLength + opCount);
+            savedOps = Arrays.copyOf(savedOps, size);
+            savedOpPositions = Arrays.copyOf(savedOpPositions, size);
+        }
+        int k = checkpointCount++;
+        cpPosition[k] = position;
+        cpCodeLength[k] = codeLength;
+        cpConstantCount[k] = constantCount;
+        cpDepth[k] = depth;
+        cpMaxDepth[k] = maxDepth;
+        cpExpectOperand[k] = expectOperand;
+        cpOpOffset[k] = savedOpLength;
+        cpOpCount[k] = opCount;
+        System.arraycopy(ops, 0, savedOps, savedOpLength, opCount);
+        System.arraycopy(opPositions, 0, savedOpPositions, savedOpLength, opCount);
+        savedOpLength += opCount;
+        return k;
+    }
+
+    /** 回到检查点 index 时的状态，丢弃其后的检查点 */
+    void rewind(int index) {
+        position = cpPosition[index];
+        codeLength = cpCodeLength[index];
+        constantCount = cpConstantCount[index];
+        depth = cpDepth[index];
+        maxDepth = cpMaxDepth[index];
+        expectOperand = cpExpectOperand[index];
+        opCount = cpOpCount[index];
+        if (opCount > ops.length) {
+            ops = new int[opCount];
+            opPositions = new int[opCount];
+        }
+        System.arraycopy(savedOps, cpOpOffset[index], ops, 0, opCount);
+        System.arraycopy(savedOpPositions, cpOpOffset[index], opPositions, 0, opCount);
+        savedOpLength = cpOpOffset[index] + opCount;
+        checkpointCount = index + 1;
+    }
+
+    /**
+     * 逐位累加为 unscaled × 10^-scale，不截取子串也不调用 parseDouble；
+     * 超过 18 位有效数字、小数位过多或带指数时才按 BigDecimal 解析
+     */
+    private int number(int start) throws ParseException {
+        final String s = source;
+        final int n = s.length();
+        long value = 0;
+        int significant = 0;
+        int scale = 0;
+        boolean point = false;
+        boolean hasDigit = false;
+        boolean valid = true;
+        boolean exact = true;
+        int i = start;
+        for (; i < n; i++) {
+            char c = s.charAt(i);
+            if (isDigit(c)) {
+                hasDigit = true;
+                // 18 位以内不会溢出
+                if (significant < 18) {
+                    value = value * 10 + (c - '0');
+                    if (value != 0) significant++;
+                    if (point) scale++;
+                } else {
+                    exact = false;
+                }
+            } else if (c == '.') {
+                if (point) valid = false;
+                point = true;
+            } else {
+                break;
+            }
+        }
+        // 指数部分：e 后必须跟（可带符号的）数字，否则 e 作为常量
+        if (i < n && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            int j = i + 1;
+            if (j < n && (s.charAt(j) == '+' || s.charAt(j) == '-')) j++;
+            if (j < n && isDigit(s.charAt(j))) {
+                i = j;
+                while (i < n && isDigit(s.charAt(i))) i++;
+                exact = false;
+            }
+        }
+        if (!valid || !hasDigit) throw new ParseException("无效的数字: " + s.substring(start, i), start);
+        if (exact && scale <= DecimalEvaluator.MAX_SCALE) {
+            constant(value, scale);
+        } else {
+            try {
+                constant(new BigDecimal(s.substring(start, i)));
+            } catch (NumberFormatException e) {
+                throw new ParseException("无效的数字: " + s.substring(start, i), start);
+            }
+        }
+        return i;
+    }
+
+    private static int binaryOp(char c) {
+        switch (c) {
+            case '+':
+                return CompiledExpression.OP_ADD;
+            case '-':
+            case '−':
+                return CompiledExpression.OP_SUB;
+            case '*':
+            case '×':
+                return CompiledExpression.OP_MUL;
+            case '/':
+            case '÷':
+                return CompiledExpression.OP_DIV;
+            case '^':
+                return CompiledExpression.OP_POW;
+            default:
+                return -1;
+        }
+    }
+
+    private static int precedence(int op) {
+        switch (op) {
+            case CompiledExpression.OP_ADD:
+            case CompiledExpression.OP_SUB:
+                return PREC_ADD;
+            case CompiledExpression.OP_MUL:
+            case CompiledExpression.OP_DIV:
+                return PREC_MUL;
+            case CompiledExpression.OP_POW:
+                return PREC_POW;
+            default:
+                return PREC_UNARY;
+        }
+    }
+
+    private static boolean isPrefix(int op) {
+        return op == CompiledExpression.OP_NEG
+                || (op >= CompiledExpression.OP_SQRT && op <= CompiledExpression.OP_EXP);
+    }
+
+    /** 弹出优先级更高（左结合时相等也弹出）的运算符后入栈 */
+    private void pushBinary(int op, int at) {
+        int prec = precedence(op);
+        boolean rightAssoc = op == CompiledExpression.OP_POW;
+        while (opCount > 0) {
+            int top = ops[opCount - 1];
+            if (top == MARK_PAREN) break;
+            int topPrec = precedence(top);
+            if (topPrec > prec || (topPrec == prec && !rightAssoc)) emitOp();
+            else break;
+        }
+        pushOp(op, at);
+    }
+
+    private void pushOp(int op, int at) {
+        if (opCount == ops.length) {
+            ops = Arrays.copyOf(ops, opCount * 2);
+            opPositions = Arrays.copyOf(opPositions, opCount * 2);
+        }
+        ops[opCount] = op;
+        opPositions[opCount] = at;
+        opCount++;
+    }
+
+    private void emitOp() {
+        emit(ops[--opCount]);
+    }
+
+    private void emit(int op) {
+        ensureCode(1);
+        code[codeLength++] = op;
+        if (!isPrefix(op) && op != CompiledExpression.OP_PERCENT && op != CompiledExpression.OP_PERCENT_OF) {
+            depth--;
+        }
+    }
+
+    private void constant(long value, int scale) {
+        while (scale > 0 && value % 10 == 0) {
+            value /= 10;
+            scale--;
+        }
+        int index = -1;
+        for (int k = 0; k < constantCount; k++) {
+            if (scales[k] == scale && unscaled[k] == value) {
+                index = k;
+                break;
+            }
+        }
+        if (index < 0) index = addConstant(value, scale, null);
+        emitConstant(index);
+    }
+
+    private void constant(BigDecimal value) {
+        BigDecimal d = DecimalEvaluator.normalize(value);
+        if (DecimalEvaluator.fitsLong(d)) {
+            constant(d.unscaledValue().longValue(), d.scale());
+            return;
+        }
+        int index = -1;
+        for (int k = 0; k < constantCount; k++) {
+            if (scales[k] < 0 && decimals[k].equals(d)) {
+                index = k;
+                break;
+            }
+        }
+        if (index < 0) index = addConstant(0, -1, d);
+        emitConstant(index);
+    }
+
+    private int addConstant(long value, int scale, BigDecimal decimal) {
+        if (constantCount == scales.length) {
+            unscaled = Arrays.copyOf(unscaled, constantCount * 2);
+            scales = Arrays.copyOf(scales, constantCount * 2);
+            decimals = Arrays.copyOf(decimals, constantCount * 2);
+        }
+        unscaled[constantCount] = value;
+        scales[constantCount] = scale;
+        decimals[constantCount] = decimal;
+        return constantCount++;
+    }
+
+    private void emitConstant(int index) {
+        emitOperand(CompiledExpression.OP_CONST);
+        code[codeLength++] = index;
+    }
+
+    /** 输出压入一个值的指令（常量下标由调用方随后写入，已预留位置） */
+    private void emitOperand(int op) {
+        ensureCode(2);
+        code[codeLength++] = op;
+        depth++;
+        if (depth > maxDepth) maxDepth = depth;
+    }
+
+    private void ensureCode(int extra) {
+        if (codeLength + extra > code.length) code = Arrays.copyOf(code, Math.max(code.length * 2, codeLength + extra));
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+}
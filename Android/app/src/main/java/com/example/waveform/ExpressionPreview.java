@@ -0,0 +1,201 @@
+package com.example.waveform;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.text.ParseException;
+import java.util.Arrays;
+
+/**
+ * 计算器的实时预览：每次按键后计算输入到一半的表达式
+ * 增量进行：编译器在每个记号之后留检查点，这里同时保存当时的求值栈。新输入与上次输入的公共前缀部分
+ * 直接从检查点继续，只扫描、求值末尾改动的几个记号，按键耗时与表达式长度基本无关。
+ * 末尾缺少运算数的运算符不计入，未配对的左括号自动补齐。只在单个线程（UI 线程）上使用
+ */
+public class ExpressionPreview {
+    // 记号在哪里结束取决于其后最多 3 个字符（如数字后的 "e+5"），检查点之后这么多字符也未改动才能复用
+    private static final int LOOKAHEAD = 3;
+
+    private final ExpressionCompiler compiler = new ExpressionCompiler();
+    private final DecimalEvaluator decimalEvaluator;
+    private boolean precise;
+    private String text = "";
+    // double 模式：常量的 double 值（与编译器的常量表同步）和求值栈
+    private double[] constants = new double[8];
+    private int constantCount;
+    private double[] stack = new double[8];
+    // 已执行到的指令位置及此时的栈深度；求值出错（如精确模式下除以零）后不再执行，直到回退到出错之前
+    private int evaluated;
+    private int evaluatedDepth;
+    private boolean valid;
+    // 每个检查点处的求值栈：从 snapshotOffset[k] 起保存 depth 个值
+    private int[] snapshotOffset = new int[16];
+    private boolean[] snapshotValid = new boolean[16];
+    private double[] savedValues = new double[32];
+    private long[] savedUnscaled = new long[32];
+    private int[] savedScales = new int[32];
+    private BigDecimal[] savedDecimals = new BigDecimal[32];
+    private int savedLength;
+    private int reused;
+
+    private boolean trivial;
+    private double value;
+    private BigDecimal decimal;
+
+    public ExpressionPreview(MathContext mathContext) {
+        decimalEvaluator = new DecimalEvaluator(mathContext);
+        reset();
+    }
+
+    /** 精确模式下按十进制求值；切换模式会丢弃已保存的状态 */
+    public void setPrecise(boolean precise) {
+        if (this.precise == precise) return;
+        this.precise = precise;
+        reset();
+    }
+
+    public boolean isPrecise() {
+        return precise;
+    }
+
+    private void reset() {
+        compiler.start("");
+        text = "";
+        constantCount = 0;
+        evaluated = 0;
+        evaluatedDepth = 0;
+        valid = true;
+        savedLength = 0;
+        saveCheckpoint();
+    }
+
+    /**
+     * 计算新的输入
+     * @return 有结果时返回 true；语法错误、除以零等返回 false
+     */
+    public boolean update(String expression) {
+        int common = 0;
+        int n = Math.min(text.length(), expression.length());
+        while (common < n && text.charAt(common) == expression.charAt(common)) common++;
+        int k = compiler.getCheckpointCount() - 1;
+        while (k > 0 && compiler.getCheckpointPosition(k) + LOOKAHEAD > common) k--;
+        rewind(k);
+        reused = compiler.getCheckpointPosition(k);
+        compiler.resume(expression);
+        text = expression;
+        try {
+            while (compiler.nextToken()) {
+                advance();
+                saveCheckpoint();
+            }
+        } catch (ParseException e) {
+            return false;
+        }
+        if (!valid) return false;
+        int end = compiler.codeLength;
+        int sp = compiler.depth;
+        if (!compiler.finishPartial()) return false;
+        // 只有一个数时没有可预览的计算
+        trivial = compiler.codeLength == 2;
+        if (precise) {
+            try {
+                decimalEvaluator.execute(compiler.code, end, compiler.codeLength, compiler.unscaled,
+                        compiler.scales, compiler.decimals, sp);
+                decimal = decimalEvaluator.valueAt(0);
+            } catch (ArithmeticException e) {
+                return false;
+            }
+            return true;
+        }
+        CompiledExpression.execute(compiler.code, end, compiler.codeLength, constants, Double.NaN, stack, sp);
+        value = stack[0];
+        return !Double.isNaN(value) && !Double.isInfinite(value);
+    }
+
+    /** 执行刚扫描的记号输出的指令 */
+    private void advance() {
+        if (!valid) return;
+        int from = evaluated;
+        int sp = evaluatedDepth;
+        evaluated = compiler.codeLength;
+        evaluatedDepth = compiler.depth;
+        if (precise) {
+            decimalEvaluator.ensureCapacity(compiler.maxDepth);
+            try {
+                decimalEvaluator.execute(compiler.code, from, evaluated, compiler.unscaled, compiler.scales,
+                        compiler.decimals, sp);
+            } catch (ArithmeticException e) {
+                valid = false;
+            }
+            return;
+        }
+        if (compiler.constantCount > constants.length) {
+            constants = Arrays.copyOf(constants, Math.max(compiler.constantCount, constants.length * 2));
+        }
+        for (int i = constantCount; i < compiler.constantCount; i++) {
+            constants[i] = compiler.scales[i] >= 0
+                    ? CompiledExpression.toDouble(compiler.unscaled[i], compiler.scales[i])
+                    : compiler.decimals[i].doubleValue();
+        }
+        constantCount = compiler.constantCount;
+        if (compiler.maxDepth > stack.length) {
+            stack = Arrays.copyOf(stack, Math.max(compiler.maxDepth, stack.length * 2));
+        }
+        CompiledExpression.execute(compiler.code, from, evaluated, constants, Double.NaN, stack, sp);
+    }
+
+    private void saveCheckpoint() {
+        int k = compiler.checkpoint();
+        int depth = compiler.depth;
+        if (k == snapshotOffset.length) {
+            snapshotOffset = Arrays.copyOf(snapshotOffset, k * 2);
+            snapshotValid = Arrays.copyOf(snapshotValid, k * 2);
+        }
+        snapshotOffset[k] = savedLength;
+        snapshotValid[k] = valid;
+        if (!valid) return;
+        if (savedLength + depth > savedScales.length) {
+            int size = Math.max(savedScales.length * 2, savedLength + depth);
+            savedValues = Arrays.copyOf(savedValues, size);
+            savedUnscaled = Arrays.copyOf(savedUnscaled, size);
+            savedScales = Arrays.copyOf(savedScales, size);
+            savedDecimals = Arrays.copyOf(savedDecimals, size);
+        }
+        if (precise) decimalEvaluator.save(depth, savedUnscaled, savedScales, savedDecimals, savedLength);
+        else System.arraycopy(stack, 0, savedValues, savedLength, depth);
+        savedLength += depth;
+    }
+
+    private void rewind(int k) {
+        compiler.rewind(k);
+        int depth = compiler.depth;
+        evaluated = compiler.codeLength;
+        evaluatedDepth = depth;
+        constantCount = Math.min(constantCount, compiler.constantCount);
+        valid = snapshotValid[k];
+        savedLength = snapshotOffset[k];
+        if (!valid) return;
+        if (precise) decimalEvaluator.load(depth, savedUnscaled, savedScales, savedDecimals, savedLength);
+        else System.arraycopy(savedValues, savedLength, stack, 0, depth);
+        savedLength += depth;
+    }
+
+    /** 上次 update 直接复用的字符数 */
+    public int getReusedLength() {
+        return reused;
+    }
+
+    /** 表达式只是一个数，没有运算 */
+    public boolean isTrivial() {
+        return trivial;
+    }
+
+    /** double 模式的结果 */
+    public double getValue() {
+        return value;
+    }
+
+    /** 精确模式的结果 */
+    public BigDecimal getDecimal() {
+        return decimal;
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.waveform;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 文件回放音源：读取 WAV 或裸 PCM，多声道时混为单声道
+ * 默认尽快输出（用于基准测试），也可按实时速率节流或循环播放
+ */
+public class FileAudioSource implements AudioSource {
+    private final File file;
+    private final int rawSampleRate;
+    private final int rawChannels;
+    private WavReader reader;
+    private short[] interleaved = new short[0];
+    private boolean realtime;
+    private boolean looping;
+    private long startNanos;
+    private long framesDelivered;
+
+    /** WAV 文件 */
+    public FileAudioSource(File wavFile) {
+        this(wavFile, 0, 0);
+    }
+
+    /** 裸 PCM 文件（16bit 小端） */
+    public FileAudioSource(File pcmFile, int sampleRate, int channels) {
+        this.file = pcmFile;
+        this.rawSampleRate = sampleRate;
+        this.rawChannels = channels;
+    }
+
+    /** 是否按实时速率输出（模拟麦克风） */
+    public void setRealtime(boolean realtime) {
+        this.realtime = realtime;
+    }
+
+    /** 到达文件末尾后从头开始 */
+    public void setLooping(boolean looping) {
+        this.looping = looping;
+    }
+
+    @Override
+    public int getSampleRate() {
+        return reader != null ? reader.getSampleRate() : rawSampleRate;
+    }
+
+    @Override
+    public boolean open() {
+        if (reader != null) return true;
+        try {
+            reader = rawSampleRate > 0 ? WavReader.openRawPcm(file, rawSampleRate, rawChannels) : new WavReader(file);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    @Override
+    public void start() {
+        startNanos = System.nanoTime();
+        framesDelivered = 0;
+    }
+
+    @Override
+    public int read(short[] buffer, int offset, int count) {
+        try {
+            int channels = reader.getChannels();
+            if (interleaved.length < count * channels) interleaved = new short[count * channels];
+            int frames = reader.read(interleaved, 0, count);
+            if (frames == 0 && looping && reader.getFrameCount() > 0) {
+                reader.seekFrame(0);
+                frames = reader.read(interleaved, 0, count);
+            }
+            if (frames == 0) return END_OF_STREAM;
+            if (channels == 1) {
+                System.arraycopy(interleaved, 0, buffer, offset, frames);
+            } else {
+                for (int i = 0; i < frames; i++) {
+                    int sum = 0;
+                    for (int c = 0; c < channels; c++) sum += interleaved[i * channels + c];
+                    buffer[offset + i] = (short) (sum / channels);
+                }
+            }
+            framesDelivered += frames;
+            if (realtime) pace();
+            return frames;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return ERROR_DEAD_OBJECT;
+        }
+    }
+
+    /** 输出超前于实时时睡眠等待 */
+    private void pace() {
+        long dueNanos = startNanos + framesDelivered * 1000000000L / reader.getSampleRate();
+        long aheadMs = (dueNanos - System.nanoTime()) / 1000000;
+        if (aheadMs > 0) {
+            try {
+                Thread.sleep(aheadMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public void release() {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            reader = null;
+        }
+    }
+}
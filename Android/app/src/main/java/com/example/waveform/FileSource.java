@@ -0,0 +1,45 @@
+package com.example.waveform;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 未加密的录音文件，直接定位读取
+ */
+public class FileSource implements SeekableSource {
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+
+    public FileSource(File file) throws IOException {
+        this(new RandomAccessFile(file, "r"));
+    }
+
+    /** 包装已打开的文件，关闭时一并关闭 */
+    public FileSource(RandomAccessFile raf) {
+        this.raf = raf;
+        this.channel = raf.getChannel();
+    }
+
+    /** 底层通道，可用于内存映射 */
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+    @Override
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public int read(ByteBuffer dst, long position) throws IOException {
+        return channel.read(dst, position);
+    }
+
+    @Override
+    public void close() throws IOException {
+        raf.close();
+    }
+}
@@ -0,0 +1,302 @@
+package com.example.waveform;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 指纹倒排索引：哈希 -> (录音号, 锚点帧) 列表，CSR 布局存放在基本类型数组中
+ * 查询只访问命中哈希的倒排表，按 (录音, 时间差) 投票，耗时与索引中录音总数基本无关。
+ * 增删录音后在下一次查询前整体重建 CSR（计数排序，O(n)）。
+ * 非线程安全，由调用方加锁
+ */
+public class FingerprintIndex {
+    private static final int MAGIC = 0x46504958; // "FPIX"
+    private static final int VERSION = 1;
+    private static final int TABLE_SIZE = 1 << AudioFingerprinter.HASH_BITS;
+    // 过长的倒排表（静音、单频噪声等）区分度低，查询时跳过
+    private static final int MAX_POSTINGS = 20000;
+
+    /** 完全相同的内容 */
+    public static final float EXACT_SIMILARITY = 0.9f;
+    /** 近似重复的最低相似度 */
+    public static final float NEAR_SIMILARITY = 0.2f;
+    // 近似重复至少需要的对齐命中数
+    private static final int MIN_VOTES = 12;
+
+    /** 一条匹配结果 */
+    public static final class Match {
+        public final int recording;
+        public final String path;
+        /** 同一时间差上的命中数 */
+        public final int votes;
+        /** votes / 两者中较少的哈希数 */
+        public final float similarity;
+        /** 候选录音相对查询的帧偏移（按 2^16 取模） */
+        public final int offsetFrames;
+
+        Match(int recording, String path, int votes, float similarity, int offsetFrames) {
+            this.recording = recording;
+            this.path = path;
+            this.votes = votes;
+            this.similarity = similarity;
+            this.offsetFrames = offsetFrames;
+        }
+
+        public boolean isExact() {
+            return similarity >= EXACT_SIMILARITY;
+        }
+    }
+
+    private static final AudioFingerprinter.Fingerprint EMPTY =
+            new AudioFingerprinter.Fingerprint(new int[0], new short[0], 0);
+
+    private final List<String> paths = new ArrayList<>();
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<AudioFingerprinter.Fingerprint> fingerprints = new ArrayList<>();
+    private boolean[] removed = new boolean[16];
+    private int removedCount;
+
+    // CSR：bucketStart[h] .. bucketStart[h + 1] 为哈希 h 的倒排表
+    private int[] bucketStart;
+    private int[] postingRecording = new int[0];
+    private short[] postingTime = new short[0];
+    private boolean dirty = true;
+
+    // 查询时的投票缓冲
+    private long[] votes = new long[1024];
+
+    public int size() {
+        return paths.size() - removedCount;
+    }
+
+    /** @return 录音号，未收录时返回 -1 */
+    public int indexOf(String path) {
+        Integer id = ids.get(path);
+        return id != null ? id : -1;
+    }
+
+    public String getPath(int recording) {
+        return paths.get(recording);
+    }
+
+    public boolean isRemoved(int recording) {
+        return removed[recording];
+    }
+
+    /** 收录一个录音，同一路径已存在时先移除旧记录 */
+    public int add(String path, AudioFingerprinter.Fingerprint fingerprint) {
+        int old = indexOf(path);
+        if (old >= 0) remove(old);
+        int id = paths.size();
+        paths.add(path);
+        ids.put(path, id);
+        fingerprints.add(fingerprint);
+        if (id >= removed.length) removed = Arrays.copyOf(removed, removed.length * 2);
+        dirty = true;
+        return id;
+    }
+
+    /** 移除录音；CSR 中的旧条目在查询时跳过，下次重建时清除 */
+    public void remove(int recording) {
+        if (removed[recording]) return;
+        removed[recording] = true;
+        removedCount++;
+        ids.remove(paths.get(recording));
+        fingerprints.set(recording, EMPTY);
+    }
+
+    /**
+     * 移除文件已不存在的录音
+     * @return 移除的数量
+     */
+    public int removeMissingFiles() {
+        int count = 0;
+        for (int r = 0; r < paths.size(); r++) {
+            if (!removed[r] && !new File(paths.get(r)).exists()) {
+                remove(r);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** 按当前收录的录音重建 CSR（计数排序） */
+    public void rebuild() {
+        int n = paths.size();
+        if (bucketStart == null) bucketStart = new int[TABLE_SIZE + 1];
+        else Arrays.fill(bucketStart, 0);
+        int total = 0;
+        for (int r = 0; r < n; r++) {
+            if (removed[r]) continue;
+            AudioFingerprinter.Fingerprint fp = fingerprints.get(r);
+            for (int i = 0; i < fp.count; i++) bucketStart[fp.hashes[i] + 1]++;
+            total += fp.count;
+        }
+        for (int h = 0; h < TABLE_SIZE; h++) bucketStart[h + 1] += bucketStart[h];
+        // 逐条放入后 bucketStart[h] 变为 h 的结束位置，再整体右移一格还原为起始位置
+        postingRecording = new int[total];
+        postingTime = new short[total];
+        for (int r = 0; r < n; r++) {
+            if (removed[r]) continue;
+            AudioFingerprinter.Fingerprint fp = fingerprints.get(r);
+            for (int i = 0; i < fp.count; i++) {
+                int pos = bucketStart[fp.hashes[i]]++;
+                postingRecording[pos] = r;
+                postingTime[pos] = fp.times[i];
+            }
+        }
+        System.arraycopy(bucketStart, 0, bucketStart, 1, TABLE_SIZE);
+        bucketStart[0] = 0;
+        dirty = false;
+    }
+
+    /**
+     * 查找与给定指纹重复或近似重复的录音，按相似度从高到低排序
+     * @param exclude 要排除的录音号（通常是查询录音自身），没有时传 -1
+     */
+    public List<Match> query(AudioFingerprinter.Fingerprint query, int exclude) {
+        if (dirty) rebuild();
+        int voteCount = 0;
+        for (int i = 0; i < query.count; i++) {
+            int h = query.hashes[i];
+            int qt = query.times[i];
+            int start = bucketStart[h], end = bucketStart[h + 1];
+            if (end - start > MAX_POSTINGS) continue;
+            for (int p = start; p < end; p++) {
+                int r = postingRecording[p];
+                if (r == exclude || removed[r]) continue;
+                voteCount = addVote(voteCount, r, postingTime[p] - qt);
+            }
+        }
+        return collectMatches(query, voteCount);
+    }
+
+    private int addVote(int count, int recording, int delta) {
+        if (count == votes.length) votes = Arrays.copyOf(votes, count * 2);
+        votes[count] = ((long) recording << 16) | (delta & 0xFFFF);
+        return count + 1;
+    }
+
+    /** 排序后统计每个 (录音, 时间差) 的票数，每个录音取最高的时间差 */
+    private List<Match> collectMatches(AudioFingerprinter.Fingerprint query, int count) {
+        List<Match> matches = new ArrayList<>();
+        Arrays.sort(votes, 0, count);
+        int i = 0;
+        while (i < count) {
+            int recording = (int) (votes[i] >>> 16);
+            int best = 0;
+            int bestDelta = 0;
+            while (i < count && (int) (votes[i] >>> 16) == recording) {
+                long key = votes[i];
+                int run = 0;
+                while (i < count && votes[i] == key) {
+                    run++;
+                    i++;
+                }
+                if (run > best) {
+                    best = run;
+                    bestDelta = (int) (key & 0xFFFF);
+                }
+            }
+            int smaller = Math.min(query.count, fingerprints.get(recording).count);
+            float similarity = smaller > 0 ? Math.min(1f, best / (float) smaller) : 0;
+            if (best >= MIN_VOTES && similarity >= NEAR_SIMILARITY) {
+                matches.add(new Match(recording, paths.get(recording), best, similarity, bestDelta));
+            }
+        }
+        Collections.sort(matches, (a, b) -> Float.compare(b.similarity, a.similarity));
+        return matches;
+    }
+
+    /**
+     * 把所有收录的录音分组，每组内互为重复或近似重复（只含两个及以上成员的组）
+     */
+    public List<List<Match>> findDuplicateGroups() {
+        int n = paths.size();
+        int[] group = new int[n];
+        Arrays.fill(group, -1);
+        List<List<Match>> groups = new ArrayList<>();
+        for (int r = 0; r < n; r++) {
+            if (removed[r] || group[r] >= 0) continue;
+            List<Match> matches = query(fingerprints.get(r), r);
+            List<Match> members = null;
+            for (Match m : matches) {
+                if (group[m.recording] >= 0) continue;
+                if (members == null) {
+                    members = new ArrayList<>();
+                    members.add(new Match(r, paths.get(r), fingerprints.get(r).count, 1f, 0));
+                    group[r] = groups.size();
+                    groups.add(members);
+                }
+                group[m.recording] = group[r];
+                members.add(m);
+            }
+        }
+        return groups;
+    }
+
+    /** 保存各录音的指纹（CSR 在加载时重建） */
+    public void save(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(size());
+            for (int r = 0; r < paths.size(); r++) {
+                if (removed[r]) continue;
+                AudioFingerprinter.Fingerprint fp = fingerprints.get(r);
+                out.writeUTF(paths.get(r));
+                out.writeInt(fp.count);
+                for (int i = 0; i < fp.count; i++) {
+                    out.writeInt(fp.hashes[i]);
+                    out.writeShort(fp.times[i]);
+                }
+            }
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("保存指纹索引失败: " + file);
+        }
+    }
+
+    /** 读取索引，文件不存在或格式不符时返回空索引 */
+    public static FingerprintIndex load(File file) {
+        FingerprintIndex index = new FingerprintIndex();
+        if (!file.exists()) return index;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return index;
+            int n = in.readInt();
+            for (int r = 0; r < n; r++) {
+                String path = in.readUTF();
+                int count = in.readInt();
+                int[] hashes = new int[count];
+                short[] times = new short[count];
+                for (int i = 0; i < count; i++) {
+                    hashes[i] = in.readInt();
+                    times[i] = in.readShort();
+                }
+                index.ids.put(path, index.paths.size());
+                index.paths.add(path);
+                index.fingerprints.add(new AudioFingerprinter.Fingerprint(hashes, times, count));
+                if (r >= index.removed.length) index.removed = Arrays.copyOf(index.removed, index.removed.length * 2);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new FingerprintIndex();
+        }
+        index.rebuild();
+        return index;
+    }
+}
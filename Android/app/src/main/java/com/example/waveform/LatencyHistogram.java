@@ -0,0 +1,92 @@
+package com.example.waveform;
+
+import java.util.Arrays;
+
+/**
+ * HDR 风格的对数-线性延迟直方图（纳秒）
+ * 每个 2 的幂区间再等分为 32 个子桶，相对误差约 3%；记录不分配对象。
+ * 只允许一个线程记录，其他线程读取到的是近似值
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // 覆盖到 2^40 ns（约 18 分钟）
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long totalCount;
+    private long totalNanos;
+    private long maxNanos;
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts[indexOf(nanos)]++;
+        totalCount++;
+        totalNanos += nanos;
+        if (nanos > maxNanos) maxNanos = nanos;
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+    }
+
+    /** 复制到另一个直方图（用于快照，不影响记录线程） */
+    public void copyInto(LatencyHistogram target) {
+        System.arraycopy(counts, 0, target.counts, 0, BUCKET_COUNT);
+        target.totalCount = totalCount;
+        target.totalNanos = totalNanos;
+        target.maxNanos = maxNanos;
+    }
+
+    public long getCount() {
+        return totalCount;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public long getMeanNanos() {
+        return totalCount == 0 ? 0 : totalNanos / totalCount;
+    }
+
+    /**
+     * @param percentile 0 - 100
+     * @return 该百分位所在桶的上界，最大不超过记录到的最大值
+     */
+    public long getPercentileNanos(double percentile) {
+        long total = 0;
+        for (long c : counts) total += c;
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(percentile / 100.0 * total);
+        if (rank < 1) rank = 1;
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(upperBoundOf(i), maxNanos);
+        }
+        return maxNanos;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) return BUCKET_COUNT - 1;
+        // value 落在 [2^exponent, 2^(exponent+1))，取紧随最高位之后的 5 位作为子桶
+        int shift = exponent - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return (shift + 1) * SUB_BUCKET_COUNT + sub;
+    }
+
+    static long upperBoundOf(int index) {
+        int bucket = index >> SUB_BUCKET_BITS;
+        int sub = index & (SUB_BUCKET_COUNT - 1);
+        if (bucket == 0) return sub;
+        int shift = bucket - 1;
+        return ((long) (SUB_BUCKET_COUNT + sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.waveform;
+
+import java.util.Arrays;
+
+/**
+ * ITU-R BS.1770 / EBU R128 响度测量（流式）
+ * K 加权 -> 400ms 门限块（75% 重叠）-> 绝对门限 -70 LUFS + 相对门限 -10 LU
+ * 门限块的能量放入固定大小的直方图，内存占用与录音时长无关
+ */
+public class LoudnessMeter {
+    public static final double ABSOLUTE_GATE_LUFS = -70.0;
+    private static final double RELATIVE_GATE_LU = -10.0;
+
+    // 直方图：-70 ~ +10 LUFS，0.01 LU 一格
+    private static final double HIST_MIN = ABSOLUTE_GATE_LUFS;
+    private static final double HIST_MAX = 10.0;
+    private static final int HIST_BINS_PER_LU = 100;
+    private static final int HIST_SIZE = (int) ((HIST_MAX - HIST_MIN) * HIST_BINS_PER_LU);
+
+    // 真峰值：4 倍过采样，48 阶多相 FIR
+    private static final int OVERSAMPLE = 4;
+    private static final int TAPS_PER_PHASE = 12;
+    private static final float[][] PHASES = designInterpolator();
+
+    private final int channels;
+    private final int subBlockFrames;
+
+    // K 加权滤波器系数（第一级高架、第二级高通）
+    private final double pb0, pb1, pb2, pa1, pa2;
+    private final double rb0, rb1, rb2, ra1, ra2;
+    // 每声道滤波器状态 [x1, x2, y1, y2, z1, z2]
+    private final double[] filterState;
+
+    // 最近 4 个 100ms 子块的能量和
+    private final double[] subBlocks = new double[4];
+    private int subBlockCount;
+    private double subBlockSum;
+    private int subBlockPos;
+
+    private final long[] histCount = new long[HIST_SIZE];
+    private final double[] histEnergy = new double[HIST_SIZE];
+
+    // 每声道插值历史（双倍长度，避免取模）
+    private final float[] tpHistory;
+    private int tpPos;
+    private float truePeak;
+    private int samplePeak;
+
+    public LoudnessMeter(int sampleRate, int channels) {
+        this.channels = channels;
+        this.subBlockFrames = sampleRate / 10;
+        this.filterState = new double[channels * 6];
+        this.tpHistory = new float[channels * TAPS_PER_PHASE * 2];
+
+        double f0 = 1681.974450955533;
+        double gain = 3.999843853973347;
+        double q = 0.7071752369554196;
+        double k = Math.tan(Math.PI * f0 / sampleRate);
+        double vh = Math.pow(10.0, gain / 20.0);
+        double vb = Math.pow(vh, 0.4996667741545416);
+        double a0 = 1.0 + k / q + k * k;
+        pb0 = (vh + vb * k / q + k * k) / a0;
+        pb1 = 2.0 * (k * k - vh) / a0;
+        pb2 = (vh - vb * k / q + k * k) / a0;
+        pa1 = 2.0 * (k * k - 1.0) / a0;
+        pa2 = (1.0 - k / q + k * k) / a0;
+
+        f0 = 38.13547087602444;
+        q = 0.5003270373238773;
+        k = Math.tan(Math.PI * f0 / sampleRate);
+        a0 = 1.0 + k / q + k * k;
+        rb0 = 1.0;
+        rb1 = -2.0;
+        rb2 = 1.0;
+        ra1 = 2.0 * (k * k - 1.0) / a0;
+        ra2 = (1.0 - k / q + k * k) / a0;
+    }
+
+    /**
+     * 送入交错排列的 16bit 样本，len 为样本数（非帧数）
+     */
+    public void process(short[] buf, int off, int len) {
+        int end = off + len - len % channels;
+        for (int i = off; i < end; i += channels) {
+            double frameEnergy = 0;
+            for (int ch = 0; ch < channels; ch++) {
+                short s = buf[i + ch];
+                int abs = s < 0 ? -s : s;
+                if (abs > samplePeak) samplePeak = abs;
+                float x = s / 32768f;
+                updateTruePeak(ch, x);
+                frameEnergy += kWeight(ch, x);
+            }
+            subBlockSum += frameEnergy;
+            if (++subBlockPos == subBlockFrames) {
+                finishSubBlock();
+            }
+        }
+    }
+
+    private double kWeight(int ch, double x) {
+        double[] st = filterState;
+        int o = ch * 6;
+        // 第一级：高架滤波
+        double y = pb0 * x + pb1 * st[o] + pb2 * st[o + 1] - pa1 * st[o + 2] - pa2 * st[o + 3];
+        // 第二级：RLB 高通，输入为第一级输出
+        double z = rb0 * y + rb1 * st[o + 2] + rb2 * st[o + 3] - ra1 * st[o + 4] - ra2 * st[o + 5];
+        st[o + 1] = st[o];
+        st[o] = x;
+        st[o + 3] = st[o + 2];
+        st[o + 2] = y;
+        st[o + 5] = st[o + 4];
+        st[o + 4] = z;
+        return z * z;
+    }
+
+    private void finishSubBlock() {
+        subBlocks[subBlockCount & 3] = subBlockSum;
+        subBlockCount++;
+        subBlockSum = 0;
+        subBlockPos = 0;
+        if (subBlockCount < 4) return;
+        double energy = (subBlocks[0] + subBlocks[1] + subBlocks[2] + subBlocks[3]) / (4.0 * subBlockFrames);
+        addBlock(energy);
+    }
+
+    private void addBlock(double energy) {
+        if (energy <= 0) return;
+        double loudness = -0.691 + 10.0 * Math.log10(energy);
+        if (loudness < HIST_MIN) return;
+        int bin = (int) ((loudness - HIST_MIN) * HIST_BINS_PER_LU);
+        if (bin >= HIST_SIZE) bin = HIST_SIZE - 1;
+        histCount[bin]++;
+        histEnergy[bin] += energy;
+    }
+
+    private void updateTruePeak(int ch, float x) {
+        float[] h = tpHistory;
+        int base = ch * TAPS_PER_PHASE * 2;
+        int p = tpPos;
+        if (ch == channels - 1) tpPos = p + 1 == TAPS_PER_PHASE ? 0 : p + 1;
+        h[base + p] = x;
+        h[base + p + TAPS_PER_PHASE] = x;
+        // h[base + p + 1 .. p + TAPS] 为从旧到新的最近 12 个样本
+        int start = base + p + 1;
+        float peak = truePeak;
+        for (int phase = 0; phase < OVERSAMPLE; phase++) {
+            float[] coeff = PHASES[phase];
+            float acc = 0;
+            for (int k = 0; k < TAPS_PER_PHASE; k++) {
+                acc += coeff[k] * h[start + k];
+            }
+            if (acc < 0) acc = -acc;
+            if (acc > peak) peak = acc;
+        }
+        truePeak = peak;
+    }
+
+    /**
+     * 门限后的积分响度 (LUFS)，无有效块时返回负无穷
+     */
+    public double integratedLoudness() {
+        double sum = 0;
+        long count = 0;
+        for (int i = 0; i < HIST_SIZE; i++) {
+            sum += histEnergy[i];
+            count += histCount[i];
+        }
+        if (count == 0) return Double.NEGATIVE_INFINITY;
+        double relativeGate = -0.691 + 10.0 * Math.log10(sum / count) + RELATIVE_GATE_LU;
+        int startBin = (int) Math.ceil((relativeGate - HIST_MIN) * HIST_BINS_PER_LU);
+        if (startBin < 0) startBin = 0;
+        sum = 0;
+        count = 0;
+        for (int i = startBin; i < HIST_SIZE; i++) {
+            sum += histEnergy[i];
+            count += histCount[i];
+        }
+        if (count == 0) return Double.NEGATIVE_INFINITY;
+        return -0.691 + 10.0 * Math.log10(sum / count);
+    }
+
+    /** 真峰值 (dBTP) */
+    public double truePeakDb() {
+        float peak = Math.max(truePeak, samplePeak / 32768f);
+        return peak > 0 ? 20.0 * Math.log10(peak) : Double.NEGATIVE_INFINITY;
+    }
+
+    /** 样本峰值 (0 - 32768) */
+    public int samplePeak() {
+        return samplePeak;
+    }
+
+    /**
+     * 清空已累计的门限块与峰值，保留滤波器和子块状态
+     * 分段并行测量时，先送入段前的预热样本再调用本方法，段内结果与顺序测量一致
+     */
+    public void beginMeasurement() {
+        Arrays.fill(histCount, 0);
+        Arrays.fill(histEnergy, 0);
+        truePeak = 0;
+        samplePeak = 0;
+    }
+
+    /**
+     * 合并另一段的测量结果（直方图相加、峰值取大），两者采样率与声道数需相同
+     */
+    public void merge(LoudnessMeter other) {
+        for (int i = 0; i < HIST_SIZE; i++) {
+            histCount[i] += other.histCount[i];
+            histEnergy[i] += other.histEnergy[i];
+        }
+        if (other.truePeak > truePeak) truePeak = other.truePeak;
+        if (other.samplePeak > samplePeak) samplePeak = other.samplePeak;
+    }
+
+    public void reset() {
+        Arrays.fill(filterState, 0);
+        Arrays.fill(subBlocks, 0);
+        Arrays.fill(histCount, 0);
+        Arrays.fill(histEnergy, 0);
+        Arrays.fill(tpHistory, 0);
+        subBlockCount = 0;
+        subBlockSum = 0;
+        subBlockPos = 0;
+        tpPos = 0;
+        truePeak = 0;
+        samplePeak = 0;
+    }
+
+    /**
+     * 加窗 sinc 插值滤波器，拆成 4 个相位
+     */
+    private static float[][] designInterpolator() {
+        int taps = OVERSAMPLE * TAPS_PER_PHASE;
+        double center = (taps - 1) / 2.0;
+        double[] h = new double[taps];
+        for (int n = 0; n < taps; n++) {
+            double t = (n - center) / OVERSAMPLE;
+            double sinc = t == 0 ? 1.0 : Math.sin(Math.PI * t) / (Math.PI * t);
+            // Blackman 窗
+            double w = 0.42 - 0.5 * Math.cos(2 * Math.PI * n / (taps - 1))
+                    + 0.08 * Math.cos(4 * Math.PI * n / (taps - 1));
+            h[n] = sinc * w;
+        }
+        float[][] phases = new float[OVERSAMPLE][TAPS_PER_PHASE];
+        for (int p = 0; p < OVERSAMPLE; p++) {
+            double sum = 0;
+            for (int k = 0; k < TAPS_PER_PHASE; k++) sum += h[p + OVERSAMPLE * k];
+            // 每个相位归一化为单位直流增益；系数倒序以匹配从旧到新的历史顺序
+            for (int k = 0; k < TAPS_PER_PHASE; k++) {
+                phases[p][TAPS_PER_PHASE - 1 - k] = (float) (h[p + OVERSAMPLE * k] / sum);
+            }
+        }
+        return phases;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.waveform;
+
+import android.content.Context;
+import android.util.Log;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 后台响度标准化任务：两遍处理写入临时文件，成功后替换原文件并记录元数据
+ */
+public class LoudnessNormalizationJob implements Runnable {
+    private static final String TAG = "LoudnessJob";
+
+    public interface Callback {
+        void onFinished(File file, LoudnessNormalizer.Result result);
+        void onFailed(File file, Exception e);
+    }
+
+    private final Context context;
+    private final File file;
+    private final Callback callback;
+
+    public LoudnessNormalizationJob(Context context, File file, Callback callback) {
+        this.context = context.getApplicationContext();
+        this.file = file;
+        this.callback = callback;
+    }
+
+    @Override
+    public void run() {
+        File temp = new File(file.getParentFile(), file.getName() + ".norm.tmp");
+        try {
+            long start = System.nanoTime();
+            LoudnessNormalizer normalizer = new LoudnessNormalizer();
+            LoudnessNormalizer.Result result = normalizer.normalize(file, temp,
+                    LoudnessNormalizer.DEFAULT_TARGET_LUFS, LoudnessNormalizer.DEFAULT_CEILING_DBTP);
+            if (!temp.renameTo(file)) {
+                throw new IOException("替换原文件失败: " + file);
+            }
+            RecordingMetadataStore.getInstance(context).saveNormalization(file.getAbsolutePath(), result);
+            Log.d(TAG, String.format("%s: %.1f LUFS -> %.1f LUFS (%+.1f dB), %d ms", file.getName(),
+                    result.inputLufs, result.outputLufs, result.gainDb, (System.nanoTime() - start) / 1000000));
+            if (callback != null) callback.onFinished(file, result);
+        } catch (Exception e) {
+            Log.e(TAG, "Normalization failed", e);
+            temp.delete();
+            if (callback != null) callback.onFailed(file, e);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.waveform;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 两遍流式响度标准化
+ * 第一遍：K 加权 + 门限测量积分响度和真峰值
+ * 第二遍：施加增益，经前瞻限幅器写出新文件
+ * 两遍都只使用固定大小的缓冲区，内存占用与文件长度无关
+ */
+public class LoudnessNormalizer {
+    public static final double DEFAULT_TARGET_LUFS = -16.0;
+    public static final double DEFAULT_CEILING_DBTP = -1.0;
+    private static final double MAX_GAIN_DB = 24.0;
+    private static final int BUFFER_FRAMES = 4096;
+    private static final double LOOKAHEAD_SECONDS = 0.005;
+    private static final double RELEASE_SECONDS = 0.08;
+
+    public static final class Result {
+        public double inputLufs;
+        public double inputTruePeakDb;
+        public double gainDb;
+        public double outputLufs;
+        public double outputTruePeakDb;
+    }
+
+    private final ByteBuffer byteBuffer;
+    private final ShortBuffer shortView;
+    private final short[] samples;
+
+    public LoudnessNormalizer() {
+        byteBuffer = ByteBuffer.allocateDirect(BUFFER_FRAMES * 2 * 2).order(ByteOrder.LITTLE_ENDIAN);
+        shortView = byteBuffer.asShortBuffer();
+        samples = new short[BUFFER_FRAMES * 2];
+    }
+
+    /**
+     * 第一遍：只测量，不修改文件
+     */
+    public Result measure(File wav) throws IOException {
+        // 输出为明文 WAV，加密录音不做标准化以免落下未加密的副本
+        if (EncryptedRecording.isEncrypted(wav)) throw new IOException("加密录音不支持音量标准化");
+        try (RandomAccessFile raf = new RandomAccessFile(wav, "r")) {
+            WavFile.Info info = WavFile.readInfo(raf);
+            LoudnessMeter meter = new LoudnessMeter(info.sampleRate, info.channels);
+            FileChannel channel = raf.getChannel();
+            channel.position(info.dataOffset);
+            long remaining = info.dataLength;
+            int n;
+            while (remaining > 0 && (n = readSamples(channel, remaining)) > 0) {
+                meter.process(samples, 0, n);
+                remaining -= n * 2L;
+            }
+            Result result = new Result();
+            result.inputLufs = meter.integratedLoudness();
+            result.inputTruePeakDb = meter.truePeakDb();
+            return result;
+        }
+    }
+
+    /**
+     * 完整两遍处理，结果写到 out（可与 in 同目录，由调用方替换原文件）
+     */
+    public Result normalize(File in, File out, double targetLufs, double ceilingDbtp) throws IOException {
+        Result result = measure(in);
+        double gainDb = Double.isInfinite(result.inputLufs) ? 0 : targetLufs - result.inputLufs;
+        gainDb = Math.max(-MAX_GAIN_DB, Math.min(MAX_GAIN_DB, gainDb));
+        result.gainDb = gainDb;
+
+        try (RandomAccessFile src = new RandomAccessFile(in, "r");
+             RandomAccessFile dst = new RandomAccessFile(out, "rw")) {
+            dst.setLength(0);
+            WavFile.Info info = WavFile.readInfo(src);
+            LoudnessMeter outMeter = new LoudnessMeter(info.sampleRate, info.channels);
+            PeakLimiter limiter = new PeakLimiter(info.sampleRate, info.channels,
+                    (float) (32767.0 * Math.pow(10.0, ceilingDbtp / 20.0)));
+            float gain = (float) Math.pow(10.0, gainDb / 20.0);
+
+            // 先占位，写完后按实际写出的数据长度回填
+            byte[] header = new byte[WavFile.HEADER_SIZE];
+            dst.write(header);
+
+            FileChannel inChannel = src.getChannel();
+            FileChannel outChannel = dst.getChannel();
+            inChannel.position(info.dataOffset);
+            // 每次按整帧读取，不足一帧的样本只会出现在数据末尾
+            long blockBytes = (long) (samples.length / info.channels) * info.channels * 2;
+            long remaining = info.dataLength;
+            long dataBytes = 0;
+            int n;
+            while (remaining > 0 && (n = readSamples(inChannel, Math.min(remaining, blockBytes))) > 0) {
+                remaining -= n * 2L;
+                int produced = limiter.process(samples, n, gain);
+                outMeter.process(samples, 0, produced);
+                writeSamples(outChannel, produced);
+                dataBytes += produced * 2L;
+            }
+            // 冲刷限幅器的前瞻延迟
+            int produced = limiter.flush(samples);
+            outMeter.process(samples, 0, produced);
+            writeSamples(outChannel, produced);
+            dataBytes += produced * 2L;
+
+            // 原样保留 data 之后的其他块（如 cue/LIST）；写出的数据总是偶数字节，不需要补齐
+            long tailStart = info.dataOffset + info.dataLength + (info.dataLength & 1);
+            long tail = src.length() - tailStart;
+            if (tail > 0) inChannel.transferTo(tailStart, tail, outChannel);
+            WavFile.fillHeader(header, dataBytes, info.sampleRate, info.channels);
+            WavFile.writeIntLE(header, 4, dst.length() - 8);
+            dst.seek(0);
+            dst.write(header);
+
+            result.outputLufs = outMeter.integratedLoudness();
+            result.outputTruePeakDb = outMeter.truePeakDb();
+        }
+        return result;
+    }
+
+    private int readSamples(FileChannel channel, long remaining) throws IOException {
+        byteBuffer.clear();
+        if (remaining < byteBuffer.capacity()) byteBuffer.limit((int) remaining);
+        while (byteBuffer.hasRemaining()) {
+            if (channel.read(byteBuffer) < 0) break;
+        }
+        int count = byteBuffer.position() / 2;
+        shortView.clear();
+        shortView.get(samples, 0, count);
+        return count;
+    }
+
+    private void writeSamples(FileChannel channel, int count) throws IOException {
+        shortView.clear();
+        shortView.put(samples, 0, count);
+        byteBuffer.clear();
+        byteBuffer.limit(count * 2);
+        while (byteBuffer.hasRemaining()) channel.write(byteBuffer);
+    }
+
+    /**
+     * 前瞻峰值限幅器：滑动窗口内所需增益的最小值作为目标，瞬时启动、指数释放。
+     * 声道联动，延迟一个前瞻窗口输出
+     */
+    static final class PeakLimiter {
+        private final int channels;
+        private final int lookahead;
+        private final float ceiling;
+        private final float releaseCoef;
+        private final float[] delay;
+        // 单调队列（环形），保存窗口内所需增益的递增序列
+        private final long[] queueIndex;
+        private final float[] queueGain;
+        private int head, size;
+        private long frameIndex;
+        private float envelope = 1f;
+        private final float[] scratch;
+        // 数据末尾不足一帧的样本（已乘增益），flush 时排在延迟线之后原样输出
+        private final float[] partial;
+        private int partialCount;
+
+        PeakLimiter(int sampleRate, int channels, float ceiling) {
+            this.channels = channels;
+            this.lookahead = Math.max(1, (int) (sampleRate * LOOKAHEAD_SECONDS));
+            this.ceiling = ceiling;
+            this.releaseCoef = (float) (1.0 - Math.exp(-1.0 / (sampleRate * RELEASE_SECONDS)));
+            this.delay = new float[lookahead * channels];
+            this.queueIndex = new long[lookahead + 1];
+            this.queueGain = new float[lookahead + 1];
+            this.scratch = new float[channels];
+            this.partial = new float[channels];
+        }
+
+        /**
+         * 原地处理 count 个样本，返回可输出的样本数（前 lookahead 帧被延迟）
+         * 结尾不足一帧的样本暂存到 flush 时输出，因此只应出现在最后一次调用中
+         */
+        int process(short[] buf, int count, float gain) {
+            int frames = count / channels;
+            int out = 0;
+            for (int f = 0; f < frames; f++) {
+                float peak = 0;
+                for (int ch = 0; ch < channels; ch++) {
+                    float v = buf[f * channels + ch] * gain;
+                    scratch[ch] = v;
+                    float a = v < 0 ? -v : v;
+                    if (a > peak) peak = a;
+                }
+                if (pushFrame(peak, buf, out)) out += channels;
+            }
+            partialCount = count - frames * channels;
+            for (int i = 0; i < partialCount; i++) partial[i] = buf[frames * channels + i] * gain;
+            return out;
+        }
+
+        /**
+         * 输入 lookahead 个静音帧，把延迟线里剩余的 min(已输入帧数, lookahead) 帧全部输出，
+         * 再输出末尾不足一帧的样本；buf 需能容纳 (lookahead + 1) × channels 个样本
+         */
+        int flush(short[] buf) {
+            int out = 0;
+            for (int ch = 0; ch < channels; ch++) scratch[ch] = 0;
+            for (int f = 0; f < lookahead; f++) {
+                if (pushFrame(0, buf, out)) out += channels;
+            }
+            for (int i = 0; i < partialCount; i++) buf[out++] = clamp(partial[i]);
+            partialCount = 0;
+            return out;
+        }
+
+        private static short clamp(float v) {
+            int s = Math.round(v);
+            if (s > 32767) s = 32767;
+            else if (s < -32768) s = -32768;
+            return (short) s;
+        }
+
+        private boolean pushFrame(float peak, short[] buf, int out) {
+            float required = peak > ceiling ? ceiling / peak : 1f;
+            int cap = queueIndex.length;
+            // 维护单调递增队列
+            while (size > 0) {
+                int tail = head + size - 1;
+                if (tail >= cap) tail -= cap;
+                if (queueGain[tail] < required) break;
+                size--;
+            }
+            int tail = head + size;
+            if (tail >= cap) tail -= cap;
+            queueIndex[tail] = frameIndex;
+            queueGain[tail] = required;
+            size++;
+            while (queueIndex[head] < frameIndex - lookahead) {
+                head = head + 1 == cap ? 0 : head + 1;
+                size--;
+            }
+            float target = queueGain[head];
+            envelope = target < envelope ? target : envelope + (target - envelope) * releaseCoef;
+
+            int slot = (int) (frameIndex % lookahead) * channels;
+            boolean ready = frameIndex >= lookahead;
+            for (int ch = 0; ch < channels; ch++) {
+                if (ready) buf[out + ch] = clamp(delay[slot + ch] * envelope);
+                delay[slot + ch] = scratch[ch];
+            }
+            frameIndex++;
+            return ready;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.waveform;
+
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+
+/**
+ * 麦克风音源，封装 AudioRecord；需已获得录音权限
+ */
+public class MicAudioSource implements AudioSource {
+    private static final int CHANNEL_CONFIG = AudioFormat.CHANNEL_IN_MONO;
+    private static final int AUDIO_FORMAT = AudioFormat.ENCODING_PCM_16BIT;
+
+    private final int audioSource;
+    private final int sampleRate;
+    private final int bufferSize;
+    private AudioRecord audioRecord;
+
+    public MicAudioSource(int sampleRate, int bufferSize) {
+        this(MediaRecorder.AudioSource.MIC, sampleRate, bufferSize);
+    }
+
+    /**
+     * @param audioSource MediaRecorder.AudioSource 中的输入，如 MIC、VOICE_RECOGNITION、UNPROCESSED
+     */
+    public MicAudioSource(int audioSource, int sampleRate, int bufferSize) {
+        this.audioSource = audioSource;
+        this.sampleRate = sampleRate;
+        this.bufferSize = Math.max(AudioRecord.getMinBufferSize(sampleRate, CHANNEL_CONFIG, AUDIO_FORMAT), bufferSize);
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public boolean open() {
+        if (audioRecord != null) return true;
+        AudioRecord record = new AudioRecord(audioSource, sampleRate, CHANNEL_CONFIG, AUDIO_FORMAT, bufferSize);
+        if (record.getState() != AudioRecord.STATE_INITIALIZED) {
+            record.release();
+            return false;
+        }
+        audioRecord = record;
+        return true;
+    }
+
+    @Override
+    public void start() {
+        audioRecord.startRecording();
+    }
+
+    @Override
+    public int read(short[] buffer, int offset, int count) {
+        // AudioRecord 的错误码与接口约定一致，直接透传
+        return audioRecord.read(buffer, offset, count);
+    }
+
+    @Override
+    public void stop() {
+        try {
+            audioRecord.stop();
+        } catch (IllegalStateException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void release() {
+        if (audioRecord != null) {
+            audioRecord.release();
+            audioRecord = null;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.waveform;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 多轨录音的附加音轨：每轨一个音源、一条 CapturePipeline、一个录音线程和一个写线程，
+ * 内存与 IO 随轨数线性增长，各轨之间不共享缓冲。
+ * 各轨以主轨（参考轨）的帧位置为共同时钟：结束后按各自拟合出的采集时间基准（StreamTiming）求出相对主轨的起点偏移，
+ * 导出时在开头补静音或跳过样本，长度与主轨一致，得到逐帧对齐的单声道 WAV；同时测量相对主轨的时钟漂移。
+ * 附加音轨不随主轨暂停，照常录下全部样本；导出时把主轨没有写入的区间（暂停、丢块）经拟合换算到本轨的样本序号后去掉，
+ * 暂停前后都与主轨逐帧对齐。
+ * 不依赖 Android，start / stop 在同一个线程上调用
+ */
+public class MultiTrackCapture {
+    private static final int THREAD_JOIN_MS = 1000;
+
+    /** 一条附加音轨 */
+    public static final class Track {
+        final CapturePipeline pipeline;
+        final PcmFileWriter writer;
+        final File pcmFile;
+        Thread thread;
+
+        Track(CapturePipeline pipeline, PcmFileWriter writer, File pcmFile) {
+            this.pipeline = pipeline;
+            this.writer = writer;
+            this.pcmFile = pcmFile;
+        }
+
+        public CapturePipeline getPipeline() {
+            return pipeline;
+        }
+    }
+
+    /** 一条音轨相对主轨的对齐结果 */
+    public static final class Alignment {
+        /** 主轨第 0 帧对应本轨的帧位置；为负表示本轨晚于主轨开始，导出时在开头补静音 */
+        public final long leadFrames;
+        /** 录音结束时本轨相对主轨累积的偏差（帧），正数表示本轨时钟偏快 */
+        public final long driftFrames;
+        /** 相对主轨的时钟漂移 (ppm) */
+        public final double driftPpm;
+        // 主轨读到但没有写入文件的区间，按主轨音源样本序号
+        final SampleGaps referenceGaps;
+
+        Alignment(long leadFrames, long driftFrames, double driftPpm, SampleGaps referenceGaps) {
+            this.leadFrames = leadFrames;
+            this.driftFrames = driftFrames;
+            this.driftPpm = driftPpm;
+            this.referenceGaps = referenceGaps;
+        }
+
+        /** 主轨音源第 referenceFrame 个样本对应本轨音源的样本序号 */
+        long trackFrameAt(long referenceFrame) {
+            return leadFrames + Math.round(referenceFrame * (1 + driftPpm / 1e6));
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "lead %d frames, drift %d frames (%.1f ppm)",
+                    leadFrames, driftFrames, driftPpm);
+        }
+    }
+
+    private final int sampleRate;
+    private final List<Track> tracks = new ArrayList<>();
+    private boolean started;
+
+    public MultiTrackCapture(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * 添加一条音轨，音源需已打开；需在 start 之前调用
+     * @param blockSamples 每次 read 的样本数
+     * @param writerBlocks 写线程缓冲池块数
+     */
+    public Track addTrack(AudioSource source, File pcmFile, int blockSamples, int writerBlocks) {
+        if (started) throw new IllegalStateException("录音中无法添加音轨");
+        CapturePipeline pipeline = new CapturePipeline(sampleRate, blockSamples);
+        PcmFileWriter writer = new PcmFileWriter(blockSamples * 2, writerBlocks);
+        pipeline.setSource(source);
+        pipeline.setWriter(writer);
+        Track track = new Track(pipeline, writer, pcmFile);
+        tracks.add(track);
+        return track;
+    }
+
+    public int getTrackCount() {
+        return tracks.size();
+    }
+
+    public Track getTrack(int index) {
+        return tracks.get(index);
+    }
+
+    /** 打开各轨的临时文件并启动录音线程 */
+    public void start() throws IOException {
+        if (started) return;
+        for (int i = 0; i < tracks.size(); i++) {
+            Track track = tracks.get(i);
+            try {
+                track.writer.open(track.pcmFile, 0);
+            } catch (IOException e) {
+                // 已打开的轨道一并关闭，本次不录附加音轨
+                for (int j = 0; j < i; j++) tracks.get(j).writer.close();
+                throw e;
+            }
+            track.pipeline.getClock().reset();
+            track.pipeline.setPaused(false);
+            track.pipeline.setRunning(true);
+        }
+        started = true;
+        for (int i = 0; i < tracks.size(); i++) {
+            Track track = tracks.get(i);
+            track.thread = new Thread(track.pipeline::runSession, "AudioCapture-" + (i + 2));
+            track.thread.setPriority(Thread.MAX_PRIORITY);
+            track.thread.start();
+        }
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    /** 停止各轨并等待数据落盘 */
+    public void stop() {
+        if (!started) return;
+        started = false;
+        for (int i = 0; i < tracks.size(); i++) tracks.get(i).pipeline.setRunning(false);
+        for (int i = 0; i < tracks.size(); i++) {
+            Track track = tracks.get(i);
+            try {
+                track.thread.join(THREAD_JOIN_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            track.thread = null;
+            try {
+                track.writer.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 计算第 index 轨相对主轨的起点偏移和漂移，需在两者的会话都结束后调用
+     * @return 任一轨没有写入数据时返回 null
+     */
+    public Alignment align(CapturePipeline reference, int index) {
+        StreamTiming referenceTiming = reference.getTiming();
+        StreamTiming trackTiming = tracks.get(index).pipeline.getTiming();
+        if (referenceTiming.getCount() == 0 || trackTiming.getCount() == 0) return null;
+        double nominal = 1e9 / sampleRate;
+        double referenceSlope = referenceTiming.getNanosPerFrame(nominal);
+        double trackSlope = trackTiming.getNanosPerFrame(nominal);
+        // 主轨第 0 帧的时刻落在本轨的哪个样本上
+        long lead = Math.round((referenceTiming.nanosAt(0, nominal) - trackTiming.nanosAt(0, nominal)) / trackSlope);
+        double ppm = (referenceSlope / trackSlope - 1) * 1e6;
+        long drift = Math.round(ppm * reference.getClock().getFrames() / 1e6);
+        return new Alignment(lead, drift, ppm, reference.getGaps().copy());
+    }
+
+    /**
+     * 把第 index 轨导出为与主轨逐帧对齐、长度为 frames 的单声道 WAV
+     */
+    public void exportAligned(int index, Alignment alignment, long frames, File wavFile) throws IOException {
+        Track track = tracks.get(index);
+        exportAligned(track.pcmFile, wavFile, sampleRate, alignment, track.pipeline.getGaps(), frames);
+    }
+
+    /**
+     * 按主轨文件的帧逐段取本轨的样本写为 WAV：主轨每段连续写入的区间换算到本轨音源的起点后照抄，
+     * 段间主轨跳过的区间在本轨上一并跳过。本轨起点之前、本轨自身没有写入的区间和源数据不足的部分补静音
+     * @param trackGaps 本轨读到但没有写入 pcmFile 的区间
+     */
+    static void exportAligned(File pcmFile, File wavFile, int sampleRate, Alignment alignment,
+                              SampleGaps trackGaps, long frames) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(pcmFile, "r");
+             OutputStream out = new FileOutputStream(wavFile)) {
+            WavFile.writeHeader(out, frames * 2, sampleRate, 1);
+            byte[] buffer = new byte[64 * 1024];
+            long sourceFrames = in.length() / 2;
+            long done = 0;
+            while (done < frames) {
+                long referenceFrame = alignment.referenceGaps.toSource(done);
+                long run = Math.min(frames - done, alignment.referenceGaps.runLength(referenceFrame));
+                copyTrack(in, out, buffer, trackGaps, sourceFrames, alignment.trackFrameAt(referenceFrame), run);
+                done += run;
+            }
+        }
+    }
+
+    /** 从本轨音源第 start 个样本起写出 count 帧，没有数据的位置补静音 */
+    private static void copyTrack(RandomAccessFile in, OutputStream out, byte[] buffer, SampleGaps trackGaps,
+                                  long sourceFrames, long start, long count) throws IOException {
+        while (count > 0) {
+            long n;
+            long fileFrame = start >= 0 ? trackGaps.toFile(start) : -1;
+            if (start < 0) {
+                n = Math.min(count, -start);
+                writeSilence(out, buffer, n * 2);
+            } else if (fileFrame < 0 || fileFrame >= sourceFrames) {
+                n = Math.min(count, fileFrame < 0 ? trackGaps.runLength(start) : count);
+                writeSilence(out, buffer, n * 2);
+            } else {
+                n = Math.min(Math.min(count, trackGaps.runLength(start)), sourceFrames - fileFrame);
+                in.seek(fileFrame * 2);
+                long remaining = n * 2;
+                while (remaining > 0) {
+                    int r = (int) Math.min(buffer.length, remaining);
+                    in.readFully(buffer, 0, r);
+                    out.write(buffer, 0, r);
+                    remaining -= r;
+                }
+            }
+            start += n;
+            count -= n;
+        }
+    }
+
+    private static void writeSilence(OutputStream out, byte[] buffer, long bytes) throws IOException {
+        if (bytes <= 0) return;
+        Arrays.fill(buffer, (byte) 0);
+        while (bytes > 0) {
+            int n = (int) Math.min(buffer.length, bytes);
+            out.write(buffer, 0, n);
+            bytes -= n;
+        }
+    }
+
+    /** 停止并释放各轨的音源、写线程和临时文件 */
+    public void release() {
+        stop();
+        for (int i = 0; i < tracks.size(); i++) {
+            Track track = tracks.get(i);
+            try {
+                track.pipeline.getSource().release();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            track.writer.shutdown();
+            track.pcmFile.delete();
+        }
+        tracks.clear();
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.waveform;
+
+/**
+ * 噪声门：包络低于阈值并超过保持时间后，平滑衰减到底噪增益
+ */
+public class NoiseGate implements AudioProcessor {
+    private final float thresholdDb;
+    private final float floorDb;
+    private float openThreshold, closeThreshold, floorGain;
+    private float envelopeDecay, attackCoef, releaseCoef;
+    private int holdSamples;
+
+    private float envelope;
+    private float gain = 1f;
+    private int holdCounter;
+    private boolean isOpen;
+
+    /**
+     * @param thresholdDb 开门阈值 (dBFS)
+     * @param floorDb 关门时的衰减量 (dB，负值)
+     */
+    public NoiseGate(float thresholdDb, float floorDb) {
+        this.thresholdDb = thresholdDb;
+        this.floorDb = floorDb;
+    }
+
+    @Override
+    public void prepare(int sampleRate) {
+        openThreshold = (float) (32768 * Math.pow(10, thresholdDb / 20));
+        // 6dB 回差，防止在阈值附近反复开关
+        closeThreshold = openThreshold * 0.5f;
+        floorGain = (float) Math.pow(10, floorDb / 20);
+        envelopeDecay = (float) Math.exp(-1.0 / (sampleRate * 0.010));
+        attackCoef = (float) (1 - Math.exp(-1.0 / (sampleRate * 0.002)));
+        releaseCoef = (float) (1 - Math.exp(-1.0 / (sampleRate * 0.150)));
+        holdSamples = sampleRate / 10;
+    }
+
+    @Override
+    public void process(short[] buffer, int offset, int count) {
+        float env = envelope, g = gain;
+        int hold = holdCounter;
+        boolean open = isOpen;
+        for (int i = offset, end = offset + count; i < end; i++) {
+            int s = buffer[i];
+            float a = s < 0 ? -s : s;
+            env = a > env ? a : env * envelopeDecay;
+            if (env > openThreshold) {
+                open = true;
+                hold = holdSamples;
+            } else if (open && env < closeThreshold) {
+                if (hold > 0) hold--;
+                else open = false;
+            }
+            float target = open ? 1f : floorGain;
+            g += (target - g) * (target > g ? attackCoef : releaseCoef);
+            buffer[i] = (short) (s * g);
+        }
+        envelope = env;
+        gain = g;
+        holdCounter = hold;
+        isOpen = open;
+    }
+
+    @Override
+    public void reset() {
+        envelope = 0;
+        gain = 1f;
+        holdCounter = 0;
+        isOpen = false;
+    }
+
+    @Override
+    public String getName() {
+        return "NoiseGate";
+    }
+}
@@ -0,0 +1,298 @@
+package com.example.waveform;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 异步 PCM 写文件：录音线程从预分配的缓冲池取块、填充后提交，写线程顺序落盘
+ * 写线程和缓冲池在多次录音之间复用，提交与归还都不分配对象。
+ * 设置了密码器时，写线程在落盘前就地加密每一块（加密录音）。
+ * 预录内容由写线程直接从环形缓冲分段转成字节落盘，用的是专门的预分配块，不占用缓冲池
+ */
+public class PcmFileWriter {
+    private static final long FLUSH_TIMEOUT_MS = 5000;
+
+    /** 预分配的数据块 */
+    public static final class Block {
+        public final byte[] data;
+        final ByteBuffer buffer;
+        int length;
+
+        Block(int size) {
+            data = new byte[size];
+            buffer = ByteBuffer.wrap(data);
+        }
+    }
+
+    private final ArrayBlockingQueue<Block> freeBlocks;
+    private final ArrayBlockingQueue<Block> pendingBlocks;
+    private final Block flushMarker = new Block(0);
+    private final Block shutdownMarker = new Block(0);
+    private final Block preRollMarker = new Block(0);
+    // 写线程转换预录样本用
+    private final Block preRollBlock;
+    private final short[] preRollSamples;
+    private PreRollBuffer preRoll;
+    // 冲刷按序号等待：close 排入第 flushRequested 个标记，写线程每处理一个标记 flushCompleted 加一。
+    // 超时后迟到的完成只会推进计数，不会让之后的 close 提前返回
+    private final Object flushLock = new Object();
+    private long flushRequested;
+    private long flushCompleted;
+    private final int blockSize;
+    private Thread writerThread;
+    private volatile CaptureMetrics metrics;
+
+    private RandomAccessFile file;
+    private FileChannel channel;
+    // 数据在文件中的起始偏移，以及按文件偏移加密的密码器（不加密时为 null）
+    private long dataOffset;
+    private AesCtr cipher;
+    private volatile long bytesWritten;
+    private volatile long firstWriteNanos;
+    private volatile IOException writeError;
+
+    public PcmFileWriter(int blockSize, int blockCount) {
+        this.blockSize = blockSize;
+        freeBlocks = new ArrayBlockingQueue<>(blockCount);
+        // 额外留三个位置给控制标记
+        pendingBlocks = new ArrayBlockingQueue<>(blockCount + 3);
+        for (int i = 0; i < blockCount; i++) freeBlocks.add(new Block(blockSize));
+        preRollBlock = new Block(blockSize);
+        preRollSamples = new short[blockSize / 2];
+    }
+
+    /** 写线程每落盘一块向 metrics 上报耗时 */
+    public void setMetrics(CaptureMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * 打开输出文件并预分配空间；写线程首次调用时启动
+     */
+    public synchronized void open(File output, long preallocateBytes) throws IOException {
+        open(output, preallocateBytes, 0, null);
+    }
+
+    /**
+     * 从 dataOffset 处开始写入，之前的内容（如容器头）保留
+     * @param cipher 非空时每块按其文件偏移加密后落盘
+     * @throws IOException 上一个文件因写盘超时尚未关闭
+     */
+    public synchronized void open(File output, long preallocateBytes, long dataOffset, AesCtr cipher)
+            throws IOException {
+        if (channel != null) throw new IOException("上一个文件尚未关闭");
+        RandomAccessFile raf = new RandomAccessFile(output, "rw");
+        raf.setLength(Math.max(preallocateBytes, dataOffset));
+        file = raf;
+        channel = raf.getChannel();
+        channel.position(dataOffset);
+        this.dataOffset = dataOffset;
+        this.cipher = cipher;
+        bytesWritten = 0;
+        firstWriteNanos = 0;
+        writeError = null;
+        if (writerThread == null) {
+            writerThread = new Thread(this::writeLoop, "PcmWriter");
+            writerThread.start();
+        }
+    }
+
+    public boolean isOpen() {
+        return channel != null;
+    }
+
+    /** 录音线程调用：取一个空闲块，缓冲池耗尽时返回 null */
+    public Block obtain() {
+        return freeBlocks.poll();
+    }
+
+    /**
+     * 离线处理时调用：等待空闲块，以写盘速度反压上游
+     * @return 空闲块，被中断时返回 null
+     */
+    public Block obtainWait() {
+        try {
+            return freeBlocks.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /** 录音线程调用：提交已填充的块 */
+    public void submit(Block block, int length) {
+        block.length = length;
+        pendingBlocks.offer(block);
+    }
+
+    /**
+     * 录音线程调用：把预录缓冲中的全部样本排在之后提交的块前面写入
+     * 交出后直到 close 返回前，调用方不得再写入该缓冲
+     */
+    public void submitPreRoll(PreRollBuffer buffer) {
+        // 入队保证写线程看到此前对缓冲和字段的写入
+        preRoll = buffer;
+        pendingBlocks.offer(preRollMarker);
+    }
+
+    /**
+     * 等待所有已提交的数据落盘，截掉预分配的多余部分并关闭文件
+     * @throws IOException 写入出错（文件已关闭），或 5 秒内未能落盘：此时不截断也不关闭，
+     *                     写线程继续落盘，可稍后再次调用 close
+     */
+    public synchronized void close() throws IOException {
+        if (channel == null) return;
+        long target;
+        synchronized (flushLock) {
+            // 上次超时的标记还在队列中时接着等它，不重复排队
+            if (flushCompleted == flushRequested) {
+                flushRequested++;
+                pendingBlocks.offer(flushMarker);
+            }
+            target = flushRequested;
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FLUSH_TIMEOUT_MS);
+            try {
+                while (flushCompleted < target) {
+                    long waitMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (waitMs <= 0) break;
+                    flushLock.wait(waitMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (flushCompleted < target) {
+                throw new IOException("写盘超时，仍有 " + pendingBlocks.size() + " 块未落盘");
+            }
+        }
+        closeFile();
+        if (writeError != null) throw writeError;
+    }
+
+    private void closeFile() throws IOException {
+        try {
+            channel.truncate(dataOffset + bytesWritten);
+            file.close();
+        } finally {
+            channel = null;
+            file = null;
+            cipher = null;
+        }
+    }
+
+    /** 停止写线程（不再复用时调用） */
+    public synchronized void shutdown() {
+        if (channel != null) {
+            try {
+                close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if (writerThread != null) {
+            pendingBlocks.offer(shutdownMarker);
+            try {
+                writerThread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // close 超时留下的文件：写线程已退出时才能安全关闭
+            if (channel != null && !writerThread.isAlive()) {
+                try {
+                    closeFile();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            writerThread = null;
+        }
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /** 本次打开后首块数据落盘的时刻 (System.nanoTime)，尚未写入时为 0 */
+    public long getFirstWriteNanos() {
+        return firstWriteNanos;
+    }
+
+    /** 等待落盘的块数 */
+    public int getQueueDepth() {
+        return pendingBlocks.size();
+    }
+
+    private void writeLoop() {
+        while (true) {
+            Block block;
+            try {
+                block = pendingBlocks.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (block == shutdownMarker) return;
+            if (block == flushMarker) {
+                synchronized (flushLock) {
+                    flushCompleted++;
+                    flushLock.notifyAll();
+                }
+                continue;
+            }
+            if (block == preRollMarker) {
+                writePreRoll(preRoll);
+                preRoll = null;
+                continue;
+            }
+            try {
+                write(block);
+            } finally {
+                freeBlocks.offer(block);
+            }
+        }
+    }
+
+    /** 按块把预录样本转为小端字节写入 */
+    private void writePreRoll(PreRollBuffer buffer) {
+        Block block = preRollBlock;
+        int from = 0;
+        int count;
+        while ((count = buffer.read(from, preRollSamples, 0, preRollSamples.length)) > 0) {
+            byte[] data = block.data;
+            for (int i = 0; i < count; i++) {
+                short s = preRollSamples[i];
+                data[2 * i] = (byte) s;
+                data[2 * i + 1] = (byte) (s >> 8);
+            }
+            block.length = count * 2;
+            write(block);
+            from += count;
+        }
+    }
+
+    private void write(Block block) {
+        try {
+            if (channel != null && writeError == null) {
+                long start = System.nanoTime();
+                if (cipher != null) cipher.apply(dataOffset + bytesWritten, block.data, 0, block.length);
+                block.buffer.clear();
+                block.buffer.limit(block.length);
+                while (block.buffer.hasRemaining()) channel.write(block.buffer);
+                long end = System.nanoTime();
+                if (bytesWritten == 0) firstWriteNanos = end;
+                bytesWritten += block.length;
+                CaptureMetrics m = metrics;
+                if (m != null) m.onWrite(block.length, end - start);
+            }
+        } catch (IOException e) {
+            writeError = e;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.waveform;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 基于 AudioTrack 的播放引擎，支持变速不变调和跳过静音
+ * 控制方法可在任意线程调用，实际修改在播放线程的循环开头生效。
+ * 静音表在 WorkScheduler 上读取或计算（录音结束后通常已预先算好缓存），就绪之前照常播放不跳过
+ */
+public class PlaybackEngine {
+    private static final String TAG = "PlaybackEngine";
+    private static final int PROGRESS_INTERVAL_MS = 200;
+
+    public interface Listener {
+        void onProgress(long positionMs, long durationMs);
+        void onCompletion();
+        void onError(Exception e);
+    }
+
+    private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Object pauseLock = new Object();
+    private Listener listener;
+    private Thread playbackThread;
+
+    private volatile boolean running;
+    private volatile boolean paused;
+    private volatile float speed = 1f;
+    private volatile boolean skipSilence;
+    private volatile long pendingSeekMs = -1;
+    // 当前播放文件及其静音表（后台准备好后写入）
+    private volatile File currentFile;
+    private volatile SilenceMap silenceMap;
+
+    // 播放线程写、主线程读
+    private volatile long positionMs;
+    private volatile long durationMs;
+    private volatile long cpuNanosPerAudioSecond;
+
+    private final Runnable progressRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (listener != null) listener.onProgress(positionMs, durationMs);
+            if (running) mainHandler.postDelayed(this, PROGRESS_INTERVAL_MS);
+        }
+    };
+
+    public PlaybackEngine(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void play(File file) {
+        stop();
+        running = true;
+        paused = false;
+        positionMs = 0;
+        durationMs = 0;
+        currentFile = file;
+        silenceMap = null;
+        if (skipSilence) requestSilenceMap(file);
+        playbackThread = new Thread(() -> runPlayback(file), "Playback");
+        playbackThread.start();
+        mainHandler.post(progressRunnable);
+    }
+
+    public void stop() {
+        running = false;
+        resume();
+        Thread t = playbackThread;
+        if (t != null) {
+            try {
+                t.join(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            playbackThread = null;
+        }
+        mainHandler.removeCallbacks(progressRunnable);
+    }
+
+    public void pause() {
+        paused = true;
+    }
+
+    public void resume() {
+        synchronized (pauseLock) {
+            paused = false;
+            pauseLock.notifyAll();
+        }
+    }
+
+    public boolean isPlaying() {
+        return running && !paused;
+    }
+
+    public boolean isPaused() {
+        return running && paused;
+    }
+
+    /** 0.5x - 3x */
+    public void setSpeed(float speed) {
+        this.speed = speed;
+    }
+
+    public float getSpeed() {
+        return speed;
+    }
+
+    public void setSkipSilence(boolean skip) {
+        this.skipSilence = skip;
+        File file = currentFile;
+        if (skip && file != null && silenceMap == null) requestSilenceMap(file);
+    }
+
+    /** 在后台读取（必要时计算）静音表，完成时若仍在播放该文件则交给播放线程 */
+    private void requestSilenceMap(File file) {
+        Context appContext = context;
+        WorkScheduler.Job load = task -> {
+            SilenceMap map = loadSilenceMap(appContext, file);
+            if (file.equals(currentFile)) silenceMap = map;
+        };
+        try {
+            WorkScheduler.getInstance().submit(WorkScheduler.LANE_INTERACTIVE,
+                    WorkScheduler.keyFor(this, "silence:" + file.getAbsolutePath()), load);
+        } catch (RejectedExecutionException e) {
+            // 本次播放不跳过静音
+            Log.w(TAG, "Silence map request rejected", e);
+        }
+    }
+
+    public void seekToMs(long ms) {
+        pendingSeekMs = ms;
+    }
+
+    /** 最近一次播放中每秒音频消耗的 CPU 时间（纳秒） */
+    public long getCpuNanosPerAudioSecond() {
+        return cpuNanosPerAudioSecond;
+    }
+
+    private void runPlayback(File file) {
+        AudioTrack track = null;
+        try (PlaybackProcessor processor = new PlaybackProcessor(file)) {
+            int sampleRate = processor.getSampleRate();
+            durationMs = processor.getDurationFrames() * 1000 / sampleRate;
+            short[] out = new short[processor.getMinOutputCapacity()];
+            int minBuffer = AudioTrack.getMinBufferSize(sampleRate,
+                    AudioFormat.CHANNEL_OUT_MONO, AudioFormat.ENCODING_PCM_16BIT);
+            int bufferBytes = Math.max(minBuffer, out.length * 4);
+            track = createTrack(sampleRate, bufferBytes);
+            track.play();
+
+            float appliedSpeed = Float.NaN;
+            boolean appliedSkip = false;
+            while (running) {
+                if (paused) {
+                    track.pause();
+                    synchronized (pauseLock) {
+                        while (paused && running) pauseLock.wait();
+                    }
+                    if (!running) break;
+                    track.play();
+                }
+                if (speed != appliedSpeed) {
+                    appliedSpeed = speed;
+                    processor.setSpeed(appliedSpeed);
+                }
+                // 静音表就绪之前不跳过
+                SilenceMap map = skipSilence ? silenceMap : null;
+                if ((map != null) != appliedSkip) {
+                    appliedSkip = map != null;
+                    if (appliedSkip) processor.setSilenceMap(map);
+                    processor.setSkipSilence(appliedSkip);
+                }
+                long seek = pendingSeekMs;
+                if (seek >= 0) {
+                    pendingSeekMs = -1;
+                    track.pause();
+                    track.flush();
+                    processor.seekFrame(seek * sampleRate / 1000);
+                    track.play();
+                }
+
+                int n = processor.render(out);
+                if (n < 0) break;
+                track.write(out, 0, n);
+                positionMs = processor.getPositionFrame() * 1000 / sampleRate;
+            }
+            cpuNanosPerAudioSecond = processor.getCpuNanosPerAudioSecond();
+            Log.d(TAG, String.format("%s: %.2f ms CPU per audio second, skipped %d ms",
+                    file.getName(), cpuNanosPerAudioSecond / 1e6, processor.getSkippedFrames() * 1000 / sampleRate));
+            if (running) {
+                // 等待缓冲区中剩余的数据播放完
+                track.stop();
+                long drainUntil = System.currentTimeMillis() + bufferBytes / 2 * 1000L / sampleRate;
+                while (running && System.currentTimeMillis() < drainUntil) {
+                    Thread.sleep(20);
+                }
+                running = false;
+                mainHandler.post(() -> {
+                    if (listener != null) listener.onCompletion();
+                });
+            }
+        } catch (IOException | InterruptedException e) {
+            Log.e(TAG, "Playback failed", e);
+            running = false;
+            mainHandler.post(() -> {
+                if (listener != null) listener.onError(e);
+            });
+        } finally {
+            if (track != null) track.release();
+        }
+    }
+
+    private static AudioTrack createTrack(int sampleRate, int bufferBytes) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            return new AudioTrack.Builder()
+                    .setAudioAttributes(new AudioAttributes.Builder()
+                            .setUsage(AudioAttributes.USAGE_MEDIA)
+                            .setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
+                            .build())
+                    .setAudioFormat(new AudioFormat.Builder()
+                            .setSampleRate(sampleRate)
+                            .setChannelMask(AudioFormat.CHANNEL_OUT_MONO)
+                            .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                            .build())
+                    .setBufferSizeInBytes(bufferBytes)
+                    .setTransferMode(AudioTrack.MODE_STREAM)
+                    .build();
+        }
+        return createLegacyTrack(sampleRate, bufferBytes);
+    }
+
+    /** Android 6.0 以下没有 AudioTrack.Builder */
+    @SuppressWarnings("deprecation")
+    private static AudioTrack createLegacyTrack(int sampleRate, int bufferBytes) {
+        return new AudioTrack(AudioManager.STREAM_MUSIC, sampleRate, AudioFormat.CHANNEL_OUT_MONO,
+                AudioFormat.ENCODING_PCM_16BIT, bufferBytes, AudioTrack.MODE_STREAM);
+    }
+
+    /**
+     * 读取静音表缓存，缺失或过期时扫描文件并写回缓存；会读完整个文件，在后台线程调用。
+     * 录音结束后预先调用一次，播放时就不必再扫描
+     */
+    public static SilenceMap loadSilenceMap(Context context, File file) throws IOException {
+        File dir = new File(context.getCacheDir(), "silence");
+        if (!dir.exists()) dir.mkdirs();
+        return SilenceMap.load(file, new File(dir, file.getName() + ".smap"));
+    }
+}
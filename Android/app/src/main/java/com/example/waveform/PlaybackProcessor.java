@@ -0,0 +1,146 @@
+package com.example.waveform;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 文件读取与音频输出之间的流式处理：跳过静音 + WSOLA 变速
+ * 只在播放线程调用；所有缓冲区在构造时分配
+ */
+public class PlaybackProcessor implements Closeable {
+    private static final int READ_FRAMES = 1024;
+
+    private final WavReader reader;
+    private final WsolaTimeStretcher stretcher;
+    private final int channels;
+    private final short[] readBuffer;
+    private final short[] monoBuffer;
+    private SilenceMap silenceMap;
+    private boolean skipSilence;
+    private float speed = 1f;
+    private boolean stretching;
+
+    private long cpuNanos;
+    private long outputSamples;
+    private long skippedFrames;
+
+    public PlaybackProcessor(File wav) throws IOException {
+        reader = new WavReader(wav);
+        channels = reader.getChannels();
+        stretcher = new WsolaTimeStretcher(reader.getSampleRate());
+        readBuffer = new short[READ_FRAMES * channels];
+        monoBuffer = new short[READ_FRAMES];
+    }
+
+    public int getSampleRate() {
+        return reader.getSampleRate();
+    }
+
+    /** render() 每次至少需要的输出容量 */
+    public int getMinOutputCapacity() {
+        return Math.max(READ_FRAMES, stretcher.getHopSize());
+    }
+
+    public long getDurationFrames() {
+        return reader.getFrameCount();
+    }
+
+    /** 当前读取位置（原始文件帧），比实际输出超前不超过一个分析窗 */
+    public long getPositionFrame() {
+        return reader.getFramePosition();
+    }
+
+    public void setSilenceMap(SilenceMap map) {
+        this.silenceMap = map;
+    }
+
+    public void setSkipSilence(boolean skip) {
+        this.skipSilence = skip;
+    }
+
+    public void setSpeed(float speed) {
+        speed = Math.max(WsolaTimeStretcher.MIN_SPEED, Math.min(WsolaTimeStretcher.MAX_SPEED, speed));
+        boolean stretch = Math.abs(speed - 1f) > 0.01f;
+        if (stretch != stretching) stretcher.reset();
+        stretching = stretch;
+        this.speed = speed;
+        stretcher.setSpeed(speed);
+    }
+
+    public void seekFrame(long frame) throws IOException {
+        reader.seekFrame(frame);
+        stretcher.reset();
+    }
+
+    /**
+     * 输出单声道样本到 out
+     * @return 样本数，播放结束返回 -1
+     */
+    public int render(short[] out) throws IOException {
+        long start = System.nanoTime();
+        try {
+            int n = stretching ? renderStretched(out) : renderDirect(out);
+            if (n > 0) outputSamples += n;
+            return n;
+        } finally {
+            cpuNanos += System.nanoTime() - start;
+        }
+    }
+
+    private int renderDirect(short[] out) throws IOException {
+        applySkip();
+        int frames = readMono(out, Math.min(out.length, READ_FRAMES));
+        return frames > 0 ? frames : -1;
+    }
+
+    private int renderStretched(short[] out) throws IOException {
+        while (true) {
+            int n = stretcher.produce(out, 0);
+            if (n != 0) return n;
+            applySkip();
+            int frames = readMono(monoBuffer, Math.min(READ_FRAMES, stretcher.getInputSpace()));
+            if (frames > 0) {
+                stretcher.putInput(monoBuffer, 0, frames);
+            } else {
+                stretcher.markEndOfInput();
+            }
+        }
+    }
+
+    private void applySkip() throws IOException {
+        if (!skipSilence || silenceMap == null) return;
+        long pos = reader.getFramePosition();
+        long target = silenceMap.skipTarget(pos);
+        if (target != pos) {
+            // 直接跳读，变速器看到的是剪掉静音后的连续输入
+            skippedFrames += target - pos;
+            reader.seekFrame(target);
+        }
+    }
+
+    private int readMono(short[] dest, int maxFrames) throws IOException {
+        if (channels == 1) return reader.read(dest, 0, maxFrames);
+        int frames = reader.read(readBuffer, 0, Math.min(maxFrames, READ_FRAMES));
+        for (int f = 0; f < frames; f++) {
+            int sum = 0;
+            for (int ch = 0; ch < channels; ch++) sum += readBuffer[f * channels + ch];
+            dest[f] = (short) (sum / channels);
+        }
+        return frames;
+    }
+
+    /** 每输出一秒音频消耗的 CPU 时间（纳秒），包含读文件 */
+    public long getCpuNanosPerAudioSecond() {
+        return outputSamples > 0 ? cpuNanos * reader.getSampleRate() / outputSamples : 0;
+    }
+
+    public long getSkippedFrames() {
+        return skippedFrames;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.waveform;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * 表格模式的函数图
+ * 点数多于像素列时按列降采样为最小/最大值竖线（与波形显示相同），否则相邻点连线；
+ * 线段在 setData / 尺寸变化时算好，绘制只与宽度有关且不分配对象。NaN、无穷处断开
+ */
+public class PlotView extends View {
+    private double[] xs;
+    private double[] ys;
+    private double yMin;
+    private double yMax;
+    // drawLines 用的线段端点（x0, y0, x1, y1 ...）
+    private float[] segments = new float[0];
+    private int segmentLength;
+    private float zeroY = -1;
+    private float zeroX = -1;
+
+    private Paint linePaint;
+    private Paint axisPaint;
+
+    public PlotView(Context context) {
+        super(context);
+        init();
+    }
+
+    public PlotView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init();
+    }
+
+    public PlotView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init();
+    }
+
+    private void init() {
+        float density = getResources().getDisplayMetrics().density;
+        linePaint = new Paint();
+        linePaint.setColor(0xFFFF3B30);
+        linePaint.setStrokeWidth(1.5f * density);
+        linePaint.setAntiAlias(true);
+        axisPaint = new Paint();
+        axisPaint.setColor(0xFFCCCCCC);
+        axisPaint.setStrokeWidth(density);
+    }
+
+    /** x 需等距递增 */
+    public void setData(double[] x, double[] y) {
+        xs = x;
+        ys = y;
+        yMin = Double.POSITIVE_INFINITY;
+        yMax = Double.NEGATIVE_INFINITY;
+        for (double v : y) {
+            if (Double.isNaN(v) || Double.isInfinite(v)) continue;
+            if (v < yMin) yMin = v;
+            if (v > yMax) yMax = v;
+        }
+        if (yMin > yMax) {
+            yMin = -1;
+            yMax = 1;
+        } else if (yMin == yMax) {
+            yMin -= 1;
+            yMax += 1;
+        }
+        rebuild();
+        invalidate();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        rebuild();
+    }
+
+    private void rebuild() {
+        int width = getWidth();
+        int height = getHeight();
+        segmentLength = 0;
+        if (xs == null || xs.length == 0 || width == 0 || height == 0) return;
+        int n = ys.length;
+        double xFrom = xs[0];
+        double xTo = xs[n - 1];
+        zeroY = yMin <= 0 && yMax >= 0 ? toPixelY(0, height) : -1;
+        zeroX = xFrom <= 0 && xTo >= 0 && xTo > xFrom ? (float) ((0 - xFrom) / (xTo - xFrom) * (width - 1)) : -1;
+        if (n > width) {
+            // 每列一条最小值到最大值的竖线，并与上一列相连
+            ensureSegments(width * 8);
+            float lastY = Float.NaN;
+            int i = 0;
+            for (int column = 0; column < width; column++) {
+                int end = (int) ((long) (column + 1) * n / width);
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                double first = Double.NaN;
+                double last = Double.NaN;
+                for (; i < end; i++) {
+                    double v = ys[i];
+                    if (Double.isNaN(v) || Double.isInfinite(v)) {
+                        last = Double.NaN;
+                        continue;
+                    }
+                    if (Double.isNaN(first)) first = v;
+                    last = v;
+                    if (v < min) min = v;
+                    if (v > max) max = v;
+                }
+                if (min > max) {
+                    lastY = Float.NaN;
+                    continue;
+                }
+                if (!Float.isNaN(lastY)) addSegment(column - 1, lastY, column, toPixelY(first, height));
+                addSegment(column, toPixelY(min, height), column, toPixelY(max, height));
+                lastY = Double.isNaN(last) ? Float.NaN : toPixelY(last, height);
+            }
+        } else {
+            ensureSegments(n * 4);
+            for (int i = 1; i < n; i++) {
+                double a = ys[i - 1];
+                double b = ys[i];
+                if (Double.isNaN(a) || Double.isInfinite(a) || Double.isNaN(b) || Double.isInfinite(b)) continue;
+                float x0 = (float) (i - 1) * (width - 1) / (n - 1);
+                float x1 = (float) i * (width - 1) / (n - 1);
+                addSegment(x0, toPixelY(a, height), x1, toPixelY(b, height));
+            }
+        }
+    }
+
+    private float toPixelY(double v, int height) {
+        return (float) ((yMax - v) / (yMax - yMin) * (height - 1));
+    }
+
+    private void ensureSegments(int size) {
+        if (segments.length < size) segments = new float[size];
+    }
+
+    private void addSegment(float x0, float y0, float x1, float y1) {
+        segments[segmentLength++] = x0;
+        segments[segmentLength++] = y0;
+        segments[segmentLength++] = x1;
+        segments[segmentLength++] = y1;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (zeroY >= 0) canvas.drawLine(0, zeroY, getWidth(), zeroY, axisPaint);
+        if (zeroX >= 0) canvas.drawLine(zeroX, 0, zeroX, getHeight(), axisPaint);
+        if (segmentLength > 0) canvas.drawLines(segments, 0, segmentLength, linePaint);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.waveform;
+
+/**
+ * 预录环形缓冲：固定容量的 short[]，始终保存最近 capacity 个样本，写满后覆盖最旧的数据
+ * 内存在构造时一次分配，写入只做数组拷贝；单线程写，交给写线程读取期间写方不得再写入
+ */
+public class PreRollBuffer {
+    private final short[] data;
+    // 下一个样本写入的位置
+    private int head;
+    private int size;
+
+    /**
+     * @param capacity 保存的样本数，如 秒数 × 采样率
+     */
+    public PreRollBuffer(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("容量必须大于 0");
+        data = new short[capacity];
+    }
+
+    public int getCapacity() {
+        return data.length;
+    }
+
+    /** 当前保存的样本数，不超过容量 */
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /** 追加样本，超出容量时只保留最后 capacity 个 */
+    public void write(short[] samples, int offset, int count) {
+        int capacity = data.length;
+        if (count >= capacity) {
+            System.arraycopy(samples, offset + count - capacity, data, 0, capacity);
+            head = 0;
+            size = capacity;
+            return;
+        }
+        int first = Math.min(count, capacity - head);
+        System.arraycopy(samples, offset, data, head, first);
+        System.arraycopy(samples, offset + first, data, 0, count - first);
+        head = (head + count) % capacity;
+        size = Math.min(size + count, capacity);
+    }
+
+    /**
+     * 按时间顺序拷出样本
+     * @param from 从最旧的样本算起的序号
+     * @return 实际拷贝的样本数
+     */
+    public int read(int from, short[] out, int offset, int count) {
+        count = Math.min(count, size - from);
+        if (count <= 0) return 0;
+        int capacity = data.length;
+        int start = (head - size + from + capacity) % capacity;
+        int first = Math.min(count, capacity - start);
+        System.arraycopy(data, start, out, offset, first);
+        System.arraycopy(data, 0, out, offset + first, count - first);
+        return count;
+    }
+}
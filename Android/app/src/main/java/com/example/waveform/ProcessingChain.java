@@ -0,0 +1,137 @@
+package com.example.waveform;
+
+import java.util.Locale;
+
+/**
+ * 可插拔的处理链，按顺序原地处理每个采集块，并统计每级耗时
+ * 级联数组写时复制，录音线程读取时无需加锁；统计只由录音线程写入，界面线程读取的是近似值
+ */
+public class ProcessingChain {
+
+    /** 单级处理及其耗时统计 */
+    public static final class Stage {
+        final AudioProcessor processor;
+        volatile boolean enabled = true;
+        volatile long blocks;
+        volatile long totalNanos;
+        volatile long maxNanos;
+        volatile long lastNanos;
+
+        Stage(AudioProcessor processor) {
+            this.processor = processor;
+        }
+    }
+
+    private volatile Stage[] stages = new Stage[0];
+    private int sampleRate;
+    private volatile long samplesProcessed;
+    private volatile long blocksProcessed;
+
+    public synchronized void add(AudioProcessor processor) {
+        Stage[] old = stages;
+        Stage[] next = new Stage[old.length + 1];
+        System.arraycopy(old, 0, next, 0, old.length);
+        next[old.length] = new Stage(processor);
+        if (sampleRate > 0) processor.prepare(sampleRate);
+        stages = next;
+    }
+
+    public synchronized void remove(AudioProcessor processor) {
+        Stage[] old = stages;
+        int index = indexOf(old, processor);
+        if (index < 0) return;
+        Stage[] next = new Stage[old.length - 1];
+        System.arraycopy(old, 0, next, 0, index);
+        System.arraycopy(old, index + 1, next, index, old.length - index - 1);
+        stages = next;
+    }
+
+    public void setEnabled(AudioProcessor processor, boolean enabled) {
+        Stage[] current = stages;
+        int index = indexOf(current, processor);
+        if (index >= 0) current[index].enabled = enabled;
+    }
+
+    /** 开始采集前调用 */
+    public synchronized void prepare(int sampleRate) {
+        this.sampleRate = sampleRate;
+        for (Stage stage : stages) {
+            stage.processor.prepare(sampleRate);
+            stage.processor.reset();
+            stage.blocks = 0;
+            stage.totalNanos = 0;
+            stage.maxNanos = 0;
+            stage.lastNanos = 0;
+        }
+        samplesProcessed = 0;
+        blocksProcessed = 0;
+    }
+
+    /**
+     * 录音线程调用：依次原地处理，无分配
+     */
+    public void process(short[] buffer, int offset, int count) {
+        Stage[] current = stages;
+        for (int i = 0; i < current.length; i++) {
+            Stage stage = current[i];
+            if (!stage.enabled) continue;
+            long start = System.nanoTime();
+            stage.processor.process(buffer, offset, count);
+            long elapsed = System.nanoTime() - start;
+            stage.blocks++;
+            stage.totalNanos += elapsed;
+            stage.lastNanos = elapsed;
+            if (elapsed > stage.maxNanos) stage.maxNanos = elapsed;
+        }
+        samplesProcessed += count;
+        blocksProcessed++;
+    }
+
+    public int size() {
+        return stages.length;
+    }
+
+    public String getStageName(int index) {
+        return stages[index].processor.getName();
+    }
+
+    /** 该级平均每块耗时（纳秒） */
+    public long getAverageNanosPerBlock(int index) {
+        Stage stage = stages[index];
+        return stage.blocks > 0 ? stage.totalNanos / stage.blocks : 0;
+    }
+
+    public long getMaxNanosPerBlock(int index) {
+        return stages[index].maxNanos;
+    }
+
+    /** 平均每块对应的实时预算（纳秒） */
+    public long getBlockBudgetNanos() {
+        if (blocksProcessed == 0 || sampleRate == 0) return 0;
+        return samplesProcessed * 1000000000L / sampleRate / blocksProcessed;
+    }
+
+    /**
+     * 每级耗时汇总，如 "HighPass avg=12000ns max=40000ns (0.05% budget)"
+     */
+    public String describeStats() {
+        StringBuilder sb = new StringBuilder();
+        long budget = getBlockBudgetNanos();
+        Stage[] current = stages;
+        for (int i = 0; i < current.length; i++) {
+            long avg = getAverageNanosPerBlock(i);
+            sb.append(String.format(Locale.US, "%s avg=%dns max=%dns (%.2f%% budget)",
+                    current[i].processor.getName(), avg, current[i].maxNanos,
+                    budget > 0 ? avg * 100.0 / budget : 0));
+            if (i < current.length - 1) sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static int indexOf(Stage[] array, AudioProcessor processor) {
+        for (int i = 0; i < array.length; i++) {
+            if (array[i].processor == processor) return i;
+        }
+        return -1;
+    }
+}
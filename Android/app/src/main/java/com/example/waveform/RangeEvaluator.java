@@ -0,0 +1,107 @@
+package com.example.waveform;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 表格模式：在一段等距的 x 上计算含变量 x 的表达式，结果放在两个 double[] 中
+ * - 按列求值：每条指令一次处理 BLOCK 个点（CompiledExpression.evaluateBlock），解释开销按批分摊
+ * - 点数多时按 fork/join 对半拆分到多个核上，每个叶子任务用自己的求值栈；表达式的指令和常量只读，可并发计算
+ */
+public class RangeEvaluator {
+    static final int BLOCK = 256;
+    // 叶子任务的点数下限，拆得更细时调度开销超过收益
+    private static final int MIN_SPLIT = 16 * 1024;
+
+    /** 计算结果 */
+    public static final class Result {
+        public final double[] x;
+        public final double[] y;
+        /** 计算耗时（不含数组分配） */
+        public final long elapsedNanos;
+
+        Result(double[] x, double[] y, long elapsedNanos) {
+            this.x = x;
+            this.y = y;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /** 吞吐量：点/秒 */
+        public double getPointsPerSecond() {
+            return x.length * 1e9 / Math.max(1, elapsedNanos);
+        }
+    }
+
+    private final ForkJoinPool pool;
+
+    /**
+     * @param parallelism 工作线程数，通常为 CPU 核数
+     */
+    public RangeEvaluator(int parallelism) {
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * 在 [from, to] 上取 count 个等距点计算（首尾都包含）
+     */
+    public Result evaluate(CompiledExpression expression, double from, double to, int count) {
+        if (count < 1) throw new IllegalArgumentException("点数必须大于 0");
+        double[] x = new double[count];
+        double[] y = new double[count];
+        double step = count > 1 ? (to - from) / (count - 1) : 0;
+        long start = System.nanoTime();
+        pool.invoke(new Chunk(expression, from, to, step, x, y, 0, count));
+        return new Result(x, y, System.nanoTime() - start);
+    }
+
+    /** 单线程计算 [lo, hi) 部分，供对照和小范围使用 */
+    static void evaluateRange(CompiledExpression expression, double from, double to, double step,
+                              double[] x, double[] y, int lo, int hi) {
+        int last = x.length - 1;
+        for (int i = lo; i < hi; i++) x[i] = i == last && last > 0 ? to : from + step * i;
+        double[][] stack = new double[expression.maxDepth][BLOCK];
+        for (int i = lo; i < hi; i += BLOCK) {
+            expression.evaluateBlock(x, y, i, Math.min(BLOCK, hi - i), stack);
+        }
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private static final class Chunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final CompiledExpression expression;
+        private final double from;
+        private final double to;
+        private final double step;
+        private final double[] x;
+        private final double[] y;
+        private final int lo;
+        private final int hi;
+
+        Chunk(CompiledExpression expression, double from, double to, double step, double[] x, double[] y,
+              int lo, int hi) {
+            this.expression = expression;
+            this.from = from;
+            this.to = to;
+            this.step = step;
+            this.x = x;
+            this.y = y;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= MIN_SPLIT) {
+                evaluateRange(expression, from, to, step, x, y, lo, hi);
+                return;
+            }
+            // 在 BLOCK 边界上对半拆分
+            int mid = lo + (hi - lo) / 2 / BLOCK * BLOCK;
+            invokeAll(new Chunk(expression, from, to, step, x, y, lo, mid),
+                    new Chunk(expression, from, to, step, x, y, mid, hi));
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.waveform;
+
+/**
+ * 实数输入 FFT：把 N 点实序列打包为 N/2 点复序列做基 2 变换，再拆分出实数谱
+ * 位反转表、旋转因子和窗函数在构造时预计算，实例可跨帧复用，变换过程不分配对象
+ * 非线程安全，每个线程使用独立实例
+ */
+public class RealFft {
+    private final int size;
+    private final int half;
+    private final int[] bitReverse;
+    // N/2 点复数 FFT 的旋转因子
+    private final float[] cosTable;
+    private final float[] sinTable;
+    // 拆分实数谱用的 N 点旋转因子 (k = 0..N/2)
+    private final float[] splitCos;
+    private final float[] splitSin;
+    private final float[] window;
+    private final float[] re;
+    private final float[] im;
+
+    public RealFft(int size) {
+        if (size < 4 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("FFT size must be a power of two: " + size);
+        }
+        this.size = size;
+        this.half = size / 2;
+        re = new float[half];
+        im = new float[half];
+
+        int bits = Integer.numberOfTrailingZeros(half);
+        bitReverse = new int[half];
+        for (int i = 0; i < half; i++) {
+            bitReverse[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+        cosTable = new float[half / 2];
+        sinTable = new float[half / 2];
+        for (int i = 0; i < half / 2; i++) {
+            double angle = 2 * Math.PI * i / half;
+            cosTable[i] = (float) Math.cos(angle);
+            sinTable[i] = (float) -Math.sin(angle);
+        }
+        splitCos = new float[half + 1];
+        splitSin = new float[half + 1];
+        for (int k = 0; k <= half; k++) {
+            double angle = 2 * Math.PI * k / size;
+            splitCos[k] = (float) Math.cos(angle);
+            splitSin[k] = (float) -Math.sin(angle);
+        }
+        // Hann 窗
+        window = new float[size];
+        for (int i = 0; i < size; i++) {
+            window[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / (size - 1)));
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /** 输出频点数 N/2 + 1 */
+    public int getBinCount() {
+        return half + 1;
+    }
+
+    /**
+     * 正变换。input 从 offset 起读取 N 个样本（可选加 Hann 窗），
+     * outRe/outIm 写入 N/2 + 1 个频点
+     */
+    public void forward(float[] input, int offset, boolean applyWindow, float[] outRe, float[] outIm) {
+        // 偶数样本放实部、奇数样本放虚部，同时完成位反转重排
+        for (int n = 0; n < half; n++) {
+            int j = bitReverse[n];
+            int i = offset + 2 * n;
+            if (applyWindow) {
+                re[j] = input[i] * window[2 * n];
+                im[j] = input[i + 1] * window[2 * n + 1];
+            } else {
+                re[j] = input[i];
+                im[j] = input[i + 1];
+            }
+        }
+        complexTransform();
+
+        // Z[k] -> X[k]
+        outRe[0] = re[0] + im[0];
+        outIm[0] = 0;
+        outRe[half] = re[0] - im[0];
+        outIm[half] = 0;
+        for (int k = 1; k < half; k++) {
+            float zr = re[k], zi = im[k];
+            float cr = re[half - k], ci = -im[half - k];
+            float er = (zr + cr) * 0.5f, ei = (zi + ci) * 0.5f;
+            // Xo = (Z - conj) / 2i
+            float or = (zi - ci) * 0.5f, oi = -(zr - cr) * 0.5f;
+            float wr = splitCos[k], wi = splitSin[k];
+            outRe[k] = er + wr * or - wi * oi;
+            outIm[k] = ei + wr * oi + wi * or;
+        }
+    }
+
+    /**
+     * 便捷方法：加窗后输出各频点幅度的 dBFS（以满幅正弦为 0dB）
+     */
+    public void magnitudesDb(float[] input, int offset, float[] outRe, float[] outIm, float[] outDb) {
+        forward(input, offset, true, outRe, outIm);
+        // Hann 窗相干增益 0.5，满幅正弦的峰值频点幅度约为 N/4
+        float scale = 4f / size;
+        for (int k = 0; k <= half; k++) {
+            float mag = (float) Math.sqrt(outRe[k] * outRe[k] + outIm[k] * outIm[k]) * scale;
+            outDb[k] = mag > 1e-9f ? (float) (20 * Math.log10(mag)) : -180f;
+        }
+    }
+
+    private void complexTransform() {
+        for (int len = 2; len <= half; len <<= 1) {
+            int halfLen = len >> 1;
+            int step = half / len;
+            for (int i = 0; i < half; i += len) {
+                for (int j = 0, t = 0; j < halfLen; j++, t += step) {
+                    float wr = cosTable[t], wi = sinTable[t];
+                    int a = i + j, b = a + halfLen;
+                    float xr = re[b] * wr - im[b] * wi;
+                    float xi = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - xr;
+                    im[b] = im[a] - xi;
+                    re[a] += xr;
+                    im[a] += xi;
+                }
+            }
+        }
+    }
+}
@@ -7,8 +7,6 @@ import android.content.Intent;
 import android.graphics.Color;
 import android.graphics.drawable.ColorDrawable;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.View;
@@ -17,7 +15,6 @@ import android.view.Window;
 import android.view.WindowManager;
 import android.widget.TextView;
 import android.widget.Toast;
-import java.util.Locale;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.DialogFragment;
@@ -25,13 +22,13 @@ import androidx.fragment.app.DialogFragment;
 public class RecordDialogFragment extends DialogFragment {
 
     private AudioWaveformView waveformView;
-    private AudioRecorder audioRecorder;
+    private RecordingServiceConnection connection;
     private View btnRecord, btnHistory, rootContainer, recorderBox;
     private TextView tvTimer, tvHint;
     
     private boolean isRecording = false;
-    private long startTime = 0;
-    private Handler timerHandler = new Handler(Looper.getMainLooper());
+    private long shownSeconds = -1;
+    private final char[] timerChars = new char[8];
     
     // 背景遮罩动画相关
     private static final int ANIM_DURATION = 300;
@@ -102,26 +99,73 @@ public class RecordDialogFragment extends DialogFragment {
     }
 
     private void setupRecorder() {
-        audioRecorder = new AudioRecorder(requireContext());
-        audioRecorder.setAmplitudeListener(amplitude -> {
-            if(getActivity() != null) {
-                getActivity().runOnUiThread(() -> waveformView.addAmplitude(amplitude));
-            }
+        waveformView.loadLoudnessReference();
+        // 录音中点击提示文字暂停/继续
+        tvHint.setOnClickListener(v -> {
+            RecordingService service = connection.getService();
+            if (service == null || !isRecording) return;
+            if (service.isPaused()) service.resumeRecording(); else service.pauseRecording();
+        });
+        // 录音中点击计时器添加书签
+        tvTimer.setOnClickListener(v -> {
+            RecordingService service = connection.getService();
+            int id = service != null ? service.addBookmark() : -1;
+            if (id > 0) Toast.makeText(getContext(), "已添加书签 " + id, Toast.LENGTH_SHORT).show();
         });
+        // 录音由前台服务持有，对话框只是观察者；连上服务时预热录音引擎
+        connection = new RecordingServiceConnection(requireContext(), recordingObserver);
+        connection.bind();
     }
 
+    private final RecordingObserver recordingObserver = new RecordingObserver() {
+        @Override
+        public void onRecordingStateChanged(boolean recording) {
+            if (recording) startState(); else stopState();
+        }
+
+        @Override
+        public void onPauseStateChanged(boolean paused) {
+            tvHint.setText(paused ? "Paused - tap to resume" : "Recording...");
+        }
+
+        @Override
+        public void onAmplitude(float amplitude) {
+            waveformView.addAmplitude(amplitude);
+        }
+
+        @Override
+        public void onTick(long elapsedMs) {
+            // 秒数变化时才刷新文字
+            long seconds = elapsedMs / 1000;
+            if (seconds != shownSeconds) {
+                shownSeconds = seconds;
+                int len = RecordingClock.formatMmSs(seconds * 1000, timerChars);
+                tvTimer.setText(timerChars, 0, len);
+            }
+        }
+
+        @Override
+        public void onRecordingSaved(String path) {
+            if (path != null) Toast.makeText(getContext(), "Saved: " + path, Toast.LENGTH_SHORT).show();
+        }
+    };
+
     private void toggleRecording() {
+        RecordingService service = connection.getService();
+        if (service == null) return;
         if (isRecording) {
-            stopState();
+            service.stopRecording();
         } else {
-            startState();
+            service.startRecording();
         }
     }
 
     private void startState() {
+        if (isRecording) return;
         isRecording = true;
-        
-        // 1. 视觉变化
+        shownSeconds = -1;
+
+        // 视觉变化
         // 背景变暗 (Opacity 增加)
         ObjectAnimator colorAnim = ObjectAnimator.ofArgb(rootContainer, "backgroundColor",
                 Color.parseColor("#4D000000"), Color.parseColor("#CC000000")); // 80% Black
@@ -136,22 +180,13 @@ public class RecordDialogFragment extends DialogFragment {
         waveformView.clear();
         tvTimer.setVisibility(View.VISIBLE);
         tvHint.setText("Recording...");
-        
-        // 2. 逻辑启动
-        audioRecorder.startRecording();
-        startTime = System.currentTimeMillis();
-        timerHandler.post(timerRunnable);
     }
 
     private void stopState() {
+        if (!isRecording) return;
         isRecording = false;
 
-        // 1. 停止逻辑
-        String filePath = audioRecorder.stopRecording();
-        timerHandler.removeCallbacks(timerRunnable);
-        Toast.makeText(getContext(), "Saved: " + filePath, Toast.LENGTH_SHORT).show();
-
-        // 2. 视觉恢复
+        // 视觉恢复
         ObjectAnimator colorAnim = ObjectAnimator.ofArgb(rootContainer, "backgroundColor",
                 Color.parseColor("#CC000000"), Color.parseColor("#4D000000"));
         colorAnim.setDuration(ANIM_DURATION).start();
@@ -165,24 +200,10 @@ public class RecordDialogFragment extends DialogFragment {
         tvTimer.setText("00:00");
     }
 
-    private Runnable timerRunnable = new Runnable() {
-        @Override
-        public void run() {
-            if(!isRecording) return;
-            long millis = System.currentTimeMillis() - startTime;
-            int seconds = (int) (millis / 1000);
-            int minutes = seconds / 60;
-            seconds = seconds % 60;
-            tvTimer.setText(String.format(Locale.US, "%02d:%02d", minutes, seconds));
-            timerHandler.postDelayed(this, 500);
-        }
-    };
-
     @Override
     public void onDestroy() {
         super.onDestroy();
-        if (isRecording) {
-            audioRecorder.stopRecording();
-        }
+        // 只摘下观察者，录音在服务中继续
+        connection.unbind();
     }
 }
\ No newline at end of file
@@ -1,11 +1,18 @@
 package com.example.waveform;
 
-import android.media.MediaPlayer;
 import android.os.Bundle;
 import android.os.Environment;
+import android.text.Editable;
+import android.text.InputType;
+import android.text.TextWatcher;
 import android.util.Log;
 import android.view.View;
-import android.widget.ArrayAdapter;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.Button;
+import android.widget.CheckBox;
+import android.widget.EditText;
+import android.widget.LinearLayout;
 import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -15,15 +22,40 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
 
 public class RecordHistoryActivity extends AppCompatActivity {
 
     private ListView listView;
     private TextView emptyView;
-    private List<File> recordFiles;
-    private ArrayAdapter<String> adapter;
-    private MediaPlayer mediaPlayer;
+    // 列表内容：索引和查询得到的行号，列表按位置直接读索引的列
+    private RecordingIndex index;
+    private int[] rows = new int[0];
+    private boolean synced;
+    private final RecordingAdapter adapter = new RecordingAdapter();
+    private EditText etSearch;
+    private Button btnSort;
+    private static final String[] SORT_LABELS = {"时间", "时长", "大小", "响度", "名称"};
+    private int sortKey = RecordingIndex.KEY_CREATED;
+    private boolean sortDescending = true;
+    // 筛选对话框中的输入：最近天数，时长(秒)、大小(MB)、响度(LUFS) 的下限和上限
+    private final String[] filterValues = new String[7];
+    private PlaybackEngine playbackEngine;
+    private View playerBar;
+    private TextView tvPlayback;
+    private Button btnSpeed, btnPause, btnBookmarks;
+    private String playingName = "";
+    // 当前播放文件的书签（WAV cue 点）及其采样率
+    private List<WavFile.CuePoint> playingCues = new ArrayList<>();
+    private int playingSampleRate = 44100;
+    private static final float[] SPEEDS = {0.5f, 0.75f, 1f, 1.25f, 1.5f, 2f, 3f};
+    private int speedIndex = 2;
+    private File recordingsDir;
+    private BatchAnalysisJob analysisJob;
+    private WorkScheduler.Task analysisTask;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -31,132 +63,640 @@ public class RecordHistoryActivity extends AppCompatActivity {
         
         // 简单的布局构建
         // 为了方便，这里演示动态创建 View，确保能直接运行
-        android.widget.FrameLayout root = new android.widget.FrameLayout(this);
+        LinearLayout root = new LinearLayout(this);
+        root.setOrientation(LinearLayout.VERTICAL);
         root.setBackgroundColor(0xFFFFFFFF);
+        root.addView(buildFilterBar());
+        android.widget.FrameLayout listContainer = new android.widget.FrameLayout(this);
         listView = new ListView(this);
         emptyView = new TextView(this);
         emptyView.setText("暂无录音记录");
         emptyView.setTextColor(0xFF999999);
         emptyView.setGravity(android.view.Gravity.CENTER);
         emptyView.setVisibility(View.GONE);
+        listView.setAdapter(adapter);
+        listView.setFastScrollEnabled(true);
         
-        root.addView(listView);
-        root.addView(emptyView);
+        listContainer.addView(listView);
+        listContainer.addView(emptyView);
+        root.addView(listContainer, new LinearLayout.LayoutParams(
+                LinearLayout.LayoutParams.MATCH_PARENT, 0, 1f));
+        root.addView(buildPlayerBar());
         setContentView(root);
 
+        playbackEngine = new PlaybackEngine(this);
+        playbackEngine.setListener(new PlaybackEngine.Listener() {
+            @Override
+            public void onProgress(long positionMs, long durationMs) {
+                tvPlayback.setText(playingName + "\n" + formatTime(positionMs) + " / " + formatTime(durationMs));
+            }
+
+            @Override
+            public void onCompletion() {
+                playerBar.setVisibility(View.GONE);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                playerBar.setVisibility(View.GONE);
+                Toast.makeText(RecordHistoryActivity.this, "无法播放文件", Toast.LENGTH_SHORT).show();
+            }
+        });
+
         setTitle("历史记录");
 
         loadFiles();
 
         listView.setOnItemClickListener((parent, view, position, id) -> {
-            if (position < recordFiles.size()) {
-                playAudio(recordFiles.get(position));
+            if (position < rows.length) {
+                playAudio(fileAt(position));
             }
         });
 
         listView.setOnItemLongClickListener((parent, view, position, id) -> {
             new AlertDialog.Builder(this)
                 .setTitle("操作")
-                .setItems(new String[]{"删除"}, (dialog, which) -> {
+                .setItems(new String[]{"删除", "音量标准化", "分析全部录音", "查找重复录音", "分享 (WAV)", "分享 (AAC)"}, (dialog, which) -> {
                     if (which == 0) deleteFile(position);
+                    else if (which == 1) normalizeFile(position);
+                    else if (which == 2) analyzeAll();
+                    else if (which == 3) findDuplicates();
+                    else if (which == 4) shareFile(position, RecordingShareProvider.FORMAT_WAV);
+                    else if (which == 5) shareFile(position, RecordingShareProvider.FORMAT_AAC);
                 })
                 .show();
             return true;
         });
     }
 
+    /**
+     * 先用数据库中已有的记录建索引立即显示，再在后台同步目录，有变化时重建
+     */
     private void loadFiles() {
-        recordFiles = new ArrayList<>();
-        List<String> fileNames = new ArrayList<>();
-
-        try {
-            // [关键修复] 在模拟器上 context.getExternalFilesDir 可能返回 null
-            File baseDir = getExternalFilesDir(null);
-            if (baseDir == null) {
-                // 尝试 fallback 到内部存储
-                baseDir = getFilesDir();
-                Log.d("History", "Using internal storage: " + baseDir.getAbsolutePath());
-            } else {
-                Log.d("History", "Using external storage: " + baseDir.getAbsolutePath());
-            }
-
-            File dir = new File(baseDir, "Recordings");
-            if (!dir.exists()) {
-                boolean created = dir.mkdirs();
-                if (!created) {
-                    Log.e("History", "Directory creation failed for: " + dir.getAbsolutePath());
-                } else {
-                    Log.d("History", "Directory created: " + dir.getAbsolutePath());
-                }
+        File dir = getRecordingsDir();
+        recordingsDir = dir;
+        RecordingMetadataStore metadataStore = RecordingMetadataStore.getInstance(this);
+        // 本界面同一时刻只需排一次：排队中的同步尚未开始，会看到最新的目录
+        WorkScheduler.Job load = task -> {
+            try {
+                RecordingIndex cached = metadataStore.loadIndex();
+                runOnUiThread(() -> setIndex(cached, false));
+                RecordingIndex current = metadataStore.syncDirectory(dir) ? metadataStore.loadIndex() : cached;
+                runOnUiThread(() -> setIndex(current, true));
+            } catch (Exception e) {
+                Log.e("History", "Error loading files", e);
+                runOnUiThread(() -> Toast.makeText(this, "加载文件出错: " + e.getMessage(), Toast.LENGTH_LONG).show());
             }
+        };
+        try {
+            WorkScheduler.getInstance().submit(WorkScheduler.LANE_INTERACTIVE,
+                    WorkScheduler.keyFor(this, "history-index"), load);
+        } catch (RejectedExecutionException e) {
+            Toast.makeText(this, "后台任务繁忙，请稍后再试", Toast.LENGTH_SHORT).show();
+        }
+    }
 
-            Log.d("History", "Checking directory: " + dir.getAbsolutePath());
-            File[] files = dir.listFiles();
+    private File getRecordingsDir() {
+        // [关键修复] 在模拟器上 context.getExternalFilesDir 可能返回 null
+        File baseDir = getExternalFilesDir(null);
+        if (baseDir == null) {
+            // 尝试 fallback 到内部存储
+            baseDir = getFilesDir();
+            Log.d("History", "Using internal storage: " + baseDir.getAbsolutePath());
+        } else {
+            Log.d("History", "Using external storage: " + baseDir.getAbsolutePath());
+        }
 
-            if (files != null) {
-                Log.d("History", "Found " + files.length + " files in directory");
-                // 按时间倒序
-                Arrays.sort(files, (f1, f2) -> Long.compare(f2.lastModified(), f1.lastModified()));
-                for (File f : files) {
-                    if (f.getName().endsWith(".wav") && f.length() > 0) {
-                        recordFiles.add(f);
-                        long sizeKb = f.length() / 1024;
-                        fileNames.add(f.getName() + "\n" + sizeKb + " KB");
-                        Log.d("History", "Added file: " + f.getName() + " (" + sizeKb + " KB)");
-                    }
-                }
+        File dir = new File(baseDir, "Recordings");
+        if (!dir.exists()) {
+            boolean created = dir.mkdirs();
+            if (!created) {
+                Log.e("History", "Directory creation failed for: " + dir.getAbsolutePath());
             } else {
-                Log.d("History", "No files found or directory not accessible");
+                Log.d("History", "Directory created: " + dir.getAbsolutePath());
             }
-        } catch (Exception e) {
-            Log.e("History", "Error loading files", e);
-            Toast.makeText(this, "加载文件出错: " + e.getMessage(), Toast.LENGTH_LONG).show();
         }
+        return dir;
+    }
 
-        Log.d("History", "Total valid files: " + fileNames.size());
+    private void setIndex(RecordingIndex newIndex, boolean complete) {
+        if (isDestroyed()) return;
+        index = newIndex;
+        synced = complete;
+        applyQuery();
+    }
 
-        if (fileNames.isEmpty()) {
+    /** 按当前搜索、筛选和排序重新查询索引 */
+    private void applyQuery() {
+        if (index == null) return;
+        RecordingIndex.Query query;
+        try {
+            query = buildQuery();
+        } catch (NumberFormatException e) {
+            Toast.makeText(this, "请输入有效的数字", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        long start = System.nanoTime();
+        rows = index.query(query);
+        Log.d("History", String.format(Locale.US, "Query: %d of %d recordings in %.2f ms",
+                rows.length, index.size(), (System.nanoTime() - start) / 1e6));
+        adapter.notifyDataSetChanged();
+        boolean filtered = !etSearch.getText().toString().trim().isEmpty() || query.hasRanges();
+        if (rows.length == 0) {
+            emptyView.setText(!synced ? "正在加载…" : filtered ? "没有符合条件的录音" : "暂无录音记录");
             listView.setVisibility(View.GONE);
             emptyView.setVisibility(View.VISIBLE);
         } else {
             listView.setVisibility(View.VISIBLE);
             emptyView.setVisibility(View.GONE);
-            adapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1, fileNames);
-            listView.setAdapter(adapter);
         }
+        if (analysisJob == null) setTitle(String.format(Locale.US, "历史记录 (%d)", rows.length));
     }
 
-    private void playAudio(File file) {
-        if (mediaPlayer != null) {
-            mediaPlayer.release();
+    private RecordingIndex.Query buildQuery() {
+        RecordingIndex.Query query = new RecordingIndex.Query();
+        query.namePrefix = etSearch.getText().toString().trim();
+        query.setSort(sortKey, sortDescending);
+        if (!isBlank(filterValues[0])) {
+            long days = (long) Double.parseDouble(filterValues[0]);
+            query.setCreatedRange(System.currentTimeMillis() - days * 24 * 3600 * 1000, Long.MAX_VALUE);
         }
-        mediaPlayer = new MediaPlayer();
-        try {
-            mediaPlayer.setDataSource(file.getAbsolutePath());
-            mediaPlayer.prepare();
-            mediaPlayer.start();
-            Toast.makeText(this, "开始播放", Toast.LENGTH_SHORT).show();
+        if (!isBlank(filterValues[1]) || !isBlank(filterValues[2])) {
+            query.setDurationRange(parseScaled(filterValues[1], 1000, Long.MIN_VALUE),
+                    parseScaled(filterValues[2], 1000, Long.MAX_VALUE));
+        }
+        if (!isBlank(filterValues[3]) || !isBlank(filterValues[4])) {
+            query.setSizeRange(parseScaled(filterValues[3], 1024 * 1024, Long.MIN_VALUE),
+                    parseScaled(filterValues[4], 1024 * 1024, Long.MAX_VALUE));
+        }
+        if (!isBlank(filterValues[5]) || !isBlank(filterValues[6])) {
+            query.setLoudnessRange(
+                    isBlank(filterValues[5]) ? Double.NEGATIVE_INFINITY : Double.parseDouble(filterValues[5]),
+                    isBlank(filterValues[6]) ? Double.POSITIVE_INFINITY : Double.parseDouble(filterValues[6]));
+        }
+        return query;
+    }
+
+    private static boolean isBlank(String s) {
+        return s == null || s.trim().isEmpty();
+    }
+
+    private static long parseScaled(String s, double scale, long unbounded) {
+        return isBlank(s) ? unbounded : Math.round(Double.parseDouble(s.trim()) * scale);
+    }
+
+    private File fileAt(int position) {
+        return new File(index.getPath(rows[position]));
+    }
+
+    /**
+     * 顶部搜索栏：名称前缀、排序（点击切换字段，长按切换升降序）、范围筛选
+     */
+    private View buildFilterBar() {
+        LinearLayout bar = new LinearLayout(this);
+        bar.setOrientation(LinearLayout.HORIZONTAL);
+        bar.setGravity(android.view.Gravity.CENTER_VERTICAL);
+        int padding = (int) (8 * getResources().getDisplayMetrics().density);
+        bar.setPadding(padding * 2, 0, padding, 0);
+
+        etSearch = new EditText(this);
+        etSearch.setHint("按名称搜索");
+        etSearch.setSingleLine(true);
+        etSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                applyQuery();
+            }
+        });
+        bar.addView(etSearch, new LinearLayout.LayoutParams(0, LinearLayout.LayoutParams.WRAP_CONTENT, 1f));
+
+        btnSort = new Button(this);
+        updateSortLabel();
+        btnSort.setOnClickListener(v -> {
+            sortKey = (sortKey + 1) % SORT_LABELS.length;
+            // 名称默认升序，其余默认降序
+            sortDescending = sortKey != RecordingIndex.KEY_NAME;
+            updateSortLabel();
+            applyQuery();
+        });
+        btnSort.setOnLongClickListener(v -> {
+            sortDescending = !sortDescending;
+            updateSortLabel();
+            applyQuery();
+            return true;
+        });
+        bar.addView(btnSort);
+
+        Button btnFilter = new Button(this);
+        btnFilter.setText("筛选");
+        btnFilter.setOnClickListener(v -> showFilterDialog());
+        bar.addView(btnFilter);
+        return bar;
+    }
+
+    private void updateSortLabel() {
+        btnSort.setText(SORT_LABELS[sortKey] + (sortDescending ? "↓" : "↑"));
+    }
+
+    private void showFilterDialog() {
+        LinearLayout form = new LinearLayout(this);
+        form.setOrientation(LinearLayout.VERTICAL);
+        int padding = (int) (16 * getResources().getDisplayMetrics().density);
+        form.setPadding(padding, padding / 2, padding, 0);
+        EditText[] fields = new EditText[filterValues.length];
+        int number = InputType.TYPE_CLASS_NUMBER | InputType.TYPE_NUMBER_FLAG_DECIMAL;
+        fields[0] = addFilterRow(form, "最近天数", number, filterValues[0]);
+        EditText[] duration = addFilterRange(form, "时长 (秒)", number, 1);
+        EditText[] size = addFilterRange(form, "大小 (MB)", number, 3);
+        EditText[] loudness = addFilterRange(form, "响度 (LUFS)", number | InputType.TYPE_NUMBER_FLAG_SIGNED, 5);
+        fields[1] = duration[0];
+        fields[2] = duration[1];
+        fields[3] = size[0];
+        fields[4] = size[1];
+        fields[5] = loudness[0];
+        fields[6] = loudness[1];
+        new AlertDialog.Builder(this)
+                .setTitle("筛选")
+                .setView(form)
+                .setPositiveButton("确定", (dialog, which) -> {
+                    for (int i = 0; i < fields.length; i++) filterValues[i] = fields[i].getText().toString();
+                    applyQuery();
+                })
+                .setNeutralButton("清除", (dialog, which) -> {
+                    Arrays.fill(filterValues, null);
+                    applyQuery();
+                })
+                .setNegativeButton("取消", null)
+                .show();
+    }
+
+    private EditText addFilterRow(LinearLayout form, String label, int inputType, String value) {
+        LinearLayout row = new LinearLayout(this);
+        row.setOrientation(LinearLayout.HORIZONTAL);
+        row.setGravity(android.view.Gravity.CENTER_VERTICAL);
+        TextView tv = new TextView(this);
+        tv.setText(label);
+        row.addView(tv, new LinearLayout.LayoutParams(0, LinearLayout.LayoutParams.WRAP_CONTENT, 1f));
+        EditText field = newFilterField(inputType, "", value);
+        row.addView(field, new LinearLayout.LayoutParams(0, LinearLayout.LayoutParams.WRAP_CONTENT, 1f));
+        form.addView(row);
+        return field;
+    }
+
+    private EditText[] addFilterRange(LinearLayout form, String label, int inputType, int firstValue) {
+        LinearLayout row = new LinearLayout(this);
+        row.setOrientation(LinearLayout.HORIZONTAL);
+        row.setGravity(android.view.Gravity.CENTER_VERTICAL);
+        TextView tv = new TextView(this);
+        tv.setText(label);
+        row.addView(tv, new LinearLayout.LayoutParams(0, LinearLayout.LayoutParams.WRAP_CONTENT, 1f));
+        EditText min = newFilterField(inputType, "最小", filterValues[firstValue]);
+        EditText max = newFilterField(inputType, "最大", filterValues[firstValue + 1]);
+        row.addView(min, new LinearLayout.LayoutParams(0, LinearLayout.LayoutParams.WRAP_CONTENT, 0.5f));
+        row.addView(max, new LinearLayout.LayoutParams(0, LinearLayout.LayoutParams.WRAP_CONTENT, 0.5f));
+        form.addView(row);
+        return new EditText[]{min, max};
+    }
+
+    private EditText newFilterField(int inputType, String hint, String value) {
+        EditText field = new EditText(this);
+        field.setInputType(inputType);
+        field.setSingleLine(true);
+        field.setHint(hint);
+        if (value != null) field.setText(value);
+        return field;
+    }
+
+    /**
+     * 底部播放条：变速、跳过静音、暂停、停止
+     */
+    private View buildPlayerBar() {
+        LinearLayout bar = new LinearLayout(this);
+        bar.setOrientation(LinearLayout.HORIZONTAL);
+        bar.setGravity(android.view.Gravity.CENTER_VERTICAL);
+        bar.setBackgroundColor(0xFFF2F2F7);
+        int padding = (int) (8 * getResources().getDisplayMetrics().density);
+        bar.setPadding(padding * 2, padding, padding, padding);
+
+        tvPlayback = new TextView(this);
+        tvPlayback.setTextColor(0xFF333333);
+        tvPlayback.setMaxLines(2);
+        bar.addView(tvPlayback, new LinearLayout.LayoutParams(0, LinearLayout.LayoutParams.WRAP_CONTENT, 1f));
+
+        btnSpeed = new Button(this);
+        btnSpeed.setText("1x");
+        btnSpeed.setOnClickListener(v -> {
+            speedIndex = (speedIndex + 1) % SPEEDS.length;
+            float speed = SPEEDS[speedIndex];
+            playbackEngine.setSpeed(speed);
+            btnSpeed.setText(formatSpeed(speed));
+        });
+        bar.addView(btnSpeed);
+
+        btnBookmarks = new Button(this);
+        btnBookmarks.setText("书签");
+        btnBookmarks.setOnClickListener(v -> showBookmarks());
+        bar.addView(btnBookmarks);
+
+        CheckBox cbSkip = new CheckBox(this);
+        cbSkip.setText("跳过静音");
+        cbSkip.setOnCheckedChangeListener((v, checked) -> playbackEngine.setSkipSilence(checked));
+        bar.addView(cbSkip);
+
+        btnPause = new Button(this);
+        btnPause.setText("暂停");
+        btnPause.setOnClickListener(v -> {
+            if (playbackEngine.isPaused()) {
+                playbackEngine.resume();
+                btnPause.setText("暂停");
+            } else {
+                playbackEngine.pause();
+                btnPause.setText("继续");
+            }
+        });
+        bar.addView(btnPause);
+
+        Button btnStop = new Button(this);
+        btnStop.setText("停止");
+        btnStop.setOnClickListener(v -> {
+            playbackEngine.stop();
+            playerBar.setVisibility(View.GONE);
+        });
+        bar.addView(btnStop);
+
+        bar.setVisibility(View.GONE);
+        playerBar = bar;
+        return bar;
+    }
+
+    private void playAudio(File file) {
+        playingName = file.getName();
+        loadBookmarks(file);
+        playbackEngine.play(file);
+        btnPause.setText("暂停");
+        tvPlayback.setText(playingName);
+        playerBar.setVisibility(View.VISIBLE);
+    }
+
+    private void loadBookmarks(File file) {
+        playingCues = new ArrayList<>();
+        try (SeekableSource source = EncryptedRecording.open(file)) {
+            playingSampleRate = WavFile.readInfo(source).sampleRate;
+            playingCues = WavFile.readCuePoints(source);
         } catch (IOException e) {
-            e.printStackTrace();
-            Toast.makeText(this, "无法播放文件", Toast.LENGTH_SHORT).show();
+            Log.e("History", "Failed to read cue points", e);
         }
+        // 录音中的暂停处与书签一起列出，便于跳转
+        List<AudioRecorder.PauseInterval> pauses =
+                RecordingMetadataStore.getInstance(this).getPauses(file.getAbsolutePath());
+        if (!pauses.isEmpty()) {
+            for (AudioRecorder.PauseInterval p : pauses) {
+                playingCues.add(new WavFile.CuePoint(0, p.frame,
+                        String.format(Locale.US, "(暂停 %d 秒)", Math.round(p.durationMs / 1000.0))));
+            }
+            Collections.sort(playingCues, (a, b) -> Long.compare(a.frame, b.frame));
+        }
+        btnBookmarks.setVisibility(playingCues.isEmpty() ? View.GONE : View.VISIBLE);
+    }
+
+    /**
+     * 列出书签，点击后直接跳转
+     */
+    private void showBookmarks() {
+        String[] items = new String[playingCues.size()];
+        for (int i = 0; i < items.length; i++) {
+            WavFile.CuePoint cue = playingCues.get(i);
+            items[i] = formatTime(cue.frame * 1000 / playingSampleRate) + "  " + cue.label;
+        }
+        new AlertDialog.Builder(this)
+            .setTitle("书签")
+            .setItems(items, (dialog, which) -> {
+                WavFile.CuePoint cue = playingCues.get(which);
+                playbackEngine.seekToMs(cue.frame * 1000 / playingSampleRate);
+                if (playbackEngine.isPaused()) {
+                    playbackEngine.resume();
+                    btnPause.setText("暂停");
+                }
+            })
+            .show();
+    }
+
+    private static String formatTime(long ms) {
+        long seconds = ms / 1000;
+        return String.format(Locale.US, "%02d:%02d", seconds / 60, seconds % 60);
+    }
+
+    private static String formatSpeed(float speed) {
+        return speed == (int) speed ? (int) speed + "x" : speed + "x";
     }
 
     private void deleteFile(int position) {
         try {
-            File f = recordFiles.get(position);
+            File f = fileAt(position);
             if (f.delete()) {
+                RecordingMetadataStore.getInstance(this).remove(f.getAbsolutePath());
                 Toast.makeText(this, "已删除", Toast.LENGTH_SHORT).show();
-                loadFiles(); // 刷新列表
+                // 索引中只做标记，不必重建
+                index.markDeleted(rows[position]);
+                applyQuery();
             }
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    /** 通过 RecordingShareProvider 分享，AAC 在接收方读取时实时编码，不产生临时文件 */
+    private void shareFile(int position, String format) {
+        File f = fileAt(position);
+        if (RecordingShareProvider.FORMAT_AAC.equals(format)) {
+            try (WavSlice slice = WavSlice.open(f, 0, 0)) {
+                if (!AacStreamEncoder.isSupported(slice.getInfo().sampleRate)) {
+                    Toast.makeText(this, "该采样率不支持 AAC，请分享 WAV", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                Toast.makeText(this, "无法读取录音", Toast.LENGTH_SHORT).show();
+                return;
+            }
+        }
+        startActivity(RecordingShareProvider.buildShareIntent(this, f, format, 0, 0));
+    }
+
+    private void normalizeFile(int position) {
+        File f = fileAt(position);
+        Toast.makeText(this, "正在标准化音量...", Toast.LENGTH_SHORT).show();
+        LoudnessNormalizationJob job = new LoudnessNormalizationJob(this, f, new LoudnessNormalizationJob.Callback() {
+            @Override
+            public void onFinished(File file, LoudnessNormalizer.Result result) {
+                runOnUiThread(() -> {
+                    if (isFinishing()) return;
+                    Toast.makeText(RecordHistoryActivity.this, String.format(Locale.US,
+                            "已标准化: %.1f LUFS", result.outputLufs), Toast.LENGTH_SHORT).show();
+                    loadFiles();
+                });
+            }
+
+            @Override
+            public void onFailed(File file, Exception e) {
+                runOnUiThread(() -> Toast.makeText(RecordHistoryActivity.this,
+                        "标准化失败", Toast.LENGTH_SHORT).show());
+            }
+        });
+        try {
+            WorkScheduler.getInstance().submit(WorkScheduler.LANE_BULK,
+                    WorkScheduler.keyFor(this, "normalize:" + f.getAbsolutePath()),
+                    task -> job.run());
+        } catch (RejectedExecutionException e) {
+            Toast.makeText(this, "后台任务繁忙，请稍后再试", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    /**
+     * 批量分析目录下所有未分析（或已修改）的录音，结果写入元数据库后刷新列表
+     */
+    private void analyzeAll() {
+        if (analysisJob != null || recordingsDir == null) return;
+        WorkScheduler scheduler = WorkScheduler.getInstance();
+        Toast.makeText(this, scheduler.isCapturing() ? "录音结束后开始分析" : "正在分析录音...",
+                Toast.LENGTH_SHORT).show();
+        analysisJob = new BatchAnalysisJob(this, recordingsDir, false, new BatchAnalysisJob.Callback() {
+            @Override
+            public void onProgress(int done, int total, double filesPerSecond) {
+                runOnUiThread(() -> setTitle(String.format(Locale.US, "分析中 %d/%d (%.1f 个/秒)",
+                        done, total, filesPerSecond)));
+            }
+
+            @Override
+            public void onFinished(BatchAnalyzer.Summary summary) {
+                Log.d("History", "Bulk lane: " + WorkScheduler.getInstance().getStats(WorkScheduler.LANE_BULK));
+                runOnUiThread(() -> {
+                    analysisJob = null;
+                    analysisTask = null;
+                    if (isFinishing()) return;
+                    setTitle("历史记录");
+                    Toast.makeText(RecordHistoryActivity.this, String.format(Locale.US,
+                            "已分析 %d 个文件，%.1f 个/秒", summary.files, summary.filesPerSecond()),
+                            Toast.LENGTH_SHORT).show();
+                    loadFiles();
+                });
+            }
+
+            @Override
+            public void onFailed(Exception e) {
+                runOnUiThread(() -> {
+                    analysisJob = null;
+                    analysisTask = null;
+                    setTitle("历史记录");
+                    Toast.makeText(RecordHistoryActivity.this, "分析失败", Toast.LENGTH_SHORT).show();
+                });
+            }
+        });
+        try {
+            analysisTask = scheduler.submit(WorkScheduler.LANE_BULK,
+                    WorkScheduler.keyFor(this, "batch-analysis"), analysisJob);
+        } catch (RejectedExecutionException e) {
+            analysisJob = null;
+            Toast.makeText(this, "后台任务繁忙，请稍后再试", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    /**
+     * 补算指纹并列出重复 / 近似重复的录音分组
+     */
+    private void findDuplicates() {
+        if (recordingsDir == null) return;
+        Toast.makeText(this, "正在查找重复录音...", Toast.LENGTH_SHORT).show();
+        File dir = recordingsDir;
+        WorkScheduler.Job scan = task -> {
+            List<List<FingerprintIndex.Match>> groups = DuplicateFinder.getInstance(this).scan(dir);
+            runOnUiThread(() -> {
+                if (isFinishing()) return;
+                if (groups.isEmpty()) {
+                    Toast.makeText(this, "没有发现重复录音", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                StringBuilder text = new StringBuilder();
+                long wasted = 0;
+                for (int g = 0; g < groups.size(); g++) {
+                    List<FingerprintIndex.Match> group = groups.get(g);
+                    text.append("第 ").append(g + 1).append(" 组\n");
+                    for (int i = 0; i < group.size(); i++) {
+                        FingerprintIndex.Match m = group.get(i);
+                        File f = new File(m.path);
+                        // 每组保留第一个，其余计为可释放空间
+                        if (i > 0) wasted += f.length();
+                        text.append("  ").append(f.getName());
+                        if (i > 0) {
+                            text.append(m.isExact() ? "（相同）" : String.format(Locale.US, "（相似 %.0f%%）",
+                                    m.similarity * 100));
+                        }
+                        text.append('\n');
+                    }
+                }
+                new AlertDialog.Builder(this)
+                        .setTitle(String.format(Locale.US, "重复录音：%d 组，可释放 %.1f MB",
+                                groups.size(), wasted / (1024.0 * 1024.0)))
+                        .setMessage(text.toString())
+                        .setPositiveButton("确定", null)
+                        .show();
+            });
+        };
+        try {
+            WorkScheduler.getInstance().submit(WorkScheduler.LANE_BULK,
+                    WorkScheduler.keyFor(this, "duplicate-scan"), scan);
+        } catch (RejectedExecutionException e) {
+            Toast.makeText(this, "后台任务繁忙，请稍后再试", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    /**
+     * 列表项直接读索引的列数据，只为屏幕上的行生成文字
+     */
+    private class RecordingAdapter extends BaseAdapter {
+        @Override
+        public int getCount() {
+            return rows.length;
+        }
+
+        @Override
+        public Object getItem(int position) {
+            return index.getPath(rows[position]);
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return rows[position];
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            TextView view = convertView != null ? (TextView) convertView : (TextView) getLayoutInflater()
+                    .inflate(android.R.layout.simple_list_item_1, parent, false);
+            int row = rows[position];
+            long sizeKb = index.getSizeBytes(row) / 1024;
+            double loudness = index.getLoudnessLufs(row);
+            String loudnessText = Double.isNaN(loudness) ? "" : String.format(Locale.US, "  %.1f LUFS", loudness);
+            long durationMs = index.getDurationMs(row);
+            String durationText = durationMs < 0 ? "" : "  " + formatTime(durationMs);
+            view.setText(index.getName(row) + "\n" + sizeKb + " KB" + durationText + loudnessText);
+            return view;
+        }
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (mediaPlayer != null) mediaPlayer.release();
+        if (analysisTask != null) analysisTask.cancel();
+        if (analysisJob != null) analysisJob.cancel();
+        playbackEngine.stop();
     }
 }
\ No newline at end of file
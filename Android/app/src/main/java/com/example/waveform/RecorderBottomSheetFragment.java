@@ -17,6 +17,7 @@ import android.widget.TextView;
 import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import com.google.android.material.bottomsheet.BottomSheetBehavior;
 import com.google.android.material.bottomsheet.BottomSheetDialog;
 import com.google.android.material.bottomsheet.BottomSheetDialogFragment;
@@ -24,15 +25,21 @@ import java.util.Locale;
 
 public class RecorderBottomSheetFragment extends BottomSheetDialogFragment {
 
-    private AudioRecorder audioRecorder;
+    private RecordingServiceConnection connection;
     private AudioWaveformView waveformView;
-    private View btnRecord, bottomSheetRoot;
-    private TextView tvTimer, tvStatus;
+    private SpectrumView spectrumView;
+    private SpectrumAnalyzer spectrumAnalyzer;
+    private View btnRecord, btnBookmark, bottomSheetRoot;
+    private TextView btnPause;
+    private TextView tvTimer, tvStatus, tvMetrics;
     private ImageView btnHistory;
     
     private boolean isRecording = false;
-    private long startTime = 0;
-    private Handler timerHandler = new Handler(Looper.getMainLooper());
+    // 0: 波形 1: 频谱 2: 语谱图
+    private int visualMode = 0;
+    private long shownSeconds = -1;
+    private final char[] timerChars = new char[8];
+    private Handler metricsHandler = new Handler(Looper.getMainLooper());
 
     // 颜色定义
     private final int COLOR_BG_IDLE = 0xFFFFFFFF; // 纯白色 (不透明)
@@ -69,9 +76,13 @@ public class RecorderBottomSheetFragment extends BottomSheetDialogFragment {
     private void initViews(View view) {
         bottomSheetRoot = view.findViewById(R.id.bottomSheetRoot);
         waveformView = view.findViewById(R.id.waveformView);
+        spectrumView = view.findViewById(R.id.spectrumView);
         btnRecord = view.findViewById(R.id.btnRecord);
+        btnBookmark = view.findViewById(R.id.btnBookmark);
+        btnPause = view.findViewById(R.id.btnPause);
         tvTimer = view.findViewById(R.id.tvTimer);
         tvStatus = view.findViewById(R.id.tvStatus);
+        tvMetrics = view.findViewById(R.id.tvMetrics);
         btnHistory = view.findViewById(R.id.btnHistory);
 
         // 初始背景：白色
@@ -88,33 +99,111 @@ public class RecorderBottomSheetFragment extends BottomSheetDialogFragment {
             }
         });
 
-        audioRecorder = new AudioRecorder(requireContext());
-        audioRecorder.setAmplitudeListener(amplitude -> {
-            if (getActivity() != null) {
-                getActivity().runOnUiThread(() -> waveformView.addAmplitude(amplitude));
+        waveformView.loadLoudnessReference();
+
+        View.OnClickListener switchVisualizer = v -> {
+            visualMode = (visualMode + 1) % 3;
+            updateVisualizer();
+        };
+        view.findViewById(R.id.visualizerContainer).setOnClickListener(switchVisualizer);
+        spectrumView.setOnClickListener(switchVisualizer);
+
+        btnRecord.setOnClickListener(v -> {
+            RecordingService service = connection.getService();
+            if (service == null) return;
+            if (isRecording) service.stopRecording(); else service.startRecording();
+        });
+
+        view.findViewById(R.id.btnSettings).setOnClickListener(v -> showSettings());
+
+        btnBookmark.setOnClickListener(v -> {
+            RecordingService service = connection.getService();
+            int id = service != null ? service.addBookmark() : -1;
+            if (id > 0) {
+                char[] time = new char[8];
+                int len = RecordingClock.formatMmSs(service.getRecorder().getClock().getElapsedMs(), time);
+                tvStatus.setText("已添加书签 " + id + "  " + new String(time, 0, len));
             }
         });
 
-        btnRecord.setOnClickListener(v -> {
-            if (isRecording) stopRecording(); else startRecording();
+        // 暂停后继续写入同一个文件
+        btnPause.setOnClickListener(v -> {
+            RecordingService service = connection.getService();
+            if (service == null) return;
+            if (service.isPaused()) service.resumeRecording(); else service.pauseRecording();
         });
+
+        // 长按计时器开关调试指标浮层
+        tvTimer.setOnLongClickListener(v -> {
+            boolean show = tvMetrics.getVisibility() != View.VISIBLE;
+            tvMetrics.setVisibility(show ? View.VISIBLE : View.GONE);
+            metricsHandler.removeCallbacks(metricsRunnable);
+            if (show) metricsHandler.post(metricsRunnable);
+            return true;
+        });
+
+        // 录音由前台服务持有，面板只是观察者；连上服务时预热录音引擎
+        connection = new RecordingServiceConnection(requireContext(), recordingObserver);
+        connection.bind();
     }
 
-    private void startRecording() {
+    private final RecordingObserver recordingObserver = new RecordingObserver() {
+        @Override
+        public void onRecordingStateChanged(boolean recording) {
+            if (spectrumAnalyzer == null && connection.getService() != null) {
+                // 频谱分析在录音线程上进行，仅在频谱模式下启用
+                spectrumAnalyzer = connection.getService().getSpectrumAnalyzer();
+                spectrumView.setAnalyzer(spectrumAnalyzer);
+            }
+            if (recording) showRecordingState(); else showIdleState();
+        }
+
+        @Override
+        public void onPauseStateChanged(boolean paused) {
+            btnPause.setText(paused ? "▶ 继续" : "❚❚ 暂停");
+            tvStatus.setText(paused ? "已暂停" : "正在录音...");
+        }
+
+        @Override
+        public void onAmplitude(float amplitude) {
+            waveformView.addAmplitude(amplitude);
+        }
+
+        @Override
+        public void onTick(long elapsedMs) {
+            // 秒数变化时才刷新文字
+            long seconds = elapsedMs / 1000;
+            if (seconds != shownSeconds) {
+                shownSeconds = seconds;
+                int len = RecordingClock.formatMmSs(seconds * 1000, timerChars);
+                tvTimer.setText(timerChars, 0, len);
+            }
+        }
+
+        @Override
+        public void onRecordingSaved(String path) {
+            if (path != null) {
+                Toast.makeText(getContext(), "保存成功", Toast.LENGTH_SHORT).show();
+            }
+        }
+    };
+
+    private void showRecordingState() {
         if (isRecording) return;
         isRecording = true;
-        
-        audioRecorder.startRecording();
-        startTime = System.currentTimeMillis();
-        timerHandler.post(timerRunnable);
+        shownSeconds = -1;
         
         // 1. 背景颜色过渡动画 (白色 -> 半透明白)
         animateBackground(COLOR_BG_IDLE, COLOR_BG_RECORDING);
         
         tvStatus.setText("正在录音...");
         tvStatus.setTextColor(0xFFFF3B30); // 红色提示
-        waveformView.setVisibility(View.VISIBLE);
+        btnBookmark.setVisibility(View.VISIBLE);
+        btnPause.setVisibility(View.VISIBLE);
+        btnPause.setText("❚❚ 暂停");
         waveformView.clear();
+        spectrumView.clear();
+        updateVisualizer();
         
         // 按钮视觉反馈
         btnRecord.animate().scaleX(0.6f).scaleY(0.6f).setDuration(300).start();
@@ -122,28 +211,81 @@ public class RecorderBottomSheetFragment extends BottomSheetDialogFragment {
         // btnRecord.setBackgroundResource(R.drawable.bg_record_btn_square); // 切换为方形停止图标
     }
 
-    private void stopRecording() {
+    private void showIdleState() {
         if (!isRecording) return;
         isRecording = false;
         
-        String filePath = audioRecorder.stopRecording();
-        timerHandler.removeCallbacks(timerRunnable);
-        
         // 1. 背景颜色恢复动画 (半透明白 -> 白色)
         animateBackground(COLOR_BG_RECORDING, COLOR_BG_IDLE);
         
         tvStatus.setText("录音已保存");
         tvStatus.setTextColor(0xFF8E8E93); // 灰色
+        btnBookmark.setVisibility(View.INVISIBLE);
+        btnPause.setVisibility(View.INVISIBLE);
         tvTimer.setText("00:00");
-        waveformView.setVisibility(View.INVISIBLE);
+        updateVisualizer();
         
         // 按钮恢复
         btnRecord.animate().scaleX(1f).scaleY(1f).setDuration(300).start();
         btnRecord.setBackgroundResource(R.drawable.bg_record_button_inner_red); // 恢复圆形
-        
-        if (filePath != null) {
-            Toast.makeText(getContext(), "保存成功", Toast.LENGTH_SHORT).show();
+    }
+
+    private void updateVisualizer() {
+        boolean spectrum = visualMode != 0;
+        if (spectrumAnalyzer != null) spectrumAnalyzer.setEnabled(isRecording && spectrum);
+        waveformView.setVisibility(isRecording && !spectrum ? View.VISIBLE : View.INVISIBLE);
+        spectrumView.setVisibility(isRecording && spectrum ? View.VISIBLE : View.GONE);
+        spectrumView.setMode(visualMode == 2 ? SpectrumView.MODE_SPECTROGRAM : SpectrumView.MODE_SPECTRUM);
+        if (isRecording && spectrum) spectrumView.start(); else spectrumView.stop();
+    }
+
+    /**
+     * 录音设置，从下一次录音起生效，录音中不可修改
+     */
+    private void showSettings() {
+        RecordingService service = connection.getService();
+        if (service == null) return;
+        if (isRecording) {
+            Toast.makeText(getContext(), "录音中不能修改设置", Toast.LENGTH_SHORT).show();
+            return;
         }
+        String[] items = {
+                "加密保存",
+                "降噪处理（高通 + 噪声门）",
+                "预录 " + RecordingService.DEFAULT_PRE_ROLL_SECONDS + " 秒（面板打开期间缓存）",
+                "多轨录音（采访模式）"
+        };
+        boolean[] checked = {
+                service.isEncryptionEnabled(),
+                service.isCleanupEnabled(),
+                service.getPreRollSeconds() > 0,
+                service.isMultiTrackEnabled()
+        };
+        new AlertDialog.Builder(requireContext())
+                .setTitle("录音设置")
+                .setMultiChoiceItems(items, checked, (dialog, which, isChecked) -> {
+                    RecordingService s = connection.getService();
+                    if (s == null) return;
+                    switch (which) {
+                        case 0:
+                            if (s.setEncryptionEnabled(isChecked) != isChecked) {
+                                ((AlertDialog) dialog).getListView().setItemChecked(which, false);
+                                Toast.makeText(getContext(), "Android 6.0 以下不支持加密保存", Toast.LENGTH_SHORT).show();
+                            }
+                            break;
+                        case 1:
+                            s.setCleanupEnabled(isChecked);
+                            break;
+                        case 2:
+                            s.setPreRollSeconds(isChecked ? RecordingService.DEFAULT_PRE_ROLL_SECONDS : 0);
+                            break;
+                        case 3:
+                            s.setMultiTrackEnabled(isChecked);
+                            break;
+                    }
+                })
+                .setPositiveButton("完成", null)
+                .show();
     }
 
     private void animateBackground(int fromColor, int toColor) {
@@ -155,25 +297,27 @@ public class RecorderBottomSheetFragment extends BottomSheetDialogFragment {
         colorAnimation.start();
     }
 
-    private Runnable timerRunnable = new Runnable() {
+    private Runnable metricsRunnable = new Runnable() {
         @Override
         public void run() {
-            if (!isRecording) return;
-            long millis = System.currentTimeMillis() - startTime;
-            int seconds = (int) (millis / 1000);
-            int minutes = seconds / 60;
-            seconds %= 60;
-            tvTimer.setText(String.format(Locale.getDefault(), "%02d:%02d", minutes, seconds));
-            timerHandler.postDelayed(this, 500);
+            if (tvMetrics.getVisibility() != View.VISIBLE) return;
+            RecordingService service = connection.getService();
+            if (service != null) {
+                AudioRecorder recorder = service.getRecorder();
+                tvMetrics.setText(String.format(Locale.US, "start %.1f ms\n%s",
+                        recorder.getStartLatencyMs(), recorder.getMetricsSnapshot()));
+            }
+            metricsHandler.postDelayed(this, 500);
         }
     };
 
     @Override
     public void onDismiss(@NonNull DialogInterface dialog) {
         super.onDismiss(dialog);
-        if (isRecording) {
-            audioRecorder.stopRecording();
-            timerHandler.removeCallbacks(timerRunnable);
-        }
+        // 只摘下观察者，录音在服务中继续
+        metricsHandler.removeCallbacks(metricsRunnable);
+        spectrumView.stop();
+        if (spectrumAnalyzer != null) spectrumAnalyzer.setEnabled(false);
+        connection.unbind();
     }
 }
\ No newline at end of file
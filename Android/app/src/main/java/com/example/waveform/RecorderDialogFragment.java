@@ -6,8 +6,6 @@ import android.content.Intent;
 import android.graphics.Color;
 import android.graphics.drawable.ColorDrawable;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -18,17 +16,16 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.DialogFragment;
-import java.util.Locale;
 
 public class RecorderDialogFragment extends DialogFragment {
 
-    private AudioRecorder audioRecorder;
+    private RecordingServiceConnection connection;
     private AudioWaveformView waveformView;
     private View btnRecord, rootLayout;
     private TextView tvTimer, tvStatus;
     private boolean isRecording = false;
-    private long startTime = 0;
-    private Handler timerHandler = new Handler(Looper.getMainLooper());
+    private long shownSeconds = -1;
+    private final char[] timerChars = new char[8];
 
     // 颜色定义
     private final int COLOR_BG_IDLE = 0x1A000000; // 浅透 (未录音)
@@ -78,25 +75,69 @@ public class RecorderDialogFragment extends DialogFragment {
             startActivity(new Intent(getActivity(), RecordHistoryActivity.class));
         });
 
-        audioRecorder = new AudioRecorder(getContext());
-        audioRecorder.setAmplitudeListener(amplitude -> {
-            if (getActivity() != null) {
-                getActivity().runOnUiThread(() -> waveformView.addAmplitude(amplitude));
-            }
-        });
+        waveformView.loadLoudnessReference();
 
         btnRecord.setOnClickListener(v -> {
-            if (isRecording) stopRecording(); else startRecording();
+            RecordingService service = connection.getService();
+            if (service == null) return;
+            if (isRecording) service.stopRecording(); else service.startRecording();
+        });
+
+        // 录音中点击状态文字暂停/继续
+        tvStatus.setOnClickListener(v -> {
+            RecordingService service = connection.getService();
+            if (service == null || !isRecording) return;
+            if (service.isPaused()) service.resumeRecording(); else service.pauseRecording();
         });
+
+        // 录音中点击计时器添加书签
+        tvTimer.setOnClickListener(v -> {
+            RecordingService service = connection.getService();
+            int id = service != null ? service.addBookmark() : -1;
+            if (id > 0) Toast.makeText(getContext(), "已添加书签 " + id, Toast.LENGTH_SHORT).show();
+        });
+        // 录音由前台服务持有，界面只是观察者；连上服务时预热录音引擎
+        connection = new RecordingServiceConnection(getContext(), recordingObserver);
+        connection.bind();
     }
 
-    private void startRecording() {
+    private final RecordingObserver recordingObserver = new RecordingObserver() {
+        @Override
+        public void onRecordingStateChanged(boolean recording) {
+            if (recording) showRecordingState(); else showIdleState();
+        }
+
+        @Override
+        public void onPauseStateChanged(boolean paused) {
+            tvStatus.setText(paused ? "已暂停，点击继续" : "正在录音...");
+        }
+
+        @Override
+        public void onAmplitude(float amplitude) {
+            waveformView.addAmplitude(amplitude);
+        }
+
+        @Override
+        public void onTick(long elapsedMs) {
+            // 秒数变化时才刷新文字
+            long seconds = elapsedMs / 1000;
+            if (seconds != shownSeconds) {
+                shownSeconds = seconds;
+                int len = RecordingClock.formatMmSs(seconds * 1000, timerChars);
+                tvTimer.setText(timerChars, 0, len);
+            }
+        }
+
+        @Override
+        public void onRecordingSaved(String path) {
+            if (path != null) Toast.makeText(getContext(), "录音已保存至历史记录", Toast.LENGTH_SHORT).show();
+        }
+    };
+
+    private void showRecordingState() {
         if (isRecording) return;
         isRecording = true;
-        
-        audioRecorder.startRecording();
-        startTime = System.currentTimeMillis();
-        timerHandler.post(timerRunnable);
+        shownSeconds = -1;
         
         // 视觉变化
         animateBackground(COLOR_BG_IDLE, COLOR_BG_RECORDING);
@@ -110,13 +151,10 @@ public class RecorderDialogFragment extends DialogFragment {
         btnRecord.animate().scaleX(0.5f).scaleY(0.5f).setDuration(300).start();
     }
 
-    private void stopRecording() {
+    private void showIdleState() {
         if (!isRecording) return;
         isRecording = false;
         
-        String filePath = audioRecorder.stopRecording();
-        timerHandler.removeCallbacks(timerRunnable);
-        
         // 视觉恢复
         animateBackground(COLOR_BG_RECORDING, COLOR_BG_IDLE);
         updateTextColor(COLOR_TEXT_IDLE);
@@ -127,8 +165,6 @@ public class RecorderDialogFragment extends DialogFragment {
         
         // 按钮恢复
         btnRecord.animate().scaleX(1f).scaleY(1f).setDuration(300).start();
-        
-        Toast.makeText(getContext(), "录音已保存至历史记录", Toast.LENGTH_SHORT).show();
     }
 
     private void animateBackground(int fromColor, int toColor) {
@@ -158,22 +194,10 @@ public class RecorderDialogFragment extends DialogFragment {
         }
     }
 
-    private Runnable timerRunnable = new Runnable() {
-        @Override
-        public void run() {
-            long millis = System.currentTimeMillis() - startTime;
-            int seconds = (int) (millis / 1000);
-            int minutes = seconds / 60;
-            seconds %= 60;
-            
-            tvTimer.setText(String.format(Locale.getDefault(), "%02d:%02d", minutes, seconds));
-            if (isRecording) timerHandler.postDelayed(this, 500);
-        }
-    };
-
     @Override
     public void onDestroy() {
         super.onDestroy();
-        if (isRecording) audioRecorder.stopRecording();
+        // 只摘下观察者，录音在服务中继续
+        connection.unbind();
     }
 }
\ No newline at end of file
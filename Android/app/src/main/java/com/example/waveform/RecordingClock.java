@@ -0,0 +1,60 @@
+package com.example.waveform;
+
+/**
+ * 以已写入的帧数为准的录音时钟，与音频数据严格对齐
+ * 录音线程调用 advance，界面线程读取并用 formatMmSs 格式化，均不分配对象
+ */
+public class RecordingClock {
+    private final int sampleRate;
+    private volatile long frames;
+
+    public RecordingClock(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public void reset() {
+        frames = 0;
+    }
+
+    /** 仅由录音线程调用 */
+    public void advance(int count) {
+        frames += count;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public long getElapsedMs() {
+        return frames * 1000 / sampleRate;
+    }
+
+    /**
+     * 将毫秒格式化为 mm:ss（超过 99 分钟时分钟位数相应增加）
+     * @param out 至少 8 个字符
+     * @return 写入的字符数
+     */
+    public static int formatMmSs(long ms, char[] out) {
+        long totalSeconds = ms / 1000;
+        long minutes = totalSeconds / 60;
+        int seconds = (int) (totalSeconds % 60);
+        int len = 0;
+        if (minutes >= 100) {
+            // 先计算位数，再从高位写起
+            long div = 1;
+            while (minutes / div >= 10) div *= 10;
+            for (; div > 0; div /= 10) out[len++] = (char) ('0' + minutes / div % 10);
+        } else {
+            out[len++] = (char) ('0' + minutes / 10);
+            out[len++] = (char) ('0' + minutes % 10);
+        }
+        out[len++] = ':';
+        out[len++] = (char) ('0' + seconds / 10);
+        out[len++] = (char) ('0' + seconds % 10);
+        return len;
+    }
+}
@@ -0,0 +1,334 @@
+package com.example.waveform;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * 录音列表的内存索引：元数据按列存放在基本类型数组中，每个可排序的键各有一份按该键升序排好的行号
+ * 范围条件在对应的有序行号上二分得到连续区间，名称前缀同理；其余条件逐行判断，
+ * 结果是按所需顺序排列的行号数组，列表直接按位置取列数据显示，不再回查数据库。
+ * 构建后只读（删除只做标记），可在后台线程构建后交给界面线程查询
+ */
+public class RecordingIndex {
+    public static final int KEY_CREATED = 0;
+    public static final int KEY_DURATION = 1;
+    public static final int KEY_SIZE = 2;
+    public static final int KEY_LOUDNESS = 3;
+    public static final int KEY_NAME = 4;
+    private static final int NUMERIC_KEYS = 4;
+    /** 数值列中未知的值（如未分析的时长、响度），升序时排在最前，不满足任何范围条件 */
+    public static final long UNKNOWN = Long.MIN_VALUE;
+    // 响度按 0.01 LU 存为整数
+    private static final double LOUDNESS_SCALE = 100.0;
+
+    /** 查询条件；范围为闭区间，未设置的一端不限制 */
+    public static final class Query {
+        /** 名称前缀（不区分大小写），null 或空串不限制 */
+        public String namePrefix;
+        final long[] min = new long[NUMERIC_KEYS];
+        final long[] max = new long[NUMERIC_KEYS];
+        public int sortKey = KEY_CREATED;
+        public boolean descending = true;
+
+        public Query() {
+            Arrays.fill(min, Long.MIN_VALUE);
+            Arrays.fill(max, Long.MAX_VALUE);
+        }
+
+        public Query setCreatedRange(long fromMillis, long toMillis) {
+            return setRange(KEY_CREATED, fromMillis, toMillis);
+        }
+
+        public Query setDurationRange(long minMs, long maxMs) {
+            return setRange(KEY_DURATION, minMs, maxMs);
+        }
+
+        public Query setSizeRange(long minBytes, long maxBytes) {
+            return setRange(KEY_SIZE, minBytes, maxBytes);
+        }
+
+        /** 传入 ±Infinity 表示该端不限制 */
+        public Query setLoudnessRange(double minLufs, double maxLufs) {
+            return setRange(KEY_LOUDNESS, Double.isInfinite(minLufs) ? Long.MIN_VALUE : loudnessKey(minLufs),
+                    Double.isInfinite(maxLufs) ? Long.MAX_VALUE : loudnessKey(maxLufs));
+        }
+
+        public Query setSort(int key, boolean descending) {
+            this.sortKey = key;
+            this.descending = descending;
+            return this;
+        }
+
+        /** 是否设置了名称以外的条件 */
+        public boolean hasRanges() {
+            for (int k = 0; k < NUMERIC_KEYS; k++) {
+                if (min[k] != Long.MIN_VALUE || max[k] != Long.MAX_VALUE) return true;
+            }
+            return false;
+        }
+
+        private Query setRange(int key, long from, long to) {
+            min[key] = from;
+            max[key] = to;
+            return this;
+        }
+
+        boolean isConstrained(int key) {
+            return min[key] != Long.MIN_VALUE || max[key] != Long.MAX_VALUE;
+        }
+    }
+
+    /** 逐行添加后 build */
+    public static final class Builder {
+        private int count;
+        private String[] paths = new String[64];
+        private String[] names = new String[64];
+        private long[][] keys = new long[NUMERIC_KEYS][64];
+
+        /**
+         * @param durationMs 未知时传负数
+         * @param loudnessLufs 未知时传 NaN
+         */
+        public Builder add(String path, String name, long createdMillis, long durationMs, long sizeBytes,
+                           double loudnessLufs) {
+            if (count == paths.length) {
+                int capacity = count * 2;
+                paths = Arrays.copyOf(paths, capacity);
+                names = Arrays.copyOf(names, capacity);
+                for (int k = 0; k < NUMERIC_KEYS; k++) keys[k] = Arrays.copyOf(keys[k], capacity);
+            }
+            paths[count] = path;
+            names[count] = name;
+            keys[KEY_CREATED][count] = createdMillis;
+            keys[KEY_DURATION][count] = durationMs < 0 ? UNKNOWN : durationMs;
+            keys[KEY_SIZE][count] = sizeBytes;
+            keys[KEY_LOUDNESS][count] = Double.isNaN(loudnessLufs) || Double.isInfinite(loudnessLufs)
+                    ? UNKNOWN : loudnessKey(loudnessLufs);
+            count++;
+            return this;
+        }
+
+        public RecordingIndex build() {
+            return new RecordingIndex(this);
+        }
+    }
+
+    private final int count;
+    private final String[] paths;
+    private final String[] names;
+    // 小写名称，用于前缀匹配和按名称排序
+    private final String[] sortNames;
+    private final long[][] keys;
+    // orders[k]：按键 k 升序（相同时按行号）排列的行号；KEY_NAME 按小写名称
+    private final int[][] orders = new int[NUMERIC_KEYS + 1][];
+    private final boolean[] deleted;
+    private int deletedCount;
+
+    private RecordingIndex(Builder b) {
+        count = b.count;
+        paths = Arrays.copyOf(b.paths, count);
+        names = Arrays.copyOf(b.names, count);
+        keys = new long[NUMERIC_KEYS][];
+        for (int k = 0; k < NUMERIC_KEYS; k++) keys[k] = Arrays.copyOf(b.keys[k], count);
+        sortNames = new String[count];
+        for (int i = 0; i < count; i++) sortNames[i] = names[i].toLowerCase(Locale.ROOT);
+        deleted = new boolean[count];
+        int[] tmp = new int[count];
+        for (int k = 0; k <= NUMERIC_KEYS; k++) {
+            int[] order = new int[count];
+            for (int i = 0; i < count; i++) order[i] = i;
+            mergeSort(order, tmp, 0, count, k);
+            orders[k] = order;
+        }
+    }
+
+    /** 行数（含已标记删除的） */
+    public int size() {
+        return count;
+    }
+
+    public String getPath(int row) {
+        return paths[row];
+    }
+
+    public String getName(int row) {
+        return names[row];
+    }
+
+    public long getCreatedMillis(int row) {
+        return keys[KEY_CREATED][row];
+    }
+
+    /** 未知时返回 -1 */
+    public long getDurationMs(int row) {
+        long v = keys[KEY_DURATION][row];
+        return v == UNKNOWN ? -1 : v;
+    }
+
+    public long getSizeBytes(int row) {
+        return keys[KEY_SIZE][row];
+    }
+
+    /** 未测量时返回 NaN */
+    public double getLoudnessLufs(int row) {
+        long v = keys[KEY_LOUDNESS][row];
+        return v == UNKNOWN ? Double.NaN : v / LOUDNESS_SCALE;
+    }
+
+    /** 标记删除，之后的查询不再返回该行 */
+    public void markDeleted(int row) {
+        if (!deleted[row]) {
+            deleted[row] = true;
+            deletedCount++;
+        }
+    }
+
+    /**
+     * 查询
+     * @return 满足条件的行号，按 query 的排序排列
+     */
+    public int[] query(Query query) {
+        // 在有条件的键中选出区间最短的作为候选
+        int candidateKey = -1;
+        int lo = 0;
+        int hi = count;
+        String prefix = query.namePrefix == null || query.namePrefix.isEmpty()
+                ? null : query.namePrefix.toLowerCase(Locale.ROOT);
+        if (prefix != null) {
+            lo = lowerBound(prefix);
+            hi = prefixEnd(prefix, lo);
+            candidateKey = KEY_NAME;
+        }
+        for (int k = 0; k < NUMERIC_KEYS; k++) {
+            if (!query.isConstrained(k)) continue;
+            long min = Math.max(query.min[k], UNKNOWN + 1);
+            int from = lowerBound(k, min);
+            int to = query.max[k] == Long.MAX_VALUE ? count : lowerBound(k, query.max[k] + 1);
+            if (candidateKey < 0 || to - from < hi - lo) {
+                candidateKey = k;
+                lo = from;
+                hi = Math.max(from, to);
+            }
+        }
+        int sortKey = query.sortKey;
+        int[] result = new int[Math.max(0, hi - lo)];
+        int n = 0;
+        if (candidateKey < 0 || candidateKey == sortKey) {
+            // 候选区间本身就按排序键有序
+            int[] order = orders[sortKey];
+            n = collect(order, lo, hi, query, prefix, result);
+        } else {
+            int m = hi - lo;
+            if ((long) m * (32 - Integer.numberOfLeadingZeros(m)) < count) {
+                // 候选少：取出后按排序键重排
+                n = collect(orders[candidateKey], lo, hi, query, prefix, result);
+                mergeSort(result, new int[n], 0, n, sortKey);
+            } else {
+                // 候选多：按排序键的顺序整体扫一遍更快
+                result = new int[count];
+                n = collect(orders[sortKey], 0, count, query, prefix, result);
+            }
+        }
+        if (query.descending) reverse(result, n);
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+
+    private int collect(int[] order, int from, int to, Query query, String prefix, int[] out) {
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            int row = order[i];
+            if (matches(row, query, prefix)) out[n++] = row;
+        }
+        return n;
+    }
+
+    private boolean matches(int row, Query query, String prefix) {
+        if (deletedCount > 0 && deleted[row]) return false;
+        for (int k = 0; k < NUMERIC_KEYS; k++) {
+            if (!query.isConstrained(k)) continue;
+            long v = keys[k][row];
+            if (v == UNKNOWN || v < query.min[k] || v > query.max[k]) return false;
+        }
+        return prefix == null || sortNames[row].startsWith(prefix);
+    }
+
+    /** orders[key] 中第一个键值 >= value 的位置 */
+    private int lowerBound(int key, long value) {
+        int[] order = orders[key];
+        long[] column = keys[key];
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (column[order[mid]] < value) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    private int lowerBound(String value) {
+        int[] order = orders[KEY_NAME];
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sortNames[order[mid]].compareTo(value) < 0) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    /** 从 from 起以 prefix 开头的名称在有序数组中连续，二分找出末尾 */
+    private int prefixEnd(String prefix, int from) {
+        int[] order = orders[KEY_NAME];
+        int lo = from;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sortNames[order[mid]].startsWith(prefix)) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    private int compare(int key, int a, int b) {
+        int c = key == KEY_NAME ? sortNames[a].compareTo(sortNames[b]) : Long.compare(keys[key][a], keys[key][b]);
+        return c != 0 ? c : Integer.compare(a, b);
+    }
+
+    /** 行号数组按键稳定排序，不装箱 */
+    private void mergeSort(int[] rows, int[] tmp, int from, int to, int key) {
+        if (to - from <= 16) {
+            for (int i = from + 1; i < to; i++) {
+                int row = rows[i];
+                int j = i - 1;
+                while (j >= from && compare(key, rows[j], row) > 0) {
+                    rows[j + 1] = rows[j];
+                    j--;
+                }
+                rows[j + 1] = row;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(rows, tmp, from, mid, key);
+        mergeSort(rows, tmp, mid, to, key);
+        if (compare(key, rows[mid - 1], rows[mid]) <= 0) return;
+        System.arraycopy(rows, from, tmp, from, to - from);
+        int i = from;
+        int j = mid;
+        for (int k = from; k < to; k++) {
+            if (j >= to || (i < mid && compare(key, tmp[i], tmp[j]) <= 0)) rows[k] = tmp[i++];
+            else rows[k] = tmp[j++];
+        }
+    }
+
+    private static void reverse(int[] a, int n) {
+        for (int i = 0, j = n - 1; i < j; i++, j--) {
+            int t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+    }
+
+    static long loudnessKey(double lufs) {
+        return Math.round(lufs * LOUDNESS_SCALE);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.waveform;
+
+import android.os.Build;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+import androidx.annotation.RequiresApi;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.util.Arrays;
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * 用 Android Keystore 中不可导出的 AES-GCM 主密钥包装各录音的文件密钥
+ * 主密钥只参与每个文件一次的包装/解包，音频数据本身用文件密钥在应用内加解密，不经过 Keystore
+ */
+@RequiresApi(Build.VERSION_CODES.M)
+public class RecordingKeyStore implements EncryptedRecording.KeyWrapper {
+    private static final String KEYSTORE = "AndroidKeyStore";
+    private static final String ALIAS = "recording_master_key";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+
+    private static boolean installed;
+
+    private SecretKey masterKey;
+
+    /** 设为全局密钥包装器，可重复调用 */
+    public static synchronized void install() {
+        if (installed) return;
+        EncryptedRecording.setKeyWrapper(new RecordingKeyStore());
+        installed = true;
+    }
+
+    private synchronized SecretKey getMasterKey() throws GeneralSecurityException, IOException {
+        if (masterKey != null) return masterKey;
+        KeyStore keyStore = KeyStore.getInstance(KEYSTORE);
+        keyStore.load(null);
+        Key key = keyStore.getKey(ALIAS, null);
+        if (key == null) {
+            KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE);
+            generator.init(new KeyGenParameterSpec.Builder(ALIAS,
+                    KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                    .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                    .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                    .setKeySize(256)
+                    .build());
+            key = generator.generateKey();
+        }
+        masterKey = (SecretKey) key;
+        return masterKey;
+    }
+
+    /** 输出 IV(12) || 密文 || 认证标签(16) */
+    @Override
+    public byte[] wrap(byte[] key) throws IOException {
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, getMasterKey());
+            byte[] iv = cipher.getIV();
+            byte[] sealed = cipher.doFinal(key);
+            byte[] out = Arrays.copyOf(iv, iv.length + sealed.length);
+            System.arraycopy(sealed, 0, out, iv.length, sealed.length);
+            return out;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("包装录音密钥失败", e);
+        }
+    }
+
+    @Override
+    public byte[] unwrap(byte[] wrapped) throws IOException {
+        if (wrapped.length <= IV_BYTES) throw new IOException("录音密钥损坏");
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, getMasterKey(), new GCMParameterSpec(TAG_BITS, wrapped, 0, IV_BYTES));
+            return cipher.doFinal(wrapped, IV_BYTES, wrapped.length - IV_BYTES);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("解包录音密钥失败", e);
+        }
+    }
+}
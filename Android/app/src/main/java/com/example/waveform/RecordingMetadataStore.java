@@ -0,0 +1,346 @@
+package com.example.waveform;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 录音元数据（响度、批量分析结果、暂停区间等），以文件绝对路径为键保存在 SQLite 中
+ * 历史列表的检索不直接查库：syncDirectory 把目录中的文件同步进表，loadIndex 一次读出建成 RecordingIndex
+ */
+public class RecordingMetadataStore extends SQLiteOpenHelper {
+    private static final String TAG = "RecordingMetadataStore";
+    private static final String DB_NAME = "recordings.db";
+    private static final int DB_VERSION = 6;
+    private static final String TABLE = "recordings";
+    // 版本 4：文件名和创建时间（取同步时的修改时间），name 非空表示该行对应录音目录中的文件
+    private static final String FILE_COLUMNS = "name TEXT, created_at INTEGER";
+    // 版本 5：录音本身（标准化之前）测得的响度和真峰值，实时波形的参考电平取自这里；
+    // loudness_lufs / true_peak_dbtp 始终是文件当前的值，标准化后即为输出响度
+    private static final String INPUT_COLUMNS = "input_lufs REAL, input_true_peak_dbtp REAL";
+    // 版本 6：上次同步时文件的修改时间，用于判断文件是否变化；created_at 只在第一次同步时写入，之后不再改动
+    private static final String SYNC_COLUMNS = "file_modified INTEGER";
+    // 版本 3：录音中的暂停区间，一次暂停一行
+    private static final String PAUSES_TABLE = "pauses";
+    private static final String CREATE_PAUSES = "CREATE TABLE " + PAUSES_TABLE + " ("
+            + "path TEXT NOT NULL, "
+            + "frame INTEGER NOT NULL, "
+            + "duration_ms INTEGER NOT NULL)";
+    // 版本 2：批量分析结果；analyzed_modified 为分析时文件的修改时间，用于判断是否需要重新分析
+    private static final String ANALYSIS_COLUMNS = "duration_ms INTEGER, "
+            + "peak_dbfs REAL, "
+            + "rms_dbfs REAL, "
+            + "silence_ratio REAL, "
+            + "size_bytes INTEGER, "
+            + "analyzed_modified INTEGER";
+
+    private static RecordingMetadataStore instance;
+
+    public static synchronized RecordingMetadataStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new RecordingMetadataStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private RecordingMetadataStore(Context context) {
+        super(context, DB_NAME, null, DB_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE + " ("
+                + "path TEXT PRIMARY KEY, "
+                + "loudness_lufs REAL, "
+                + "true_peak_dbtp REAL, "
+                + "gain_db REAL, "
+                + "updated_at INTEGER, "
+                + ANALYSIS_COLUMNS + ", "
+                + FILE_COLUMNS + ", "
+                + INPUT_COLUMNS + ", "
+                + SYNC_COLUMNS + ")");
+        db.execSQL(CREATE_PAUSES);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            for (String column : ANALYSIS_COLUMNS.split(", ")) {
+                db.execSQL("ALTER TABLE " + TABLE + " ADD COLUMN " + column);
+            }
+        }
+        if (oldVersion < 3) {
+            db.execSQL(CREATE_PAUSES);
+        }
+        if (oldVersion < 4) {
+            for (String column : FILE_COLUMNS.split(", ")) {
+                db.execSQL("ALTER TABLE " + TABLE + " ADD COLUMN " + column);
+            }
+        }
+        if (oldVersion < 5) {
+            for (String column : INPUT_COLUMNS.split(", ")) {
+                db.execSQL("ALTER TABLE " + TABLE + " ADD COLUMN " + column);
+            }
+            // 未标准化过的文件，已有的测量值就是录音本身的响度
+            db.execSQL("UPDATE " + TABLE + " SET input_lufs = loudness_lufs, input_true_peak_dbtp = true_peak_dbtp"
+                    + " WHERE gain_db IS NULL");
+        }
+        if (oldVersion < 6) {
+            db.execSQL("ALTER TABLE " + TABLE + " ADD COLUMN " + SYNC_COLUMNS);
+            // 此前 created_at 就是上次同步时的修改时间
+            db.execSQL("UPDATE " + TABLE + " SET file_modified = created_at WHERE name IS NOT NULL");
+        }
+    }
+
+    /**
+     * 把目录中的 WAV 同步进表：新增的文件写入文件名、创建时间（取当时的修改时间）、大小和时长（读文件头），
+     * 大小或修改时间变化的文件只更新大小、时长和修改时间，创建时间保持不变；
+     * 已不存在的文件删除其记录。只处理变化的文件，在后台线程调用
+     * @return 是否有变化
+     */
+    public boolean syncDirectory(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) return false;
+        SQLiteDatabase db = getWritableDatabase();
+        // 路径 -> {file_modified, size_bytes}
+        Map<String, long[]> known = new HashMap<>();
+        try (Cursor c = db.rawQuery("SELECT path, file_modified, size_bytes FROM " + TABLE
+                + " WHERE name IS NOT NULL", null)) {
+            while (c.moveToNext()) {
+                known.put(c.getString(0), new long[]{c.getLong(1), c.getLong(2)});
+            }
+        }
+        String dirPrefix = dir.getAbsolutePath() + File.separator;
+        int changed = 0;
+        ContentValues values = new ContentValues();
+        db.beginTransaction();
+        try {
+            for (File f : files) {
+                String name = f.getName();
+                long size = f.length();
+                if (!EncryptedRecording.isRecordingName(name) || size == 0) continue;
+                String path = f.getAbsolutePath();
+                long modified = f.lastModified();
+                long[] row = known.remove(path);
+                if (row != null && row[0] == modified && row[1] == size) continue;
+                values.clear();
+                if (row == null) {
+                    values.put("name", name);
+                    values.put("created_at", modified);
+                }
+                values.put("file_modified", modified);
+                values.put("size_bytes", size);
+                long durationMs = readDurationMs(f);
+                if (durationMs >= 0) values.put("duration_ms", durationMs);
+                upsert(db, path, values);
+                changed++;
+            }
+            for (String path : known.keySet()) {
+                if (!path.startsWith(dirPrefix)) continue;
+                db.delete(TABLE, "path = ?", new String[]{path});
+                db.delete(PAUSES_TABLE, "path = ?", new String[]{path});
+                changed++;
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        if (changed > 0) Log.d(TAG, "Synced " + changed + " recordings in " + dir);
+        return changed > 0;
+    }
+
+    /** 从文件头得到时长，加密录音读解密视图；无法解析时返回 -1 */
+    private static long readDurationMs(File file) {
+        try (SeekableSource source = EncryptedRecording.open(file)) {
+            return WavFile.readInfo(source).durationMs();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 读出所有已同步的录音建成内存索引
+     */
+    public RecordingIndex loadIndex() {
+        RecordingIndex.Builder builder = new RecordingIndex.Builder();
+        try (Cursor c = getReadableDatabase().rawQuery("SELECT path, name, created_at, duration_ms, size_bytes, "
+                + "loudness_lufs FROM " + TABLE + " WHERE name IS NOT NULL", null)) {
+            while (c.moveToNext()) {
+                builder.add(c.getString(0), c.getString(1), c.getLong(2), c.isNull(3) ? -1 : c.getLong(3),
+                        c.getLong(4), c.isNull(5) ? Double.NaN : c.getDouble(5));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * 保存标准化结果：文件当前响度更新为输出响度；标准化之前测得的响度只在第一次记录，
+     * 再次标准化时的输入已是上次的输出，不能覆盖录音本身的响度
+     */
+    public void saveNormalization(String path, LoudnessNormalizer.Result result) {
+        SQLiteDatabase db = getWritableDatabase();
+        ContentValues values = new ContentValues();
+        values.put("loudness_lufs", finiteOrNull(result.outputLufs));
+        values.put("true_peak_dbtp", finiteOrNull(result.outputTruePeakDb));
+        values.put("gain_db", result.gainDb);
+        values.put("updated_at", System.currentTimeMillis());
+        db.beginTransaction();
+        try {
+            upsert(db, path, values);
+            db.execSQL("UPDATE " + TABLE + " SET input_lufs = COALESCE(input_lufs, ?), "
+                    + "input_true_peak_dbtp = COALESCE(input_true_peak_dbtp, ?) WHERE path = ?",
+                    new Object[]{finiteOrNull(result.inputLufs), finiteOrNull(result.inputTruePeakDb), path});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * 在一个事务中写入一批分析结果（失败的条目跳过），不覆盖 gain_db 等其他字段
+     * 未标准化过的文件（gain_db 为空），测得的响度同时记为录音本身的响度
+     */
+    public void saveAnalysis(List<BatchAnalyzer.Result> results) {
+        SQLiteDatabase db = getWritableDatabase();
+        ContentValues values = new ContentValues();
+        long now = System.currentTimeMillis();
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < results.size(); i++) {
+                BatchAnalyzer.Result r = results.get(i);
+                if (r.error != null) continue;
+                values.clear();
+                values.put("loudness_lufs", finiteOrNull(r.loudnessLufs));
+                values.put("true_peak_dbtp", finiteOrNull(r.truePeakDbtp));
+                values.put("duration_ms", r.durationMs);
+                values.put("peak_dbfs", finiteOrNull(r.peakDbfs));
+                values.put("rms_dbfs", finiteOrNull(r.rmsDbfs));
+                values.put("silence_ratio", r.silenceRatio);
+                values.put("size_bytes", r.sizeBytes);
+                values.put("analyzed_modified", r.lastModified);
+                values.put("updated_at", now);
+                upsert(db, r.path, values);
+                db.execSQL("UPDATE " + TABLE + " SET input_lufs = ?, input_true_peak_dbtp = ?"
+                        + " WHERE path = ? AND gain_db IS NULL",
+                        new Object[]{finiteOrNull(r.loudnessLufs), finiteOrNull(r.truePeakDbtp), r.path});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * 已分析文件的 路径 -> 分析时的修改时间，用于跳过未变化的文件
+     */
+    public Map<String, Long> getAnalyzedTimestamps() {
+        Map<String, Long> result = new HashMap<>();
+        try (Cursor c = getReadableDatabase().rawQuery("SELECT path, analyzed_modified FROM " + TABLE
+                + " WHERE analyzed_modified IS NOT NULL", null)) {
+            while (c.moveToNext()) {
+                result.put(c.getString(0), c.getLong(1));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return 分析得到的时长（毫秒），未分析时返回 -1
+     */
+    public long getDurationMs(String path) {
+        try (Cursor c = getReadableDatabase().query(TABLE, new String[]{"duration_ms"},
+                "path = ?", new String[]{path}, null, null, null)) {
+            if (c.moveToFirst() && !c.isNull(0)) return c.getLong(0);
+        }
+        return -1;
+    }
+
+    /** 已有记录只更新给定字段，否则插入新行 */
+    private static void upsert(SQLiteDatabase db, String path, ContentValues values) {
+        if (db.update(TABLE, values, "path = ?", new String[]{path}) == 0) {
+            values.put("path", path);
+            db.insert(TABLE, null, values);
+        }
+    }
+
+    /**
+     * @return 积分响度 (LUFS)，未测量时返回 NaN
+     */
+    public double getLoudness(String path) {
+        try (Cursor c = getReadableDatabase().query(TABLE, new String[]{"loudness_lufs"},
+                "path = ?", new String[]{path}, null, null, null)) {
+            if (c.moveToFirst() && !c.isNull(0)) return c.getDouble(0);
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * 最近 limit 条录音本身（标准化之前）的平均响度，供实时波形设定参考电平；没有数据时返回 NaN
+     * 会查库，不要在主线程调用
+     */
+    public double getRecentLoudness(int limit) {
+        try (Cursor c = getReadableDatabase().rawQuery(
+                "SELECT AVG(input_lufs) FROM (SELECT input_lufs FROM " + TABLE
+                        + " WHERE input_lufs IS NOT NULL ORDER BY COALESCE(created_at, updated_at) DESC LIMIT "
+                        + limit + ")", null)) {
+            if (c.moveToFirst() && !c.isNull(0)) return c.getDouble(0);
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * 保存一个录音的暂停区间（替换已有记录）
+     */
+    public void savePauses(String path, List<AudioRecorder.PauseInterval> pauses) {
+        SQLiteDatabase db = getWritableDatabase();
+        ContentValues values = new ContentValues();
+        db.beginTransaction();
+        try {
+            db.delete(PAUSES_TABLE, "path = ?", new String[]{path});
+            for (int i = 0; i < pauses.size(); i++) {
+                AudioRecorder.PauseInterval p = pauses.get(i);
+                values.clear();
+                values.put("path", path);
+                values.put("frame", p.frame);
+                values.put("duration_ms", p.durationMs);
+                db.insert(PAUSES_TABLE, null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * 录音中的暂停区间，按位置排序；没有暂停时返回空列表
+     */
+    public List<AudioRecorder.PauseInterval> getPauses(String path) {
+        List<AudioRecorder.PauseInterval> result = new ArrayList<>();
+        try (Cursor c = getReadableDatabase().query(PAUSES_TABLE, new String[]{"frame", "duration_ms"},
+                "path = ?", new String[]{path}, null, null, "frame")) {
+            while (c.moveToNext()) {
+                result.add(new AudioRecorder.PauseInterval(c.getLong(0), c.getLong(1)));
+            }
+        }
+        return result;
+    }
+
+    public void remove(String path) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.delete(TABLE, "path = ?", new String[]{path});
+        db.delete(PAUSES_TABLE, "path = ?", new String[]{path});
+    }
+
+    private static Double finiteOrNull(double v) {
+        return Double.isNaN(v) || Double.isInfinite(v) ? null : v;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.waveform;
+
+/**
+ * 录音服务的观察者（波形、计时器、电平表等），所有回调都在主线程
+ * 观察者可随时挂上或摘下，不影响录音本身
+ */
+public interface RecordingObserver {
+    /** 挂上时会立即回调一次当前状态 */
+    void onRecordingStateChanged(boolean recording);
+
+    /** 录音中暂停或恢复；挂上时若正在录音也会立即回调一次 */
+    void onPauseStateChanged(boolean paused);
+
+    /** 约每 40ms 一个幅度值 */
+    void onAmplitude(float amplitude);
+
+    /** 每次派发时回调，elapsedMs 取自录音时钟 */
+    void onTick(long elapsedMs);
+
+    /** 录音已保存；path 为 null 表示保存失败 */
+    void onRecordingSaved(String path);
+}
@@ -0,0 +1,362 @@
+package com.example.waveform;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.media.MediaRecorder;
+import android.os.Binder;
+import android.os.Build;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.util.Log;
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.ServiceCompat;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 前台录音服务：持有唯一的 AudioRecorder，界面关闭或旋转都不会中断录音
+ * 录音线程只把幅度写入环形缓冲；主线程上的单个派发器按固定节奏把新数据分发给所有观察者，
+ * 因此开销与观察者数量基本无关
+ */
+public class RecordingService extends Service {
+    private static final String TAG = "RecordingService";
+    private static final String CHANNEL_ID = "recording";
+    private static final int NOTIFICATION_ID = 1001;
+    private static final String ACTION_STOP = "com.example.waveform.action.STOP_RECORDING";
+    private static final String ACTION_PAUSE = "com.example.waveform.action.PAUSE_RECORDING";
+    private static final String ACTION_RESUME = "com.example.waveform.action.RESUME_RECORDING";
+    private static final int DISPATCH_INTERVAL_MS = 40;
+    // 2 的幂；派发间隔内最多只会产生一两个幅度值
+    private static final int RING_SIZE = 64;
+    private static final String PREFS = "recording";
+    private static final String PREF_ENCRYPT = "encrypt";
+    private static final String PREF_PRE_ROLL = "pre_roll_seconds";
+    /** 开启预录时保留的秒数 */
+    public static final int DEFAULT_PRE_ROLL_SECONDS = 5;
+    private static final String PREF_MULTI_TRACK = "multi_track";
+    private static final String PREF_CLEANUP = "cleanup";
+
+    /** 同进程绑定，直接返回服务实例 */
+    public class LocalBinder extends Binder {
+        public RecordingService getService() {
+            return RecordingService.this;
+        }
+    }
+
+    private final IBinder binder = new LocalBinder();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // 仅在主线程访问
+    private final List<RecordingObserver> observers = new ArrayList<>();
+    private AudioRecorder audioRecorder;
+    private SpectrumAnalyzer spectrumAnalyzer;
+    private boolean recording;
+    // 上一次录音保存期间请求了开始
+    private boolean startAfterSave;
+
+    // 录音线程写、主线程读的幅度环形缓冲
+    private final float[] amplitudeRing = new float[RING_SIZE];
+    private volatile long amplitudeWritten;
+    private long amplitudeRead;
+
+    private final Runnable dispatchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            dispatch();
+            if (recording) mainHandler.postDelayed(this, DISPATCH_INTERVAL_MS);
+        }
+    };
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) RecordingKeyStore.install();
+        audioRecorder = new AudioRecorder(getApplicationContext());
+        audioRecorder.setEncryptionEnabled(getSharedPreferences(PREFS, MODE_PRIVATE).getBoolean(PREF_ENCRYPT, false));
+        audioRecorder.setPreRollSeconds(getSharedPreferences(PREFS, MODE_PRIVATE).getInt(PREF_PRE_ROLL, 0));
+        applyMultiTrack(getSharedPreferences(PREFS, MODE_PRIVATE).getBoolean(PREF_MULTI_TRACK, false));
+        audioRecorder.setCleanupEnabled(getSharedPreferences(PREFS, MODE_PRIVATE).getBoolean(PREF_CLEANUP, false));
+        audioRecorder.setAmplitudeListener(amplitude -> {
+            long n = amplitudeWritten;
+            amplitudeRing[(int) (n & (RING_SIZE - 1))] = amplitude;
+            amplitudeWritten = n + 1;
+        });
+        spectrumAnalyzer = new SpectrumAnalyzer(2048, AudioRecorder.getSampleRate());
+        audioRecorder.setSpectrumAnalyzer(spectrumAnalyzer);
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return binder;
+    }
+
+    @Override
+    public boolean onUnbind(Intent intent) {
+        // 没有界面且不在录音时释放麦克风
+        if (!recording) audioRecorder.release();
+        return true;
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        String action = intent != null ? intent.getAction() : null;
+        if (ACTION_STOP.equals(action)) {
+            stopRecording();
+        } else if (ACTION_PAUSE.equals(action)) {
+            pauseRecording();
+        } else if (ACTION_RESUME.equals(action)) {
+            resumeRecording();
+        }
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        mainHandler.removeCallbacks(dispatchRunnable);
+        startAfterSave = false;
+        if (recording) stopRecording();
+        // 仍在保存时推迟到保存完成后释放
+        audioRecorder.release();
+    }
+
+    public AudioRecorder getRecorder() {
+        return audioRecorder;
+    }
+
+    /** 所有观察者共享的频谱分析器 */
+    public SpectrumAnalyzer getSpectrumAnalyzer() {
+        return spectrumAnalyzer;
+    }
+
+    public boolean isRecording() {
+        return recording;
+    }
+
+    /** 界面打开时调用，提前初始化录音引擎 */
+    public void prewarm() {
+        audioRecorder.prewarm();
+    }
+
+    public void addObserver(RecordingObserver observer) {
+        if (observers.contains(observer)) return;
+        observers.add(observer);
+        observer.onRecordingStateChanged(recording);
+        if (recording) {
+            if (audioRecorder.isPaused()) observer.onPauseStateChanged(true);
+            observer.onTick(audioRecorder.getClock().getElapsedMs());
+        }
+    }
+
+    public void removeObserver(RecordingObserver observer) {
+        observers.remove(observer);
+    }
+
+    public void startRecording() {
+        if (recording) return;
+        if (audioRecorder.isFinalizing()) {
+            // 上一次录音还在保存，完成后立即开始
+            startAfterSave = true;
+            return;
+        }
+        audioRecorder.startRecording();
+        if (!audioRecorder.isRecording()) {
+            Log.e(TAG, "Failed to start recording");
+            return;
+        }
+        recording = true;
+        amplitudeRead = amplitudeWritten;
+        // 录音期间暂停批量分析等后台工作
+        WorkScheduler.getInstance().setCapturing(true);
+
+        // 转为已启动的前台服务，解绑后继续录音
+        startService(new Intent(this, RecordingService.class));
+        startForeground(NOTIFICATION_ID, buildNotification());
+
+        for (int i = 0; i < observers.size(); i++) observers.get(i).onRecordingStateChanged(true);
+        mainHandler.post(dispatchRunnable);
+    }
+
+    /**
+     * 停止录音，文件在后台保存完成后通过 {@link RecordingObserver#onRecordingSaved} 通知；
+     * 保存期间服务保持前台，完成后再退出前台
+     */
+    public void stopRecording() {
+        if (!recording) return;
+        recording = false;
+        WorkScheduler.getInstance().setCapturing(false);
+        audioRecorder.stopRecording(this::onRecordingSaved);
+        mainHandler.removeCallbacks(dispatchRunnable);
+        dispatch();
+        for (int i = 0; i < observers.size(); i++) observers.get(i).onRecordingStateChanged(false);
+    }
+
+    /** 保存完成（主线程），path 为 null 表示保存失败 */
+    private void onRecordingSaved(String path) {
+        if (path != null) {
+            // 录音时已算好指纹，加入重复检测索引；暂停区间写入元数据（涉及文件读写，放到后台）
+            AudioFingerprinter.Fingerprint fingerprint = audioRecorder.getLastFingerprint();
+            List<AudioRecorder.PauseInterval> pauses = audioRecorder.getLastPauses();
+            Context appContext = getApplicationContext();
+            WorkScheduler scheduler = WorkScheduler.getInstance();
+            scheduler.submit(WorkScheduler.LANE_CAPTURE, task -> {
+                DuplicateFinder.getInstance(appContext).addRecording(path, fingerprint);
+                if (!pauses.isEmpty()) RecordingMetadataStore.getInstance(appContext).savePauses(path, pauses);
+            });
+            // 测量录音本身的响度（之后的实时波形以此为参考电平）并生成静音表；要读完整个文件，放在 BULK
+            try {
+                scheduler.submit(WorkScheduler.LANE_BULK, "analyze:" + path, task -> {
+                    File file = new File(path);
+                    BatchAnalysisJob.analyzeRecording(appContext, file);
+                    // 顺带预先算好播放时跳过静音用的能量表
+                    PlaybackEngine.loadSilenceMap(appContext, file);
+                });
+            } catch (RejectedExecutionException e) {
+                // 留给下次批量分析，静音表在播放时再算
+                Log.w(TAG, "Analysis of new recording rejected", e);
+            }
+        }
+        for (int i = 0; i < observers.size(); i++) observers.get(i).onRecordingSaved(path);
+
+        if (startAfterSave) {
+            // 保存期间点了开始：现在开始下一次录音，服务继续留在前台
+            startAfterSave = false;
+            startRecording();
+            if (recording) return;
+        }
+        if (!recording) {
+            ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE);
+            stopSelf();
+        }
+    }
+
+    /**
+     * 开关加密保存并记住设置，从下一次录音起生效
+     * @return 实际是否启用（Android 6.0 以下不支持）
+     */
+    public boolean setEncryptionEnabled(boolean enabled) {
+        getSharedPreferences(PREFS, MODE_PRIVATE).edit().putBoolean(PREF_ENCRYPT, enabled).apply();
+        audioRecorder.setEncryptionEnabled(enabled);
+        return audioRecorder.isEncryptionEnabled();
+    }
+
+    public boolean isEncryptionEnabled() {
+        return audioRecorder.isEncryptionEnabled();
+    }
+
+    /** 开关降噪处理（高通 + 噪声门）并记住设置，默认关闭 */
+    public void setCleanupEnabled(boolean enabled) {
+        getSharedPreferences(PREFS, MODE_PRIVATE).edit().putBoolean(PREF_CLEANUP, enabled).apply();
+        audioRecorder.setCleanupEnabled(enabled);
+    }
+
+    public boolean isCleanupEnabled() {
+        return audioRecorder.isCleanupEnabled();
+    }
+
+    /** 预录秒数，0 为关闭；开启后录音面板打开期间麦克风保持工作 */
+    public void setPreRollSeconds(int seconds) {
+        getSharedPreferences(PREFS, MODE_PRIVATE).edit().putInt(PREF_PRE_ROLL, seconds).apply();
+        audioRecorder.setPreRollSeconds(seconds);
+    }
+
+    public int getPreRollSeconds() {
+        return audioRecorder.getPreRollSeconds();
+    }
+
+    /**
+     * 采访模式：主麦克风之外同时录一路未处理的原始输入（低于 Android 7 时为语音识别输入），
+     * 保存为与主录音对齐的第二个 WAV；从下一次录音起生效
+     */
+    public void setMultiTrackEnabled(boolean enabled) {
+        getSharedPreferences(PREFS, MODE_PRIVATE).edit().putBoolean(PREF_MULTI_TRACK, enabled).apply();
+        applyMultiTrack(enabled);
+    }
+
+    public boolean isMultiTrackEnabled() {
+        return audioRecorder.getExtraTrackCount() > 0;
+    }
+
+    private void applyMultiTrack(boolean enabled) {
+        if (!enabled) {
+            audioRecorder.setExtraSources();
+            return;
+        }
+        audioRecorder.setExtraSources(Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+                ? MediaRecorder.AudioSource.UNPROCESSED : MediaRecorder.AudioSource.VOICE_RECOGNITION);
+    }
+
+    public int addBookmark() {
+        return audioRecorder.addBookmark();
+    }
+
+    public boolean isPaused() {
+        return audioRecorder.isPaused();
+    }
+
+    /** 暂停：同一个录音文件，恢复后接着写入 */
+    public void pauseRecording() {
+        if (!audioRecorder.pauseRecording()) return;
+        onPauseStateChanged(true);
+    }
+
+    public void resumeRecording() {
+        if (!audioRecorder.resumeRecording()) return;
+        onPauseStateChanged(false);
+    }
+
+    private void onPauseStateChanged(boolean paused) {
+        NotificationManager manager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        if (manager != null) manager.notify(NOTIFICATION_ID, buildNotification());
+        for (int i = 0; i < observers.size(); i++) observers.get(i).onPauseStateChanged(paused);
+    }
+
+    /**
+     * 把上次派发以来的幅度值和当前时钟分发给所有观察者
+     */
+    private void dispatch() {
+        long written = amplitudeWritten;
+        // 观察者处理太慢被套圈时只保留最新一圈
+        if (written - amplitudeRead > RING_SIZE) amplitudeRead = written - RING_SIZE;
+        int count = observers.size();
+        for (; amplitudeRead < written; amplitudeRead++) {
+            float amplitude = amplitudeRing[(int) (amplitudeRead & (RING_SIZE - 1))];
+            for (int i = 0; i < count; i++) observers.get(i).onAmplitude(amplitude);
+        }
+        long elapsed = audioRecorder.getClock().getElapsedMs();
+        for (int i = 0; i < count; i++) observers.get(i).onTick(elapsed);
+    }
+
+    private Notification buildNotification() {
+        NotificationManager manager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && manager != null) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, "录音", NotificationManager.IMPORTANCE_LOW);
+            manager.createNotificationChannel(channel);
+        }
+        int flags = PendingIntent.FLAG_UPDATE_CURRENT
+                | (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M ? PendingIntent.FLAG_IMMUTABLE : 0);
+        PendingIntent contentIntent = PendingIntent.getActivity(this, 0,
+                new Intent(this, MainActivity.class), flags);
+        PendingIntent stopIntent = PendingIntent.getService(this, 1,
+                new Intent(this, RecordingService.class).setAction(ACTION_STOP), flags);
+        boolean paused = audioRecorder.isPaused();
+        PendingIntent pauseIntent = PendingIntent.getService(this, 2,
+                new Intent(this, RecordingService.class).setAction(paused ? ACTION_RESUME : ACTION_PAUSE), flags);
+        return new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.ic_btn_speak_now)
+                .setContentTitle(paused ? "录音已暂停" : "正在录音")
+                .setContentText("点击返回录音界面")
+                .setContentIntent(contentIntent)
+                .addAction(0, paused ? "继续" : "暂停", pauseIntent)
+                .addAction(0, "停止并保存", stopIntent)
+                .setOngoing(true)
+                .build();
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.waveform;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.IBinder;
+
+/**
+ * 界面与 RecordingService 之间的绑定：连上后预热引擎并挂上观察者，解绑时摘下
+ * 解绑不会停止录音
+ */
+public class RecordingServiceConnection implements ServiceConnection {
+    private final Context context;
+    private final RecordingObserver observer;
+    private RecordingService service;
+    private boolean bound;
+
+    public RecordingServiceConnection(Context context, RecordingObserver observer) {
+        this.context = context.getApplicationContext();
+        this.observer = observer;
+    }
+
+    public void bind() {
+        if (bound) return;
+        bound = context.bindService(new Intent(context, RecordingService.class), this, Context.BIND_AUTO_CREATE);
+    }
+
+    public void unbind() {
+        if (service != null) {
+            service.removeObserver(observer);
+            service = null;
+        }
+        if (bound) {
+            context.unbindService(this);
+            bound = false;
+        }
+    }
+
+    /** 尚未连上时为 null */
+    public RecordingService getService() {
+        return service;
+    }
+
+    @Override
+    public void onServiceConnected(ComponentName name, IBinder binder) {
+        service = ((RecordingService.LocalBinder) binder).getService();
+        service.prewarm();
+        service.addObserver(observer);
+    }
+
+    @Override
+    public void onServiceDisconnected(ComponentName name) {
+        service = null;
+    }
+}
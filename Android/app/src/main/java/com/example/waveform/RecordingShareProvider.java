@@ -0,0 +1,366 @@
+package com.example.waveform;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.ParcelFileDescriptor;
+import android.os.ProxyFileDescriptorCallback;
+import android.os.storage.StorageManager;
+import android.provider.OpenableColumns;
+import android.system.ErrnoException;
+import android.system.OsConstants;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 分享录音的 ContentProvider，不生成任何临时文件：
+ * - 原始 WAV：直接返回只读文件描述符，接收方可任意 seek
+ * - 裁剪的或加密的 WAV：Android 8.0+ 用代理文件描述符按需合成/解密（可 seek），更早的系统走管道顺序输出
+ * - AAC：接收方读取时边编码边写入管道（ADTS 流，不可 seek）
+ * 每路管道流或代理流占用固定缓冲池中的一块，池用尽时拒绝新的流，内存上限固定
+ *
+ * URI：content://&lt;包名&gt;.recordings/&lt;文件名&gt;?format=wav|aac&amp;start=毫秒&amp;end=毫秒
+ */
+public class RecordingShareProvider extends ContentProvider {
+    private static final String TAG = "ShareProvider";
+    public static final String FORMAT_WAV = "wav";
+    public static final String FORMAT_AAC = "aac";
+    private static final String PARAM_FORMAT = "format";
+    private static final String PARAM_START = "start";
+    private static final String PARAM_END = "end";
+
+    // 管道流和代理流合计最多 4 路并发，每路一块 64KB 缓冲
+    private static final BufferPool BUFFER_POOL = new BufferPool(4, 64 * 1024);
+    private static final long BUFFER_WAIT_MS = 2000;
+
+    private HandlerThread proxyThread;
+    private Handler proxyHandler;
+
+    private interface StreamWriter {
+        void write(OutputStream out, byte[] buffer) throws IOException;
+    }
+
+    public static String getAuthority(Context context) {
+        return context.getPackageName() + ".recordings";
+    }
+
+    /**
+     * @param endMs 不大于 0 表示到结尾
+     */
+    public static Uri buildUri(Context context, File file, String format, long startMs, long endMs) {
+        Uri.Builder builder = new Uri.Builder()
+                .scheme("content")
+                .authority(getAuthority(context))
+                .appendPath(file.getName())
+                .appendQueryParameter(PARAM_FORMAT, format);
+        if (startMs > 0) builder.appendQueryParameter(PARAM_START, String.valueOf(startMs));
+        if (endMs > 0) builder.appendQueryParameter(PARAM_END, String.valueOf(endMs));
+        return builder.build();
+    }
+
+    /** 构造分享 Intent，接收方获得临时读取权限 */
+    public static Intent buildShareIntent(Context context, File file, String format, long startMs, long endMs) {
+        Uri uri = buildUri(context, file, format, startMs, endMs);
+        Intent intent = new Intent(Intent.ACTION_SEND);
+        intent.setType(mimeType(format));
+        intent.putExtra(Intent.EXTRA_STREAM, uri);
+        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        return Intent.createChooser(intent, "分享录音");
+    }
+
+    @Override
+    public boolean onCreate() {
+        // Provider 在进程启动时最先创建，在此安装密钥包装器，保证从任何入口都能读取加密录音
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) RecordingKeyStore.install();
+        return true;
+    }
+
+    @Nullable
+    @Override
+    public String getType(@NonNull Uri uri) {
+        return mimeType(uri.getQueryParameter(PARAM_FORMAT));
+    }
+
+    private static String mimeType(String format) {
+        return FORMAT_AAC.equals(format) ? "audio/aac" : "audio/x-wav";
+    }
+
+    @Nullable
+    @Override
+    public Cursor query(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection,
+                        @Nullable String[] selectionArgs, @Nullable String sortOrder) {
+        File file;
+        try {
+            file = resolveFile(uri);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        String format = uri.getQueryParameter(PARAM_FORMAT);
+        long startMs = longParam(uri, PARAM_START);
+        long endMs = longParam(uri, PARAM_END);
+        boolean trimmed = startMs > 0 || endMs > 0;
+
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        if (trimmed) base += "_片段";
+        String displayName = base + (FORMAT_AAC.equals(format) ? ".aac" : ".wav");
+        // AAC 边编码边输出，大小未知
+        Long size = null;
+        if (!FORMAT_AAC.equals(format)) {
+            if (!trimmed && !EncryptedRecording.isEncrypted(file)) {
+                size = file.length();
+            } else {
+                try (WavSlice slice = WavSlice.open(file, startMs, endMs)) {
+                    size = slice.length();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        String[] columns = projection != null ? projection
+                : new String[]{OpenableColumns.DISPLAY_NAME, OpenableColumns.SIZE};
+        MatrixCursor cursor = new MatrixCursor(columns, 1);
+        Object[] row = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            if (OpenableColumns.DISPLAY_NAME.equals(columns[i])) row[i] = displayName;
+            else if (OpenableColumns.SIZE.equals(columns[i])) row[i] = size;
+        }
+        cursor.addRow(row);
+        return cursor;
+    }
+
+    @Nullable
+    @Override
+    public ParcelFileDescriptor openFile(@NonNull Uri uri, @NonNull String mode) throws FileNotFoundException {
+        if (!"r".equals(mode)) throw new FileNotFoundException("只支持只读: " + mode);
+        File file = resolveFile(uri);
+        String format = uri.getQueryParameter(PARAM_FORMAT);
+        long startMs = longParam(uri, PARAM_START);
+        long endMs = longParam(uri, PARAM_END);
+
+        if (FORMAT_AAC.equals(format)) {
+            return openPipe((out, buffer) -> AacStreamEncoder.encode(file, startMs, endMs, out, buffer));
+        }
+        boolean encrypted = EncryptedRecording.isEncrypted(file);
+        if (startMs <= 0 && endMs <= 0 && !encrypted) {
+            return ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
+        }
+        WavSlice slice;
+        try {
+            slice = WavSlice.open(file, startMs, endMs);
+        } catch (IOException e) {
+            throw new FileNotFoundException("无法读取录音: " + e.getMessage());
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            try {
+                return openProxy(slice);
+            } catch (FileNotFoundException e) {
+                // 缓冲池用尽，管道同样拿不到缓冲
+                closeSlice(slice);
+                throw e;
+            } catch (IOException e) {
+                Log.w(TAG, "Proxy fd unavailable, falling back to pipe", e);
+            }
+        }
+        try {
+            return openSlicePipe(slice);
+        } catch (FileNotFoundException e) {
+            closeSlice(slice);
+            throw e;
+        }
+    }
+
+    private ParcelFileDescriptor openSlicePipe(WavSlice slice) throws FileNotFoundException {
+        return openPipe((out, buffer) -> {
+            try {
+                long position = 0;
+                int n;
+                while ((n = slice.read(position, buffer, 0, buffer.length)) > 0) {
+                    out.write(buffer, 0, n);
+                    position += n;
+                }
+            } finally {
+                slice.close();
+            }
+        });
+    }
+
+    /**
+     * 在后台线程把数据写入管道；写端阻塞即是背压，接收方关闭读端时写入失败并结束
+     */
+    private ParcelFileDescriptor openPipe(StreamWriter writer) throws FileNotFoundException {
+        byte[] buffer = acquireBuffer();
+        ParcelFileDescriptor[] pipe;
+        try {
+            pipe = ParcelFileDescriptor.createReliablePipe();
+        } catch (IOException e) {
+            BUFFER_POOL.release(buffer);
+            throw new FileNotFoundException("无法创建管道: " + e.getMessage());
+        }
+        ParcelFileDescriptor writeSide = pipe[1];
+        byte[] streamBuffer = buffer;
+        new Thread(() -> {
+            long start = System.nanoTime();
+            try {
+                OutputStream out = new FileOutputStream(writeSide.getFileDescriptor());
+                writer.write(out, streamBuffer);
+                writeSide.close();
+                Log.d(TAG, "Stream finished in " + (System.nanoTime() - start) / 1000000 + " ms");
+            } catch (IOException e) {
+                // 接收方提前关闭（EPIPE）也会走到这里
+                Log.d(TAG, "Stream aborted: " + e.getMessage());
+                try {
+                    writeSide.closeWithError(String.valueOf(e.getMessage()));
+                } catch (IOException ignored) {
+                }
+            } finally {
+                BUFFER_POOL.release(streamBuffer);
+            }
+        }, "ShareStream").start();
+        return pipe[0];
+    }
+
+    private static void closeSlice(WavSlice slice) {
+        try {
+            slice.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /** 从缓冲池取一块，等待超时说明并发的流已达上限 */
+    private static byte[] acquireBuffer() throws FileNotFoundException {
+        byte[] buffer;
+        try {
+            buffer = BUFFER_POOL.acquire(BUFFER_WAIT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            buffer = null;
+        }
+        if (buffer == null) throw new FileNotFoundException("同时分享的录音过多");
+        return buffer;
+    }
+
+    /**
+     * 可随机读取的虚拟文件，读取在专用线程上按需进行。
+     * 与管道流一样占用缓冲池中的一块直到接收方关闭：每次读取先读入这块缓冲再交给框架，
+     * 同时打开的代理流数量和读取占用的内存都受缓冲池限制
+     */
+    @RequiresApi(Build.VERSION_CODES.O)
+    private ParcelFileDescriptor openProxy(WavSlice slice) throws IOException {
+        StorageManager storage = getContext().getSystemService(StorageManager.class);
+        byte[] buffer = acquireBuffer();
+        try {
+            return openProxy(storage, slice, buffer);
+        } catch (IOException | RuntimeException e) {
+            BUFFER_POOL.release(buffer);
+            throw e;
+        }
+    }
+
+    @RequiresApi(Build.VERSION_CODES.O)
+    private ParcelFileDescriptor openProxy(StorageManager storage, WavSlice slice, byte[] buffer)
+            throws IOException {
+        return storage.openProxyFileDescriptor(ParcelFileDescriptor.MODE_READ_ONLY,
+                new ProxyFileDescriptorCallback() {
+                    @Override
+                    public long onGetSize() {
+                        return slice.length();
+                    }
+
+                    @Override
+                    public int onRead(long offset, int size, byte[] data) throws ErrnoException {
+                        try {
+                            int done = 0;
+                            while (done < size) {
+                                int n = slice.read(offset + done, buffer, 0, Math.min(buffer.length, size - done));
+                                if (n <= 0) break;
+                                System.arraycopy(buffer, 0, data, done, n);
+                                done += n;
+                            }
+                            return done;
+                        } catch (IOException e) {
+                            throw new ErrnoException("onRead", OsConstants.EIO);
+                        }
+                    }
+
+                    @Override
+                    public void onRelease() {
+                        try {
+                            slice.close();
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        } finally {
+                            BUFFER_POOL.release(buffer);
+                        }
+                    }
+                }, getProxyHandler());
+    }
+
+    private synchronized Handler getProxyHandler() {
+        if (proxyHandler == null) {
+            proxyThread = new HandlerThread("ShareProxy");
+            proxyThread.start();
+            proxyHandler = new Handler(proxyThread.getLooper());
+        }
+        return proxyHandler;
+    }
+
+    /** 只允许访问 Recordings 目录下的文件 */
+    private File resolveFile(Uri uri) throws FileNotFoundException {
+        String name = uri.getLastPathSegment();
+        if (name == null || name.contains("/") || name.startsWith(".")) {
+            throw new FileNotFoundException("无效的录音: " + uri);
+        }
+        // 与历史记录页一致：外部存储不可用时录音在内部存储
+        File baseDir = getContext().getExternalFilesDir(null);
+        if (baseDir == null) baseDir = getContext().getFilesDir();
+        File dir = new File(baseDir, "Recordings");
+        File file = new File(dir, name);
+        if (!file.isFile()) throw new FileNotFoundException("录音不存在: " + name);
+        return file;
+    }
+
+    private static long longParam(Uri uri, String key) {
+        String value = uri.getQueryParameter(key);
+        if (value == null) return 0;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Nullable
+    @Override
+    public Uri insert(@NonNull Uri uri, @Nullable ContentValues values) {
+        throw new UnsupportedOperationException("只读");
+    }
+
+    @Override
+    public int delete(@NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
+        throw new UnsupportedOperationException("只读");
+    }
+
+    @Override
+    public int update(@NonNull Uri uri, @Nullable ContentValues values, @Nullable String selection,
+                      @Nullable String[] selectionArgs) {
+        throw new UnsupportedOperationException("只读");
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.waveform;
+
+/**
+ * 一段音频的统计量：时长、峰值、RMS、响度和静音占比
+ * 各字段均可合并，长文件可拆成多段并行累计后 merge 得到整体结果
+ */
+public class RecordingStats {
+    /** 静音判定与 SilenceMap 一致：20ms 块 RMS 低于 -45 dBFS */
+    public static final int SILENCE_BLOCK_MS = 20;
+    public static final double SILENCE_THRESHOLD_DB = -45.0;
+
+    private final int sampleRate;
+    private final int channels;
+    private final int blockSamples;
+    private final double silenceEnergy;
+    private final LoudnessMeter loudness;
+
+    private long frames;
+    private int peak;
+    private double sumSquares;
+    private long totalBlocks;
+    private long silentBlocks;
+    // 当前未满的静音判定块
+    private double blockSum;
+    private int blockPos;
+
+    public RecordingStats(int sampleRate, int channels) {
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.blockSamples = sampleRate * SILENCE_BLOCK_MS / 1000 * channels;
+        double threshold = 32768.0 * Math.pow(10.0, SILENCE_THRESHOLD_DB / 20.0);
+        this.silenceEnergy = threshold * threshold;
+        this.loudness = new LoudnessMeter(sampleRate, channels);
+    }
+
+    /**
+     * 分段边界需对齐的帧数：静音块与响度 100ms 子块的最小公倍数
+     * 对齐后各段的块划分与从头顺序统计完全相同（滤波器状态靠分段预热近似，见 BatchAnalyzer）
+     */
+    public static int alignmentFrames(int sampleRate) {
+        int a = sampleRate * SILENCE_BLOCK_MS / 1000;
+        int b = sampleRate / 10;
+        int x = a, y = b;
+        while (y != 0) {
+            int t = x % y;
+            x = y;
+            y = t;
+        }
+        return a / x * b;
+    }
+
+    /**
+     * 只更新响度滤波器状态（分段的预热样本），不计入统计
+     */
+    public void warmUp(short[] buf, int off, int len) {
+        loudness.process(buf, off, len);
+    }
+
+    /** 预热结束，此后送入的样本计入统计 */
+    public void beginMeasurement() {
+        loudness.beginMeasurement();
+    }
+
+    /** 送入交错排列的样本，len 为样本数 */
+    public void process(short[] buf, int off, int len) {
+        loudness.process(buf, off, len);
+        int end = off + len;
+        int p = peak;
+        double total = sumSquares;
+        double block = blockSum;
+        int pos = blockPos;
+        for (int i = off; i < end; i++) {
+            int s = buf[i];
+            int abs = s < 0 ? -s : s;
+            if (abs > p) p = abs;
+            double e = (double) s * s;
+            total += e;
+            block += e;
+            if (++pos == blockSamples) {
+                totalBlocks++;
+                if (block < silenceEnergy * blockSamples) silentBlocks++;
+                block = 0;
+                pos = 0;
+            }
+        }
+        peak = p;
+        sumSquares = total;
+        blockSum = block;
+        blockPos = pos;
+        frames += len / channels;
+    }
+
+    /** 结束统计：末尾不足一块的样本也按一块计 */
+    public void finish() {
+        if (blockPos > 0) {
+            totalBlocks++;
+            if (blockSum < silenceEnergy * blockPos) silentBlocks++;
+            blockSum = 0;
+            blockPos = 0;
+        }
+    }
+
+    /** 合并紧随其后的一段（调用前两段都应已 finish） */
+    public void merge(RecordingStats other) {
+        frames += other.frames;
+        if (other.peak > peak) peak = other.peak;
+        sumSquares += other.sumSquares;
+        totalBlocks += other.totalBlocks;
+        silentBlocks += other.silentBlocks;
+        loudness.merge(other.loudness);
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    public long getDurationMs() {
+        return frames * 1000 / sampleRate;
+    }
+
+    public double getPeakDbfs() {
+        return peak > 0 ? 20.0 * Math.log10(peak / 32768.0) : Double.NEGATIVE_INFINITY;
+    }
+
+    public double getRmsDbfs() {
+        long samples = frames * channels;
+        if (samples == 0 || sumSquares <= 0) return Double.NEGATIVE_INFINITY;
+        return 10.0 * Math.log10(sumSquares / samples / (32768.0 * 32768.0));
+    }
+
+    public double getLoudnessLufs() {
+        return loudness.integratedLoudness();
+    }
+
+    public double getTruePeakDbtp() {
+        return loudness.truePeakDb();
+    }
+
+    /** 静音块占比 0 - 1 */
+    public double getSilenceRatio() {
+        return totalBlocks > 0 ? (double) silentBlocks / totalBlocks : 0;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.waveform;
+
+import java.util.Arrays;
+
+/**
+ * 一次会话中从音源读到、但没有写入文件的样本区间 [起, 止)（暂停、写线程缓冲耗尽），按音源样本序号递增排列。
+ * 用于在文件帧和音源样本序号之间换算：多轨录音据此把主轨的暂停映射到各附加音轨上。
+ * 采集线程追加，会话结束后再读；只在区间数超出容量时扩容，相邻区间合并
+ */
+public class SampleGaps {
+    private long[] starts = new long[8];
+    private long[] ends = new long[8];
+    private int count;
+
+    public void clear() {
+        count = 0;
+    }
+
+    /** 追加一段区间，start 不小于上一段的终点 */
+    public void add(long start, long end) {
+        if (end <= start) return;
+        if (count > 0 && ends[count - 1] == start) {
+            ends[count - 1] = end;
+            return;
+        }
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public long getStart(int index) {
+        return starts[index];
+    }
+
+    public long getEnd(int index) {
+        return ends[index];
+    }
+
+    /** 文件第 fileFrame 帧对应的音源样本序号 */
+    public long toSource(long fileFrame) {
+        long source = fileFrame;
+        for (int i = 0; i < count && starts[i] <= source; i++) source += ends[i] - starts[i];
+        return source;
+    }
+
+    /** 音源样本 source 在文件中的帧位置；该样本没有写入时返回 -1 */
+    public long toFile(long source) {
+        long skipped = 0;
+        for (int i = 0; i < count && starts[i] <= source; i++) {
+            if (source < ends[i]) return -1;
+            skipped += ends[i] - starts[i];
+        }
+        return source - skipped;
+    }
+
+    /** 从音源样本 source 起，写入与否不变的连续样本数；之后再无区间时返回 Long.MAX_VALUE */
+    public long runLength(long source) {
+        for (int i = 0; i < count; i++) {
+            if (source < starts[i]) return starts[i] - source;
+            if (source < ends[i]) return ends[i] - source;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    public SampleGaps copy() {
+        SampleGaps copy = new SampleGaps();
+        copy.starts = Arrays.copyOf(starts, Math.max(1, count));
+        copy.ends = Arrays.copyOf(ends, Math.max(1, count));
+        copy.count = count;
+        return copy;
+    }
+}
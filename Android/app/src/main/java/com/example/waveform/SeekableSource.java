@@ -0,0 +1,20 @@
+package com.example.waveform;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 可按位置读取的录音字节流：普通文件或加密容器的解密视图
+ */
+public interface SeekableSource extends Closeable {
+
+    /** 字节数（加密容器为明文 WAV 的长度） */
+    long size() throws IOException;
+
+    /**
+     * 从 position 处读取，填充 dst 的剩余空间，不改变其他读取者的位置
+     * @return 读取的字节数，已到结尾时返回 -1
+     */
+    int read(ByteBuffer dst, long position) throws IOException;
+}
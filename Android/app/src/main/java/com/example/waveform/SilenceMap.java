@@ -0,0 +1,141 @@
+package com.example.waveform;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * 按 20ms 分块预先计算的能量表（每块 1 字节 dBFS），用于播放时跳过静音段
+ * 一小时录音约 180KB，可缓存到磁盘复用
+ */
+public class SilenceMap {
+    private static final int MAGIC = 0x534D4150; // "SMAP"
+    private static final int BLOCK_MS = 20;
+
+    private final int blockFrames;
+    private final byte[] levels;
+    private final long sourceLength;
+    private final long sourceModified;
+
+    private float thresholdDb = -45f;
+    private int minSilentBlocks = 400 / BLOCK_MS;
+    private int paddingBlocks = 100 / BLOCK_MS;
+
+    private SilenceMap(int blockFrames, byte[] levels, long sourceLength, long sourceModified) {
+        this.blockFrames = blockFrames;
+        this.levels = levels;
+        this.sourceLength = sourceLength;
+        this.sourceModified = sourceModified;
+    }
+
+    /**
+     * 优先读取缓存，缓存缺失或源文件已变化时重新扫描并写回缓存
+     */
+    public static SilenceMap load(File wav, File cacheFile) throws IOException {
+        if (cacheFile != null && cacheFile.exists()) {
+            SilenceMap cached = readCache(cacheFile);
+            if (cached != null && cached.sourceLength == wav.length() && cached.sourceModified == wav.lastModified()) {
+                return cached;
+            }
+        }
+        SilenceMap map = compute(wav);
+        if (cacheFile != null) {
+            try {
+                map.writeCache(cacheFile);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return map;
+    }
+
+    /** 流式扫描整个文件，只保留每块的电平 */
+    public static SilenceMap compute(File wav) throws IOException {
+        try (WavReader reader = new WavReader(wav)) {
+            int channels = reader.getChannels();
+            int blockFrames = reader.getSampleRate() * BLOCK_MS / 1000;
+            int blocks = (int) ((reader.getFrameCount() + blockFrames - 1) / blockFrames);
+            byte[] levels = new byte[blocks];
+            short[] buf = new short[blockFrames * channels];
+            for (int b = 0; b < blocks; b++) {
+                int frames = 0;
+                int n;
+                while (frames < blockFrames && (n = reader.read(buf, frames * channels, blockFrames - frames)) > 0) {
+                    frames += n;
+                }
+                double sum = 0;
+                for (int i = 0, count = frames * channels; i < count; i++) {
+                    double s = buf[i];
+                    sum += s * s;
+                }
+                double rms = frames > 0 ? Math.sqrt(sum / (frames * channels)) : 0;
+                double db = rms > 0 ? 20 * Math.log10(rms / 32768.0) : -127;
+                levels[b] = (byte) Math.max(-127, Math.min(0, Math.round(db)));
+            }
+            return new SilenceMap(blockFrames, levels, wav.length(), wav.lastModified());
+        }
+    }
+
+    private static SilenceMap readCache(File file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) return null;
+            long length = in.readLong();
+            long modified = in.readLong();
+            int blockFrames = in.readInt();
+            int count = in.readInt();
+            byte[] levels = new byte[count];
+            in.readFully(levels);
+            return new SilenceMap(blockFrames, levels, length, modified);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void writeCache(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeLong(sourceLength);
+            out.writeLong(sourceModified);
+            out.writeInt(blockFrames);
+            out.writeInt(levels.length);
+            out.write(levels);
+        }
+    }
+
+    /** 低于该电平视为静音 (dBFS) */
+    public void setThresholdDb(float thresholdDb) {
+        this.thresholdDb = thresholdDb;
+    }
+
+    /**
+     * 若 frame 处于足够长的静音段内，返回应跳转到的帧（保留少量前后余量）；否则返回 frame 本身
+     */
+    public long skipTarget(long frame) {
+        int block = (int) (frame / blockFrames);
+        if (block >= levels.length || !isSilent(block)) return frame;
+        // 回看有限块数确定静音段起点，段首 padding 内继续播放
+        int start = block;
+        int limit = Math.max(0, block - minSilentBlocks);
+        while (start > limit && isSilent(start - 1)) start--;
+        if (block - start < paddingBlocks) return frame;
+        int end = block;
+        while (end < levels.length && isSilent(end)) end++;
+        if (end - start < minSilentBlocks) return frame;
+        // 在静音段结束前 padding 处恢复播放
+        long resume = (long) (end - paddingBlocks) * blockFrames;
+        return resume > frame ? resume : frame;
+    }
+
+    private boolean isSilent(int block) {
+        return levels[block] < thresholdDb;
+    }
+
+    public int getBlockFrames() {
+        return blockFrames;
+    }
+}
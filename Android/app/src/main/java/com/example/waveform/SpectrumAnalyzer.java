@@ -0,0 +1,111 @@
+package com.example.waveform;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 实时频谱分析：录音线程写入样本，满一个跳步就做一次 FFT，
+ * 结果经三缓冲无锁交给 UI 线程，双方都不分配对象、不加锁
+ */
+public class SpectrumAnalyzer {
+    private static final int FRESH = 4;
+
+    private final int fftSize;
+    private final int hopSize;
+    private final int sampleRate;
+    private final RealFft fft;
+    private final float[] history;
+    private final float[] frame;
+    private final float[] workRe;
+    private final float[] workIm;
+
+    // 三缓冲：写端独占 back，读端独占 front，middle 由 state 交换
+    private final float[][] buffers;
+    private final AtomicInteger state = new AtomicInteger(1);
+    private int back = 0;
+    private int front = 2;
+
+    private int writePos;
+    private int pendingSamples;
+    private volatile boolean enabled;
+    private long frames;
+    private long totalNanos;
+
+    public SpectrumAnalyzer(int fftSize, int sampleRate) {
+        this.fftSize = fftSize;
+        this.hopSize = fftSize / 2;
+        this.sampleRate = sampleRate;
+        this.fft = new RealFft(fftSize);
+        this.history = new float[fftSize];
+        this.frame = new float[fftSize];
+        this.workRe = new float[fft.getBinCount()];
+        this.workIm = new float[fft.getBinCount()];
+        this.buffers = new float[3][fft.getBinCount()];
+        for (float[] b : buffers) Arrays.fill(b, -180f);
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // --- 录音线程 ---
+
+    public void write(short[] samples, int offset, int count) {
+        if (!enabled) return;
+        for (int i = offset, end = offset + count; i < end; i++) {
+            history[writePos] = samples[i] / 32768f;
+            writePos = writePos + 1 == fftSize ? 0 : writePos + 1;
+            if (++pendingSamples == hopSize) {
+                pendingSamples = 0;
+                analyze();
+            }
+        }
+    }
+
+    private void analyze() {
+        long start = System.nanoTime();
+        // 环形历史展开为时间顺序
+        int tail = fftSize - writePos;
+        System.arraycopy(history, writePos, frame, 0, tail);
+        System.arraycopy(history, 0, frame, tail, writePos);
+        fft.magnitudesDb(frame, 0, workRe, workIm, buffers[back]);
+        back = state.getAndSet(back | FRESH) & 3;
+        totalNanos += System.nanoTime() - start;
+        frames++;
+    }
+
+    // --- UI 线程 ---
+
+    /**
+     * 若有新帧则切换到最新一帧
+     * @return 是否有新数据
+     */
+    public boolean update() {
+        if ((state.get() & FRESH) == 0) return false;
+        front = state.getAndSet(front) & 3;
+        return true;
+    }
+
+    /** 当前帧各频点的 dBFS，长度 fftSize/2 + 1；只能在调用 update() 的线程读取 */
+    public float[] getSpectrum() {
+        return buffers[front];
+    }
+
+    public int getBinCount() {
+        return fft.getBinCount();
+    }
+
+    public float getBinFrequency(int bin) {
+        return (float) bin * sampleRate / fftSize;
+    }
+
+    /** 平均每帧分析耗时（纳秒），包含展开与 FFT */
+    public long getAverageFrameNanos() {
+        long n = frames;
+        return n > 0 ? totalNanos / n : 0;
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.waveform;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.util.AttributeSet;
+import android.view.View;
+import java.util.Arrays;
+
+/**
+ * 实时频谱 / 滚动语谱图
+ * 每帧从 SpectrumAnalyzer 取最新结果，绘制过程不分配对象
+ */
+public class SpectrumView extends View {
+    public static final int MODE_SPECTRUM = 0;
+    public static final int MODE_SPECTROGRAM = 1;
+
+    private static final float MIN_DB = -90f;
+    private static final float MAX_DB = 0f;
+    private static final float MIN_FREQ = 50f;
+
+    private SpectrumAnalyzer analyzer;
+    private int mode = MODE_SPECTRUM;
+    private boolean running = false;
+
+    private Paint barPaint;
+    private Paint bitmapPaint;
+    private float barWidth = 6f;
+    private float gap = 3f;
+
+    // 频谱模式：每根柱子对应的频点区间及平滑后的高度
+    private int barCount;
+    private int[] barStartBin;
+    private int[] barEndBin;
+    private float[] barLevels;
+
+    // 语谱图模式：环形位图，writeX 为下一列
+    private Bitmap spectrogram;
+    private int[] columnPixels;
+    private int[] rowStartBin;
+    private int[] rowEndBin;
+    private int writeX;
+    private final int[] palette = new int[256];
+    private final Rect srcRect = new Rect();
+    private final Rect dstRect = new Rect();
+
+    public SpectrumView(Context context) {
+        super(context);
+        init();
+    }
+
+    public SpectrumView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init();
+    }
+
+    public SpectrumView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init();
+    }
+
+    private void init() {
+        barPaint = new Paint();
+        barPaint.setColor(0xFFFF3B30);
+        barPaint.setStyle(Paint.Style.FILL);
+        barPaint.setAntiAlias(true);
+        bitmapPaint = new Paint();
+
+        float density = getResources().getDisplayMetrics().density;
+        barWidth = 3 * density;
+        gap = 1.5f * density;
+
+        // 黑 -> 红 -> 黄 -> 白
+        for (int i = 0; i < 256; i++) {
+            int r = Math.min(255, i * 3);
+            int g = Math.max(0, Math.min(255, (i - 85) * 3));
+            int b = Math.max(0, Math.min(255, (i - 170) * 3));
+            palette[i] = 0xFF000000 | (r << 16) | (g << 8) | b;
+        }
+    }
+
+    public void setAnalyzer(SpectrumAnalyzer analyzer) {
+        this.analyzer = analyzer;
+        rebuildMapping();
+    }
+
+    public void setMode(int mode) {
+        this.mode = mode;
+        invalidate();
+    }
+
+    public int getMode() {
+        return mode;
+    }
+
+    /** 开始按屏幕刷新率拉取数据 */
+    public void start() {
+        running = true;
+        postInvalidateOnAnimation();
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    public void clear() {
+        if (barLevels != null) Arrays.fill(barLevels, 0f);
+        if (spectrogram != null) spectrogram.eraseColor(0xFF000000);
+        writeX = 0;
+        invalidate();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (spectrogram != null) spectrogram.recycle();
+        spectrogram = null;
+        if (w > 0 && h > 0) {
+            spectrogram = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+            spectrogram.eraseColor(0xFF000000);
+            columnPixels = new int[h];
+        }
+        writeX = 0;
+        rebuildMapping();
+    }
+
+    /**
+     * 按对数频率刻度预先计算柱子和语谱图行对应的频点区间
+     */
+    private void rebuildMapping() {
+        if (analyzer == null || getWidth() == 0 || getHeight() == 0) return;
+        barCount = Math.max(1, (int) (getWidth() / (barWidth + gap)));
+        barStartBin = new int[barCount];
+        barEndBin = new int[barCount];
+        barLevels = new float[barCount];
+        fillLogBins(barStartBin, barEndBin);
+
+        int h = getHeight();
+        rowStartBin = new int[h];
+        rowEndBin = new int[h];
+        fillLogBins(rowStartBin, rowEndBin);
+    }
+
+    private void fillLogBins(int[] start, int[] end) {
+        int bins = analyzer.getBinCount();
+        float maxFreq = analyzer.getBinFrequency(bins - 1);
+        float binWidth = analyzer.getBinFrequency(1);
+        double ratio = Math.log(maxFreq / MIN_FREQ);
+        int n = start.length;
+        for (int i = 0; i < n; i++) {
+            double f0 = MIN_FREQ * Math.exp(ratio * i / n);
+            double f1 = MIN_FREQ * Math.exp(ratio * (i + 1) / n);
+            int b0 = Math.min(bins - 1, (int) (f0 / binWidth));
+            int b1 = Math.min(bins - 1, Math.max(b0, (int) (f1 / binWidth)));
+            start[i] = b0;
+            end[i] = b1;
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        SpectrumAnalyzer a = analyzer;
+        if (a != null && barStartBin != null) {
+            boolean fresh = a.update();
+            float[] spectrum = a.getSpectrum();
+            if (mode == MODE_SPECTROGRAM) {
+                if (fresh) appendColumn(spectrum);
+                drawSpectrogram(canvas);
+            } else {
+                drawSpectrum(canvas, spectrum);
+            }
+        }
+        if (running) postInvalidateOnAnimation();
+    }
+
+    private void drawSpectrum(Canvas canvas, float[] spectrum) {
+        float h = getHeight();
+        float x = 0;
+        for (int i = 0; i < barCount; i++) {
+            float level = normalize(maxDb(spectrum, barStartBin[i], barEndBin[i]));
+            // 快升慢降
+            float prev = barLevels[i];
+            level = level > prev ? level : prev * 0.85f + level * 0.15f;
+            barLevels[i] = level;
+            float top = h - Math.max(1f, level * h);
+            canvas.drawRect(x, top, x + barWidth, h, barPaint);
+            x += barWidth + gap;
+        }
+    }
+
+    private void appendColumn(float[] spectrum) {
+        if (spectrogram == null) return;
+        int h = columnPixels.length;
+        for (int y = 0; y < h; y++) {
+            // 低频在下
+            int row = h - 1 - y;
+            float level = normalize(maxDb(spectrum, rowStartBin[row], rowEndBin[row]));
+            columnPixels[y] = palette[(int) (level * 255)];
+        }
+        spectrogram.setPixels(columnPixels, 0, 1, writeX, 0, 1, h);
+        writeX = writeX + 1 == spectrogram.getWidth() ? 0 : writeX + 1;
+    }
+
+    private void drawSpectrogram(Canvas canvas) {
+        if (spectrogram == null) return;
+        int w = spectrogram.getWidth();
+        int h = spectrogram.getHeight();
+        // 最旧的列 [writeX, w) 画在左侧，最新的列 [0, writeX) 画在右侧
+        srcRect.set(writeX, 0, w, h);
+        dstRect.set(0, 0, w - writeX, h);
+        canvas.drawBitmap(spectrogram, srcRect, dstRect, bitmapPaint);
+        if (writeX > 0) {
+            srcRect.set(0, 0, writeX, h);
+            dstRect.set(w - writeX, 0, w, h);
+            canvas.drawBitmap(spectrogram, srcRect, dstRect, bitmapPaint);
+        }
+    }
+
+    private static float maxDb(float[] spectrum, int from, int to) {
+        float max = spectrum[from];
+        for (int i = from + 1; i <= to; i++) {
+            if (spectrum[i] > max) max = spectrum[i];
+        }
+        return max;
+    }
+
+    private static float normalize(float db) {
+        float v = (db - MIN_DB) / (MAX_DB - MIN_DB);
+        return v < 0 ? 0 : (v > 1 ? 1 : v);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        running = false;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.waveform;
+
+/**
+ * 音源的实际时间基准：对每个读取块末尾的 (样本序号, 读取完成时刻) 做增量最小二乘直线拟合，
+ * 得到第 0 个样本的采集时刻和每个样本的实际时长。单次读取返回时刻的抖动在拟合中被平均掉，
+ * 多轨录音据此对齐各轨起点并测量时钟漂移。固定几个累加量，不分配对象；单线程写，写完后再读
+ */
+public class StreamTiming {
+    private long count;
+    // 以首个点为原点，避免纳秒时刻过大损失精度
+    private long baseFrames;
+    private long baseNanos;
+    private double meanFrames;
+    private double meanNanos;
+    private double frameVariance;
+    private double covariance;
+
+    public void reset() {
+        count = 0;
+        meanFrames = 0;
+        meanNanos = 0;
+        frameVariance = 0;
+        covariance = 0;
+    }
+
+    /**
+     * @param frames 已读到的样本数（本块最后一个样本之后的序号）
+     * @param nanos 本块读取完成的时刻 (System.nanoTime)
+     */
+    public void add(long frames, long nanos) {
+        if (count == 0) {
+            baseFrames = frames;
+            baseNanos = nanos;
+        }
+        double x = frames - baseFrames;
+        double y = nanos - baseNanos;
+        count++;
+        double dx = x - meanFrames;
+        meanFrames += dx / count;
+        meanNanos += (y - meanNanos) / count;
+        frameVariance += dx * (x - meanFrames);
+        covariance += dx * (y - meanNanos);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /** 每个样本的实际时长（纳秒）；点数不足时返回 nominal */
+    public double getNanosPerFrame(double nominal) {
+        return count >= 2 && frameVariance > 0 ? covariance / frameVariance : nominal;
+    }
+
+    /** 拟合出的第 frame 个样本的时刻 (System.nanoTime)，尚无数据时返回 0 */
+    public long nanosAt(long frame, double nominalNanosPerFrame) {
+        if (count == 0) return 0;
+        double slope = getNanosPerFrame(nominalNanosPerFrame);
+        return baseNanos + Math.round(meanNanos + (frame - baseFrames - meanFrames) * slope);
+    }
+}
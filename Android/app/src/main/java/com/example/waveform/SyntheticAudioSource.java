@@ -0,0 +1,149 @@
+package com.example.waveform;
+
+/**
+ * 合成音源：正弦、白噪声、静音，以及“说话-停顿”交替的间歇信号
+ * 生成过程不分配对象，用于在 JVM 上离线驱动完整的录音链路
+ */
+public class SyntheticAudioSource implements AudioSource {
+    public static final int PATTERN_SINE = 0;
+    public static final int PATTERN_NOISE = 1;
+    public static final int PATTERN_SILENCE = 2;
+    /** 正弦与静音交替，各 burstMs 毫秒 */
+    public static final int PATTERN_BURSTS = 3;
+
+    private final int sampleRate;
+    private final int pattern;
+    private final double amplitude;
+    private final double frequency;
+    private long durationFrames = -1;
+    private int burstFrames;
+    private boolean realtime;
+
+    // 递推正弦振荡器 y[n] = 2cos(w) * y[n-1] - y[n-2]
+    private double coeff;
+    private double y1;
+    private double y2;
+    private int noiseState;
+    private long position;
+    private long startNanos;
+
+    /**
+     * @param frequency  正弦频率 Hz
+     * @param levelDbfs  峰值电平 dBFS
+     */
+    public SyntheticAudioSource(int sampleRate, int pattern, double frequency, double levelDbfs) {
+        this.sampleRate = sampleRate;
+        this.pattern = pattern;
+        this.frequency = frequency;
+        this.amplitude = 32767.0 * Math.pow(10, levelDbfs / 20);
+        this.burstFrames = sampleRate;
+    }
+
+    /** 总时长（毫秒），之后返回 END_OF_STREAM；不设置则无限输出 */
+    public void setDurationMs(long ms) {
+        durationFrames = ms * sampleRate / 1000;
+    }
+
+    public void setBurstMs(int ms) {
+        burstFrames = Math.max(1, ms * sampleRate / 1000);
+    }
+
+    /** 是否按实时速率输出（模拟麦克风） */
+    public void setRealtime(boolean realtime) {
+        this.realtime = realtime;
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public boolean open() {
+        return true;
+    }
+
+    @Override
+    public void start() {
+        double w = 2 * Math.PI * frequency / sampleRate;
+        coeff = 2 * Math.cos(w);
+        y1 = -Math.sin(w) * amplitude;
+        y2 = -Math.sin(2 * w) * amplitude;
+        noiseState = 0x2545F491;
+        position = 0;
+        startNanos = System.nanoTime();
+    }
+
+    @Override
+    public int read(short[] buffer, int offset, int count) {
+        if (durationFrames >= 0) {
+            long remaining = durationFrames - position;
+            if (remaining <= 0) return END_OF_STREAM;
+            if (remaining < count) count = (int) remaining;
+        }
+        switch (pattern) {
+            case PATTERN_SINE:
+                fillSine(buffer, offset, count);
+                break;
+            case PATTERN_NOISE:
+                fillNoise(buffer, offset, count);
+                break;
+            case PATTERN_BURSTS:
+                fillSine(buffer, offset, count);
+                for (int i = 0; i < count; i++) {
+                    if ((position + i) / burstFrames % 2 == 1) buffer[offset + i] = 0;
+                }
+                break;
+            default:
+                for (int i = 0; i < count; i++) buffer[offset + i] = 0;
+                break;
+        }
+        position += count;
+        if (realtime) pace();
+        return count;
+    }
+
+    private void fillSine(short[] buffer, int offset, int count) {
+        double a = y1, b = y2;
+        for (int i = 0; i < count; i++) {
+            double y = coeff * a - b;
+            b = a;
+            a = y;
+            buffer[offset + i] = (short) y;
+        }
+        y1 = a;
+        y2 = b;
+    }
+
+    private void fillNoise(short[] buffer, int offset, int count) {
+        int x = noiseState;
+        for (int i = 0; i < count; i++) {
+            // xorshift32
+            x ^= x << 13;
+            x ^= x >>> 17;
+            x ^= x << 5;
+            buffer[offset + i] = (short) ((x >> 16) * amplitude / 32768);
+        }
+        noiseState = x;
+    }
+
+    private void pace() {
+        long dueNanos = startNanos + position * 1000000000L / sampleRate;
+        long aheadMs = (dueNanos - System.nanoTime()) / 1000000;
+        if (aheadMs > 0) {
+            try {
+                Thread.sleep(aheadMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public void release() {
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.waveform;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.text.InputType;
+import android.util.Log;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.Button;
+import android.widget.EditText;
+import android.widget.LinearLayout;
+import android.widget.ListView;
+import android.widget.TextView;
+import android.widget.Toast;
+import androidx.appcompat.app.AppCompatActivity;
+import java.text.ParseException;
+import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 表格模式：含变量 x 的表达式编译一次，在一段范围上批量计算（多核），结果显示为可滚动的表格和函数图
+ */
+public class TableActivity extends AppCompatActivity {
+    private static final String TAG = "TableActivity";
+    /** 从计算器带入的表达式 */
+    public static final String EXTRA_EXPRESSION = "expression";
+    private static final int MAX_POINTS = 2_000_000;
+
+    private EditText etExpression;
+    private EditText etFrom;
+    private EditText etTo;
+    private EditText etCount;
+    private Button btnCompute;
+    private TextView tvStatus;
+    private PlotView plotView;
+    private final TableAdapter adapter = new TableAdapter();
+    private final CalculatorFormatter formatter = new CalculatorFormatter();
+    private RangeEvaluator evaluator;
+    private boolean computing;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        evaluator = new RangeEvaluator(Runtime.getRuntime().availableProcessors());
+
+        float density = getResources().getDisplayMetrics().density;
+        int padding = (int) (8 * density);
+        LinearLayout root = new LinearLayout(this);
+        root.setOrientation(LinearLayout.VERTICAL);
+        root.setBackgroundColor(0xFFFFFFFF);
+        root.setPadding(padding * 2, padding, padding * 2, padding);
+
+        etExpression = new EditText(this);
+        etExpression.setHint("表达式，如 x^2 - 3x + 1");
+        etExpression.setSingleLine(true);
+        String initial = getIntent().getStringExtra(EXTRA_EXPRESSION);
+        etExpression.setText(initial != null && !initial.isEmpty() ? initial : "sin(x)");
+        root.addView(etExpression);
+
+        LinearLayout range = new LinearLayout(this);
+        range.setOrientation(LinearLayout.HORIZONTAL);
+        range.setGravity(Gravity.CENTER_VERTICAL);
+        int signedDecimal = InputType.TYPE_CLASS_NUMBER | InputType.TYPE_NUMBER_FLAG_DECIMAL
+                | InputType.TYPE_NUMBER_FLAG_SIGNED;
+        etFrom = addField(range, "起点", "-10", signedDecimal);
+        etTo = addField(range, "终点", "10", signedDecimal);
+        etCount = addField(range, "点数", "1000", InputType.TYPE_CLASS_NUMBER);
+        btnCompute = new Button(this);
+        btnCompute.setText("计算");
+        btnCompute.setOnClickListener(v -> compute());
+        range.addView(btnCompute);
+        root.addView(range);
+
+        tvStatus = new TextView(this);
+        tvStatus.setTextColor(0xFF999999);
+        tvStatus.setPadding(0, padding / 2, 0, padding / 2);
+        root.addView(tvStatus);
+
+        plotView = new PlotView(this);
+        root.addView(plotView, new LinearLayout.LayoutParams(
+                LinearLayout.LayoutParams.MATCH_PARENT, (int) (200 * density)));
+
+        View header = adapter.newRow(this);
+        RowHolder headerHolder = (RowHolder) header.getTag();
+        headerHolder.x.setText("x");
+        headerHolder.y.setText("y");
+        header.setBackgroundColor(0xFFF2F2F7);
+        root.addView(header);
+
+        ListView listView = new ListView(this);
+        listView.setAdapter(adapter);
+        root.addView(listView, new LinearLayout.LayoutParams(LinearLayout.LayoutParams.MATCH_PARENT, 0, 1f));
+        setContentView(root);
+
+        setTitle("表格");
+        compute();
+    }
+
+    private EditText addField(LinearLayout parent, String hint, String value, int inputType) {
+        EditText field = new EditText(this);
+        field.setHint(hint);
+        field.setText(value);
+        field.setInputType(inputType);
+        field.setSingleLine(true);
+        parent.addView(field, new LinearLayout.LayoutParams(0, LinearLayout.LayoutParams.WRAP_CONTENT, 1f));
+        return field;
+    }
+
+    private void compute() {
+        if (computing) return;
+        CompiledExpression compiled;
+        try {
+            compiled = ExpressionCompiler.compile(etExpression.getText().toString());
+        } catch (ParseException e) {
+            tvStatus.setText(e.getMessage() + "（位置 " + (e.getErrorOffset() + 1) + "）");
+            return;
+        }
+        double from;
+        double to;
+        int count;
+        try {
+            from = Double.parseDouble(etFrom.getText().toString());
+            to = Double.parseDouble(etTo.getText().toString());
+            count = Integer.parseInt(etCount.getText().toString());
+        } catch (NumberFormatException e) {
+            Toast.makeText(this, "请输入有效的范围和点数", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (count < 2 || count > MAX_POINTS) {
+            Toast.makeText(this, "点数需在 2 到 " + MAX_POINTS + " 之间", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        computing = true;
+        btnCompute.setEnabled(false);
+        tvStatus.setText("计算中…");
+        WorkScheduler.Job evaluate = task -> {
+            RangeEvaluator.Result result;
+            try {
+                result = evaluator.evaluate(compiled, from, to, count);
+            } catch (RejectedExecutionException e) {
+                // 页面已关闭，线程池已停止
+                return;
+            }
+            Log.d(TAG, "Evaluated " + count + " points in " + result.elapsedNanos / 1000 + " us ("
+                    + (long) result.getPointsPerSecond() + " points/s)");
+            runOnUiThread(() -> {
+                computing = false;
+                if (isDestroyed()) return;
+                btnCompute.setEnabled(true);
+                tvStatus.setText(String.format(Locale.getDefault(), "%,d 点 · %.2f ms · %,.0f 点/秒",
+                        count, result.elapsedNanos / 1e6, result.getPointsPerSecond()));
+                adapter.setData(result.x, result.y);
+                plotView.setData(result.x, result.y);
+            });
+        };
+        try {
+            WorkScheduler.getInstance().submit(WorkScheduler.LANE_INTERACTIVE, evaluate);
+        } catch (RejectedExecutionException e) {
+            computing = false;
+            btnCompute.setEnabled(true);
+            tvStatus.setText("后台任务繁忙，请稍后再试");
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        evaluator.shutdown();
+    }
+
+    /**
+     * 直接读 double[]，只为屏幕上的行创建视图，百万行也能流畅滚动
+     */
+    private class TableAdapter extends BaseAdapter {
+        private double[] xs = new double[0];
+        private double[] ys = new double[0];
+
+        void setData(double[] x, double[] y) {
+            xs = x;
+            ys = y;
+            notifyDataSetChanged();
+        }
+
+        @Override
+        public int getCount() {
+            return xs.length;
+        }
+
+        @Override
+        public Object getItem(int position) {
+            return ys[position];
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return position;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            View row = convertView != null ? convertView : newRow(parent.getContext());
+            RowHolder holder = (RowHolder) row.getTag();
+            holder.x.setText(format(xs[position]));
+            holder.y.setText(format(ys[position]));
+            return row;
+        }
+
+        private String format(double value) {
+            return Double.isNaN(value) || Double.isInfinite(value) ? "—" : formatter.format(value);
+        }
+
+        View newRow(Context context) {
+            int padding = (int) (8 * context.getResources().getDisplayMetrics().density);
+            LinearLayout row = new LinearLayout(context);
+            row.setOrientation(LinearLayout.HORIZONTAL);
+            row.setPadding(padding, padding, padding, padding);
+            RowHolder holder = new RowHolder();
+            holder.x = new TextView(context);
+            holder.y = new TextView(context);
+            holder.x.setTextColor(0xFF333333);
+            holder.y.setTextColor(0xFF333333);
+            row.addView(holder.x, new LinearLayout.LayoutParams(0, LinearLayout.LayoutParams.WRAP_CONTENT, 1f));
+            row.addView(holder.y, new LinearLayout.LayoutParams(0, LinearLayout.LayoutParams.WRAP_CONTENT, 1f));
+            row.setTag(holder);
+            return row;
+        }
+    }
+
+    private static class RowHolder {
+        TextView x;
+        TextView y;
+    }
+}
@@ -0,0 +1,325 @@
+package com.example.waveform;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * WAV 文件头读写工具（仅支持 16bit PCM）
+ */
+public final class WavFile {
+    public static final int HEADER_SIZE = 44;
+    // cue / LIST 块读入内存的上限（约 4 万个标记），更大的视为损坏并跳过
+    private static final long MAX_MARKER_CHUNK = 1 << 20;
+
+    private WavFile() {}
+
+    /** 解析得到的格式信息 */
+    public static final class Info {
+        public int sampleRate;
+        public int channels;
+        public int bitsPerSample;
+        /** data 块数据起始位置 */
+        public long dataOffset;
+        /** data 块字节数 */
+        public long dataLength;
+
+        public long frameCount() {
+            return dataLength / ((long) channels * (bitsPerSample / 8));
+        }
+
+        public long durationMs() {
+            return sampleRate > 0 ? frameCount() * 1000L / sampleRate : 0;
+        }
+    }
+
+    /** cue 标记点（书签），frame 为相对 data 块开头的帧位置 */
+    public static final class CuePoint {
+        public final int id;
+        public final long frame;
+        public final String label;
+
+        public CuePoint(int id, long frame, String label) {
+            this.id = id;
+            this.frame = frame;
+            this.label = label;
+        }
+    }
+
+    /**
+     * 逐块扫描 RIFF 结构，定位 fmt 和 data 块
+     */
+    public static Info readInfo(RandomAccessFile raf) throws IOException {
+        return readInfo(new FileSource(raf));
+    }
+
+    /** 同 {@link #readInfo(RandomAccessFile)}，可读取加密录音的解密视图 */
+    public static Info readInfo(SeekableSource source) throws IOException {
+        byte[] b = new byte[16];
+        readFully(source, 0, b, 12);
+        if (b[0] != 'R' || b[1] != 'I' || b[2] != 'F' || b[3] != 'F'
+                || b[8] != 'W' || b[9] != 'A' || b[10] != 'V' || b[11] != 'E') {
+            throw new IOException("不是有效的 WAV 文件");
+        }
+        Info info = new Info();
+        long pos = 12;
+        long fileLen = source.size();
+        boolean hasFmt = false;
+        while (pos + 8 <= fileLen) {
+            readFully(source, pos, b, 8);
+            long size = readIntLE(b, 4) & 0xFFFFFFFFL;
+            if (b[0] == 'f' && b[1] == 'm' && b[2] == 't' && b[3] == ' ') {
+                readFully(source, pos + 8, b, 16);
+                int format = readShortLE(b, 0);
+                if (format != 1) throw new IOException("仅支持 PCM 格式: " + format);
+                info.channels = readShortLE(b, 2);
+                info.sampleRate = readIntLE(b, 4);
+                info.bitsPerSample = readShortLE(b, 14);
+                hasFmt = true;
+            } else if (b[0] == 'd' && b[1] == 'a' && b[2] == 't' && b[3] == 'a') {
+                info.dataOffset = pos + 8;
+                // 录音中断时头部长度可能未回写，以实际文件长度为准
+                info.dataLength = Math.min(size, fileLen - info.dataOffset);
+                if (!hasFmt) throw new IOException("缺少 fmt 块");
+                if (info.bitsPerSample != 16) throw new IOException("仅支持 16bit: " + info.bitsPerSample);
+                return info;
+            }
+            pos += 8 + size + (size & 1);
+        }
+        throw new IOException("缺少 data 块");
+    }
+
+    /**
+     * 读取 data 块之后的 cue 与 LIST/adtl 块，按帧位置排序；没有标记时返回空列表
+     * 块长度只在不超出文件且不超过 MAX_MARKER_CHUNK 时才分配缓冲，损坏的长度字段不会导致 OOM
+     */
+    public static List<CuePoint> readCuePoints(RandomAccessFile raf) throws IOException {
+        return readCuePoints(new FileSource(raf));
+    }
+
+    public static List<CuePoint> readCuePoints(SeekableSource source) throws IOException {
+        Info info = readInfo(source);
+        long pos = info.dataOffset + info.dataLength + (info.dataLength & 1);
+        long fileLen = source.size();
+        int[] ids = new int[0];
+        long[] frames = new long[0];
+        List<String> labels = new ArrayList<>();
+        List<Integer> labelIds = new ArrayList<>();
+        byte[] b = new byte[8];
+        while (pos + 8 <= fileLen) {
+            readFully(source, pos, b, 8);
+            long size = readIntLE(b, 4) & 0xFFFFFFFFL;
+            if (pos + 8 + size > fileLen) break;
+            boolean loadable = size >= 4 && size <= MAX_MARKER_CHUNK;
+            if (b[0] == 'c' && b[1] == 'u' && b[2] == 'e' && b[3] == ' ' && loadable) {
+                byte[] body = new byte[(int) size];
+                readFully(source, pos + 8, body, body.length);
+                // 数量字段同样不可信：不超过块中实际容纳的条目，负数按 0
+                int count = Math.max(0, Math.min(readIntLE(body, 0), (body.length - 4) / 24));
+                ids = new int[count];
+                frames = new long[count];
+                for (int i = 0; i < count; i++) {
+                    int off = 4 + i * 24;
+                    ids[i] = readIntLE(body, off);
+                    frames[i] = readIntLE(body, off + 20) & 0xFFFFFFFFL;
+                }
+            } else if (b[0] == 'L' && b[1] == 'I' && b[2] == 'S' && b[3] == 'T' && loadable) {
+                byte[] body = new byte[(int) size];
+                readFully(source, pos + 8, body, body.length);
+                if (body[0] == 'a' && body[1] == 'd' && body[2] == 't' && body[3] == 'l') {
+                    parseLabels(body, labelIds, labels);
+                }
+            }
+            pos += 8 + size + (size & 1);
+        }
+
+        List<CuePoint> result = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            int index = labelIds.indexOf(ids[i]);
+            result.add(new CuePoint(ids[i], frames[i], index >= 0 ? labels.get(index) : ""));
+        }
+        // 标记数量很少，插入排序即可
+        for (int i = 1; i < result.size(); i++) {
+            CuePoint c = result.get(i);
+            int j = i - 1;
+            while (j >= 0 && result.get(j).frame > c.frame) {
+                result.set(j + 1, result.get(j));
+                j--;
+            }
+            result.set(j + 1, c);
+        }
+        return result;
+    }
+
+    private static void readFully(SeekableSource source, long position, byte[] b, int len) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(b, 0, len);
+        while (buf.hasRemaining()) {
+            if (source.read(buf, position + buf.position()) < 0) throw new EOFException();
+        }
+    }
+
+    private static void parseLabels(byte[] body, List<Integer> ids, List<String> labels) {
+        int pos = 4;
+        while (pos + 8 <= body.length) {
+            long size = readIntLE(body, pos + 4) & 0xFFFFFFFFL;
+            if (pos + 8 + size > body.length) break;
+            if (body[pos] == 'l' && body[pos + 1] == 'a' && body[pos + 2] == 'b' && body[pos + 3] == 'l' && size >= 4) {
+                int textStart = pos + 12;
+                int textEnd = textStart;
+                int limit = pos + 8 + (int) size;
+                while (textEnd < limit && body[textEnd] != 0) textEnd++;
+                ids.add(readIntLE(body, pos + 8));
+                labels.add(new String(body, textStart, textEnd - textStart, StandardCharsets.UTF_8));
+            }
+            pos += 8 + (int) size + (int) (size & 1);
+        }
+    }
+
+    /**
+     * 生成 cue 块和 LIST/adtl 标签块，追加在 data 块之后（data 长度为奇数时调用方需先补一个字节）
+     */
+    public static byte[] buildCueChunks(List<CuePoint> cues) {
+        if (cues.isEmpty()) return new byte[0];
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] b = new byte[24];
+
+        writeChunkHeader(out, b, 'c', 'u', 'e', ' ', 4 + 24L * cues.size());
+        writeIntLE(b, 0, cues.size());
+        out.write(b, 0, 4);
+        for (CuePoint c : cues) {
+            writeIntLE(b, 0, c.id);
+            writeIntLE(b, 4, c.frame);
+            b[8] = 'd'; b[9] = 'a'; b[10] = 't'; b[11] = 'a';
+            writeIntLE(b, 12, 0);
+            writeIntLE(b, 16, 0);
+            writeIntLE(b, 20, c.frame);
+            out.write(b, 0, 24);
+        }
+
+        ByteArrayOutputStream adtl = new ByteArrayOutputStream();
+        adtl.write('a'); adtl.write('d'); adtl.write('t'); adtl.write('l');
+        for (CuePoint c : cues) {
+            byte[] text = c.label.getBytes(StandardCharsets.UTF_8);
+            long size = 4 + text.length + 1;
+            writeChunkHeader(adtl, b, 'l', 'a', 'b', 'l', size);
+            writeIntLE(b, 0, c.id);
+            adtl.write(b, 0, 4);
+            adtl.write(text, 0, text.length);
+            adtl.write(0);
+            if ((size & 1) != 0) adtl.write(0);
+        }
+        writeChunkHeader(out, b, 'L', 'I', 'S', 'T', adtl.size());
+        byte[] list = adtl.toByteArray();
+        out.write(list, 0, list.length);
+        return out.toByteArray();
+    }
+
+    private static void writeChunkHeader(ByteArrayOutputStream out, byte[] b, char c0, char c1, char c2, char c3, long size) {
+        b[0] = (byte) c0; b[1] = (byte) c1; b[2] = (byte) c2; b[3] = (byte) c3;
+        writeIntLE(b, 4, size);
+        out.write(b, 0, 8);
+    }
+
+    /**
+     * 就地补全录音时开头预留了 44 字节头部的 WAV：写入头部，截掉预分配的多余部分，
+     * cues 非空时以 cue / LIST adtl 块追加在 data 块之后。只写头尾，不拷贝音频数据
+     * @param pcmBytes 已写入的 PCM 字节数
+     */
+    public static void finish(File file, long pcmBytes, int sampleRate, int channels,
+                              List<CuePoint> cues) throws IOException {
+        byte[] cueChunks = buildCueChunks(cues);
+        int pad = cueChunks.length > 0 ? (int) (pcmBytes & 1) : 0;
+        byte[] header = new byte[HEADER_SIZE];
+        fillHeader(header, pcmBytes, sampleRate, channels);
+        writeIntLE(header, 4, pcmBytes + 36 + pad + cueChunks.length);
+        long tailOffset = HEADER_SIZE + pcmBytes;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.write(header);
+            raf.setLength(tailOffset);
+            raf.seek(tailOffset);
+            if (pad != 0) raf.write(0);
+            raf.write(cueChunks);
+        }
+    }
+
+    /**
+     * 把裸 PCM 文件加上文件头转存为 WAV，cues 非空时以 cue / LIST adtl 块追加在 data 块之后
+     */
+    public static void fromPcm(File pcmFile, File wavFile, int sampleRate, int channels,
+                               List<CuePoint> cues) throws IOException {
+        try (FileInputStream in = new FileInputStream(pcmFile);
+             FileOutputStream out = new FileOutputStream(wavFile)) {
+            long totalAudioLen = in.getChannel().size();
+            byte[] cueChunks = buildCueChunks(cues);
+            // 后面还有块时 data 需按偶数字节对齐
+            long pad = cueChunks.length > 0 ? (totalAudioLen & 1) : 0;
+            writeHeader(out, totalAudioLen, sampleRate, channels, pad + cueChunks.length);
+
+            byte[] data = new byte[64 * 1024];
+            int count;
+            while ((count = in.read(data)) != -1) {
+                out.write(data, 0, count);
+            }
+            if (pad != 0) out.write(0);
+            out.write(cueChunks);
+        }
+    }
+
+    /**
+     * 写入标准 44 字节 PCM 头
+     */
+    public static void writeHeader(OutputStream out, long totalAudioLen, int sampleRate, int channels) throws IOException {
+        writeHeader(out, totalAudioLen, sampleRate, channels, 0);
+    }
+
+    /**
+     * 写入 44 字节 PCM 头，RIFF 长度包含 data 块之后追加的 trailingBytes 字节
+     */
+    public static void writeHeader(OutputStream out, long totalAudioLen, int sampleRate, int channels,
+                                   long trailingBytes) throws IOException {
+        byte[] header = new byte[HEADER_SIZE];
+        fillHeader(header, totalAudioLen, sampleRate, channels);
+        writeIntLE(header, 4, totalAudioLen + 36 + trailingBytes);
+        out.write(header, 0, HEADER_SIZE);
+    }
+
+    static void fillHeader(byte[] header, long totalAudioLen, int sampleRate, int channels) {
+        long totalDataLen = totalAudioLen + 36;
+        long byteRate = 16L * sampleRate * channels / 8;
+        header[0] = 'R'; header[1] = 'I'; header[2] = 'F'; header[3] = 'F';
+        writeIntLE(header, 4, totalDataLen);
+        header[8] = 'W'; header[9] = 'A'; header[10] = 'V'; header[11] = 'E';
+        header[12] = 'f'; header[13] = 'm'; header[14] = 't'; header[15] = ' ';
+        header[16] = 16; header[17] = 0; header[18] = 0; header[19] = 0;
+        header[20] = 1; header[21] = 0; header[22] = (byte) channels; header[23] = 0;
+        writeIntLE(header, 24, sampleRate);
+        writeIntLE(header, 28, byteRate);
+        header[32] = (byte) (channels * 16 / 8); header[33] = 0; header[34] = 16; header[35] = 0;
+        header[36] = 'd'; header[37] = 'a'; header[38] = 't'; header[39] = 'a';
+        writeIntLE(header, 40, totalAudioLen);
+    }
+
+    static void writeIntLE(byte[] b, int off, long v) {
+        b[off] = (byte) (v & 0xff);
+        b[off + 1] = (byte) ((v >> 8) & 0xff);
+        b[off + 2] = (byte) ((v >> 16) & 0xff);
+        b[off + 3] = (byte) ((v >> 24) & 0xff);
+    }
+
+    static int readIntLE(byte[] b, int off) {
+        return (b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8 | (b[off + 2] & 0xFF) << 16 | (b[off + 3] & 0xFF) << 24;
+    }
+
+    static int readShortLE(byte[] b, int off) {
+        return (b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8;
+    }
+}
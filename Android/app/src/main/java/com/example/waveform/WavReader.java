@@ -0,0 +1,106 @@
+package com.example.waveform;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/**
+ * 流式读取 16bit PCM WAV（含加密录音），可按帧定位；读取过程复用同一块直接缓冲区
+ */
+public class WavReader implements Closeable {
+    private static final int BUFFER_BYTES = 16 * 1024;
+
+    private final SeekableSource source;
+    private final WavFile.Info info;
+    private final int frameBytes;
+    private final ByteBuffer byteBuffer;
+    private final ShortBuffer shortView;
+    private long framePosition;
+
+    public WavReader(File file) throws IOException {
+        this(EncryptedRecording.open(file), null);
+    }
+
+    /**
+     * 按裸 PCM（16bit 小端，无文件头）读取
+     */
+    public static WavReader openRawPcm(File file, int sampleRate, int channels) throws IOException {
+        WavFile.Info info = new WavFile.Info();
+        info.sampleRate = sampleRate;
+        info.channels = channels;
+        info.bitsPerSample = 16;
+        info.dataOffset = 0;
+        info.dataLength = file.length();
+        return new WavReader(new FileSource(file), info);
+    }
+
+    private WavReader(SeekableSource source, WavFile.Info rawInfo) throws IOException {
+        this.source = source;
+        try {
+            info = rawInfo != null ? rawInfo : WavFile.readInfo(source);
+        } catch (IOException e) {
+            source.close();
+            throw e;
+        }
+        frameBytes = info.channels * 2;
+        int capacity = BUFFER_BYTES - BUFFER_BYTES % frameBytes;
+        // 解密在字节数组上就地进行，加密录音用堆缓冲区
+        byteBuffer = (source instanceof FileSource ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        shortView = byteBuffer.asShortBuffer();
+    }
+
+    public WavFile.Info getInfo() {
+        return info;
+    }
+
+    public int getChannels() {
+        return info.channels;
+    }
+
+    public int getSampleRate() {
+        return info.sampleRate;
+    }
+
+    public long getFrameCount() {
+        return info.frameCount();
+    }
+
+    public long getFramePosition() {
+        return framePosition;
+    }
+
+    public void seekFrame(long frame) throws IOException {
+        frame = Math.max(0, Math.min(frame, getFrameCount()));
+        framePosition = frame;
+    }
+
+    /**
+     * 读取至多 maxFrames 帧（交错样本）到 dest
+     * @return 实际读取的帧数，文件结束返回 0
+     */
+    public int read(short[] dest, int offset, int maxFrames) throws IOException {
+        long remainingFrames = getFrameCount() - framePosition;
+        int frames = (int) Math.min(maxFrames, Math.min(remainingFrames, byteBuffer.capacity() / frameBytes));
+        if (frames <= 0) return 0;
+        byteBuffer.clear();
+        byteBuffer.limit(frames * frameBytes);
+        long position = info.dataOffset + framePosition * frameBytes;
+        while (byteBuffer.hasRemaining()) {
+            if (source.read(byteBuffer, position + byteBuffer.position()) < 0) break;
+        }
+        frames = byteBuffer.position() / frameBytes;
+        shortView.clear();
+        shortView.get(dest, offset, frames * info.channels);
+        framePosition += frames;
+        return frames;
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.waveform;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 裁剪后的 WAV 的虚拟视图：新合成的 44 字节文件头 + 原文件 data 块中的一段
+ * 支持按任意位置读取，不生成中间文件；data 之后的 cue 等块不包含在内。加密录音输出明文
+ */
+public class WavSlice implements Closeable {
+    private final SeekableSource source;
+    private final byte[] header = new byte[WavFile.HEADER_SIZE];
+    private final WavFile.Info info;
+    private final long dataStart;
+    private final long dataLength;
+
+    /**
+     * @param startMs 起点（毫秒），0 为开头
+     * @param endMs 终点（毫秒），不大于 0 或超出时长时取到结尾
+     */
+    public static WavSlice open(File file, long startMs, long endMs) throws IOException {
+        SeekableSource source = EncryptedRecording.open(file);
+        try {
+            return new WavSlice(source, WavFile.readInfo(source), startMs, endMs);
+        } catch (IOException e) {
+            source.close();
+            throw e;
+        }
+    }
+
+    private WavSlice(SeekableSource source, WavFile.Info info, long startMs, long endMs) {
+        this.source = source;
+        this.info = info;
+        long frames = info.frameCount();
+        long startFrame = Math.min(frames, Math.max(0, startMs) * info.sampleRate / 1000);
+        long endFrame = endMs > 0 ? Math.min(frames, endMs * info.sampleRate / 1000) : frames;
+        if (endFrame < startFrame) endFrame = startFrame;
+        int frameBytes = info.channels * 2;
+        dataStart = info.dataOffset + startFrame * frameBytes;
+        dataLength = (endFrame - startFrame) * frameBytes;
+        WavFile.fillHeader(header, dataLength, info.sampleRate, info.channels);
+    }
+
+    public WavFile.Info getInfo() {
+        return info;
+    }
+
+    /** 虚拟文件的总字节数 */
+    public long length() {
+        return WavFile.HEADER_SIZE + dataLength;
+    }
+
+    /** 片段在原文件 data 块中的起始帧 */
+    public long getStartFrame() {
+        return (dataStart - info.dataOffset) / (info.channels * 2);
+    }
+
+    public long getFrameCount() {
+        return dataLength / (info.channels * 2);
+    }
+
+    /**
+     * 从虚拟文件的 position 处读取最多 len 字节
+     * @return 实际读取的字节数，已到结尾时返回 -1
+     */
+    public int read(long position, byte[] dst, int off, int len) throws IOException {
+        long total = length();
+        if (position >= total) return -1;
+        len = (int) Math.min(len, total - position);
+        int done = 0;
+        if (position < WavFile.HEADER_SIZE) {
+            int n = (int) Math.min(len, WavFile.HEADER_SIZE - position);
+            System.arraycopy(header, (int) position, dst, off, n);
+            done = n;
+        }
+        ByteBuffer target = ByteBuffer.wrap(dst, off + done, len - done);
+        long filePos = dataStart + position + done - WavFile.HEADER_SIZE;
+        while (target.hasRemaining()) {
+            // 定位读取，可与其他读取交错
+            int n = source.read(target, filePos);
+            if (n < 0) break;
+            filePos += n;
+        }
+        done = len - target.remaining();
+        return done > 0 ? done : -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+}
@@ -0,0 +1,312 @@
+package com.example.waveform;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 应用内统一的后台任务调度：固定数量的工作线程按优先级从三条队列取任务
+ * CAPTURE（录音收尾，如写指纹和暂停区间）优先于 INTERACTIVE（界面在等结果），再优先于 BULK（批量分析等维护工作）。
+ * 正在运行的任务不会被打断：BULK 最多占用 workers - 1 个线程，保证总有线程留给前两条队列；
+ * 录音期间 BULK 队列暂停派发，已在运行的 BULK 任务在 awaitResume 处等待，工作线程运行 BULK 任务时降为最低优先级。
+ * 相同 key 的任务尚在排队时不重复入队；INTERACTIVE 和 BULK 有容量上限，满时 submit 抛出 RejectedExecutionException，
+ * 调用方应提示用户稍后再试；CAPTURE 只在调度器停止后拒绝。
+ * 录音、写盘、回放等实时线程仍是专用线程，不经过这里。不依赖 Android
+ */
+public class WorkScheduler {
+    public static final int LANE_CAPTURE = 0;
+    public static final int LANE_INTERACTIVE = 1;
+    public static final int LANE_BULK = 2;
+    private static final int LANE_COUNT = 3;
+    private static final String[] LANE_NAMES = {"capture", "interactive", "bulk"};
+    // CAPTURE 不限容量：录音收尾的记录不能因为排队丢失
+    private static final int[] LANE_CAPACITY = {Integer.MAX_VALUE, 64, 256};
+    private static final int MAX_WORKERS = 4;
+
+    /** 后台任务；耗时的任务应定期检查 task.isCancelled() 或调用 awaitResume() */
+    public interface Job {
+        void run(Task task) throws Exception;
+    }
+
+    /** 已提交的任务，同时作为任务内部的取消令牌 */
+    public final class Task {
+        private final Job job;
+        private final String key;
+        private int lane;
+        private final long submitNanos = System.nanoTime();
+        // 以下字段都在 WorkScheduler 的锁内读写
+        private boolean queued = true;
+        private boolean cancelled;
+        private boolean done;
+
+        Task(int lane, String key, Job job) {
+            this.lane = lane;
+            this.key = key;
+            this.job = job;
+        }
+
+        /** 排队中的任务直接移出队列；运行中的任务只置取消标志，由任务自行结束 */
+        public void cancel() {
+            synchronized (WorkScheduler.this) {
+                if (done || cancelled) return;
+                cancelled = true;
+                if (queued) {
+                    queues[lane].remove(this);
+                    if (key != null) queuedByKey.remove(key);
+                    queued = false;
+                    done = true;
+                    stats[lane].cancelled++;
+                }
+                WorkScheduler.this.notifyAll();
+            }
+        }
+
+        public boolean isCancelled() {
+            synchronized (WorkScheduler.this) {
+                return cancelled;
+            }
+        }
+
+        public boolean isDone() {
+            synchronized (WorkScheduler.this) {
+                return done;
+            }
+        }
+
+        /**
+         * 所在队列暂停时（如 BULK 在录音期间）阻塞直到恢复
+         * @return 任务未被取消
+         */
+        public boolean awaitResume() {
+            synchronized (WorkScheduler.this) {
+                while (!cancelled && isPaused(lane)) {
+                    try {
+                        WorkScheduler.this.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                return !cancelled;
+            }
+        }
+    }
+
+    /** 一条队列的统计快照 */
+    public static final class Stats {
+        public int queued;
+        public int running;
+        public long completed;
+        public long cancelled;
+        public long failed;
+        public long rejected;
+        /** 从提交到开始运行的等待时间 */
+        public final LatencyHistogram wait = new LatencyHistogram();
+        /** 运行时间 */
+        public final LatencyHistogram run = new LatencyHistogram();
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "queued %d, running %d, done %d (cancelled %d, failed %d, rejected %d), "
+                            + "wait p50 %.1f / p95 %.1f / max %.1f ms, run mean %.1f / max %.1f ms",
+                    queued, running, completed, cancelled, failed, rejected,
+                    wait.getPercentileNanos(50) / 1e6, wait.getPercentileNanos(95) / 1e6, wait.getMaxNanos() / 1e6,
+                    run.getMeanNanos() / 1e6, run.getMaxNanos() / 1e6);
+        }
+    }
+
+    private static WorkScheduler instance;
+
+    public static synchronized WorkScheduler getInstance() {
+        if (instance == null) {
+            // 留一个核给录音和界面线程
+            int cores = Runtime.getRuntime().availableProcessors();
+            instance = new WorkScheduler(Math.max(2, Math.min(MAX_WORKERS, cores - 1)));
+        }
+        return instance;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ArrayDeque<Task>[] queues = new ArrayDeque[LANE_COUNT];
+    private final Map<String, Task> queuedByKey = new HashMap<>();
+    private final Stats[] stats = new Stats[LANE_COUNT];
+    private final Thread[] workers;
+    private final int bulkLimit;
+    private boolean capturing;
+    private boolean shutdown;
+
+    public WorkScheduler(int workerCount) {
+        for (int i = 0; i < LANE_COUNT; i++) {
+            queues[i] = new ArrayDeque<>();
+            stats[i] = new Stats();
+        }
+        workerCount = Math.max(2, workerCount);
+        bulkLimit = workerCount - 1;
+        workers = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Thread(this::workLoop, "Work-" + (i + 1));
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    public int getWorkerCount() {
+        return workers.length;
+    }
+
+    /** 不去重地提交任务 */
+    public Task submit(int lane, Job job) {
+        return submit(lane, null, job);
+    }
+
+    /**
+     * 提交任务；同一 key 的任务还在排队时返回排队中的那个（新提交的优先级更高时将其提前），
+     * 已在运行时照常入队，使其在运行中的那次之后再执行一次
+     * @throws RejectedExecutionException 队列已满（CAPTURE 除外）或调度器已停止
+     */
+    public synchronized Task submit(int lane, String key, Job job) {
+        if (shutdown) throw new RejectedExecutionException("调度器已停止");
+        if (key != null) {
+            Task existing = queuedByKey.get(key);
+            if (existing != null) {
+                if (lane < existing.lane) {
+                    queues[existing.lane].remove(existing);
+                    existing.lane = lane;
+                    queues[lane].addLast(existing);
+                    notifyAll();
+                }
+                return existing;
+            }
+        }
+        if (queues[lane].size() >= LANE_CAPACITY[lane]) {
+            stats[lane].rejected++;
+            throw new RejectedExecutionException(LANE_NAMES[lane] + " 队列已满");
+        }
+        Task task = new Task(lane, key, job);
+        queues[lane].addLast(task);
+        if (key != null) queuedByKey.put(key, task);
+        notifyAll();
+        return task;
+    }
+
+    /**
+     * 录音开始 / 结束时调用：录音期间暂停 BULK 队列
+     */
+    public synchronized void setCapturing(boolean capturing) {
+        this.capturing = capturing;
+        if (!capturing) notifyAll();
+    }
+
+    public synchronized boolean isCapturing() {
+        return capturing;
+    }
+
+    /** 排队中的任务数 */
+    public synchronized int getQueueDepth(int lane) {
+        return queues[lane].size();
+    }
+
+    /** 复制一条队列的统计 */
+    public synchronized Stats getStats(int lane) {
+        Stats s = stats[lane];
+        Stats copy = new Stats();
+        copy.queued = queues[lane].size();
+        copy.running = s.running;
+        copy.completed = s.completed;
+        copy.cancelled = s.cancelled;
+        copy.failed = s.failed;
+        copy.rejected = s.rejected;
+        s.wait.copyInto(copy.wait);
+        s.run.copyInto(copy.run);
+        return copy;
+    }
+
+    public static String getLaneName(int lane) {
+        return LANE_NAMES[lane];
+    }
+
+    /**
+     * 结果要交给某个对象（Activity、播放器等）的任务用的去重 key：只与同一对象排队中的任务合并。
+     * 界面重建后新实例提交的任务不会并入旧实例的那个，否则结果只会交给已销毁的旧界面
+     */
+    public static String keyFor(Object owner, String name) {
+        return name + "@" + Integer.toHexString(System.identityHashCode(owner));
+    }
+
+    /** 停止派发新任务，排队中的任务取消，运行中的任务收到取消标志 */
+    public void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+            for (int lane = 0; lane < LANE_COUNT; lane++) {
+                Task task;
+                while ((task = queues[lane].pollFirst()) != null) {
+                    task.queued = false;
+                    task.cancelled = true;
+                    task.done = true;
+                    stats[lane].cancelled++;
+                }
+            }
+            queuedByKey.clear();
+            notifyAll();
+        }
+    }
+
+    private boolean isPaused(int lane) {
+        return lane == LANE_BULK && capturing;
+    }
+
+    /** 按优先级取下一个可运行的任务，没有时等待；停止后返回 null */
+    private synchronized Task take() {
+        while (!shutdown) {
+            for (int lane = 0; lane < LANE_COUNT; lane++) {
+                if (lane == LANE_BULK && (capturing || stats[lane].running >= bulkLimit)) continue;
+                Task task = queues[lane].pollFirst();
+                if (task == null) continue;
+                task.queued = false;
+                if (task.key != null) queuedByKey.remove(task.key);
+                Stats s = stats[lane];
+                s.running++;
+                s.wait.record(System.nanoTime() - task.submitNanos);
+                return task;
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private void workLoop() {
+        Thread thread = Thread.currentThread();
+        Task task;
+        while ((task = take()) != null) {
+            thread.setPriority(task.lane == LANE_BULK ? Thread.MIN_PRIORITY : Thread.NORM_PRIORITY);
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                task.job.run(task);
+                failed = false;
+            } catch (Throwable e) {
+                // 包括 OutOfMemoryError 等 Error：任务失败，工作线程继续运行
+                e.printStackTrace();
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                synchronized (this) {
+                    Stats s = stats[task.lane];
+                    s.running--;
+                    s.completed++;
+                    if (task.cancelled) s.cancelled++;
+                    if (failed) s.failed++;
+                    s.run.record(elapsed);
+                    task.done = true;
+                    // 可能有 BULK 任务在等空出的名额
+                    notifyAll();
+                }
+            }
+        }
+    }
+}
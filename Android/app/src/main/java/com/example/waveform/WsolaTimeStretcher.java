@@ -0,0 +1,172 @@
+package com.example.waveform;
+
+/**
+ * WSOLA 变速不变调（单声道，流式）
+ * 每次输出一个合成跳步：在名义分析位置附近 ±tolerance 内搜索与上一段自然延续最相似的片段，
+ * 用 50% 重叠的 Hann 窗叠加。所有缓冲区在构造时分配，处理过程不分配对象
+ */
+public class WsolaTimeStretcher {
+    public static final float MIN_SPEED = 0.5f;
+    public static final float MAX_SPEED = 3.0f;
+    // 相关运算抽样间隔，降低搜索开销
+    private static final int CORRELATION_STRIDE = 4;
+
+    private final int windowSize;
+    private final int hop;
+    private final int tolerance;
+    private final float[] window;
+    private final float[] input;
+    private final float[] tail;
+
+    private long bufferStart;   // input[0] 对应的绝对输入帧
+    private int bufferLength;
+    private double analysisPos;
+    private long prevPos = -1;
+    private boolean endOfInput;
+    private long inputEnd;
+    private float speed = 1f;
+
+    public WsolaTimeStretcher(int sampleRate) {
+        int n = sampleRate * 30 / 1000;
+        windowSize = n + (n & 1);
+        hop = windowSize / 2;
+        tolerance = sampleRate * 8 / 1000;
+        window = new float[windowSize];
+        for (int i = 0; i < windowSize; i++) {
+            // 周期 Hann 窗，50% 重叠时叠加和恒为 1
+            window[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / windowSize));
+        }
+        input = new float[windowSize * 4 + tolerance * 4];
+        tail = new float[hop];
+    }
+
+    public void setSpeed(float speed) {
+        this.speed = Math.max(MIN_SPEED, Math.min(MAX_SPEED, speed));
+    }
+
+    public float getSpeed() {
+        return speed;
+    }
+
+    /** 每次 produce 输出的样本数 */
+    public int getHopSize() {
+        return hop;
+    }
+
+    /** 清空状态（跳转后调用） */
+    public void reset() {
+        bufferStart = 0;
+        bufferLength = 0;
+        analysisPos = 0;
+        prevPos = -1;
+        endOfInput = false;
+        for (int i = 0; i < hop; i++) tail[i] = 0;
+    }
+
+    /** 输入结束，后续不足部分按静音处理 */
+    public void markEndOfInput() {
+        if (endOfInput) return;
+        endOfInput = true;
+        inputEnd = bufferStart + bufferLength;
+    }
+
+    /** 当前还能写入的样本数 */
+    public int getInputSpace() {
+        return input.length - bufferLength + discardable();
+    }
+
+    public void putInput(short[] src, int offset, int count) {
+        if (bufferLength + count > input.length) compact();
+        count = Math.min(count, input.length - bufferLength);
+        for (int i = 0; i < count; i++) {
+            input[bufferLength + i] = src[offset + i];
+        }
+        bufferLength += count;
+    }
+
+    /**
+     * 输出一个跳步到 out[offset, offset + hop)
+     * @return 输出的样本数；输入不足返回 0，输入已结束且全部输出返回 -1
+     */
+    public int produce(short[] out, int offset) {
+        long nominal = (long) analysisPos;
+        if (endOfInput && nominal >= inputEnd) return -1;
+        long needEnd = nominal + tolerance + windowSize;
+        if (needEnd > bufferStart + bufferLength) {
+            if (!endOfInput) return 0;
+            // 末尾补零
+            compact();
+            int pad = (int) Math.min(needEnd - bufferStart - bufferLength, input.length - bufferLength);
+            for (int i = 0; i < pad; i++) input[bufferLength + i] = 0;
+            bufferLength += pad;
+            if (needEnd > bufferStart + bufferLength) return -1;
+        }
+
+        long pos = prevPos < 0 ? nominal : findBestPosition(nominal);
+        int p = (int) (pos - bufferStart);
+        for (int i = 0; i < hop; i++) {
+            float v = tail[i] + window[i] * input[p + i];
+            int s = (int) (v + (v >= 0 ? 0.5f : -0.5f));
+            out[offset + i] = (short) (s > 32767 ? 32767 : (s < -32768 ? -32768 : s));
+            tail[i] = window[hop + i] * input[p + hop + i];
+        }
+        prevPos = pos;
+        analysisPos += hop * speed;
+        return hop;
+    }
+
+    /**
+     * 在 [nominal - tolerance, nominal + tolerance] 内寻找与上一段自然延续
+     * （prevPos + hop 开始的片段）归一化互相关最大的位置
+     */
+    private long findBestPosition(long nominal) {
+        int target = (int) (prevPos + hop - bufferStart);
+        long from = Math.max(bufferStart, nominal - tolerance);
+        long to = nominal + tolerance;
+        long best = nominal;
+        float bestScore = -Float.MAX_VALUE;
+        // 粗搜索步长 2，再在最优点附近细搜索
+        for (long c = from; c <= to; c += 2) {
+            float score = similarity(target, (int) (c - bufferStart));
+            if (score > bestScore) {
+                bestScore = score;
+                best = c;
+            }
+        }
+        long coarse = best;
+        for (long c = Math.max(from, coarse - 1); c <= Math.min(to, coarse + 1); c += 2) {
+            if (c == coarse) continue;
+            float score = similarity(target, (int) (c - bufferStart));
+            if (score > bestScore) {
+                bestScore = score;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    private float similarity(int a, int b) {
+        float dot = 0, energy = 1e-3f;
+        for (int i = 0; i < hop; i += CORRELATION_STRIDE) {
+            float x = input[b + i];
+            dot += input[a + i] * x;
+            energy += x * x;
+        }
+        return dot / (float) Math.sqrt(energy);
+    }
+
+    /** 不再需要的最旧样本数 */
+    private int discardable() {
+        long keepFrom = (long) analysisPos - tolerance;
+        if (prevPos >= 0) keepFrom = Math.min(keepFrom, prevPos + hop);
+        return (int) Math.max(0, Math.min(bufferLength, keepFrom - bufferStart));
+    }
+
+    private void compact() {
+        int drop = discardable();
+        if (drop == 0) return;
+        System.arraycopy(input, drop, input, 0, bufferLength - drop);
+        bufferLength -= drop;
+        bufferStart += drop;
+    }
+}
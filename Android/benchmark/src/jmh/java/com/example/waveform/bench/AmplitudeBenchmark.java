@@ -0,0 +1,35 @@
+package com.example.waveform.bench;
+
+import com.example.waveform.CapturePipeline;
+import java.util.Random;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 每个录音块都要计算一次的平均幅度
+ */
+@State(Scope.Thread)
+public class AmplitudeBenchmark {
+    // 256: 低延迟块；2048: 默认块；8192: 大缓冲设备
+    @Param({"256", "2048", "8192"})
+    public int bufferSamples;
+
+    private short[] samples;
+
+    @Setup
+    public void setup() {
+        samples = new short[bufferSamples];
+        Random random = new Random(42);
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (random.nextGaussian() * 4000);
+        }
+    }
+
+    @Benchmark
+    public float calculateAmplitude() {
+        return CapturePipeline.calculateAmplitude(samples, bufferSamples);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.waveform.bench;
+
+import com.example.waveform.CalculatorFormatter;
+import com.example.waveform.DoubleFormatter;
+import java.text.DecimalFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 计算器每次按键都会格式化结果与算式
+ * format 为实际使用的路径（最短往返数字 + String），chars 只写入复用的 char[]，decimalFormat 为原先的实现
+ */
+@State(Scope.Thread)
+public class CalculatorFormatBenchmark {
+    // integer: 整数结果；decimal: 短小数；fraction: 除法产生的长小数；large: 大数
+    @Param({"integer", "decimal", "fraction", "large"})
+    public String kind;
+
+    private final CalculatorFormatter formatter = new CalculatorFormatter();
+    private final DoubleFormatter doubleFormatter = new DoubleFormatter(CalculatorFormatter.DISPLAY_CHARS);
+    private final DecimalFormat decimalFormat = new DecimalFormat("#.##########");
+    private double[] values;
+    private int index;
+
+    @Setup
+    public void setup() {
+        values = new double[64];
+        for (int i = 0; i < values.length; i++) {
+            switch (kind) {
+                case "integer":
+                    values[i] = i * 37 - 500;
+                    break;
+                case "decimal":
+                    values[i] = (i * 37 - 500) / 4.0;
+                    break;
+                case "fraction":
+                    values[i] = (i + 1) / 7.0;
+                    break;
+                default:
+                    values[i] = (i + 1) * 1.234567e12;
+                    break;
+            }
+        }
+    }
+
+    @Benchmark
+    public String format() {
+        index = (index + 1) & (values.length - 1);
+        return formatter.format(values[index]);
+    }
+
+    @Benchmark
+    public int chars() {
+        index = (index + 1) & (values.length - 1);
+        return doubleFormatter.format(values[index]);
+    }
+
+    @Benchmark
+    public String decimalFormat() {
+        index = (index + 1) & (values.length - 1);
+        return decimalFormat.format(values[index]);
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.waveform.bench;
+
+import com.example.waveform.AesCtr;
+import com.example.waveform.EncryptedRecording;
+import com.example.waveform.PcmFileWriter;
+import com.example.waveform.WavFile;
+import com.example.waveform.WavReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.Collections;
+import java.util.Random;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * 加密录音与明文 WAV 的对比：写线程每块的加密开销、顺序读取（播放/分析）和随机跳转读取
+ * 密钥包装用恒等函数代替 Keystore，只测音频数据本身的加解密
+ */
+@State(Scope.Thread)
+public class EncryptionBenchmark {
+    private static final int SAMPLE_RATE = 44100;
+    // 与录音写线程的块大小同量级
+    private static final int BLOCK_BYTES = 4096;
+
+    @Param({"10", "60"})
+    public int fileSeconds;
+
+    private File plainFile;
+    private File encryptedFile;
+    private AesCtr cipher;
+    private final byte[] block = new byte[BLOCK_BYTES];
+    private final byte[] copyTarget = new byte[BLOCK_BYTES];
+    private final short[] readBuffer = new short[4096];
+    private final Random random = new Random(42);
+    private long blockPosition;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, GeneralSecurityException {
+        EncryptedRecording.setKeyWrapper(new EncryptedRecording.KeyWrapper() {
+            @Override
+            public byte[] wrap(byte[] key) {
+                return key.clone();
+            }
+
+            @Override
+            public byte[] unwrap(byte[] wrapped) {
+                return wrapped.clone();
+            }
+        });
+        byte[] chunk = new byte[SAMPLE_RATE * 2];
+        for (int i = 0; i < chunk.length; i += 2) {
+            short s = (short) (Math.sin(i * Math.PI / 100) * 8000);
+            chunk[i] = (byte) s;
+            chunk[i + 1] = (byte) (s >> 8);
+        }
+        File pcmFile = File.createTempFile("jmh", ".pcm");
+        try (FileOutputStream out = new FileOutputStream(pcmFile)) {
+            for (int i = 0; i < fileSeconds; i++) out.write(chunk);
+        }
+        plainFile = File.createTempFile("jmh", ".wav");
+        WavFile.fromPcm(pcmFile, plainFile, SAMPLE_RATE, 1, Collections.<WavFile.CuePoint>emptyList());
+        pcmFile.delete();
+
+        // 按录音时的路径写出加密容器
+        encryptedFile = File.createTempFile("jmh", ".ewav");
+        AesCtr writeCipher = EncryptedRecording.create(encryptedFile);
+        PcmFileWriter writer = new PcmFileWriter(chunk.length, 4);
+        writer.open(encryptedFile, 0, EncryptedRecording.PCM_OFFSET, writeCipher);
+        for (int i = 0; i < fileSeconds; i++) {
+            PcmFileWriter.Block b = writer.obtainWait();
+            System.arraycopy(chunk, 0, b.data, 0, chunk.length);
+            writer.submit(b, chunk.length);
+        }
+        writer.close();
+        writer.shutdown();
+        EncryptedRecording.finish(encryptedFile, writeCipher, (long) fileSeconds * chunk.length, SAMPLE_RATE, 1,
+                Collections.<WavFile.CuePoint>emptyList());
+
+        cipher = new AesCtr(new byte[AesCtr.KEY_BYTES], new byte[AesCtr.NONCE_BYTES]);
+        random.nextBytes(block);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        plainFile.delete();
+        encryptedFile.delete();
+    }
+
+    /** 基线：写线程不加密时对一块数据的处理只有拷贝量级 */
+    @Benchmark
+    public byte[] copyBlock() {
+        System.arraycopy(block, 0, copyTarget, 0, BLOCK_BYTES);
+        return copyTarget;
+    }
+
+    /** 写线程每块的加密开销（顺序位置，沿用计数器） */
+    @Benchmark
+    public byte[] encryptBlock() throws IOException {
+        cipher.apply(blockPosition, block, 0, BLOCK_BYTES);
+        blockPosition += BLOCK_BYTES;
+        return block;
+    }
+
+    @Benchmark
+    public long readPlain() throws IOException {
+        return readAll(plainFile);
+    }
+
+    @Benchmark
+    public long readEncrypted() throws IOException {
+        return readAll(encryptedFile);
+    }
+
+    /** 跳转后读一个缓冲区：加密录音需要重新初始化计数器 */
+    @Benchmark
+    public long seekPlain() throws IOException {
+        return seekAndRead(plainFile);
+    }
+
+    @Benchmark
+    public long seekEncrypted() throws IOException {
+        return seekAndRead(encryptedFile);
+    }
+
+    private long readAll(File file) throws IOException {
+        long sum = 0;
+        try (WavReader reader = new WavReader(file)) {
+            int n;
+            while ((n = reader.read(readBuffer, 0, readBuffer.length)) > 0) sum += readBuffer[n - 1];
+        }
+        return sum;
+    }
+
+    private long seekAndRead(File file) throws IOException {
+        try (WavReader reader = new WavReader(file)) {
+            long sum = 0;
+            for (int i = 0; i < 16; i++) {
+                reader.seekFrame(random.nextInt((int) reader.getFrameCount()));
+                int n = reader.read(readBuffer, 0, readBuffer.length);
+                if (n > 0) sum += readBuffer[n - 1];
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.waveform.bench;
+
+import com.example.waveform.CompiledExpression;
+import com.example.waveform.ExpressionCache;
+import com.example.waveform.ExpressionCompiler;
+import java.text.ParseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 表达式编译与求值的吞吐量：compile 为每次重新解析，evaluate 为已编译程序的纯求值，
+ * cached 为计算器按 = 时的实际路径（按字符串查缓存再求值）
+ */
+@State(Scope.Thread)
+public class ExpressionBenchmark {
+    // short: 一般的四则运算；long: 数百个记号、多层括号、函数和百分比
+    @Param({"short", "long"})
+    public String size;
+
+    private String source;
+    private CompiledExpression compiled;
+    private final ExpressionCache cache = new ExpressionCache(32);
+
+    @Setup
+    public void setup() throws ParseException {
+        if (size.equals("short")) {
+            source = "12.5 + 3 × (4 - 1.25) ÷ 2";
+        } else {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 1; i <= 40; i++) {
+                if (i > 1) sb.append(i % 3 == 0 ? " - " : " + ");
+                sb.append("(").append(i).append(".5 × (").append(i + 1).append(" - √").append(i * 4)
+                        .append(") ÷ ").append(i % 7 + 1).append(")^2");
+                if (i % 5 == 0) sb.append(" + sin(").append(i).append(") × 3%");
+            }
+            source = sb.toString();
+        }
+        compiled = ExpressionCompiler.compile(source);
+        cache.compile(source);
+    }
+
+    @Benchmark
+    public double compile() throws ParseException {
+        return ExpressionCompiler.compile(source).evaluate();
+    }
+
+    @Benchmark
+    public double evaluate() {
+        return compiled.evaluate();
+    }
+
+    @Benchmark
+    public double cached() throws ParseException {
+        return cache.compile(source).evaluate();
+    }
+}
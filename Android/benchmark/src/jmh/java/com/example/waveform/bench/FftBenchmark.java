@@ -0,0 +1,42 @@
+package com.example.waveform.bench;
+
+import com.example.waveform.RealFft;
+import java.util.Random;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 频谱显示每帧的 FFT（加窗 + 幅度 dB）
+ * 44.1kHz、50% 重叠时每秒需要 44100 / (size / 2) 帧，吞吐除以该帧数即为实时余量
+ */
+@State(Scope.Thread)
+public class FftBenchmark {
+    @Param({"512", "1024", "2048", "4096", "8192"})
+    public int size;
+
+    private RealFft fft;
+    private float[] input;
+    private float[] re;
+    private float[] im;
+    private float[] db;
+
+    @Setup
+    public void setup() {
+        fft = new RealFft(size);
+        input = new float[size];
+        re = new float[fft.getBinCount()];
+        im = new float[fft.getBinCount()];
+        db = new float[fft.getBinCount()];
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) input[i] = random.nextFloat() * 2 - 1;
+    }
+
+    @Benchmark
+    public float[] magnitudesDb() {
+        fft.magnitudesDb(input, 0, re, im, db);
+        return db;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.waveform.bench;
+
+import com.example.waveform.AudioFingerprinter;
+import com.example.waveform.FingerprintIndex;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 重复录音检测的指纹索引：整库建索引耗时与单次查询延迟
+ * 指纹为合成数据，频点分布偏向低频以接近真实录音中倒排表长度的偏斜
+ */
+@State(Scope.Benchmark)
+public class FingerprintIndexBenchmark {
+    @Param({"1000", "10000"})
+    public int recordings;
+
+    private AudioFingerprinter.Fingerprint[] fingerprints;
+    private AudioFingerprinter.Fingerprint[] queries;
+    private FingerprintIndex index;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(7);
+        fingerprints = new AudioFingerprinter.Fingerprint[recordings];
+        for (int r = 0; r < recordings; r++) {
+            fingerprints[r] = randomFingerprint(random, 200 + random.nextInt(AudioFingerprinter.MAX_HASHES - 200));
+        }
+        // 查询：一半是库中录音的裁剪副本（丢掉部分哈希、整体平移），一半是新内容
+        queries = new AudioFingerprinter.Fingerprint[64];
+        for (int q = 0; q < queries.length; q++) {
+            queries[q] = q % 2 == 0
+                    ? derive(random, fingerprints[random.nextInt(recordings)])
+                    : randomFingerprint(random, 1000);
+        }
+        index = buildIndex();
+    }
+
+    private FingerprintIndex buildIndex() {
+        FingerprintIndex idx = new FingerprintIndex();
+        for (int r = 0; r < recordings; r++) {
+            idx.add("/rec/" + r + ".wav", fingerprints[r]);
+        }
+        idx.rebuild();
+        return idx;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public FingerprintIndex build() {
+        return buildIndex();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<FingerprintIndex.Match> query() {
+        next = (next + 1) & (queries.length - 1);
+        return index.query(queries[next], -1);
+    }
+
+    private static AudioFingerprinter.Fingerprint randomFingerprint(Random random, int count) {
+        int[] hashes = new int[count];
+        short[] times = new short[count];
+        int t = 0;
+        for (int i = 0; i < count; i++) {
+            double u = random.nextDouble(), v = random.nextDouble();
+            int f1 = 8 + (int) (246 * u * u);
+            int f2 = 8 + (int) (246 * v * v);
+            int dt = 1 + random.nextInt(63);
+            hashes[i] = (f1 << 14) | (f2 << 6) | dt;
+            t += random.nextInt(3);
+            times[i] = (short) t;
+        }
+        return new AudioFingerprinter.Fingerprint(hashes, times, count);
+    }
+
+    private static AudioFingerprinter.Fingerprint derive(Random random, AudioFingerprinter.Fingerprint source) {
+        int[] hashes = new int[source.count];
+        short[] times = new short[source.count];
+        int shift = random.nextInt(500);
+        int count = 0;
+        for (int i = source.count / 10; i < source.count; i++) {
+            if (random.nextInt(4) == 0) continue;
+            hashes[count] = source.hashes[i];
+            times[count] = (short) (source.times[i] + shift);
+            count++;
+        }
+        return new AudioFingerprinter.Fingerprint(hashes, times, count);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.waveform.bench;
+
+import com.example.waveform.CalculatorFormatter;
+import com.example.waveform.CompiledExpression;
+import com.example.waveform.DecimalEvaluator;
+import com.example.waveform.ExpressionCache;
+import com.example.waveform.ExpressionCompiler;
+import java.math.MathContext;
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 按 = 到显示结果的耗时（编译或查缓存 + 求值 + 格式化），精确模式的目标是远低于 1 ms
+ * firstPress 为表达式第一次计算（未命中缓存），precise 为重复计算，doubleMode 为关闭精确模式时的对照
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PreciseCalculationBenchmark {
+    // money: 全部走 long 快速路径；fraction: 除不尽，退回 BigDecimal；
+    // power: 小数高次幂；long: 数百个记号混合各种运算
+    @Param({"money", "fraction", "power", "long"})
+    public String kind;
+
+    private String source;
+    private final ExpressionCache cache = new ExpressionCache(32);
+    private final DecimalEvaluator evaluator = new DecimalEvaluator(MathContext.DECIMAL128);
+    private final CalculatorFormatter formatter = new CalculatorFormatter();
+
+    @Setup
+    public void setup() throws ParseException {
+        switch (kind) {
+            case "money":
+                source = "19.99 × 3 + 4.25 × 12 - 0.1 + 0.2 - 15%";
+                break;
+            case "fraction":
+                source = "10 ÷ 3 + 1 ÷ 7 × (2 + 5 ÷ 9)";
+                break;
+            case "power":
+                source = "1000 × 1.05^30 - √2";
+                break;
+            default:
+                StringBuilder sb = new StringBuilder();
+                for (int i = 1; i <= 40; i++) {
+                    if (i > 1) sb.append(i % 3 == 0 ? " - " : " + ");
+                    sb.append("(").append(i).append(".25 × (").append(i + 1).append(" - 0.").append(i)
+                            .append(") ÷ ").append(i % 7 + 1).append(")");
+                    if (i % 5 == 0) sb.append(" + ").append(i).append("%");
+                }
+                source = sb.toString();
+                break;
+        }
+        cache.compile(source);
+    }
+
+    @Benchmark
+    public String precise() throws ParseException {
+        return formatter.format(evaluator.evaluate(cache.compile(source)));
+    }
+
+    @Benchmark
+    public String firstPress() throws ParseException {
+        return formatter.format(evaluator.evaluate(ExpressionCompiler.compile(source)));
+    }
+
+    @Benchmark
+    public String doubleMode() throws ParseException {
+        CompiledExpression compiled = cache.compile(source);
+        return formatter.format(compiled.evaluate());
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.waveform.bench;
+
+import com.example.waveform.ExpressionCompiler;
+import com.example.waveform.ExpressionPreview;
+import java.math.MathContext;
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 实时预览每次按键的耗时：在表达式末尾输入一个数字再删掉，各算一次预览
+ * incremental 为增量预览，tokens 从 10 到 500 耗时应基本持平；recompile 为每次整条重新编译求值的对照
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PreviewBenchmark {
+    @Param({"10", "100", "500"})
+    public int tokens;
+
+    @Param({"false", "true"})
+    public boolean precise;
+
+    private final ExpressionPreview preview = new ExpressionPreview(MathContext.DECIMAL128);
+    private String typed;
+    private String base;
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < tokens / 2; i++) {
+            if (i > 0) sb.append(i % 2 == 0 ? " + " : " × ");
+            sb.append(i % 9 + 1).append(".25");
+        }
+        base = sb.toString();
+        typed = base + "7";
+        preview.setPrecise(precise);
+        preview.update(base);
+    }
+
+    @Benchmark
+    public boolean incremental() {
+        preview.update(typed);
+        return preview.update(base);
+    }
+
+    @Benchmark
+    public double recompile() throws ParseException {
+        return ExpressionCompiler.compile(typed).evaluate() + ExpressionCompiler.compile(base).evaluate();
+    }
+}
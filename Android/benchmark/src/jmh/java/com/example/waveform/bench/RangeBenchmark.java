@@ -0,0 +1,66 @@
+package com.example.waveform.bench;
+
+import com.example.waveform.CompiledExpression;
+import com.example.waveform.ExpressionCompiler;
+import com.example.waveform.RangeEvaluator;
+import java.text.ParseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * 表格模式的吞吐量，结果单位即 点/秒：对 100 万个 x 求值
+ * scalar 为逐点解释执行，block 为单线程按列求值，parallel 为按列求值 + fork/join 多核
+ */
+@State(Scope.Thread)
+public class RangeBenchmark {
+    private static final int POINTS = 1_000_000;
+
+    // poly: 只有四则运算和乘方；mixed: 含三角、指数函数
+    @Param({"poly", "mixed"})
+    public String kind;
+
+    private CompiledExpression compiled;
+    private RangeEvaluator single;
+    private RangeEvaluator parallel;
+
+    @Setup
+    public void setup() throws ParseException {
+        compiled = ExpressionCompiler.compile(kind.equals("poly")
+                ? "3x^3 - 2x^2 + x ÷ 7 - 1"
+                : "sin(x) × exp(-x^2 ÷ 50) + √abs(x)");
+        single = new RangeEvaluator(1);
+        parallel = new RangeEvaluator(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown
+    public void tearDown() {
+        single.shutdown();
+        parallel.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public double scalar() {
+        double sum = 0;
+        double step = 20.0 / (POINTS - 1);
+        for (int i = 0; i < POINTS; i++) sum += compiled.evaluate(-10 + step * i);
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public double[] block() {
+        return single.evaluate(compiled, -10, 10, POINTS).y;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public double[] parallel() {
+        return parallel.evaluate(compiled, -10, 10, POINTS).y;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.waveform.bench;
+
+import com.example.waveform.RecordingIndex;
+import java.util.Locale;
+import java.util.Random;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 历史列表索引在 5 万条录音上的查询耗时，目标是每次查询 10 ms 以内
+ * all: 无条件按时间排序；prefix: 名称前缀 + 按大小排序；
+ * range: 时长与响度范围 + 按名称排序；recent: 最近 7 天 + 按时长排序
+ */
+@State(Scope.Thread)
+public class RecordingIndexBenchmark {
+    private static final int RECORDINGS = 50_000;
+    private static final long DAY_MS = 24L * 3600 * 1000;
+
+    @Param({"all", "prefix", "range", "recent"})
+    public String kind;
+
+    private RecordingIndex index;
+    private RecordingIndex.Query query;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        long now = 1_700_000_000_000L;
+        RecordingIndex.Builder builder = new RecordingIndex.Builder();
+        for (int i = 0; i < RECORDINGS; i++) {
+            long created = now - (long) (random.nextDouble() * 365 * DAY_MS);
+            String name = String.format(Locale.US, "%s_%05d.wav",
+                    i % 3 == 0 ? "会议" : i % 3 == 1 ? "Recording" : "note", i);
+            builder.add("/recordings/" + name, name, created, random.nextInt(3_600_000),
+                    random.nextInt(300 << 20), random.nextInt(10) == 0 ? Double.NaN : -40 + random.nextDouble() * 35);
+        }
+        index = builder.build();
+        query = new RecordingIndex.Query();
+        switch (kind) {
+            case "prefix":
+                query.namePrefix = "recording_1";
+                query.setSort(RecordingIndex.KEY_SIZE, true);
+                break;
+            case "range":
+                query.setDurationRange(60_000, 600_000).setLoudnessRange(-20, -10);
+                query.setSort(RecordingIndex.KEY_NAME, false);
+                break;
+            case "recent":
+                query.setCreatedRange(now - 7 * DAY_MS, Long.MAX_VALUE);
+                query.setSort(RecordingIndex.KEY_DURATION, true);
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Benchmark
+    public int[] query() {
+        return index.query(query);
+    }
+
+    @Benchmark
+    public RecordingIndex build() {
+        RecordingIndex.Builder builder = new RecordingIndex.Builder();
+        for (int i = 0; i < RECORDINGS; i++) {
+            builder.add(index.getPath(i), index.getName(i), index.getCreatedMillis(i), index.getDurationMs(i),
+                    index.getSizeBytes(i), index.getLoudnessLufs(i));
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.waveform.bench;
+
+import com.example.waveform.WavFile;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * 停止录音时的 PCM 转 WAV：文件头写入与整段拷贝（含书签块）
+ */
+@State(Scope.Thread)
+public class WavFileBenchmark {
+    private static final int SAMPLE_RATE = 44100;
+
+    // 录音时长（秒），单声道 16 位约 86KB/s
+    @Param({"1", "60", "600"})
+    public int fileSeconds;
+
+    private File pcmFile;
+    private File wavFile;
+    private final List<WavFile.CuePoint> cues = new ArrayList<>();
+    private final ByteArrayOutputStream headerOut = new ByteArrayOutputStream(WavFile.HEADER_SIZE);
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        pcmFile = File.createTempFile("jmh", ".pcm");
+        wavFile = File.createTempFile("jmh", ".wav");
+        byte[] chunk = new byte[SAMPLE_RATE * 2];
+        for (int i = 0; i < chunk.length; i += 2) {
+            short s = (short) (Math.sin(i * Math.PI / 100) * 8000);
+            chunk[i] = (byte) s;
+            chunk[i + 1] = (byte) (s >> 8);
+        }
+        try (FileOutputStream out = new FileOutputStream(pcmFile)) {
+            for (int i = 0; i < fileSeconds; i++) out.write(chunk);
+        }
+        for (int i = 1; i <= 8; i++) {
+            cues.add(new WavFile.CuePoint(i, (long) i * SAMPLE_RATE * fileSeconds / 9, "书签 " + i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pcmFile.delete();
+        wavFile.delete();
+    }
+
+    @Benchmark
+    public int writeWavHeader() throws IOException {
+        headerOut.reset();
+        WavFile.writeHeader(headerOut, pcmFile.length(), SAMPLE_RATE, 1);
+        return headerOut.size();
+    }
+
+    @Benchmark
+    public long pcmToWav() throws IOException {
+        WavFile.fromPcm(pcmFile, wavFile, SAMPLE_RATE, 1, Collections.<WavFile.CuePoint>emptyList());
+        return wavFile.length();
+    }
+
+    @Benchmark
+    public long pcmToWavWithCues() throws IOException {
+        WavFile.fromPcm(pcmFile, wavFile, SAMPLE_RATE, 1, cues);
+        return wavFile.length();
+    }
+}
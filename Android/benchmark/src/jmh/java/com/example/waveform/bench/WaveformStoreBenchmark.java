@@ -0,0 +1,75 @@
+package com.example.waveform.bench;
+
+import com.example.waveform.AmplitudeRing;
+import java.util.LinkedList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * AudioWaveformView 的振幅存储：每 40ms 追加一个值，每帧从新到旧遍历一次
+ * linkedList* 为改造前的 LinkedList&lt;Float&gt; 写法，作为对照
+ */
+@State(Scope.Thread)
+public class WaveformStoreBenchmark {
+    // 屏幕可容纳的柱数：手机竖屏 / 横屏 / 平板
+    @Param({"40", "120", "400"})
+    public int bars;
+
+    private AmplitudeRing ring;
+    private LinkedList<Float> list;
+    private float next;
+
+    @Setup
+    public void setup() {
+        ring = new AmplitudeRing(bars);
+        list = new LinkedList<>();
+        for (int i = 0; i < bars; i++) {
+            float v = (i % 17) / 17f;
+            ring.add(v);
+            list.add(v);
+        }
+    }
+
+    private float nextValue() {
+        next += 0.37f;
+        if (next > 1f) next -= 1f;
+        return next;
+    }
+
+    @Benchmark
+    public float ringAddAndDraw() {
+        ring.add(nextValue());
+        float sum = 0;
+        for (int i = ring.size() - 1; i >= 0; i--) {
+            sum += ring.get(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public float linkedListAddAndDraw() {
+        list.add(nextValue());
+        if (list.size() > bars) list.removeFirst();
+        float sum = 0;
+        for (int i = list.size() - 1; i >= 0; i--) {
+            sum += list.get(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int ringAdd() {
+        ring.add(nextValue());
+        return ring.size();
+    }
+
+    @Benchmark
+    public int linkedListAdd() {
+        list.add(nextValue());
+        if (list.size() > bars) list.removeFirst();
+        return list.size();
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.waveform.bench;
+
+import com.example.waveform.AudioSource;
+import com.example.waveform.AutomaticGainControl;
+import com.example.waveform.BiquadHighPassFilter;
+import com.example.waveform.CaptureMetrics;
+import com.example.waveform.CapturePipeline;
+import com.example.waveform.FileAudioSource;
+import com.example.waveform.NoiseGate;
+import com.example.waveform.PcmFileWriter;
+import com.example.waveform.SpectrumAnalyzer;
+import com.example.waveform.SyntheticAudioSource;
+import com.example.waveform.WavFile;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 端到端录音链路基准：音源 -> 处理链 -> 频谱 -> 写线程 -> 文件，尽快运行
+ * 每种配置输出吞吐 (MB/s)、实时倍数和每秒分配字节数（录音线程 + 写线程）
+ *
+ * 用法: ./gradlew :benchmark:run --args="[每种配置的音频秒数]"
+ */
+public class PipelineBenchmark {
+    private static final int SAMPLE_RATE = 44100;
+    private static final int BLOCK_SAMPLES = 2048;
+    private static final int WRITER_BLOCKS = 32;
+
+    private static final int CHAIN_NONE = 0;
+    private static final int CHAIN_DEFAULT = 1;
+    private static final int CHAIN_FULL = 2;
+
+    private static final class Config {
+        final String name;
+        final int chain;
+        final boolean spectrum;
+
+        Config(String name, int chain, boolean spectrum) {
+            this.name = name;
+            this.chain = chain;
+            this.spectrum = spectrum;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        File wav = File.createTempFile("bench", ".wav");
+        wav.deleteOnExit();
+        writeTestWav(wav, seconds);
+
+        List<Config> configs = new ArrayList<>();
+        configs.add(new Config("silence / raw", CHAIN_NONE, false));
+        configs.add(new Config("sine / default chain", CHAIN_DEFAULT, false));
+        configs.add(new Config("noise / hpf+gate+agc", CHAIN_FULL, false));
+        configs.add(new Config("bursts / default+fft", CHAIN_DEFAULT, true));
+        configs.add(new Config("wav file / default", CHAIN_DEFAULT, false));
+        configs.add(new Config("wav file / full+fft", CHAIN_FULL, true));
+
+        System.out.println(String.format(Locale.US, "%-24s %9s %10s %12s %8s",
+                "config", "MB/s", "x realtime", "alloc B/s", "dropped"));
+        for (Config config : configs) {
+            // 第一遍预热 JIT，只报告第二遍
+            run(config, wav, Math.max(5, seconds / 10));
+            System.out.println(run(config, wav, seconds));
+        }
+        wav.delete();
+    }
+
+    private static AudioSource createSource(Config config, File wav, int seconds) {
+        if (config.name.startsWith("wav")) {
+            FileAudioSource source = new FileAudioSource(wav);
+            source.setLooping(false);
+            return source;
+        }
+        int pattern = config.name.startsWith("silence") ? SyntheticAudioSource.PATTERN_SILENCE
+                : config.name.startsWith("noise") ? SyntheticAudioSource.PATTERN_NOISE
+                : config.name.startsWith("bursts") ? SyntheticAudioSource.PATTERN_BURSTS
+                : SyntheticAudioSource.PATTERN_SINE;
+        SyntheticAudioSource source = new SyntheticAudioSource(SAMPLE_RATE, pattern, 440, -12);
+        source.setDurationMs(seconds * 1000L);
+        return source;
+    }
+
+    private static String run(Config config, File wav, int seconds) throws IOException {
+        AudioSource source = createSource(config, wav, seconds);
+        if (!source.open()) throw new IOException("无法打开音源: " + config.name);
+
+        CapturePipeline pipeline = new CapturePipeline(SAMPLE_RATE, BLOCK_SAMPLES);
+        if (config.chain >= CHAIN_DEFAULT) {
+            pipeline.getProcessingChain().add(new BiquadHighPassFilter(80f));
+            pipeline.getProcessingChain().add(new NoiseGate(-50f, -24f));
+        }
+        if (config.chain >= CHAIN_FULL) {
+            pipeline.getProcessingChain().add(new AutomaticGainControl(-20f, 20f));
+        }
+        if (config.spectrum) {
+            SpectrumAnalyzer analyzer = new SpectrumAnalyzer(2048, SAMPLE_RATE);
+            analyzer.setEnabled(true);
+            pipeline.setSpectrumAnalyzer(analyzer);
+        }
+        pipeline.setAmplitudeListener(amplitude -> { });
+        pipeline.getProcessingChain().prepare(SAMPLE_RATE);
+        pipeline.setSource(source);
+        pipeline.setBackpressure(true);
+
+        PcmFileWriter writer = new PcmFileWriter(BLOCK_SAMPLES * 2, WRITER_BLOCKS);
+        pipeline.setWriter(writer);
+        File out = File.createTempFile("bench", ".pcm");
+        writer.open(out, 16L * 1024 * 1024);
+
+        long allocBefore = allocatedBytes();
+        long start = System.nanoTime();
+        pipeline.setRunning(true);
+        pipeline.runSession();
+        writer.close();
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocBefore;
+
+        CaptureMetrics.Snapshot snapshot = pipeline.snapshot();
+        long bytes = writer.getBytesWritten();
+        writer.shutdown();
+        source.release();
+        out.delete();
+
+        double secondsElapsed = elapsed / 1e9;
+        double audioSeconds = bytes / 2.0 / SAMPLE_RATE;
+        return String.format(Locale.US, "%-24s %9.1f %9.0fx %12.0f %8d",
+                config.name, bytes / 1e6 / secondsElapsed, audioSeconds / secondsElapsed,
+                allocated / secondsElapsed, snapshot.droppedBlocks);
+    }
+
+    /** 所有存活线程累计分配的字节数（HotSpot 扩展） */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return 0;
+        com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+        long total = 0;
+        for (long bytes : hotspot.getThreadAllocatedBytes(bean.getAllThreadIds())) {
+            if (bytes > 0) total += bytes;
+        }
+        return total;
+    }
+
+    /** 生成用于文件回放的测试 WAV：正弦与静音交替 */
+    private static void writeTestWav(File wav, int seconds) throws IOException {
+        SyntheticAudioSource source = new SyntheticAudioSource(SAMPLE_RATE, SyntheticAudioSource.PATTERN_BURSTS, 300, -18);
+        source.setDurationMs(seconds * 1000L);
+        source.open();
+        source.start();
+        File pcm = File.createTempFile("bench", ".pcm");
+        PcmFileWriter writer = new PcmFileWriter(BLOCK_SAMPLES * 2, WRITER_BLOCKS);
+        writer.open(pcm, 0);
+        short[] samples = new short[BLOCK_SAMPLES];
+        int read;
+        while ((read = source.read(samples, 0, samples.length)) > 0) {
+            PcmFileWriter.Block block = writer.obtainWait();
+            for (int i = 0; i < read; i++) {
+                block.data[2 * i] = (byte) samples[i];
+                block.data[2 * i + 1] = (byte) (samples[i] >> 8);
+            }
+            writer.submit(block, read * 2);
+        }
+        writer.shutdown();
+        WavFile.fromPcm(pcm, wav, SAMPLE_RATE, 1, new ArrayList<WavFile.CuePoint>());
+        pcm.delete();
+    }
+}